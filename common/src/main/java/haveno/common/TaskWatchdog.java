@@ -0,0 +1,317 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common;
+
+import haveno.common.util.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Opt-in watchdog for the tasks run by the {@link UserThread} and {@link ThreadUtils#execute(Runnable, String)}.
+ * <p>
+ * A monitor thread captures the stack of every task which runs longer than the stall threshold, so the log shows
+ * where the task was blocked instead of only that it was slow. Stalled tasks are aggregated per task class as
+ * offenders. Queue and run times are recorded in histograms, for the user thread the histograms of its lanes are
+ * used. Disabled by default, see Config.TASK_WATCHDOG_THRESHOLD_MS.
+ */
+@Slf4j
+public final class TaskWatchdog {
+    private static final long LOG_STATS_INTERVAL_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final long MIN_CHECK_INTERVAL_MS = 100;
+    private static final int MAX_NUM_OFFENDERS = 1000;
+    private static final int MAX_STACK_DEPTH = 40;
+    private static final String OTHER_OFFENDERS = "other";
+
+    private static volatile boolean enabled;
+    private static volatile long stallThresholdMs;
+    private static final Map<Thread, RunningTask> RUNNING_TASKS = new ConcurrentHashMap<>();
+    private static final Map<String, Offender> OFFENDERS = new ConcurrentHashMap<>();
+    private static final LatencyHistogram THREAD_UTILS_QUEUE_LATENCY = new LatencyHistogram();
+    private static final LatencyHistogram THREAD_UTILS_RUN_LATENCY = new LatencyHistogram();
+    private static Thread monitorThread;
+
+    private TaskWatchdog() {
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Starts watching the tasks. Calling it again only changes the threshold.
+     *
+     * @param stallThresholdMs the run time in milliseconds after which a task is considered stalled
+     */
+    public static synchronized void enable(long stallThresholdMs) {
+        if (stallThresholdMs <= 0) throw new IllegalArgumentException("stallThresholdMs must be positive");
+        TaskWatchdog.stallThresholdMs = stallThresholdMs;
+        enabled = true;
+        if (monitorThread == null) {
+            monitorThread = new Thread(TaskWatchdog::monitor, "TaskWatchdog");
+            monitorThread.setDaemon(true);
+            monitorThread.start();
+        }
+        log.info("Enabled task watchdog with stall threshold of {} ms", stallThresholdMs);
+    }
+
+    public static synchronized void disable() {
+        enabled = false;
+        if (monitorThread != null) {
+            monitorThread.interrupt();
+            monitorThread = null;
+        }
+        RUNNING_TASKS.clear();
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static long getStallThresholdMs() {
+        return stallThresholdMs;
+    }
+
+    /**
+     * Called by the executors when the given command starts on the current thread.
+     *
+     * @return the token to pass to {@link #taskCompleted(RunningTask)}
+     */
+    public static RunningTask taskStarted(Runnable command) {
+        Thread thread = Thread.currentThread();
+        RunningTask task = new RunningTask(command, thread, RUNNING_TASKS.get(thread));
+        RUNNING_TASKS.put(thread, task);
+        return task;
+    }
+
+    public static void taskCompleted(RunningTask task) {
+        // Nested tasks, e.g. of a direct executor, hand the thread back to the outer task
+        if (task.outer != null) RUNNING_TASKS.put(task.thread, task.outer);
+        else RUNNING_TASKS.remove(task.thread);
+
+        long runMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - task.startTs);
+        if (runMs >= stallThresholdMs) getOffender(task.name).completed(runMs, task.stack);
+    }
+
+    /**
+     * Wraps a command submitted to ThreadUtils to record its queue and run time.
+     */
+    static Runnable wrapThreadUtilsTask(Runnable command) {
+        long queuedTs = System.nanoTime();
+        return () -> {
+            long startTs = System.nanoTime();
+            THREAD_UTILS_QUEUE_LATENCY.record(startTs - queuedTs);
+            RunningTask task = taskStarted(command);
+            try {
+                command.run();
+            } finally {
+                THREAD_UTILS_RUN_LATENCY.record(System.nanoTime() - startTs);
+                taskCompleted(task);
+            }
+        };
+    }
+
+    /**
+     * @return the queue and run time histograms by name
+     */
+    public static Map<String, LatencyHistogram> getHistograms() {
+        Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+        for (UserThread.Lane lane : UserThread.Lane.values()) {
+            histograms.put("UserThread." + lane + ".queue", UserThread.getQueueLatency(lane));
+            histograms.put("UserThread." + lane + ".run", UserThread.getRunLatency(lane));
+        }
+        histograms.put("ThreadUtils.queue", THREAD_UTILS_QUEUE_LATENCY);
+        histograms.put("ThreadUtils.run", THREAD_UTILS_RUN_LATENCY);
+        return histograms;
+    }
+
+    /**
+     * @param limit the max. number of offenders to return
+     * @return the tasks which exceeded the stall threshold, sorted by their accumulated run time
+     */
+    public static List<Offender> getTopOffenders(int limit) {
+        return OFFENDERS.values().stream()
+                .sorted(Comparator.comparingLong(Offender::getTotalMs).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    public static void reset() {
+        OFFENDERS.clear();
+        THREAD_UTILS_QUEUE_LATENCY.reset();
+        THREAD_UTILS_RUN_LATENCY.reset();
+    }
+
+    public static void logStats() {
+        StringBuilder sb = new StringBuilder("Task watchdog stats:");
+        getHistograms().forEach((name, histogram) -> {
+            if (histogram.getCount() > 0) sb.append("\n\t").append(name).append(": ").append(histogram);
+        });
+        List<Offender> offenders = getTopOffenders(10);
+        if (!offenders.isEmpty()) sb.append("\nTop stalled tasks:");
+        offenders.forEach(offender -> sb.append("\n\t").append(offender));
+        log.info(sb.toString());
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static void monitor() {
+        long lastLogStatsTs = System.currentTimeMillis();
+        while (enabled && !Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(Math.max(MIN_CHECK_INTERVAL_MS, stallThresholdMs / 4));
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long now = System.nanoTime();
+            for (RunningTask task : RUNNING_TASKS.values()) {
+                long runMs = TimeUnit.NANOSECONDS.toMillis(now - task.startTs);
+                if (task.stack != null || runMs < stallThresholdMs) continue;
+
+                // The task might complete in between, then the stack shows what the thread does next, which is
+                // accepted as the stack is only captured once per stalled task
+                task.stack = formatStack(task.thread.getStackTrace());
+                getOffender(task.name).stalled(task.stack);
+                log.warn("Task {} is running for {} ms on thread {}:\n{}",
+                        task.name, runMs, task.thread.getName(), task.stack);
+            }
+
+            if (System.currentTimeMillis() - lastLogStatsTs >= LOG_STATS_INTERVAL_MS) {
+                lastLogStatsTs = System.currentTimeMillis();
+                logStats();
+            }
+        }
+    }
+
+    private static Offender getOffender(String name) {
+        Offender offender = OFFENDERS.get(name);
+        if (offender != null) return offender;
+        // Bound the map in case of generated class names
+        String key = OFFENDERS.size() < MAX_NUM_OFFENDERS ? name : OTHER_OFFENDERS;
+        return OFFENDERS.computeIfAbsent(key, Offender::new);
+    }
+
+    // Lambdas get a generated class name per call site, e.g. haveno.core.Foo$$Lambda/0x0000..., we only keep the
+    // declaring class as the stack shows the details
+    static String getTaskName(Runnable command) {
+        while (command instanceof WrappingTask) command = ((WrappingTask) command).getWrappedTask();
+        String name = command.getClass().getName();
+        int lambdaIndex = name.indexOf("$$Lambda");
+        return lambdaIndex > 0 ? name.substring(0, lambdaIndex) : name;
+    }
+
+    private static String formatStack(StackTraceElement[] stackTrace) {
+        StringBuilder sb = new StringBuilder();
+        int depth = Math.min(MAX_STACK_DEPTH, stackTrace.length);
+        for (int i = 0; i < depth; i++) sb.append("\tat ").append(stackTrace[i]).append('\n');
+        if (stackTrace.length > depth) sb.append("\t... ").append(stackTrace.length - depth).append(" more\n");
+        return sb.toString();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Static classes
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * A task running another task, e.g. the action of a timer. The watchdog reports it by the wrapped task, otherwise
+     * all tasks of the wrapper would be aggregated as one offender.
+     */
+    interface WrappingTask extends Runnable {
+        Runnable getWrappedTask();
+    }
+
+    public static final class RunningTask {
+        private final String name;
+        private final Thread thread;
+        @Nullable
+        private final RunningTask outer;
+        private final long startTs = System.nanoTime();
+        @Nullable
+        private volatile String stack;
+
+        private RunningTask(Runnable command, Thread thread, @Nullable RunningTask outer) {
+            this.name = getTaskName(command);
+            this.thread = thread;
+            this.outer = outer;
+        }
+    }
+
+    public static final class Offender {
+        private final String name;
+        private long count;
+        private long totalMs;
+        private long maxMs;
+        @Nullable
+        private String lastStack;
+
+        private Offender(String name) {
+            this.name = name;
+        }
+
+        private synchronized void stalled(String stack) {
+            lastStack = stack;
+        }
+
+        private synchronized void completed(long runMs, @Nullable String stack) {
+            count++;
+            totalMs += runMs;
+            maxMs = Math.max(maxMs, runMs);
+            if (stack != null) lastStack = stack;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized long getTotalMs() {
+            return totalMs;
+        }
+
+        public synchronized long getMaxMs() {
+            return maxMs;
+        }
+
+        @Nullable
+        public synchronized String getLastStack() {
+            return lastStack;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return name + ": count=" + count + ", total=" + totalMs + " ms, max=" + maxMs + " ms";
+        }
+    }
+}
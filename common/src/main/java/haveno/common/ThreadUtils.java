@@ -16,12 +16,12 @@
  */
 
 package haveno.common;
+import haveno.common.util.KeyedSerialExecutor;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -29,28 +29,20 @@ import java.util.concurrent.TimeUnit;
 
 public class ThreadUtils {
     
-    private static final Map<String, ExecutorService> EXECUTORS = new HashMap<>();
-    private static final Map<String, Thread> THREADS = new HashMap<>();
+    private static final KeyedSerialExecutor EXECUTOR = new KeyedSerialExecutor(ThreadUtils.class.getSimpleName());
     private static final int POOL_SIZE = 10;
     private static final ExecutorService POOL = Executors.newFixedThreadPool(POOL_SIZE);
 
     /**
      * Execute the given command in a thread with the given id.
+     * Commands with the same id run serially in submission order.
      * 
      * @param command the command to execute
      * @param threadId the thread id
      */
     public static Future<?> execute(Runnable command, String threadId) {
-        synchronized (EXECUTORS) {
-            if (!EXECUTORS.containsKey(threadId)) EXECUTORS.put(threadId, Executors.newFixedThreadPool(1));
-            return EXECUTORS.get(threadId).submit(() -> {
-                synchronized (THREADS) {
-                    THREADS.put(threadId, Thread.currentThread());
-                }
-                Thread.currentThread().setName(threadId);
-                command.run();
-            });
-        }
+        if (TaskWatchdog.isEnabled()) command = TaskWatchdog.wrapThreadUtilsTask(command);
+        return EXECUTOR.execute(command, threadId);
     }
 
     /**
@@ -72,30 +64,29 @@ public class ThreadUtils {
     }
 
     public static void shutDown(String threadId, Long timeoutMs) {
-        if (timeoutMs == null) timeoutMs = Long.MAX_VALUE;
-        ExecutorService pool = null;
-        synchronized (EXECUTORS) {
-            pool = EXECUTORS.get(threadId);
-        }
-        if (pool == null) return; // thread not found
-        pool.shutdown();
-        try {
-            if (!pool.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS)) pool.shutdownNow();
-        } catch (InterruptedException e) {
-            pool.shutdownNow();
-            throw new RuntimeException(e);
-        } finally {
-            remove(threadId);
-        }
+        EXECUTOR.shutDown(threadId, timeoutMs);
     }
 
+    /**
+     * Forget the given thread id. Queued commands still run, but commands executed afterwards start a new queue.
+     * Thread ids are also reclaimed automatically once their queue runs empty.
+     */
     public static void remove(String threadId) {
-        synchronized (EXECUTORS) {
-            EXECUTORS.remove(threadId);
-        }
-        synchronized (THREADS) {
-            THREADS.remove(threadId);
-        }
+        EXECUTOR.remove(threadId);
+    }
+
+    /**
+     * @return the number of thread ids with queued or running commands
+     */
+    public static int getNumThreadIds() {
+        return EXECUTOR.getNumKeys();
+    }
+
+    /**
+     * @return the number of commands queued across all thread ids
+     */
+    public static int getNumQueuedTasks() {
+        return EXECUTOR.getNumQueuedTasks();
     }
 
     // TODO: consolidate and cleanup apis
@@ -141,11 +132,4 @@ public class ThreadUtils {
             executorService.shutdownNow();
         }
     }
-
-    private static boolean isCurrentThread(Thread thread, String threadId) {
-        synchronized (THREADS) {
-            if (!THREADS.containsKey(threadId)) return false;
-            return thread == THREADS.get(threadId);
-        }
-    }
 }
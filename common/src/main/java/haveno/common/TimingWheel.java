@@ -0,0 +1,257 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hierarchical timing wheel used by the {@link TimingWheelTimer}. Adding and cancelling a timer is O(1).
+ * <p>
+ * There are LEVELS wheels of WHEEL_SIZE slots, a slot of level n covers WHEEL_SIZE^n ticks of TICK_MS. A timer is put
+ * into the lowest level covering its delay. Whenever a lower wheel completes a rotation the next slot of the level
+ * above is cascaded, so its timers move down until they fire from level 0. Timers beyond the range of the top level
+ * are cascaded again until they are in range.
+ * <p>
+ * A single daemon thread runs the wheel. It does not poll: it sleeps until the next occupied slot of level 0 or the
+ * next cascade, and indefinitely if no timer is scheduled. The actions run on that thread, so they must be short,
+ * e.g. the UserThread methods only pass the runnable to the user thread.
+ */
+@Slf4j
+public final class TimingWheel {
+    static final long TICK_MS = 50;
+    private static final int WHEEL_BITS = 6;
+    static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    static final int LEVELS = 4;
+    private static final long MAX_DELAY_TICKS = (1L << (WHEEL_BITS * LEVELS)) - 1;
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(TICK_MS);
+
+    private static final TimingWheel INSTANCE = new TimingWheel();
+
+    static TimingWheel getInstance() {
+        return INSTANCE;
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final TimingWheelTimer[][] slots = new TimingWheelTimer[LEVELS][WHEEL_SIZE];
+    // Bit i is set if slot i of the level is not empty
+    private final long[] occupiedSlots = new long[LEVELS];
+    private final int[] numTimersByLevel = new int[LEVELS];
+    // All ticks up to and including the current tick are processed
+    private long currentTick;
+    private long numScheduled;
+    private long numFired;
+    private long numCancelled;
+
+    private TimingWheel() {
+        Thread thread = new Thread(this::run, "TimingWheel");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public static long getNumScheduled() {
+        synchronized (INSTANCE) {
+            return INSTANCE.numScheduled;
+        }
+    }
+
+    public static long getNumFired() {
+        synchronized (INSTANCE) {
+            return INSTANCE.numFired;
+        }
+    }
+
+    public static long getNumCancelled() {
+        synchronized (INSTANCE) {
+            return INSTANCE.numCancelled;
+        }
+    }
+
+    public static int getNumPending() {
+        synchronized (INSTANCE) {
+            int numPending = 0;
+            for (int numTimers : INSTANCE.numTimersByLevel) numPending += numTimers;
+            return numPending;
+        }
+    }
+
+    synchronized void schedule(TimingWheelTimer timer, long delayMs) {
+        if (timer.isScheduled()) unlink(timer);
+        // Rounded up, so a timer never fires early
+        long deadlineNanos = System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMs));
+        timer.deadlineTick = Math.max(currentTick + 1, (deadlineNanos + TICK_NANOS - 1) / TICK_NANOS);
+        boolean wakeUp = timer.deadlineTick < getNextWakeUpTick();
+        insert(timer);
+        numScheduled++;
+        if (wakeUp) notifyAll();
+    }
+
+    synchronized void cancel(TimingWheelTimer timer) {
+        if (timer.isScheduled()) {
+            unlink(timer);
+            numCancelled++;
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void run() {
+        List<TimingWheelTimer> expired = new ArrayList<>();
+        while (true) {
+            synchronized (this) {
+                long nowTick = getNowTick();
+                while (currentTick < nowTick) {
+                    processTick(++currentTick, expired);
+                }
+                if (expired.isEmpty()) {
+                    long nextWakeUpTick = getNextWakeUpTick();
+                    try {
+                        if (nextWakeUpTick == Long.MAX_VALUE) {
+                            wait();
+                        } else {
+                            long waitNanos = nextWakeUpTick * TICK_NANOS - (System.nanoTime() - startNanos);
+                            if (waitNanos > 0) TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+                        }
+                    } catch (InterruptedException e) {
+                        log.warn("TimingWheel thread got interrupted");
+                    }
+                    continue;
+                }
+            }
+
+            // The actions run outside the lock, so they can schedule or cancel timers
+            for (TimingWheelTimer timer : expired) {
+                try {
+                    timer.fire();
+                } catch (Throwable t) {
+                    log.error("Exception in timer action", t);
+                }
+            }
+            expired.clear();
+        }
+    }
+
+    private void processTick(long tick, List<TimingWheelTimer> expired) {
+        // Cascade from the highest level whose lower wheels completed a rotation, so cascaded timers can move down
+        // several levels at once
+        for (int level = LEVELS - 1; level >= 1; level--) {
+            if ((tick & ((1L << (WHEEL_BITS * level)) - 1)) == 0) {
+                cascade(level, (int) (tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+            }
+        }
+
+        int slot = (int) tick & WHEEL_MASK;
+        TimingWheelTimer timer = slots[0][slot];
+        while (timer != null) {
+            TimingWheelTimer next = timer.next;
+            unlink(timer);
+            if (timer.deadlineTick <= tick) {
+                numFired++;
+                expired.add(timer);
+                // A periodic timer is scheduled again before its action runs, so the action can stop it
+                if (timer.isPeriodically()) {
+                    // Rounded up, so the interval is never shorter than requested
+                    timer.deadlineTick = tick + Math.max(1, (timer.getIntervalMs() + TICK_MS - 1) / TICK_MS);
+                    insert(timer);
+                }
+            } else {
+                insert(timer);
+            }
+            timer = next;
+        }
+    }
+
+    private void cascade(int level, int slot) {
+        TimingWheelTimer timer = slots[level][slot];
+        while (timer != null) {
+            TimingWheelTimer next = timer.next;
+            unlink(timer);
+            insert(timer);
+            timer = next;
+        }
+    }
+
+    private void insert(TimingWheelTimer timer) {
+        long delta = Math.min(timer.deadlineTick - currentTick, MAX_DELAY_TICKS);
+        // A timer beyond the range is put at the end of the top level and cascaded again from there
+        long placementTick = currentTick + delta;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = (int) (placementTick >>> (WHEEL_BITS * level)) & WHEEL_MASK;
+        TimingWheelTimer head = slots[level][slot];
+        timer.next = head;
+        timer.prev = null;
+        if (head != null) head.prev = timer;
+        slots[level][slot] = timer;
+        timer.level = level;
+        timer.slot = slot;
+        occupiedSlots[level] |= 1L << slot;
+        numTimersByLevel[level]++;
+    }
+
+    private void unlink(TimingWheelTimer timer) {
+        int level = timer.level;
+        int slot = timer.slot;
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            slots[level][slot] = timer.next;
+        }
+        if (timer.next != null) timer.next.prev = timer.prev;
+        if (slots[level][slot] == null) occupiedSlots[level] &= ~(1L << slot);
+        numTimersByLevel[level]--;
+        timer.prev = null;
+        timer.next = null;
+        timer.level = -1;
+    }
+
+    // The next tick with timers in level 0 or the next cascade, Long.MAX_VALUE if no timer is scheduled
+    private long getNextWakeUpTick() {
+        long nextWakeUpTick = Long.MAX_VALUE;
+        if (occupiedSlots[0] != 0) {
+            long nextTick = currentTick + 1;
+            long rotated = Long.rotateRight(occupiedSlots[0], (int) nextTick & WHEEL_MASK);
+            nextWakeUpTick = nextTick + Long.numberOfTrailingZeros(rotated);
+        }
+        for (int level = 1; level < LEVELS; level++) {
+            if (numTimersByLevel[level] > 0) {
+                long nextRotation = ((currentTick >>> WHEEL_BITS) + 1) << WHEEL_BITS;
+                return Math.min(nextWakeUpTick, nextRotation);
+            }
+        }
+        return nextWakeUpTick;
+    }
+
+    private long getNowTick() {
+        return (System.nanoTime() - startNanos) / TICK_NANOS;
+    }
+}
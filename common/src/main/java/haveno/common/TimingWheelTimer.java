@@ -0,0 +1,89 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common;
+
+import java.time.Duration;
+
+/**
+ * Timer scheduled on the shared {@link TimingWheel}. In contrast to the FrameRateTimer it does not need to be visited
+ * every 100 ms by the MasterTimer, adding and stopping it is O(1) and it has a resolution of 50 ms.
+ * Used in headless apps like the daemon and the seed node, see UserThread.setTimerClass.
+ */
+public class TimingWheelTimer implements Timer {
+    private Runnable runnable;
+    private long intervalMs;
+    private boolean isPeriodically;
+    private volatile boolean stopped;
+
+    // Guarded by the TimingWheel
+    long deadlineTick;
+    int level = -1;
+    int slot;
+    TimingWheelTimer prev;
+    TimingWheelTimer next;
+
+    public TimingWheelTimer() {
+    }
+
+    @Override
+    public Timer runLater(Duration delay, Runnable runnable) {
+        this.runnable = runnable;
+        this.intervalMs = delay.toMillis();
+        TimingWheel.getInstance().schedule(this, intervalMs);
+        return this;
+    }
+
+    @Override
+    public Timer runPeriodically(Duration interval, Runnable runnable) {
+        this.runnable = runnable;
+        this.intervalMs = interval.toMillis();
+        isPeriodically = true;
+        TimingWheel.getInstance().schedule(this, intervalMs);
+        return this;
+    }
+
+    @Override
+    public void stop() {
+        stopped = true;
+        TimingWheel.getInstance().cancel(this);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Package private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    void fire() {
+        if (!stopped) runnable.run();
+    }
+
+    boolean isStopped() {
+        return stopped;
+    }
+
+    boolean isScheduled() {
+        return level >= 0;
+    }
+
+    boolean isPeriodically() {
+        return isPeriodically;
+    }
+
+    long getIntervalMs() {
+        return intervalMs;
+    }
+}
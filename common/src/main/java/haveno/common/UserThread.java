@@ -18,34 +18,67 @@
 package haveno.common;
 
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import haveno.common.util.LatencyHistogram;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.lang.reflect.InvocationTargetException;
 import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
+import static com.google.common.base.Preconditions.checkState;
+
 
 /**
  * Defines which thread is used as user thread. The user thread is the the main thread in the single threaded context.
  * For JavaFX it is usually the Platform::RunLater executor, for a headless application it is any single threaded
  * executor.
- * Additionally sets a timer class so JavaFX and headless applications can set different timers (UITimer for JavaFX
- * otherwise we use the default FrameRateTimer).
+ * Additionally sets a timer class so JavaFX and headless applications can set different timers (UITimer for JavaFX,
+ * TimingWheelTimer for the headless applications, otherwise we use the default FrameRateTimer).
  * <p>
  * Provides also methods for delayed and periodic executions.
+ * <p>
+ * Headless applications can enable additional lanes. Each lane is a single thread which owns the state of one
+ * subsystem, so that state is only accessed from its lane, see {@link Lane}. Without enabled lanes all lanes run
+ * on the user thread, so code using a lane behaves like before in the desktop application and in tests. The queue
+ * and run times of the tasks are recorded per lane.
  */
 @Slf4j
 public class UserThread {
+    private static final long LOG_LANE_STATS_INTERVAL_MIN = 60;
+
+    /**
+     * Lanes of the user thread. State owned by a lane must only be accessed from that lane, use
+     * {@link #checkLane(Lane)} to assert it.
+     */
+    public enum Lane {
+        // The user thread, owns all state not explicitly assigned to another lane
+        MAIN,
+        // Message statistics of the connections, see Statistic
+        NETWORK
+    }
+
     private static Class<? extends Timer> timerClass;
     @Getter
     @Setter
     private static Executor executor;
     private static Thread USER_THREAD;
+    // Executors of the enabled lanes except MAIN, null if lanes are not enabled
+    private static volatile Map<Lane, ExecutorService> laneExecutors;
+    private static final Thread[] LANE_THREADS = new Thread[Lane.values().length];
+    private static final Map<Lane, LatencyHistogram> QUEUE_LATENCY = new EnumMap<>(Lane.class);
+    private static final Map<Lane, LatencyHistogram> RUN_LATENCY = new EnumMap<>(Lane.class);
+    private static Timer logLaneStatsTimer;
 
     public static void setTimerClass(Class<? extends Timer> timerClass) {
         UserThread.timerClass = timerClass;
@@ -55,17 +88,96 @@ public class UserThread {
         // If not defined we use same thread as caller thread
         executor = MoreExecutors.directExecutor();
         timerClass = FrameRateTimer.class;
+        for (Lane lane : Lane.values()) {
+            QUEUE_LATENCY.put(lane, new LatencyHistogram());
+            RUN_LATENCY.put(lane, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Starts a thread for each lane except MAIN. Only for headless applications, which must not use the lanes for
+     * state shared with JavaFX components.
+     */
+    public static synchronized void enableLanes() {
+        if (laneExecutors != null) return;
+
+        Map<Lane, ExecutorService> executors = new EnumMap<>(Lane.class);
+        for (Lane lane : Lane.values()) {
+            if (lane == Lane.MAIN) continue;
+            executors.put(lane, Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("UserThread-" + lane.name().toLowerCase())
+                    .setDaemon(true)
+                    .build()));
+        }
+        laneExecutors = executors;
+        logLaneStatsTimer = runPeriodically(UserThread::logLaneStats, LOG_LANE_STATS_INTERVAL_MIN, TimeUnit.MINUTES);
+        log.info("Enabled user thread lanes {}", executors.keySet());
+    }
+
+    /**
+     * Stops the lane threads after their queued tasks. Afterwards all lanes run on the user thread again.
+     */
+    public static synchronized void shutDownLanes() {
+        Map<Lane, ExecutorService> executors = laneExecutors;
+        if (executors == null) return;
+
+        laneExecutors = null;
+        if (logLaneStatsTimer != null) {
+            logLaneStatsTimer.stop();
+            logLaneStatsTimer = null;
+        }
+        executors.values().forEach(ExecutorService::shutdown);
+    }
+
+    public static boolean isLanesEnabled() {
+        return laneExecutors != null;
     }
 
     public static void execute(Runnable command) {
+        // The latencies of the main lane are only recorded if they get reported, so the desktop app does not pay
+        // for them on every task
+        if (!isLanesEnabled() && !TaskWatchdog.isEnabled()) {
+            executor.execute(() -> {
+                synchronized (executor) {
+                    USER_THREAD = Thread.currentThread();
+                    command.run();
+                }
+            });
+            return;
+        }
+
+        long queuedTs = System.nanoTime();
         executor.execute(() -> {
             synchronized (executor) {
                 USER_THREAD = Thread.currentThread();
-                command.run();
+                run(command, Lane.MAIN, queuedTs);
             }
         });
     }
 
+    /**
+     * Executes the command on the given lane, or on the user thread if lanes are not enabled.
+     */
+    public static void execute(Runnable command, Lane lane) {
+        Map<Lane, ExecutorService> executors = laneExecutors;
+        ExecutorService laneExecutor = executors != null ? executors.get(lane) : null;
+        if (laneExecutor == null) {
+            execute(command);
+            return;
+        }
+
+        long queuedTs = System.nanoTime();
+        try {
+            laneExecutor.execute(() -> {
+                LANE_THREADS[lane.ordinal()] = Thread.currentThread();
+                run(command, lane, queuedTs);
+            });
+        } catch (RejectedExecutionException e) {
+            // The lanes got shut down in the meantime
+            execute(command);
+        }
+    }
+
     public static void await(Runnable command) {
         if (isUserThread(Thread.currentThread())) {
             command.run();
@@ -93,6 +205,47 @@ public class UserThread {
 
     }
 
+    /**
+     * @return true if the thread runs the given lane. Without enabled lanes that is the user thread.
+     */
+    public static boolean isLaneThread(Thread thread, Lane lane) {
+        if (lane == Lane.MAIN || laneExecutors == null) return isUserThread(thread);
+        return thread == LANE_THREADS[lane.ordinal()];
+    }
+
+    /**
+     * Asserts that we are on the given lane, e.g. before accessing state owned by the lane.
+     */
+    public static void checkLane(Lane lane) {
+        checkState(isLaneThread(Thread.currentThread(), lane),
+                "Expected to run on lane %s but running on thread %s", lane, Thread.currentThread().getName());
+    }
+
+    /**
+     * @return the time between submitting and starting the tasks of the lane
+     */
+    public static LatencyHistogram getQueueLatency(Lane lane) {
+        return QUEUE_LATENCY.get(lane);
+    }
+
+    /**
+     * @return the run time of the tasks of the lane
+     */
+    public static LatencyHistogram getRunLatency(Lane lane) {
+        return RUN_LATENCY.get(lane);
+    }
+
+    public static void logLaneStats() {
+        StringBuilder sb = new StringBuilder("User thread lane stats:");
+        for (Lane lane : Lane.values()) {
+            if (QUEUE_LATENCY.get(lane).getCount() == 0) continue;
+            sb.append("\n\t").append(lane)
+                    .append(": queued [").append(QUEUE_LATENCY.get(lane))
+                    .append("], run [").append(RUN_LATENCY.get(lane)).append("]");
+        }
+        log.info(sb.toString());
+    }
+
     // Prefer FxTimer if a delay is needed in a JavaFx class (gui module)
     public static Timer runAfterRandomDelay(Runnable runnable, long minDelayInSec, long maxDelayInSec) {
         return UserThread.runAfterRandomDelay(runnable, minDelayInSec, maxDelayInSec, TimeUnit.SECONDS);
@@ -108,7 +261,9 @@ public class UserThread {
     }
 
     public static Timer runAfter(Runnable runnable, long delay, TimeUnit timeUnit) {
-        return getTimer().runLater(Duration.ofMillis(timeUnit.toMillis(delay)), () -> execute(runnable));
+        Timer timer = getTimer();
+        TimerAction action = new TimerAction(timer, runnable);
+        return timer.runLater(Duration.ofMillis(timeUnit.toMillis(delay)), () -> execute(action));
     }
 
     public static Timer runPeriodically(Runnable runnable, long intervalInSec) {
@@ -116,7 +271,21 @@ public class UserThread {
     }
 
     public static Timer runPeriodically(Runnable runnable, long interval, TimeUnit timeUnit) {
-        return getTimer().runPeriodically(Duration.ofMillis(timeUnit.toMillis(interval)), () -> execute(runnable));
+        Timer timer = getTimer();
+        TimerAction action = new TimerAction(timer, runnable);
+        return timer.runPeriodically(Duration.ofMillis(timeUnit.toMillis(interval)), () -> execute(action));
+    }
+
+    private static void run(Runnable command, Lane lane, long queuedTs) {
+        long startTs = System.nanoTime();
+        QUEUE_LATENCY.get(lane).record(startTs - queuedTs);
+        TaskWatchdog.RunningTask watchedTask = TaskWatchdog.isEnabled() ? TaskWatchdog.taskStarted(command) : null;
+        try {
+            command.run();
+        } finally {
+            RUN_LATENCY.get(lane).record(System.nanoTime() - startTs);
+            if (watchedTask != null) TaskWatchdog.taskCompleted(watchedTask);
+        }
     }
 
     private static Timer getTimer() {
@@ -128,4 +297,28 @@ public class UserThread {
             throw new RuntimeException(message);
         }
     }
+
+    // Action of a timer, reported by the watchdog as the runnable of the caller
+    private static final class TimerAction implements TaskWatchdog.WrappingTask {
+        private final Timer timer;
+        private final Runnable runnable;
+
+        private TimerAction(Timer timer, Runnable runnable) {
+            this.timer = timer;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            // The TimingWheelTimer fires on its own thread, so it can get stopped on the user thread after its action
+            // got queued but before it runs
+            if (timer instanceof TimingWheelTimer && ((TimingWheelTimer) timer).isStopped()) return;
+            runnable.run();
+        }
+
+        @Override
+        public Runnable getWrappedTask() {
+            return runnable;
+        }
+    }
 }
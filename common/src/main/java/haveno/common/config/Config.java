@@ -72,6 +72,8 @@ public class Config {
     public static final String WALLET_RPC_BIND_PORT = "walletRpcBindPort";
     public static final String USE_DEV_PRIVILEGE_KEYS = "useDevPrivilegeKeys";
     public static final String DUMP_STATISTICS = "dumpStatistics";
+    public static final String ARCHIVE_CLOSED_TRADES_AFTER_DAYS = "archiveClosedTradesAfterDays";
+    public static final String TASK_WATCHDOG_THRESHOLD_MS = "taskWatchdogThresholdMs";
     public static final String IGNORE_DEV_MSG = "ignoreDevMsg";
     public static final String PROVIDERS = "providers";
     public static final String SEED_NODES = "seedNodes";
@@ -79,6 +81,7 @@ public class Config {
     public static final String NODE_PORT = "nodePort";
     public static final String HIDDEN_SERVICE_ADDRESS = "hiddenServiceAddress";
     public static final String USE_LOCALHOST_FOR_P2P = "useLocalhostForP2P";
+    public static final String USE_VIRTUAL_THREADS_FOR_P2P = "useVirtualThreadsForP2P";
     public static final String MAX_CONNECTIONS = "maxConnections";
     public static final String SOCKS_5_PROXY_XMR_ADDRESS = "socks5ProxyXmrAddress";
     public static final String SOCKS_5_PROXY_HTTP_ADDRESS = "socks5ProxyHttpAddress";
@@ -169,11 +172,14 @@ public class Config {
     public final boolean useDevModeHeader;
     public final boolean useDevPrivilegeKeys;
     public final boolean dumpStatistics;
+    public final int archiveClosedTradesAfterDays;
+    public final long taskWatchdogThresholdMs;
     public final boolean ignoreDevMsg;
     public final List<String> providers;
     public final List<String> seedNodes;
     public final List<String> banList;
     public final boolean useLocalhostForP2P;
+    public final boolean useVirtualThreadsForP2P;
     public final int maxConnections;
     public final String socks5ProxyXmrAddress;
     public final String socks5ProxyHttpAddress;
@@ -252,6 +258,20 @@ public class Config {
      * @throws ConfigException if any problems are encountered during option parsing
      */
     public Config(String defaultAppName, File defaultUserDataDir, String... args) {
+        this(defaultAppName, defaultUserDataDir, false, args);
+    }
+
+    /**
+     * As {@link #Config(String, File, String...)}, but with the given default value of the
+     * {@value USE_VIRTUAL_THREADS_FOR_P2P} option. The default applies only if the option
+     * is set neither at the command line nor in the config file.
+     * @param defaultUseVirtualThreadsForP2P true for seed nodes, which keep connections
+     *                                       to many peers
+     */
+    public Config(String defaultAppName,
+                  File defaultUserDataDir,
+                  boolean defaultUseVirtualThreadsForP2P,
+                  String... args) {
         this.defaultAppName = defaultAppName;
         this.defaultUserDataDir = defaultUserDataDir;
         this.defaultAppDataDir = new File(defaultUserDataDir, defaultAppName);
@@ -393,6 +413,22 @@ public class Config {
                         .ofType(boolean.class)
                         .defaultsTo(false);
 
+        ArgumentAcceptingOptionSpec<Integer> archiveClosedTradesAfterDaysOpt =
+                parser.accepts(ARCHIVE_CLOSED_TRADES_AFTER_DAYS, "Move closed trades and canceled offers older than the " +
+                                "given number of days to an archive which is only loaded on demand. Archived trades are " +
+                                "available through the API but not listed in the UI. 0 to disable.")
+                        .withRequiredArg()
+                        .ofType(int.class)
+                        .defaultsTo(0);
+
+        ArgumentAcceptingOptionSpec<Long> taskWatchdogThresholdMsOpt =
+                parser.accepts(TASK_WATCHDOG_THRESHOLD_MS, "Log the stack of user thread and ThreadUtils tasks running " +
+                                "longer than the given number of milliseconds and collect their queue and run times. " +
+                                "0 to disable.")
+                        .withRequiredArg()
+                        .ofType(long.class)
+                        .defaultsTo(0L);
+
         ArgumentAcceptingOptionSpec<Boolean> ignoreDevMsgOpt =
                 parser.accepts(IGNORE_DEV_MSG, "If set to true all signed " +
                         "network_messages from haveno developers are ignored (Global " +
@@ -428,6 +464,13 @@ public class Config {
                         .ofType(boolean.class)
                         .defaultsTo(false);
 
+        ArgumentAcceptingOptionSpec<Boolean> useVirtualThreadsForP2POpt =
+                parser.accepts(USE_VIRTUAL_THREADS_FOR_P2P, "Run the P2P server and the connection input handlers on " +
+                                "virtual threads instead of a platform thread per connection. Enabled by default at seed nodes.")
+                        .withRequiredArg()
+                        .ofType(boolean.class)
+                        .defaultsTo(defaultUseVirtualThreadsForP2P);
+
         ArgumentAcceptingOptionSpec<Integer> maxConnectionsOpt =
                 parser.accepts(MAX_CONNECTIONS, "Max. connections a peer will try to keep")
                         .withRequiredArg()
@@ -514,16 +557,16 @@ public class Config {
                         .defaultsTo(1000);
 
         ArgumentAcceptingOptionSpec<Integer> sendMsgThrottleTriggerOpt =
-                parser.accepts(SEND_MSG_THROTTLE_TRIGGER, "Time in ms when we trigger a sleep if 2 messages are sent")
+                parser.accepts(SEND_MSG_THROTTLE_TRIGGER, "Min. time in ms between 2 writes to a peer once the send burst is used up")
                         .withRequiredArg()
                         .ofType(int.class)
-                        .defaultsTo(20); // Time in ms when we trigger a sleep if 2 messages are sent
+                        .defaultsTo(20); // Min. time in ms between 2 writes to a peer once the send burst is used up
 
         ArgumentAcceptingOptionSpec<Integer> sendMsgThrottleSleepOpt =
-                parser.accepts(SEND_MSG_THROTTLE_SLEEP, "Pause in ms to sleep if we get too many messages to send")
+                parser.accepts(SEND_MSG_THROTTLE_SLEEP, "Time in ms of writes to a peer permitted as a burst before the writes get paced")
                         .withRequiredArg()
                         .ofType(int.class)
-                        .defaultsTo(50); // Pause in ms to sleep if we get too many messages to send
+                        .defaultsTo(50); // Time in ms of writes to a peer permitted as a burst before the writes get paced
 
         ArgumentAcceptingOptionSpec<String> xmrNodeOpt =
                 parser.accepts(XMR_NODE, "URI of custom Monero node to use")
@@ -721,11 +764,14 @@ public class Config {
             this.useDevModeHeader = options.valueOf(useDevModeHeaderOpt);
             this.useDevPrivilegeKeys = options.valueOf(useDevPrivilegeKeysOpt);
             this.dumpStatistics = options.valueOf(dumpStatisticsOpt);
+            this.archiveClosedTradesAfterDays = options.valueOf(archiveClosedTradesAfterDaysOpt);
+            this.taskWatchdogThresholdMs = options.valueOf(taskWatchdogThresholdMsOpt);
             this.ignoreDevMsg = options.valueOf(ignoreDevMsgOpt);
             this.providers = options.valuesOf(providersOpt);
             this.seedNodes = options.valuesOf(seedNodesOpt);
             this.banList = options.valuesOf(banListOpt);
             this.useLocalhostForP2P = !this.baseCurrencyNetwork.isMainnet() && options.valueOf(useLocalhostForP2POpt);
+            this.useVirtualThreadsForP2P = options.valueOf(useVirtualThreadsForP2POpt);
             this.maxConnections = options.valueOf(maxConnectionsOpt);
             this.socks5ProxyXmrAddress = options.valueOf(socks5ProxyXmrAddressOpt);
             this.socks5ProxyHttpAddress = options.valueOf(socks5ProxyHttpAddressOpt);
@@ -0,0 +1,374 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Chunked authenticated encryption of large streams, used for the persisted files instead of encrypting the whole
+ * serialized payload at once with {@link Encryption#encryptPayloadWithHmac(byte[], SecretKey)}. Reading and writing
+ * needs only a few chunks in memory, independent of the size of the file.
+ * <p>
+ * File layout: header (magic, version, chunk size, random salt), then the chunks, each a flag byte marking the last
+ * chunk, the length of the ciphertext and the AES-GCM ciphertext of up to chunk size bytes. Each file is encrypted
+ * with its own key derived from the secret key and the salt, the nonce is the index of the chunk. The header and the
+ * last-chunk flag are authenticated with each chunk, so reordered, dropped or truncated chunks are detected.
+ * <p>
+ * Files written in the old format do not start with the magic bytes, see {@link #isStreamingFormat(InputStream)}.
+ */
+public class StreamingEncryption {
+    private static final byte[] MAGIC = "HVNOSENC".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final int SALT_LENGTH = 16;
+    private static final int HEADER_LENGTH = MAGIC.length + 1 + 4 + SALT_LENGTH;
+    private static final int TAG_LENGTH = 16;
+    private static final int NONCE_LENGTH = 12;
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final String HMAC = "HmacSHA256";
+    private static final byte[] KEY_DERIVATION_INFO = "haveno-streaming-encryption".getBytes(StandardCharsets.US_ASCII);
+
+    // Reads and decrypts the next chunk while the previous one gets consumed
+    private static final ExecutorService READ_AHEAD_EXECUTOR =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("StreamingEncryption-read-ahead-", 0).factory());
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public static EncryptingOutputStream encryptingStream(OutputStream out, SecretKey secretKey) throws IOException {
+        return new EncryptingOutputStream(out, secretKey, DEFAULT_CHUNK_SIZE);
+    }
+
+    static EncryptingOutputStream encryptingStream(OutputStream out, SecretKey secretKey, int chunkSize) throws IOException {
+        return new EncryptingOutputStream(out, secretKey, chunkSize);
+    }
+
+    /**
+     * @param in        the stream positioned at the header
+     * @param secretKey the secret key
+     * @return a stream of the decrypted bytes. A failed authentication is reported as IOException.
+     */
+    public static InputStream decryptingStream(InputStream in, SecretKey secretKey) throws IOException {
+        return new DecryptingInputStream(in, secretKey);
+    }
+
+    /**
+     * Checks for the magic bytes without consuming them.
+     *
+     * @param in a stream supporting mark and reset
+     * @return true if the stream starts with the header of the streaming format
+     */
+    public static boolean isStreamingFormat(InputStream in) throws IOException {
+        if (!in.markSupported()) {
+            throw new IllegalArgumentException("The stream must support mark and reset");
+        }
+        in.mark(MAGIC.length);
+        try {
+            byte[] bytes = in.readNBytes(MAGIC.length);
+            return Arrays.equals(bytes, MAGIC);
+        } finally {
+            in.reset();
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static SecretKey deriveKey(SecretKey secretKey, byte[] salt) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(HMAC);
+        mac.init(new SecretKeySpec(salt, HMAC));
+        byte[] pseudoRandomKey = mac.doFinal(secretKey.getEncoded());
+        mac.init(new SecretKeySpec(pseudoRandomKey, HMAC));
+        mac.update(KEY_DERIVATION_INFO);
+        mac.update((byte) 1);
+        return new SecretKeySpec(mac.doFinal(), Encryption.SYM_KEY_ALGO);
+    }
+
+    private static GCMParameterSpec getNonce(long chunkIndex) {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        ByteBuffer.wrap(nonce).putLong(chunkIndex);
+        return new GCMParameterSpec(TAG_LENGTH * 8, nonce);
+    }
+
+    private static byte[] getHeader(int chunkSize, byte[] salt) {
+        return ByteBuffer.allocate(HEADER_LENGTH)
+                .put(MAGIC)
+                .put((byte) VERSION)
+                .putInt(chunkSize)
+                .put(salt)
+                .array();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Static classes
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public static final class EncryptingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final Cipher cipher;
+        private final SecretKey key;
+        private final byte[] header;
+        private final byte[] buffer;
+        private int position;
+        private long chunkIndex;
+        private boolean finished;
+
+        private EncryptingOutputStream(OutputStream out, SecretKey secretKey, int chunkSize) throws IOException {
+            if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+                throw new IllegalArgumentException("Invalid chunk size " + chunkSize);
+            }
+            this.out = out;
+            byte[] salt = new byte[SALT_LENGTH];
+            RANDOM.nextBytes(salt);
+            header = getHeader(chunkSize, salt);
+            buffer = new byte[chunkSize];
+            try {
+                cipher = Cipher.getInstance(CIPHER);
+                key = deriveKey(secretKey, salt);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Could not initialize the cipher", e);
+            }
+            out.write(header);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (finished) {
+                throw new IOException("Stream is already finished");
+            }
+            while (length > 0) {
+                // We only write a full chunk once we know more data follows, the last chunk is written at finish
+                if (position == buffer.length) {
+                    writeChunk(false);
+                }
+                int numBytes = Math.min(length, buffer.length - position);
+                System.arraycopy(bytes, offset, buffer, position, numBytes);
+                position += numBytes;
+                offset += numBytes;
+                length -= numBytes;
+            }
+        }
+
+        // Only flushes the underlying stream. Buffered data is written as a complete chunk.
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        /**
+         * Writes the last chunk and flushes the underlying stream without closing it.
+         */
+        public void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            writeChunk(true);
+            finished = true;
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                finish();
+            } finally {
+                out.close();
+            }
+        }
+
+        private void writeChunk(boolean isLast) throws IOException {
+            try {
+                cipher.init(Cipher.ENCRYPT_MODE, key, getNonce(chunkIndex++));
+                cipher.updateAAD(header);
+                cipher.updateAAD(new byte[]{(byte) (isLast ? 1 : 0)});
+                byte[] cipherText = cipher.doFinal(buffer, 0, position);
+                out.write(isLast ? 1 : 0);
+                out.write(ByteBuffer.allocate(4).putInt(cipherText.length).array());
+                out.write(cipherText);
+                position = 0;
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Could not encrypt chunk", e);
+            }
+        }
+    }
+
+    private static final class DecryptingInputStream extends InputStream {
+        private final DataInputStream in;
+        private final Cipher cipher;
+        private final SecretKey key;
+        private final byte[] header;
+        private final int chunkSize;
+        private long chunkIndex;
+        private byte[] chunk = new byte[0];
+        private int position;
+        private boolean lastChunkRead;
+        private CompletableFuture<byte[]> nextChunk;
+
+        private DecryptingInputStream(InputStream in, SecretKey secretKey) throws IOException {
+            this.in = new DataInputStream(in);
+            header = new byte[HEADER_LENGTH];
+            this.in.readFully(header);
+            ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+            byte[] magic = new byte[MAGIC.length];
+            headerBuffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Stream is not in the streaming encryption format");
+            }
+            int version = headerBuffer.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported streaming encryption version " + version);
+            }
+            chunkSize = headerBuffer.getInt();
+            if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+                throw new IOException("Invalid chunk size " + chunkSize);
+            }
+            byte[] salt = new byte[SALT_LENGTH];
+            headerBuffer.get(salt);
+            try {
+                cipher = Cipher.getInstance(CIPHER);
+                key = deriveKey(secretKey, salt);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Could not initialize the cipher", e);
+            }
+            nextChunk = CompletableFuture.supplyAsync(this::readChunk, READ_AHEAD_EXECUTOR);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] singleByte = new byte[1];
+            int numBytes = read(singleByte, 0, 1);
+            return numBytes == -1 ? -1 : singleByte[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (position == chunk.length) {
+                if (nextChunk == null) {
+                    return -1;
+                }
+                chunk = awaitNextChunk();
+                position = 0;
+            }
+            int numBytes = Math.min(length, chunk.length - position);
+            System.arraycopy(chunk, position, bytes, offset, numBytes);
+            position += numBytes;
+            return numBytes;
+        }
+
+        @Override
+        public int available() {
+            return chunk.length - position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (nextChunk != null) {
+                    // Wait for a pending read before we close the underlying stream
+                    nextChunk.handle((result, throwable) -> null).join();
+                    nextChunk = null;
+                }
+            } finally {
+                in.close();
+            }
+        }
+
+        private byte[] awaitNextChunk() throws IOException {
+            try {
+                byte[] result = nextChunk.join();
+                nextChunk = lastChunkRead ? null : CompletableFuture.supplyAsync(this::readChunk, READ_AHEAD_EXECUTOR);
+                return result;
+            } catch (CompletionException e) {
+                nextChunk = null;
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+
+        // Called from the read ahead thread. Only one read is pending at a time.
+        private byte[] readChunk() {
+            try {
+                int flag = in.read();
+                if (flag == -1) {
+                    throw new EOFException("Stream ended before the last chunk");
+                }
+                if (flag != 0 && flag != 1) {
+                    throw new IOException("Invalid chunk flag " + flag);
+                }
+                boolean isLast = flag == 1;
+                int length = in.readInt();
+                if (length < TAG_LENGTH || length > chunkSize + TAG_LENGTH) {
+                    throw new IOException("Invalid chunk length " + length);
+                }
+                byte[] cipherText = new byte[length];
+                in.readFully(cipherText);
+
+                cipher.init(Cipher.DECRYPT_MODE, key, getNonce(chunkIndex++));
+                cipher.updateAAD(header);
+                cipher.updateAAD(new byte[]{(byte) flag});
+                byte[] plainText = cipher.doFinal(cipherText);
+                if (isLast) {
+                    if (in.read() != -1) {
+                        throw new IOException("Unexpected data after the last chunk");
+                    }
+                    lastChunkRead = true;
+                }
+                return plainText;
+            } catch (GeneralSecurityException e) {
+                throw new CompletionException(new IOException("Authentication of chunk " + (chunkIndex - 1) + " failed", e));
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }
+    }
+}
@@ -22,16 +22,32 @@ import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 
+/**
+ * Writes json files on a single writer thread. A file has at most one queued write: if a file is written again
+ * before the queued write has started only the latest content gets written, and lines appended meanwhile are
+ * appended together. So the queue is bounded by the number of files and writes of the same file never overlap.
+ */
 @Slf4j
 public class JsonFileManager {
     private final static List<JsonFileManager> INSTANCES = new ArrayList<>();
+    private static final String JSON_EXTENSION = ".json";
+    private static final String NDJSON_EXTENSION = ".ndjson";
+    private static final int MAX_QUEUED_WRITES = 100;
 
     public static void shutDownAllInstances() {
         INSTANCES.forEach(JsonFileManager::shutDown);
@@ -41,6 +57,10 @@ public class JsonFileManager {
     @Nullable
     private ThreadPoolExecutor executor;
     private final File dir;
+    // Content to be written by file name with extension
+    private final Map<String, String> pendingWrites = new HashMap<>();
+    // Lines to be appended by file name with extension
+    private final Map<String, List<String>> pendingAppends = new HashMap<>();
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -58,9 +78,9 @@ public class JsonFileManager {
     }
 
     @NotNull
-    protected ThreadPoolExecutor getExecutor() {
+    protected synchronized ThreadPoolExecutor getExecutor() {
         if (executor == null) {
-            executor = Utilities.getThreadPoolExecutor("JsonFileManagerExecutor", 5, 50, 60);
+            executor = Utilities.getThreadPoolExecutor("JsonFileManagerExecutor", 1, 1, MAX_QUEUED_WRITES, 60);
         }
         return executor;
     }
@@ -72,19 +92,168 @@ public class JsonFileManager {
     }
 
     public void writeToDiscThreaded(String json, String fileName) {
-        getExecutor().execute(() -> writeToDisc(json, fileName));
+        writeThreaded(json + System.lineSeparator(), fileName + JSON_EXTENSION);
+    }
+
+    /**
+     * Replaces the content of the NDJSON file with the given lines.
+     *
+     * @param lines    the lines, each a json object without line breaks
+     * @param fileName the file name without extension
+     */
+    public void writeLinesToDiscThreaded(List<String> lines, String fileName) {
+        StringBuilder sb = new StringBuilder();
+        lines.forEach(line -> sb.append(line).append('\n'));
+        writeThreaded(sb.toString(), fileName + NDJSON_EXTENSION);
+    }
+
+    /**
+     * Appends the given lines to the NDJSON file.
+     *
+     * @param lines    the lines, each a json object without line breaks
+     * @param fileName the file name without extension
+     */
+    public void appendLinesToDiscThreaded(List<String> lines, String fileName) {
+        appendLinesToDiscThreaded(lines, fileName, Long.MAX_VALUE, 0);
+    }
+
+    /**
+     * Appends the given lines to the NDJSON file. Once the file has reached maxFileSize it gets rotated before
+     * appending: it is renamed to fileName.1.ndjson, the previously rotated files are renamed up to
+     * fileName.[maxRotatedFiles].ndjson and the oldest one is deleted.
+     *
+     * @param lines           the lines, each a json object without line breaks
+     * @param fileName        the file name without extension
+     * @param maxFileSize     the size in bytes at which the file gets rotated
+     * @param maxRotatedFiles the number of rotated files to keep
+     */
+    public void appendLinesToDiscThreaded(List<String> lines, String fileName, long maxFileSize, int maxRotatedFiles) {
+        String file = fileName + NDJSON_EXTENSION;
+        boolean queued;
+        synchronized (pendingAppends) {
+            queued = pendingAppends.containsKey(file);
+            pendingAppends.computeIfAbsent(file, k -> new ArrayList<>()).addAll(lines);
+        }
+        if (queued) return;
+
+        execute(file, pendingAppends, () -> {
+            List<String> pendingLines;
+            synchronized (pendingAppends) {
+                pendingLines = pendingAppends.remove(file);
+            }
+            if (pendingLines != null) {
+                if (new File(dir, file).length() >= maxFileSize) {
+                    rotate(fileName, maxRotatedFiles);
+                }
+                append(pendingLines, file);
+            }
+        });
     }
 
     public void writeToDisc(String json, String fileName) {
-        File jsonFile = new File(Paths.get(dir.getAbsolutePath(), fileName + ".json").toString());
+        File jsonFile = new File(Paths.get(dir.getAbsolutePath(), fileName + JSON_EXTENSION).toString());
+        write(json + System.lineSeparator(), jsonFile);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void writeThreaded(String content, String file) {
+        boolean queued;
+        synchronized (pendingWrites) {
+            queued = pendingWrites.put(file, content) != null;
+        }
+        if (queued) return;
+
+        execute(file, pendingWrites, () -> {
+            String pendingContent;
+            synchronized (pendingWrites) {
+                pendingContent = pendingWrites.remove(file);
+            }
+            if (pendingContent != null) {
+                write(pendingContent, new File(dir, file));
+                // The rotated files are outdated once the NDJSON file got replaced
+                if (file.endsWith(NDJSON_EXTENSION)) {
+                    deleteRotatedFiles(file.substring(0, file.length() - NDJSON_EXTENSION.length()));
+                }
+            }
+        });
+    }
+
+    private void execute(String file, Map<String, ?> pending, Runnable task) {
+        try {
+            getExecutor().execute(task);
+        } catch (RejectedExecutionException e) {
+            log.error("Writing {} was rejected. Queued writes: {}", file, getExecutor().getQueue().size());
+            synchronized (pending) {
+                pending.remove(file);
+            }
+        }
+    }
+
+    private void rotate(String fileName, int maxRotatedFiles) {
+        try {
+            File oldest = new File(dir, getRotatedFileName(fileName, maxRotatedFiles));
+            if (oldest.exists() && !oldest.delete()) {
+                log.warn("Could not delete {}", oldest);
+            }
+            for (int i = maxRotatedFiles - 1; i >= 1; i--) {
+                File rotated = new File(dir, getRotatedFileName(fileName, i));
+                if (rotated.exists()) {
+                    FileUtil.renameFile(rotated, new File(dir, getRotatedFileName(fileName, i + 1)));
+                }
+            }
+            File file = new File(dir, fileName + NDJSON_EXTENSION);
+            if (maxRotatedFiles > 0) {
+                FileUtil.renameFile(file, new File(dir, getRotatedFileName(fileName, 1)));
+            } else if (!file.delete()) {
+                log.warn("Could not delete {}", file);
+            }
+        } catch (Throwable t) {
+            log.error("Rotating {} failed", fileName, t);
+        }
+    }
+
+    private void deleteRotatedFiles(String fileName) {
+        File[] rotatedFiles = dir.listFiles((d, name) -> name.startsWith(fileName + ".") &&
+                name.endsWith(NDJSON_EXTENSION) &&
+                name.length() > fileName.length() + 1 + NDJSON_EXTENSION.length() &&
+                name.substring(fileName.length() + 1, name.length() - NDJSON_EXTENSION.length()).matches("\\d+"));
+        if (rotatedFiles == null) return;
+        for (File rotatedFile : rotatedFiles) {
+            if (!rotatedFile.delete()) {
+                log.warn("Could not delete {}", rotatedFile);
+            }
+        }
+    }
+
+    private static String getRotatedFileName(String fileName, int index) {
+        return fileName + "." + index + NDJSON_EXTENSION;
+    }
+
+    private void append(List<String> lines, String fileName) {
+        File file = new File(dir, fileName);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8))) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        } catch (Throwable t) {
+            log.error("Appending to {} failed", file, t);
+        }
+    }
+
+    private void write(String content, File file) {
         File tempFile = null;
         PrintWriter printWriter = null;
         try {
             tempFile = File.createTempFile("temp", null, dir);
             tempFile.deleteOnExit();
 
-            printWriter = new PrintWriter(tempFile);
-            printWriter.println(json);
+            printWriter = new PrintWriter(tempFile, StandardCharsets.UTF_8);
+            printWriter.print(content);
 
             // This close call and comment is borrowed from FileManager. Not 100% sure it that is really needed but
             // seems that had fixed in the past and we got reported issues on Windows so that fix might be still
@@ -93,13 +262,13 @@ public class JsonFileManager {
             // when rename temp file
             printWriter.close();
 
-            FileUtil.renameFile(tempFile, jsonFile);
+            FileUtil.renameFile(tempFile, file);
         } catch (Throwable t) {
-            log.error("storageFile " + jsonFile.toString());
+            log.error("storageFile " + file.toString());
             t.printStackTrace();
         } finally {
             if (tempFile != null && tempFile.exists()) {
-                log.warn("Temp file still exists after failed save. We will delete it now. storageFile=" + fileName);
+                log.warn("Temp file still exists after failed save. We will delete it now. storageFile=" + file.getName());
                 if (!tempFile.delete())
                     log.error("Cannot delete temp file.");
             }
@@ -0,0 +1,67 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common.persistence;
+
+import com.google.protobuf.ByteString;
+import haveno.common.crypto.KeyRing;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Stores serialized items in their own (encrypted) files by key, for data which is too large to be kept in memory
+ * and is only read on demand, e.g. archived trades. The index of the items has to be persisted by the caller.
+ * <p>
+ * Items are written synchronously, so the methods should not be called on the UserThread.
+ */
+public class ItemStore {
+    private final SegmentedStore segmentedStore;
+
+    public ItemStore(File storageDir, String name, @Nullable KeyRing keyRing) {
+        segmentedStore = new SegmentedStore(storageDir, name, null, keyRing, 0);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public void put(String key, ByteString item) throws IOException {
+        segmentedStore.writeItem(key, item);
+    }
+
+    @Nullable
+    public ByteString get(String key) throws IOException {
+        return segmentedStore.readItem(key);
+    }
+
+    public void remove(String key) throws IOException {
+        segmentedStore.deleteItem(key);
+    }
+
+    /**
+     * @param keys the keys of the index
+     * @return the keys of the stored items which are not contained in the given keys, e.g. because the index was not
+     * persisted after an item was put
+     */
+    public List<String> getOtherKeys(Set<String> keys) throws IOException {
+        return segmentedStore.readOtherKeys(keys);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common.persistence;
+
+import haveno.common.UserThread;
+import haveno.common.proto.persistable.PersistedDataHost;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the persisted data of all PersistedDataHosts at startup.
+ * <p>
+ * All hosts request their reads at once, so the files are read, decrypted and parsed concurrently on the bounded
+ * read pool of the PersistenceManager. The results are applied on the UserThread in the order of the hosts though:
+ * the results of a host are only applied once all previous hosts have completed. Reads requested by a host while
+ * its results get applied are assigned to that host as well.
+ */
+@Slf4j
+public class PersistedDataLoader {
+    // Set while a host requests its reads or applies its results, so the PersistenceManager knows the host of a read
+    private static final ThreadLocal<Slot> currentSlot = new ThreadLocal<>();
+
+    private final List<Slot> slots = new ArrayList<>();
+    // Index of the first host which has not completed yet
+    private int head;
+    private Runnable completeHandler;
+    private long ts;
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @param hosts           the hosts in the order their results have to be applied
+     * @param completeHandler called on the UserThread once all hosts have completed
+     */
+    public void load(List<PersistedDataHost> hosts, Runnable completeHandler) {
+        this.completeHandler = completeHandler;
+        ts = System.currentTimeMillis();
+        hosts.forEach(host -> slots.add(new Slot(this, slots.size(), host.getClass().getSimpleName())));
+        if (slots.isEmpty()) {
+            UserThread.execute(completeHandler);
+            return;
+        }
+
+        for (int i = 0; i < hosts.size(); i++) {
+            PersistedDataHost host = hosts.get(i);
+            Slot slot = slots.get(i);
+            runInSlot(slot, () -> host.readPersisted(() -> onHostCompleted(slot)));
+        }
+    }
+
+    @Nullable
+    static Slot getCurrentSlot() {
+        return currentSlot.get();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Called from the read threads
+    private void apply(Slot slot, Runnable apply) {
+        synchronized (this) {
+            if (slot.index > head) {
+                slot.pending.add(apply);
+                return;
+            }
+        }
+        UserThread.execute(() -> runInSlot(slot, apply));
+    }
+
+    private void onHostCompleted(Slot slot) {
+        // We do not call the UserThread while holding the lock as it might run the command directly
+        List<Runnable> unblocked = new ArrayList<>();
+        boolean allCompleted;
+        synchronized (this) {
+            if (slot.completed) {
+                log.warn("Host {} has completed already", slot.name);
+                return;
+            }
+            slot.completed = true;
+            slot.completedMs = System.currentTimeMillis() - ts;
+
+            int previousHead = head;
+            while (head < slots.size() && slots.get(head).completed) {
+                head++;
+            }
+
+            // Results of the hosts which got unblocked are applied now
+            for (int i = previousHead; i <= head && i < slots.size(); i++) {
+                Slot unblockedSlot = slots.get(i);
+                unblockedSlot.pending.forEach(apply -> unblocked.add(() -> runInSlot(unblockedSlot, apply)));
+                unblockedSlot.pending.clear();
+            }
+            allCompleted = head == slots.size();
+        }
+
+        unblocked.forEach(UserThread::execute);
+        if (allCompleted) {
+            StringBuilder sb = new StringBuilder("Reading persisted data of ")
+                    .append(slots.size()).append(" hosts completed in ")
+                    .append(System.currentTimeMillis() - ts).append(" ms. Completion of hosts:");
+            slots.forEach(s -> sb.append("\n\t+").append(s.completedMs).append(" ms ").append(s.name));
+            log.info(sb.toString());
+            UserThread.execute(completeHandler);
+        }
+    }
+
+    private static void runInSlot(Slot slot, Runnable runnable) {
+        Slot previous = currentSlot.get();
+        currentSlot.set(slot);
+        try {
+            runnable.run();
+        } finally {
+            currentSlot.set(previous);
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Slot
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    static final class Slot {
+        private final PersistedDataLoader loader;
+        private final int index;
+        @Getter
+        private final String name;
+        private final List<Runnable> pending = new ArrayList<>();
+        private boolean completed;
+        private long completedMs;
+
+        private Slot(PersistedDataLoader loader, int index, String name) {
+            this.loader = loader;
+            this.index = index;
+            this.name = name;
+        }
+
+        // Runs the given result handler on the UserThread once all previous hosts have completed
+        void apply(Runnable apply) {
+            loader.apply(this, apply);
+        }
+    }
+}
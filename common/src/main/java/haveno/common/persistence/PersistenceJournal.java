@@ -0,0 +1,409 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common.persistence;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.CountingInputStream;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import haveno.common.crypto.CryptoException;
+import haveno.common.crypto.Encryption;
+import haveno.common.crypto.Hash;
+import haveno.common.crypto.KeyRing;
+import haveno.common.file.FileUtil;
+import haveno.common.proto.persistable.ChangeTrackingPersistableEnvelope;
+import haveno.common.proto.persistable.JournalChanges;
+import haveno.common.proto.persistable.JournaledPersistableEnvelope;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Append-only journal of a {@link JournaledPersistableEnvelope}, stored next to the snapshot file of the
+ * PersistenceManager.
+ * <p>
+ * At a write only the items which changed or got removed since the last write are appended. A
+ * {@link ChangeTrackingPersistableEnvelope} provides its changes itself, for other envelopes we find them by comparing
+ * the hashes of the serialized items with the persisted ones. Once the journal got larger than the snapshot the
+ * PersistenceManager writes a new snapshot and the journal starts over (compaction).
+ * <p>
+ * The journal header contains the hash of the snapshot file it applies to, so a journal left over from a crash
+ * between writing the snapshot and resetting the journal is ignored. A torn record at the end of the journal is
+ * dropped at replay. A corrupted record in between is skipped, so we only lose the change of that record, and a new
+ * snapshot is written at the next write.
+ * <p>
+ * File layout: magic, version, hash of the snapshot file, then length-prefixed records, each a serialized
+ * PersistenceJournalEntry which is encrypted if we have a key ring.
+ */
+@Slf4j
+class PersistenceJournal {
+    static final String FILE_SUFFIX = ".journal";
+    private static final int MAGIC = 0x4a524e4c;
+    private static final int VERSION = 1;
+    // We never compact below that size, for larger snapshots we compact once the journal got larger than the snapshot
+    static final long MIN_COMPACTION_SIZE = 256 * 1024;
+    private static final int MAX_RECORD_SIZE = 50 * 1024 * 1024;
+
+    private final File dir;
+    @Getter
+    private final File file;
+    private final JournaledPersistableEnvelope envelope;
+    @Nullable
+    private final KeyRing keyRing;
+    private final boolean changeTracking;
+
+    // False as long we do not have a snapshot we can append to or if a new snapshot is due
+    private boolean appendable;
+    // Hashes of the items as they are persisted. Only used if the envelope does not track its changes.
+    @Nullable
+    private Map<String, HashCode> itemHashes;
+    private long snapshotSize;
+    @Getter
+    private long journalSize;
+    @Getter
+    private int numRecords;
+
+    PersistenceJournal(File dir, String fileName, JournaledPersistableEnvelope envelope, @Nullable KeyRing keyRing) {
+        this.dir = dir;
+        this.file = new File(dir, fileName + FILE_SUFFIX);
+        this.envelope = envelope;
+        this.keyRing = keyRing;
+        this.changeTracking = envelope instanceof ChangeTrackingPersistableEnvelope;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Applies the journal to the snapshot read from disk. Afterwards new changes can be appended, unless the envelope
+     * tracks its changes or corrupted records got skipped. In that case a new snapshot has to be written first.
+     *
+     * @param snapshot      the snapshot read from disk
+     * @param snapshotBytes the content of the snapshot file
+     * @return the snapshot with all journaled changes applied
+     */
+    synchronized protobuf.PersistableEnvelope replay(protobuf.PersistableEnvelope snapshot, byte[] snapshotBytes)
+            throws IOException {
+        return replay(snapshot, Hash.getSha256Hash(snapshotBytes), snapshotBytes.length);
+    }
+
+    /**
+     * @param snapshot     the snapshot read from disk
+     * @param snapshotHash the sha256 hash of the snapshot file
+     * @param snapshotSize the size of the snapshot file
+     * @return the snapshot with all journaled changes applied
+     */
+    synchronized protobuf.PersistableEnvelope replay(protobuf.PersistableEnvelope snapshot,
+                                                     byte[] snapshotHash,
+                                                     long snapshotSize) throws IOException {
+        long ts = System.currentTimeMillis();
+        LinkedHashMap<String, ByteString> items = envelope.toJournalItems(snapshot);
+        int numApplied = 0;
+        int numSkipped = 0;
+        long validLength = -1;
+        if (file.exists()) {
+            try (CountingInputStream countingInputStream = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                DataInputStream in = new DataInputStream(countingInputStream);
+                if (!readHeader(in, snapshotHash)) {
+                    log.warn("Journal {} does not belong to the current snapshot. We ignore it.", file.getName());
+                } else {
+                    validLength = countingInputStream.getCount();
+                    byte[] record;
+                    while ((record = readRecord(in)) != null) {
+                        validLength = countingInputStream.getCount();
+                        protobuf.PersistenceJournalEntry entry = parseRecord(record);
+                        if (entry == null) {
+                            numSkipped++;
+                            continue;
+                        }
+                        if (entry.getRemoved()) {
+                            items.remove(entry.getKey());
+                        } else {
+                            items.put(entry.getKey(), entry.getItem());
+                        }
+                        numApplied++;
+                    }
+                }
+            } catch (IOException e) {
+                log.error("Reading journal {} failed. We keep a backup and continue with the snapshot.", file.getName(), e);
+                try {
+                    FileUtil.removeAndBackupFile(dir, file, file.getName(), "backup_of_corrupted_data");
+                } catch (IOException e1) {
+                    log.error("Backup of journal {} failed: {}", file.getName(), e1.getMessage());
+                }
+                validLength = -1;
+                numApplied = 0;
+                numSkipped = 0;
+                items = envelope.toJournalItems(snapshot);
+            }
+        }
+
+        if (validLength < 0) {
+            startNewJournal(snapshotHash);
+        } else if (validLength < file.length()) {
+            log.warn("Journal {} has an incomplete record at the end. We truncate it to {} bytes.", file.getName(), validLength);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+
+        if (numSkipped > 0) {
+            log.error("Skipped {} corrupted records of journal {}. A new snapshot gets written at the next write.",
+                    numSkipped, file.getName());
+        }
+        // A change tracking envelope only knows its changes since it got the persisted data, so we append to the
+        // journal only after a snapshot of its current state got written
+        appendable = !changeTracking && numSkipped == 0;
+        itemHashes = appendable ? hashItems(items) : null;
+        this.snapshotSize = snapshotSize;
+        journalSize = file.length();
+        numRecords = numApplied;
+        if (numApplied == 0) return snapshot;
+
+        protobuf.PersistableEnvelope result = envelope.fromJournalItems(items.values());
+        log.info("Replaying {} records of journal {} completed in {} ms", numApplied, file.getName(),
+                System.currentTimeMillis() - ts);
+        return result;
+    }
+
+    /**
+     * @return true if changes can be appended, otherwise a new snapshot has to be written
+     */
+    synchronized boolean isAppendable() {
+        return appendable;
+    }
+
+    /**
+     * Appends the items which changed since the last write. Used for envelopes which do not track their changes.
+     *
+     * @param serialized the serialized envelope
+     * @return false if we cannot append, so a new snapshot has to be written
+     */
+    synchronized boolean append(protobuf.PersistableEnvelope serialized) throws IOException, CryptoException {
+        checkState(!changeTracking, "Changes of a ChangeTrackingPersistableEnvelope are appended as JournalChanges");
+        if (!appendable || itemHashes == null) return false;
+
+        LinkedHashMap<String, ByteString> items = envelope.toJournalItems(serialized);
+        Map<String, HashCode> newItemHashes = hashItems(items);
+        List<protobuf.PersistenceJournalEntry> entries = new ArrayList<>();
+        items.forEach((key, item) -> {
+            if (!newItemHashes.get(key).equals(itemHashes.get(key))) {
+                entries.add(protobuf.PersistenceJournalEntry.newBuilder().setKey(key).setItem(item).build());
+            }
+        });
+        itemHashes.keySet().stream()
+                .filter(key -> !newItemHashes.containsKey(key))
+                .forEach(key -> entries.add(protobuf.PersistenceJournalEntry.newBuilder().setKey(key).setRemoved(true).build()));
+        if (entries.isEmpty()) return true;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (protobuf.PersistenceJournalEntry entry : entries) {
+            writeRecord(out, entry);
+        }
+        if (journalSize + bytes.size() > getMaxJournalSize()) return false;
+
+        writeToFile(bytes);
+        itemHashes = newItemHashes;
+        numRecords += entries.size();
+        return true;
+    }
+
+    /**
+     * Appends the changes tracked by a {@link ChangeTrackingPersistableEnvelope}. Once the journal got too large it is
+     * not appendable anymore and a new snapshot has to be written.
+     *
+     * @param changes the changes since the last write
+     * @return the number of bytes written
+     */
+    synchronized long append(JournalChanges changes) throws IOException, CryptoException {
+        checkState(changeTracking, "Only changes of a ChangeTrackingPersistableEnvelope can be appended");
+        checkState(appendable, "Journal %s requires a new snapshot", file.getName());
+        if (changes.isEmpty()) return 0;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Map.Entry<String, ByteString> item : changes.getChangedItems().entrySet()) {
+            writeRecord(out, protobuf.PersistenceJournalEntry.newBuilder().setKey(item.getKey()).setItem(item.getValue()).build());
+        }
+        for (String key : changes.getRemovedKeys()) {
+            writeRecord(out, protobuf.PersistenceJournalEntry.newBuilder().setKey(key).setRemoved(true).build());
+        }
+
+        writeToFile(bytes);
+        numRecords += changes.size();
+        if (journalSize > getMaxJournalSize()) {
+            appendable = false;
+        }
+        return bytes.size();
+    }
+
+    /**
+     * Requires a new snapshot before changes can be appended again, e.g. because a snapshot containing changes which
+     * are not in the journal did not get written.
+     */
+    synchronized void invalidate() {
+        appendable = false;
+        itemHashes = null;
+    }
+
+    /**
+     * Starts a new journal for the snapshot which was just written.
+     *
+     * @param serialized    the serialized envelope contained in the snapshot
+     * @param snapshotBytes the content of the snapshot file
+     */
+    synchronized void reset(protobuf.PersistableEnvelope serialized, byte[] snapshotBytes) {
+        reset(serialized, Hash.getSha256Hash(snapshotBytes), snapshotBytes.length);
+    }
+
+    /**
+     * @param serialized   the serialized envelope contained in the snapshot
+     * @param snapshotHash the sha256 hash of the snapshot file
+     * @param snapshotSize the size of the snapshot file
+     */
+    synchronized void reset(protobuf.PersistableEnvelope serialized, byte[] snapshotHash, long snapshotSize) {
+        try {
+            startNewJournal(snapshotHash);
+            itemHashes = changeTracking ? null : hashItems(envelope.toJournalItems(serialized));
+            this.snapshotSize = snapshotSize;
+            journalSize = file.length();
+            numRecords = 0;
+            appendable = true;
+        } catch (Throwable t) {
+            // The old journal does not match the new snapshot, so it would be ignored at replay
+            log.error("Resetting journal {} failed. We will write a snapshot at the next write.", file.getName(), t);
+            invalidate();
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private long getMaxJournalSize() {
+        return Math.max(MIN_COMPACTION_SIZE, snapshotSize);
+    }
+
+    private void writeToFile(ByteArrayOutputStream bytes) throws IOException {
+        try (FileOutputStream fileOutputStream = new FileOutputStream(file, true)) {
+            bytes.writeTo(fileOutputStream);
+            fileOutputStream.flush();
+            fileOutputStream.getFD().sync();
+        } catch (IOException e) {
+            // We do not know what got written, so we require a new snapshot
+            invalidate();
+            throw e;
+        }
+        journalSize += bytes.size();
+    }
+
+    private void startNewJournal(byte[] snapshotHash) throws IOException {
+        File tempFile = new File(dir, file.getName() + ".tmp");
+        try (FileOutputStream fileOutputStream = new FileOutputStream(tempFile)) {
+            DataOutputStream out = new DataOutputStream(fileOutputStream);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(snapshotHash.length);
+            out.write(snapshotHash);
+            out.flush();
+            fileOutputStream.getFD().sync();
+        }
+        FileUtil.renameFile(tempFile, file);
+    }
+
+    // Returns false if the journal does not belong to the snapshot
+    private boolean readHeader(DataInputStream in, byte[] snapshotHash) throws IOException {
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return false;
+            int hashLength = in.readInt();
+            if (hashLength != snapshotHash.length) return false;
+            byte[] hash = new byte[hashLength];
+            in.readFully(hash);
+            return Arrays.equals(hash, snapshotHash);
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    private void writeRecord(DataOutputStream out, protobuf.PersistenceJournalEntry entry) throws IOException, CryptoException {
+        byte[] bytes = entry.toByteArray();
+        if (keyRing != null) {
+            bytes = Encryption.encryptPayloadWithHmac(bytes, keyRing.getSymmetricKey());
+        }
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // Returns null at the end of the journal or at an incomplete record or invalid length, as we cannot find the
+    // start of the next record then
+    @Nullable
+    private byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            if (length < 0 || length > MAX_RECORD_SIZE) {
+                log.warn("Invalid record length {} in journal {}", length, file.getName());
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return bytes;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    // Returns null if the record is corrupted
+    @Nullable
+    private protobuf.PersistenceJournalEntry parseRecord(byte[] record) {
+        try {
+            byte[] bytes = keyRing != null ? Encryption.decryptPayloadWithHmac(record, keyRing.getSymmetricKey()) : record;
+            return protobuf.PersistenceJournalEntry.parseFrom(bytes);
+        } catch (CryptoException | InvalidProtocolBufferException e) {
+            log.warn("Corrupted record in journal {}: {}", file.getName(), e.toString());
+            return null;
+        }
+    }
+
+    private static Map<String, HashCode> hashItems(Map<String, ByteString> items) {
+        Map<String, HashCode> hashes = new HashMap<>(items.size());
+        items.forEach((key, item) -> hashes.put(key, Hashing.murmur3_128().hashBytes(item.asReadOnlyByteBuffer())));
+        return hashes;
+    }
+}
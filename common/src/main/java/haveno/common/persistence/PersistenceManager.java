@@ -17,7 +17,12 @@
 
 package haveno.common.persistence;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.io.ByteStreams;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import haveno.common.Timer;
@@ -27,24 +32,33 @@ import haveno.common.config.Config;
 import haveno.common.crypto.CryptoException;
 import haveno.common.crypto.Encryption;
 import haveno.common.crypto.KeyRing;
+import haveno.common.crypto.StreamingEncryption;
 import haveno.common.file.CorruptedStorageFileHandler;
 import haveno.common.file.FileUtil;
 import haveno.common.handlers.ResultHandler;
+import haveno.common.proto.persistable.ChangeTrackingPersistableEnvelope;
+import haveno.common.proto.persistable.JournalChanges;
+import haveno.common.proto.persistable.JournaledPersistableEnvelope;
 import haveno.common.proto.persistable.PersistableEnvelope;
 import haveno.common.proto.persistable.PersistenceProtoResolver;
 import haveno.common.util.GcUtil;
 import static haveno.common.util.Preconditions.checkDir;
-import haveno.common.util.SingleThreadExecutorUtils;
+import haveno.common.util.Utilities;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -66,6 +80,14 @@ import lombok.extern.slf4j.Slf4j;
  * previously we wasted a lot of resources as way too many threads have been created without doing actual work as well
  * the write operations got triggered way too often specially for the very frequent changes at SequenceNumberMap
  *
+ * A {@link JournaledPersistableEnvelope} is written in journaled mode: only the changed and removed items are appended
+ * to a journal next to the snapshot file and the snapshot is only rewritten once the journal got too large. The
+ * journal is replayed when the persisted data is read. A {@link ChangeTrackingPersistableEnvelope} provides its changed
+ * items itself, so between the snapshots only those get serialized.
+ *
+ * With {@link #initializeSegmented} each item is written to its own segment file instead (see {@link SegmentedStore}),
+ * so a write only touches the changed items and the data is never rewritten as a whole.
+ *
  *
  * @param <T>   The type of the {@link PersistableEnvelope} to be written or read from disk
  */
@@ -79,9 +101,19 @@ public class PersistenceManager<T extends PersistableEnvelope> {
     public static final Map<String, PersistenceManager<?>> ALL_PERSISTENCE_MANAGERS = new HashMap<>();
     private static boolean flushAtShutdownCalled;
     private static final AtomicBoolean allServicesInitialized = new AtomicBoolean(false);
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+    // Reads are I/O, decryption and parsing, so we use a few more threads than cores but not one per file
+    private static final ExecutorService READ_EXECUTOR = Utilities.getListeningExecutorService("PersistenceManager-read",
+            Math.max(2, Runtime.getRuntime().availableProcessors()),
+            Math.max(2, Runtime.getRuntime().availableProcessors()),
+            60,
+            new LinkedBlockingQueue<>());
+    // Shared by all instances to coalesce, prioritize and limit the concurrent writes
+    private static final WriteScheduler WRITE_SCHEDULER = new WriteScheduler();
 
     public static void onAllServicesInitialized() {
         allServicesInitialized.set(true);
+        StartupTimeline.logAndDisable();
 
         ALL_PERSISTENCE_MANAGERS.values().forEach(persistenceManager -> {
             // In case we got a requestPersistence call before we got initialized we trigger
@@ -100,6 +132,13 @@ public class PersistenceManager<T extends PersistableEnvelope> {
         flushAllDataToDisk(completeHandler, true);
     }
 
+    /**
+     * @return the write frequency, written bytes and latency per file
+     */
+    public static String getWriteStatistics() {
+        return WRITE_SCHEDULER.getInfo();
+    }
+
     /**
      * Resets the static members of PersistenceManager to restart the application.
      */
@@ -178,6 +217,7 @@ public class PersistenceManager<T extends PersistableEnvelope> {
 
         if (openInstances.decrementAndGet() == 0) {
             log.info("flushAllDataToDisk completed");
+            log.info(getWriteStatistics());
             completeHandler.handleResult();
         }
     }
@@ -228,7 +268,14 @@ public class PersistenceManager<T extends PersistableEnvelope> {
     private volatile boolean persistenceRequested;
     @Nullable
     private Timer timer;
-    private ExecutorService writeToDiskExecutor;
+    // Set if the persistable is written in journaled mode
+    @Nullable
+    private PersistenceJournal journal;
+    // Changes of a ChangeTrackingPersistableEnvelope which are not appended to the journal yet. Guarded by this.
+    private final JournalChanges pendingJournalChanges = new JournalChanges();
+    // Set if the persistable is written in segmented mode
+    @Nullable
+    private SegmentedStore segmentedStore;
     public final AtomicBoolean initCalled = new AtomicBoolean(false);
     public final AtomicBoolean readCalled = new AtomicBoolean(false);
 
@@ -283,19 +330,39 @@ public class PersistenceManager<T extends PersistableEnvelope> {
         this.fileName = fileName;
         this.source = source;
         storageFile = new File(dir, fileName);
+        if (persistable instanceof JournaledPersistableEnvelope) {
+            journal = new PersistenceJournal(dir, fileName, (JournaledPersistableEnvelope) persistable, keyRing);
+        }
         ALL_PERSISTENCE_MANAGERS.put(fileName, this);
     }
 
+    /**
+     * Like {@link #initialize(PersistableEnvelope, String, Source)} but each item of the persistable is written to
+     * its own segment file. Data persisted in a single storage file is migrated at the first write.
+     */
+    public void initializeSegmented(T persistable, String fileName, Source source) {
+        checkArgument(persistable instanceof JournaledPersistableEnvelope,
+                "Only a JournaledPersistableEnvelope can be written in segmented mode");
+        initialize(persistable, fileName, source);
+        segmentedStore = new SegmentedStore(dir, fileName, (JournaledPersistableEnvelope) persistable, keyRing,
+                source.getNumMaxBackupFiles());
+    }
+
+    /**
+     * Discards the segments which could not be read, so the data in memory gets written again at the next write. Must
+     * only be called once the user accepted to continue without the unreadable data, a backup of the segments got
+     * created when reading them failed. Until then the segments are not written.
+     */
+    public void recoverSegments() throws IOException {
+        checkNotNull(segmentedStore).recover();
+    }
+
     public void shutdown() {
         ALL_PERSISTENCE_MANAGERS.remove(fileName);
 
         if (timer != null) {
             timer.stop();
         }
-
-        if (writeToDiskExecutor != null) {
-            writeToDiskExecutor.shutdown();
-        }
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -326,18 +393,32 @@ public class PersistenceManager<T extends PersistableEnvelope> {
             return;
         }
 
-        new Thread(() -> {
-            T persisted = getPersisted(fileName);
-            if (persisted != null) {
-                UserThread.execute(() -> {
+        // At startup the results are applied in the order of the PersistedDataHosts
+        PersistedDataLoader.Slot slot = PersistedDataLoader.getCurrentSlot();
+        StartupTimeline.Entry timelineEntry = StartupTimeline.newEntry(fileName, slot != null ? slot.getName() : null);
+        READ_EXECUTOR.execute(() -> {
+            T persisted = getPersisted(fileName, timelineEntry);
+            long readCompleted = System.currentTimeMillis();
+            Runnable apply = () -> {
+                long ts = System.currentTimeMillis();
+                if (persisted != null) {
                     resultHandler.accept(persisted);
 
                     GcUtil.maybeReleaseMemory();
-                });
+                } else {
+                    orElse.run();
+                }
+                if (timelineEntry != null) {
+                    timelineEntry.setWaitMs(ts - readCompleted);
+                    timelineEntry.setApplyMs(System.currentTimeMillis() - ts);
+                }
+            };
+            if (slot != null) {
+                slot.apply(apply);
             } else {
-                UserThread.execute(orElse);
+                UserThread.execute(apply);
             }
-        }, "PersistenceManager-read-" + fileName).start();
+        });
     }
 
     // API for synchronous reading of data. Not recommended to be used in application code.
@@ -349,6 +430,11 @@ public class PersistenceManager<T extends PersistableEnvelope> {
 
     @Nullable
     public T getPersisted(String fileName) {
+        return getPersisted(fileName, null);
+    }
+
+    @Nullable
+    private T getPersisted(String fileName, @Nullable StartupTimeline.Entry timelineEntry) {
         if (flushAtShutdownCalled) {
             log.warn("We have started the shut down routine already. We ignore that getPersisted call.");
             return null;
@@ -360,31 +446,42 @@ public class PersistenceManager<T extends PersistableEnvelope> {
 
         readCalled.set(true);
 
+        if (segmentedStore != null && fileName.equals(this.fileName) && segmentedStore.exists()) {
+            return getPersistedSegments(timelineEntry);
+        }
+
         File storageFile = new File(dir, fileName);
         if (!storageFile.exists()) {
             return null;
         }
 
         long ts = System.currentTimeMillis();
+        // The journal needs the hash of the snapshot file, we compute it while reading
+        boolean hashSnapshot = journal != null && fileName.equals(this.fileName);
+        HashingInputStream hashingInputStream = null;
         try (FileInputStream fileInputStream = new FileInputStream(storageFile)) {
-            protobuf.PersistableEnvelope proto;
-            if (keyRing != null) {
-                byte[] encryptedBytes = fileInputStream.readAllBytes();
-                try {
-                    byte[] decryptedBytes = Encryption.decryptPayloadWithHmac(encryptedBytes, keyRing.getSymmetricKey());
-                    proto = protobuf.PersistableEnvelope.parseFrom(decryptedBytes);
-                } catch (CryptoException ce) {
-                    log.warn("Expected encrypted persisted file, attempting to getPersisted without decryption");
-                    ByteArrayInputStream bs = new ByteArrayInputStream(encryptedBytes);
-                    proto = protobuf.PersistableEnvelope.parseDelimitedFrom(bs);
-                }
-            } else {
-                proto = protobuf.PersistableEnvelope.parseDelimitedFrom(fileInputStream);
+            InputStream in = fileInputStream;
+            if (hashSnapshot) {
+                hashingInputStream = new HashingInputStream(Hashing.sha256(), fileInputStream);
+                in = hashingInputStream;
             }
+            in = new BufferedInputStream(in, IO_BUFFER_SIZE);
+            protobuf.PersistableEnvelope proto = readProto(in);
+
+            if (hashSnapshot) {
+                ByteStreams.exhaust(in);
+                proto = journal.replay(proto, hashingInputStream.hash().asBytes(), storageFile.length());
+            }
+
+            long readCompleted = System.currentTimeMillis();
 
             //noinspection unchecked
             T persistableEnvelope = (T) persistenceProtoResolver.fromProto(proto);
             log.info("Reading {} completed in {} ms", fileName, System.currentTimeMillis() - ts);
+            if (timelineEntry != null) {
+                timelineEntry.setReadMs(readCompleted - ts);
+                timelineEntry.setResolveMs(System.currentTimeMillis() - readCompleted);
+            }
             return persistableEnvelope;
         } catch (Throwable t) {
             log.error("Reading {} failed with {}.", fileName, t.getMessage());
@@ -404,6 +501,37 @@ public class PersistenceManager<T extends PersistableEnvelope> {
         return null;
     }
 
+    @Nullable
+    private T getPersistedSegments(@Nullable StartupTimeline.Entry timelineEntry) {
+        long ts = System.currentTimeMillis();
+        try {
+            protobuf.PersistableEnvelope proto = checkNotNull(segmentedStore).read(corruptedSegment -> {
+                if (corruptedStorageFileHandler != null) {
+                    corruptedStorageFileHandler.addFile(corruptedSegment);
+                }
+            });
+            long readCompleted = System.currentTimeMillis();
+
+            //noinspection unchecked
+            T persistableEnvelope = (T) persistenceProtoResolver.fromProto(proto);
+            log.info("Reading the segments of {} completed in {} ms", fileName, System.currentTimeMillis() - ts);
+            if (timelineEntry != null) {
+                timelineEntry.setReadMs(readCompleted - ts);
+                timelineEntry.setResolveMs(System.currentTimeMillis() - readCompleted);
+            }
+            return persistableEnvelope;
+        } catch (Throwable t) {
+            log.error("Reading the segments of {} failed.", fileName, t);
+            // The items in memory are incomplete now, so the segments must not be written
+            segmentedStore.onReadFailed();
+            DevEnv.logErrorAndThrowIfDevMode(t.toString());
+            if (corruptedStorageFileHandler != null) {
+                corruptedStorageFileHandler.addFile(segmentedStore.getDir().getName());
+            }
+        }
+        return null;
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Write file to disk
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -420,6 +548,7 @@ public class PersistenceManager<T extends PersistableEnvelope> {
         }
 
         persistenceRequested = true;
+        WRITE_SCHEDULER.onPersistenceRequested(fileName);
 
         // If we have not initialized yet we postpone the start of the timer and call maybeStartTimerForPersistence at
         // onAllServicesInitialized
@@ -455,12 +584,29 @@ public class PersistenceManager<T extends PersistableEnvelope> {
         try {
             // The serialisation is done on the user thread to avoid threading issue with potential mutations of the
             // persistable object. Keeping it on the user thread we are in a synchronize model.
-            protobuf.PersistableEnvelope serialized = (protobuf.PersistableEnvelope) persistable.toPersistableMessage();
+            protobuf.PersistableEnvelope serialized;
+            if (isTrackingJournalChanges()) {
+                ChangeTrackingPersistableEnvelope envelope = (ChangeTrackingPersistableEnvelope) persistable;
+                if (checkNotNull(journal).isAppendable()) {
+                    // Only the changed items get serialized. A null serialized envelope tells the write task to
+                    // append the pending changes.
+                    pendingJournalChanges.addAll(envelope.pollJournalChanges());
+                    serialized = null;
+                } else {
+                    // The snapshot contains all changes
+                    serialized = (protobuf.PersistableEnvelope) persistable.toPersistableMessage();
+                    envelope.pollJournalChanges();
+                    pendingJournalChanges.clear();
+                }
+            } else {
+                serialized = (protobuf.PersistableEnvelope) persistable.toPersistableMessage();
+            }
 
             // For the write to disk task we use a thread. We do not have any issues anymore if the persistable objects
             // gets mutated while the thread is running as we have serialized it already and do not operate on the
-            // reference to the persistable object.
-            getWriteToDiskExecutor().execute(() -> writeToDisk(serialized, completeHandler, force));
+            // reference to the persistable object. If an earlier write of our file is still queued only the newer
+            // data gets written.
+            WRITE_SCHEDULER.submit(fileName, source, this::writeToDisk, serialized, force, completeHandler);
 
             long duration = System.currentTimeMillis() - ts;
             if (duration > 100) {
@@ -473,25 +619,44 @@ public class PersistenceManager<T extends PersistableEnvelope> {
         }
     }
 
-    private void writeToDisk(protobuf.PersistableEnvelope serialized, @Nullable Runnable completeHandler, boolean force) {
+    // Called from the write threads of the WriteScheduler. Returns the number of bytes written. If serialized is null
+    // the pending changes of a ChangeTrackingPersistableEnvelope are appended to the journal.
+    private long writeToDisk(@Nullable protobuf.PersistableEnvelope serialized, boolean force) {
         if (!allServicesInitialized.get() && !force) {
             log.warn("Application has not completed start up yet so we do not permit writing data to disk.");
-            if (completeHandler != null) {
-                UserThread.execute(completeHandler);
-            }
-            return;
+            onSnapshotNotWritten(serialized);
+            return 0;
         }
         if (keyRing != null && !keyRing.isUnlocked()) {
             log.warn("Account is not open, ignoring writeToDisk.");
-            if (completeHandler != null) {
-                UserThread.execute(completeHandler);
-            }
-            return;
+            onSnapshotNotWritten(serialized);
+            return 0;
+        }
+
+        if (segmentedStore != null) {
+            return writeSegments(serialized);
+        }
+
+        if (serialized == null) {
+            return appendPendingJournalChanges();
         }
 
         long ts = System.currentTimeMillis();
+        if (journal != null && !isTrackingJournalChanges()) {
+            long journalSize = journal.getJournalSize();
+            if (appendToJournal(serialized)) {
+                long duration = System.currentTimeMillis() - ts;
+                if (duration > 100) {
+                    log.info("Appending the changes of {} to the journal completed in {} msec", fileName, duration);
+                }
+                persistenceRequested = false;
+                return journal.getJournalSize() - journalSize;
+            }
+        }
+
         File tempFile = null;
         FileOutputStream fileOutputStream = null;
+        long bytesWritten = 0;
 
         try {
             // Before we write we backup existing file
@@ -508,11 +673,24 @@ public class PersistenceManager<T extends PersistableEnvelope> {
 
             fileOutputStream = new FileOutputStream(tempFile);
 
+            // The journal needs the hash of the snapshot file, we compute it while writing
+            HashingOutputStream hashingOutputStream = null;
+            OutputStream out = fileOutputStream;
+            if (journal != null) {
+                hashingOutputStream = new HashingOutputStream(Hashing.sha256(), fileOutputStream);
+                out = hashingOutputStream;
+            }
             if (keyRing != null) {
-                byte[] encryptedBytes = Encryption.encryptPayloadWithHmac(serialized.toByteArray(), keyRing.getSymmetricKey());
-                fileOutputStream.write(encryptedBytes);
+                // The serialized data is encrypted chunk by chunk while it is written, so we never hold the
+                // whole serialized and encrypted file in memory
+                StreamingEncryption.EncryptingOutputStream encryptingOutputStream =
+                        StreamingEncryption.encryptingStream(out, keyRing.getSymmetricKey());
+                serialized.writeTo(encryptingOutputStream);
+                encryptingOutputStream.finish();
             } else {
-                serialized.writeDelimitedTo(fileOutputStream);
+                BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(out, IO_BUFFER_SIZE);
+                serialized.writeDelimitedTo(bufferedOutputStream);
+                bufferedOutputStream.flush();
             }
 
             // Attempt to force the bits to hit the disk. In reality the OS or hard disk itself may still decide
@@ -526,10 +704,21 @@ public class PersistenceManager<T extends PersistableEnvelope> {
 
             FileUtil.renameFile(tempFile, storageFile);
             usedTempFilePath = tempFile.toPath();
+            bytesWritten = storageFile.length();
+
+            // The new snapshot contains all changes, so the journal starts over
+            if (journal != null) {
+                journal.reset(serialized, checkNotNull(hashingOutputStream).hash().asBytes(), storageFile.length());
+            }
+            // Changes made after the snapshot got taken
+            if (isTrackingJournalChanges()) {
+                bytesWritten += appendPendingJournalChanges();
+            }
         } catch (Throwable t) {
             // If an error occurred, don't attempt to reuse this path again, in case temp file cleanup fails.
             usedTempFilePath = null;
             log.error("Error at saveToFile, storageFile={}", fileName, t);
+            onSnapshotNotWritten(serialized);
         } finally {
             if (tempFile != null && tempFile.exists()) {
                 log.warn("Temp file still exists after failed save. We will delete it now. storageFile={}", fileName);
@@ -552,18 +741,128 @@ public class PersistenceManager<T extends PersistableEnvelope> {
                 log.info("Writing the serialized {} completed in {} msec", fileName, duration);
             }
             persistenceRequested = false;
-            if (completeHandler != null) {
-                UserThread.execute(completeHandler);
+        }
+        return bytesWritten;
+    }
+
+    private long writeSegments(protobuf.PersistableEnvelope serialized) {
+        if (!checkNotNull(segmentedStore).isWritable()) {
+            log.warn("We do not write the segments of {} as reading them failed. They need to be recovered first.", fileName);
+            persistenceRequested = false;
+            return 0;
+        }
+
+        long ts = System.currentTimeMillis();
+        try {
+            long bytesWritten = checkNotNull(segmentedStore).write(serialized);
+            if (storageFile.exists()) {
+                // All data got migrated to the segments. We keep a backup and remove the storage file and its journal.
+                FileUtil.rollingBackup(dir, fileName, source.getNumMaxBackupFiles());
+                FileUtil.deleteFileIfExists(storageFile);
+                if (journal != null) {
+                    FileUtil.deleteFileIfExists(journal.getFile());
+                }
+                log.info("Migrated {} to segment files", fileName);
             }
+            return bytesWritten;
+        } catch (Throwable t) {
+            log.error("Error at writing the segments of {}", fileName, t);
+            return 0;
+        } finally {
+            long duration = System.currentTimeMillis() - ts;
+            if (duration > 100) {
+                log.info("Writing the segments of {} completed in {} msec", fileName, duration);
+            }
+            persistenceRequested = false;
         }
     }
 
-    private ExecutorService getWriteToDiskExecutor() {
-        if (writeToDiskExecutor == null) {
-            String name = "Write-" + fileName + "_to-disk";
-            writeToDiskExecutor = SingleThreadExecutorUtils.getSingleThreadExecutor(name);
+    // Files written before the streaming encryption was added are still read in the old format
+    private protobuf.PersistableEnvelope readProto(InputStream in) throws IOException {
+        if (keyRing == null) {
+            return protobuf.PersistableEnvelope.parseDelimitedFrom(in);
+        }
+
+        if (StreamingEncryption.isStreamingFormat(in)) {
+            // Parsing reads the decrypting stream to its end, so we do not need to close it here.
+            // The underlying file stream gets closed by the caller.
+            return protobuf.PersistableEnvelope.parseFrom(StreamingEncryption.decryptingStream(in, keyRing.getSymmetricKey()));
+        }
+
+        byte[] fileBytes = in.readAllBytes();
+        try {
+            byte[] decryptedBytes = Encryption.decryptPayloadWithHmac(fileBytes, keyRing.getSymmetricKey());
+            return protobuf.PersistableEnvelope.parseFrom(decryptedBytes);
+        } catch (CryptoException ce) {
+            log.warn("Expected encrypted persisted file, attempting to getPersisted without decryption");
+            return protobuf.PersistableEnvelope.parseDelimitedFrom(new ByteArrayInputStream(fileBytes));
+        }
+    }
+
+    private boolean isTrackingJournalChanges() {
+        return journal != null && segmentedStore == null && persistable instanceof ChangeTrackingPersistableEnvelope;
+    }
+
+    // The changes pending at the time the snapshot got taken were dropped, so if it does not get written the next
+    // write has to be a snapshot again
+    private void onSnapshotNotWritten(@Nullable protobuf.PersistableEnvelope serialized) {
+        if (serialized != null && journal != null) {
+            journal.invalidate();
+        }
+    }
+
+    // Returns the number of bytes written
+    private long appendPendingJournalChanges() {
+        PersistenceJournal journal = checkNotNull(this.journal);
+        JournalChanges changes = new JournalChanges();
+        synchronized (this) {
+            if (!journal.isAppendable()) {
+                // An append or a snapshot failed in the meantime. We keep the changes, the snapshot contains them.
+                requestSnapshot();
+                return 0;
+            }
+            changes.addAll(pendingJournalChanges);
+            pendingJournalChanges.clear();
+        }
+
+        long ts = System.currentTimeMillis();
+        try {
+            long bytesWritten = journal.append(changes);
+            if (!journal.isAppendable()) {
+                log.info("Journal of {} got too large. We write a new snapshot.", fileName);
+                requestSnapshot();
+            }
+            return bytesWritten;
+        } catch (Throwable t) {
+            log.error("Appending to the journal of {} failed. We write a new snapshot.", fileName, t);
+            requestSnapshot();
+            return 0;
+        } finally {
+            long duration = System.currentTimeMillis() - ts;
+            if (duration > 100) {
+                log.info("Appending {} changes of {} to the journal completed in {} msec", changes.size(), fileName, duration);
+            }
+            persistenceRequested = false;
+        }
+    }
+
+    // The journal is not appendable, so the next persistNow call writes a snapshot
+    private void requestSnapshot() {
+        UserThread.execute(() -> {
+            if (!flushAtShutdownCalled) {
+                requestPersistence();
+            }
+        });
+    }
+
+    // Returns false if a new snapshot has to be written instead
+    private boolean appendToJournal(protobuf.PersistableEnvelope serialized) {
+        try {
+            return checkNotNull(journal).append(serialized);
+        } catch (Throwable t) {
+            log.error("Appending to the journal of {} failed. We write a new snapshot.", fileName, t);
+            return false;
         }
-        return writeToDiskExecutor;
     }
 
     @Override
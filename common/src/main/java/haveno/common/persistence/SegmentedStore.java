@@ -0,0 +1,398 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common.persistence;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.protobuf.ByteString;
+import haveno.common.crypto.Hash;
+import haveno.common.crypto.KeyRing;
+import haveno.common.crypto.StreamingEncryption;
+import haveno.common.file.FileUtil;
+import haveno.common.proto.persistable.JournaledPersistableEnvelope;
+import haveno.common.util.Utilities;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Stores each item of a {@link JournaledPersistableEnvelope} in its own segment file in a directory next to the
+ * storage file of the PersistenceManager, e.g. one file per trade for the trade lists.
+ * <p>
+ * At a write only the segments of the items which changed are rewritten and the segments of removed items are
+ * deleted, so the cost of a write does not depend on the number of items and no compaction is needed. Each segment is
+ * replaced atomically. The order of the items is kept by the position stored in the segment, which is assigned when
+ * an item is written the first time.
+ * <p>
+ * The storage file of the envelope is migrated at the first write. The marker file is written once all segments have
+ * been written, so an interrupted migration is repeated from the storage file.
+ * <p>
+ * Segments are only deleted if the items in memory got read from the segments. If reading them failed, the segment
+ * dir is backed up and the segments are not written until {@link #recover()} got called, as otherwise the segments
+ * of all items missing in memory would get deleted together with their backups.
+ * <p>
+ * Segment layout: a serialized PersistenceJournalEntry, encrypted with {@link StreamingEncryption} if we have a key
+ * ring. The segment file name is derived from the hash of the item key.
+ */
+@Slf4j
+class SegmentedStore {
+    static final String DIR_SUFFIX = ".segments";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String MARKER_FILE_NAME = "complete";
+    private static final String CORRUPTED_BACKUP_DIR = "backup_of_corrupted_data";
+
+    private final File dir;
+    // Null if only single items are read and written, see ItemStore
+    @Nullable
+    private final JournaledPersistableEnvelope envelope;
+    @Nullable
+    private final KeyRing keyRing;
+    private final int numMaxBackupFiles;
+
+    // Hash and position of the persisted segments by item key. Null as long we have not read or written the segments.
+    @Nullable
+    private Map<String, Segment> segments;
+    private long nextPosition;
+    private boolean readFailed;
+
+    SegmentedStore(File parentDir,
+                   String fileName,
+                   @Nullable JournaledPersistableEnvelope envelope,
+                   @Nullable KeyRing keyRing,
+                   int numMaxBackupFiles) {
+        this.dir = new File(parentDir, fileName + DIR_SUFFIX);
+        this.envelope = envelope;
+        this.keyRing = keyRing;
+        this.numMaxBackupFiles = numMaxBackupFiles;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return true if the segments are complete, otherwise the data has to be read from the storage file
+     */
+    boolean exists() {
+        return new File(dir, MARKER_FILE_NAME).exists();
+    }
+
+    File getDir() {
+        return dir;
+    }
+
+    /**
+     * @return false if reading the segments failed and they have not been recovered yet
+     */
+    synchronized boolean isWritable() {
+        return !readFailed;
+    }
+
+    /**
+     * Reads all segments. Corrupted segments are moved to a backup folder and skipped.
+     *
+     * @param corruptedSegmentHandler called with the file name of each corrupted segment
+     * @return the serialized envelope containing the items of all valid segments
+     */
+    synchronized protobuf.PersistableEnvelope read(Consumer<String> corruptedSegmentHandler)
+            throws IOException {
+        try {
+            return readSegments(corruptedSegmentHandler);
+        } catch (Throwable t) {
+            onReadFailed();
+            throw t;
+        }
+    }
+
+    /**
+     * Called if the segments could not be read or resolved. Keeps a copy of the segment dir in the backup folder and
+     * stops writing the segments until {@link #recover()} got called.
+     */
+    synchronized void onReadFailed() {
+        if (readFailed) return;
+
+        readFailed = true;
+        segments = null;
+        File backupDir = new File(new File(dir.getParentFile(), CORRUPTED_BACKUP_DIR),
+                dir.getName() + "_" + System.currentTimeMillis());
+        try {
+            FileUtil.copyDirectory(dir, backupDir);
+            log.warn("Reading the segments of {} failed. We keep a backup at {} and do not write them until they got recovered.",
+                    dir.getName(), backupDir);
+        } catch (IOException e) {
+            log.error("Backup of the segments of {} failed", dir.getName(), e);
+        }
+    }
+
+    /**
+     * Discards the segments after reading them failed, so the items in memory get written as a whole at the next
+     * write. The segments got backed up when reading failed.
+     */
+    synchronized void recover() throws IOException {
+        if (!readFailed) return;
+
+        FileUtil.deleteDirectory(dir);
+        segments = null;
+        readFailed = false;
+        log.warn("Discarded the unreadable segments of {}", dir.getName());
+    }
+
+    private protobuf.PersistableEnvelope readSegments(Consumer<String> corruptedSegmentHandler) throws IOException {
+        long ts = System.currentTimeMillis();
+        List<protobuf.PersistenceJournalEntry> entries = new ArrayList<>();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.isFile()) continue;
+                if (file.getName().endsWith(TEMP_SUFFIX)) {
+                    // Left over from an interrupted write, the segment itself was not replaced
+                    FileUtil.deleteFileIfExists(file);
+                    continue;
+                }
+                if (!file.getName().endsWith(SEGMENT_SUFFIX)) continue;
+                try {
+                    protobuf.PersistenceJournalEntry entry = readSegment(file);
+                    if (!file.getName().equals(getSegmentFileName(entry.getKey()))) {
+                        throw new IOException("Segment does not match key " + entry.getKey());
+                    }
+                    entries.add(entry);
+                } catch (Throwable t) {
+                    log.error("Reading segment {} of {} failed. We keep a backup and skip it.", file.getName(), dir.getName(), t);
+                    FileUtil.removeAndBackupFile(dir, file, file.getName(), CORRUPTED_BACKUP_DIR);
+                    corruptedSegmentHandler.accept(dir.getName() + File.separator + file.getName());
+                }
+            }
+        }
+        entries.sort(Comparator.comparingLong(protobuf.PersistenceJournalEntry::getPosition));
+
+        LinkedHashMap<String, ByteString> items = new LinkedHashMap<>();
+        segments = new HashMap<>();
+        nextPosition = 0;
+        for (protobuf.PersistenceJournalEntry entry : entries) {
+            items.put(entry.getKey(), entry.getItem());
+            segments.put(entry.getKey(), new Segment(hash(entry.getItem()), entry.getPosition()));
+            nextPosition = Math.max(nextPosition, entry.getPosition() + 1);
+        }
+        protobuf.PersistableEnvelope result = checkNotNull(envelope).fromJournalItems(items.values());
+        log.info("Reading {} segments of {} completed in {} ms", entries.size(), dir.getName(), System.currentTimeMillis() - ts);
+        return result;
+    }
+
+    /**
+     * Writes the segments of the items which changed since the last write and deletes the segments of removed items.
+     * At the first write after a migration all items are written.
+     *
+     * @param serialized the serialized envelope
+     * @return the number of bytes written
+     */
+    synchronized long write(protobuf.PersistableEnvelope serialized) throws IOException {
+        if (readFailed) {
+            throw new IOException("Reading the segments of " + dir.getName() + " failed, we do not write them until they got recovered");
+        }
+        if (segments == null && exists()) {
+            throw new IOException("The segments of " + dir.getName() + " have not been read, we do not write them");
+        }
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Creating segment dir " + dir + " failed");
+        }
+
+        Set<String> staleFileNames = new HashSet<>();
+        if (segments == null) {
+            // Segments left over from an interrupted migration get replaced or deleted
+            segments = new HashMap<>();
+            nextPosition = 0;
+            File[] files = dir.listFiles((d, name) -> name.endsWith(SEGMENT_SUFFIX));
+            if (files != null) {
+                for (File file : files) staleFileNames.add(file.getName());
+            }
+        }
+
+        long bytesWritten = 0;
+        int numWritten = 0;
+        LinkedHashMap<String, ByteString> items = checkNotNull(envelope).toJournalItems(serialized);
+        for (Map.Entry<String, ByteString> item : items.entrySet()) {
+            String key = item.getKey();
+            HashCode hash = hash(item.getValue());
+            Segment segment = segments.get(key);
+            staleFileNames.remove(getSegmentFileName(key));
+            if (segment != null && segment.hash.equals(hash)) continue;
+
+            long position = segment != null ? segment.position : nextPosition++;
+            bytesWritten += writeSegment(key, item.getValue(), position);
+            segments.put(key, new Segment(hash, position));
+            numWritten++;
+        }
+
+        List<String> removedKeys = new ArrayList<>();
+        segments.keySet().stream().filter(key -> !items.containsKey(key)).forEach(removedKeys::add);
+        for (String key : removedKeys) {
+            deleteSegment(getSegmentFileName(key));
+            segments.remove(key);
+        }
+        for (String staleFileName : staleFileNames) {
+            deleteSegment(staleFileName);
+        }
+
+        File markerFile = new File(dir, MARKER_FILE_NAME);
+        if (!markerFile.exists() && !markerFile.createNewFile()) {
+            throw new IOException("Creating marker file " + markerFile + " failed");
+        }
+        if (numWritten > 0 || !removedKeys.isEmpty()) {
+            log.debug("Wrote {} and deleted {} segments of {}", numWritten, removedKeys.size(), dir.getName());
+        }
+        return bytesWritten;
+    }
+
+    /**
+     * Writes the segment of a single item, replacing the segment of an item with the same key.
+     *
+     * @return the number of bytes written
+     */
+    synchronized long writeItem(String key, ByteString item) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Creating segment dir " + dir + " failed");
+        }
+        return writeSegment(key, item, System.currentTimeMillis());
+    }
+
+    /**
+     * @return the item of the given key or null if there is no segment for that key
+     */
+    @Nullable
+    synchronized ByteString readItem(String key) throws IOException {
+        File file = new File(dir, getSegmentFileName(key));
+        if (!file.exists()) return null;
+        protobuf.PersistenceJournalEntry entry = readSegment(file);
+        if (!entry.getKey().equals(key)) {
+            throw new IOException("Segment " + file.getName() + " does not match key " + key);
+        }
+        return entry.getItem();
+    }
+
+    synchronized void deleteItem(String key) throws IOException {
+        deleteSegment(getSegmentFileName(key));
+    }
+
+    /**
+     * Reads the keys of the segments which do not belong to any of the given keys. Only those segments are read.
+     */
+    synchronized List<String> readOtherKeys(Set<String> keys) throws IOException {
+        Set<String> knownFileNames = new HashSet<>();
+        keys.forEach(key -> knownFileNames.add(getSegmentFileName(key)));
+        List<String> otherKeys = new ArrayList<>();
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) return otherKeys;
+        for (File file : files) {
+            if (!knownFileNames.contains(file.getName())) {
+                otherKeys.add(readSegment(file).getKey());
+            }
+        }
+        return otherKeys;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private long writeSegment(String key, ByteString item, long position) throws IOException {
+        String fileName = getSegmentFileName(key);
+        File file = new File(dir, fileName);
+        File tempFile = new File(dir, fileName + TEMP_SUFFIX);
+        protobuf.PersistenceJournalEntry entry = protobuf.PersistenceJournalEntry.newBuilder()
+                .setKey(key)
+                .setItem(item)
+                .setPosition(position)
+                .build();
+
+        FileUtil.rollingBackup(dir, fileName, numMaxBackupFiles);
+        try (FileOutputStream fileOutputStream = new FileOutputStream(tempFile)) {
+            if (keyRing != null) {
+                StreamingEncryption.EncryptingOutputStream out =
+                        StreamingEncryption.encryptingStream(fileOutputStream, keyRing.getSymmetricKey());
+                entry.writeTo(out);
+                out.finish();
+            } else {
+                OutputStream out = new BufferedOutputStream(fileOutputStream);
+                entry.writeTo(out);
+                out.flush();
+            }
+            fileOutputStream.getFD().sync();
+        } catch (IOException e) {
+            FileUtil.deleteFileIfExists(tempFile);
+            throw e;
+        }
+        FileUtil.renameFile(tempFile, file);
+        return file.length();
+    }
+
+    private protobuf.PersistenceJournalEntry readSegment(File file) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            if (keyRing != null) {
+                return protobuf.PersistenceJournalEntry.parseFrom(StreamingEncryption.decryptingStream(in, keyRing.getSymmetricKey()));
+            }
+            return protobuf.PersistenceJournalEntry.parseFrom(in);
+        }
+    }
+
+    private void deleteSegment(String fileName) throws IOException {
+        FileUtil.deleteFileIfExists(new File(dir, fileName));
+        // The item got removed from the envelope (e.g. a trade moved to the closed trades), so we do not keep
+        // the backups of its segment
+        FileUtil.deleteRollingBackup(dir, fileName);
+    }
+
+    private static String getSegmentFileName(String key) {
+        return Utilities.bytesAsHexString(Hash.getSha256Hash(key.getBytes(StandardCharsets.UTF_8))).substring(0, 32) +
+                SEGMENT_SUFFIX;
+    }
+
+    private static HashCode hash(ByteString item) {
+        return Hashing.murmur3_128().hashBytes(item.asReadOnlyByteBuffer());
+    }
+
+    private static final class Segment {
+        private final HashCode hash;
+        private final long position;
+
+        private Segment(HashCode hash, long position) {
+            this.hash = hash;
+            this.position = position;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common.persistence;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the timings of the reads of persisted files until all services are initialized, then logs them as
+ * timeline, so we can see where the time of a cold start goes.
+ */
+@Slf4j
+final class StartupTimeline {
+    private static final List<Entry> entries = new ArrayList<>();
+    private static boolean enabled = true;
+    private static long firstReadTs;
+
+    private StartupTimeline() {
+    }
+
+    /**
+     * @return a new entry or null if the startup is completed already
+     */
+    @Nullable
+    static synchronized Entry newEntry(String fileName, @Nullable String hostName) {
+        if (!enabled) return null;
+        long now = System.currentTimeMillis();
+        if (entries.isEmpty()) firstReadTs = now;
+        Entry entry = new Entry(fileName, hostName, now - firstReadTs);
+        entries.add(entry);
+        return entry;
+    }
+
+    static synchronized void logAndDisable() {
+        if (!enabled) return;
+        enabled = false;
+        if (entries.isEmpty()) return;
+
+        StringBuilder sb = new StringBuilder("Startup timeline of persisted data (start since first read: " +
+                "read and parse / resolve / wait for dependencies / apply in ms):");
+        entries.forEach(entry -> sb.append("\n\t").append(entry));
+        long totalReadMs = entries.stream().mapToLong(Entry::getReadMs).sum();
+        long totalApplyMs = entries.stream().mapToLong(Entry::getApplyMs).sum();
+        sb.append("\n\tTotal of ").append(entries.size()).append(" files: read and parse ").append(totalReadMs)
+                .append(" ms, apply ").append(totalApplyMs).append(" ms");
+        log.info(sb.toString());
+        entries.clear();
+    }
+
+    @Getter
+    @Setter
+    static final class Entry {
+        private final String fileName;
+        @Nullable
+        private final String hostName;
+        private final long startOffset;
+        private volatile long readMs;
+        private volatile long resolveMs;
+        private volatile long waitMs;
+        private volatile long applyMs;
+
+        private Entry(String fileName, @Nullable String hostName, long startOffset) {
+            this.fileName = fileName;
+            this.hostName = hostName;
+            this.startOffset = startOffset;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("+%5d ms %-32s %-28s %6d / %5d / %5d / %5d",
+                    startOffset,
+                    fileName,
+                    hostName != null ? hostName : "",
+                    readMs,
+                    resolveMs,
+                    waitMs,
+                    applyMs);
+        }
+    }
+}
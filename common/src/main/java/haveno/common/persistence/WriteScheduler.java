@@ -0,0 +1,271 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common.persistence;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import haveno.common.UserThread;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Schedules the writes of all PersistenceManager instances.
+ * <p>
+ * Writes of the same file never overlap and are coalesced: if a write is submitted while an earlier write of the
+ * same file is still queued, only the newer data gets written and the complete handlers of both are called once
+ * written. Queued writes are ordered by the priority of their source (PRIVATE before PRIVATE_LOW_PRIO before
+ * NETWORK) and at most {@link #MAX_CONCURRENT_WRITES} files are written (and synced) at the same time.
+ * <p>
+ * Per file we collect the number of requests and writes, the written bytes and the latency from submission to the
+ * completed write.
+ */
+@Slf4j
+final class WriteScheduler {
+    private static final int MAX_CONCURRENT_WRITES = 2;
+
+    interface Writer {
+        /**
+         * Writes the data to disk. Called from a write thread.
+         *
+         * @param serialized the data to write or null if the writer writes the changes it collected itself
+         * @return the number of bytes written
+         */
+        long write(@Nullable protobuf.PersistableEnvelope serialized, boolean force);
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final Map<String, FileState> fileStates = new HashMap<>();
+    private final AtomicLong sequenceNumber = new AtomicLong();
+
+    WriteScheduler() {
+        executor = new ThreadPoolExecutor(MAX_CONCURRENT_WRITES,
+                MAX_CONCURRENT_WRITES,
+                60,
+                TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("PersistenceManager-write-%d")
+                        .setDaemon(true)
+                        .build());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Counts a requestPersistence call, the write itself is submitted once the delay of the source has passed
+    synchronized void onPersistenceRequested(String fileName) {
+        getFileState(fileName).numRequests++;
+    }
+
+    /**
+     * @param fileName        the file to write
+     * @param source          the source of the data, used as priority
+     * @param writer          writes the data
+     * @param serialized      the data to write or null if the writer writes the changes it collected itself. Null
+     *                        does not replace the data of a queued write.
+     * @param force           passed to the writer
+     * @param completeHandler called on the UserThread once the data or newer data of the same file got written
+     */
+    void submit(String fileName,
+                PersistenceManager.Source source,
+                Writer writer,
+                @Nullable protobuf.PersistableEnvelope serialized,
+                boolean force,
+                @Nullable Runnable completeHandler) {
+        synchronized (this) {
+            FileState fileState = getFileState(fileName);
+            fileState.priority = getPriority(source);
+            fileState.writer = writer;
+            if (fileState.queued != null) {
+                // The queued write has not started yet, so we write the newer data instead
+                if (serialized != null) {
+                    fileState.queued.serialized = serialized;
+                }
+                fileState.queued.force |= force;
+                if (completeHandler != null) {
+                    fileState.queued.completeHandlers.add(completeHandler);
+                }
+                fileState.numCoalesced++;
+                return;
+            }
+
+            fileState.queued = new PendingWrite(serialized, force, completeHandler);
+            if (!fileState.writing) {
+                enqueue(fileState);
+            }
+        }
+    }
+
+    synchronized String getInfo() {
+        StringBuilder sb = new StringBuilder("Write statistics per file (requests / writes / coalesced / written / " +
+                "avg latency / max latency / avg write time):");
+        fileStates.values().stream()
+                .sorted(Comparator.comparingLong((FileState fileState) -> fileState.bytesWritten).reversed())
+                .forEach(fileState -> sb.append("\n\t").append(fileState));
+        return sb.toString();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private FileState getFileState(String fileName) {
+        return fileStates.computeIfAbsent(fileName, FileState::new);
+    }
+
+    private void enqueue(FileState fileState) {
+        executor.execute(new WriteTask(fileState, fileState.priority, sequenceNumber.incrementAndGet()));
+    }
+
+    private void write(FileState fileState) {
+        PendingWrite pendingWrite;
+        Writer writer;
+        synchronized (this) {
+            pendingWrite = fileState.queued;
+            fileState.queued = null;
+            fileState.writing = true;
+            writer = fileState.writer;
+        }
+
+        long ts = System.currentTimeMillis();
+        long bytesWritten = 0;
+        try {
+            bytesWritten = writer.write(pendingWrite.serialized, pendingWrite.force);
+        } catch (Throwable t) {
+            log.error("Writing {} failed", fileState.fileName, t);
+        } finally {
+            long now = System.currentTimeMillis();
+            synchronized (this) {
+                fileState.numWrites++;
+                fileState.bytesWritten += bytesWritten;
+                fileState.totalWriteTime += now - ts;
+                long latency = now - pendingWrite.submitTs;
+                fileState.totalLatency += latency;
+                fileState.maxLatency = Math.max(fileState.maxLatency, latency);
+                fileState.writing = false;
+                if (fileState.queued != null) {
+                    enqueue(fileState);
+                }
+            }
+            pendingWrite.completeHandlers.forEach(UserThread::execute);
+        }
+    }
+
+    // Lower values are written first
+    private static int getPriority(PersistenceManager.Source source) {
+        switch (source) {
+            case PRIVATE:
+                return 0;
+            case PRIVATE_LOW_PRIO:
+                return 1;
+            default:
+                return 2;
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Static classes
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class FileState {
+        private final String fileName;
+        private int priority;
+        private Writer writer;
+        @Nullable
+        private PendingWrite queued;
+        private boolean writing;
+
+        private long numRequests;
+        private long numWrites;
+        private long numCoalesced;
+        private long bytesWritten;
+        private long totalLatency;
+        private long maxLatency;
+        private long totalWriteTime;
+
+        private FileState(String fileName) {
+            this.fileName = fileName;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-32s %6d / %6d / %6d / %9d kB / %5d ms / %5d ms / %5d ms",
+                    fileName,
+                    numRequests,
+                    numWrites,
+                    numCoalesced,
+                    bytesWritten / 1024,
+                    numWrites > 0 ? totalLatency / numWrites : 0,
+                    maxLatency,
+                    numWrites > 0 ? totalWriteTime / numWrites : 0);
+        }
+    }
+
+    private static final class PendingWrite {
+        @Nullable
+        private protobuf.PersistableEnvelope serialized;
+        private boolean force;
+        private final List<Runnable> completeHandlers = new ArrayList<>();
+        private final long submitTs = System.currentTimeMillis();
+
+        private PendingWrite(@Nullable protobuf.PersistableEnvelope serialized, boolean force, @Nullable Runnable completeHandler) {
+            this.serialized = serialized;
+            this.force = force;
+            if (completeHandler != null) {
+                completeHandlers.add(completeHandler);
+            }
+        }
+    }
+
+    private final class WriteTask implements Runnable, Comparable<WriteTask> {
+        private final FileState fileState;
+        private final int priority;
+        private final long sequenceNumber;
+
+        private WriteTask(FileState fileState, int priority, long sequenceNumber) {
+            this.fileState = fileState;
+            this.priority = priority;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        @Override
+        public void run() {
+            write(fileState);
+        }
+
+        @Override
+        public int compareTo(WriteTask other) {
+            int result = Integer.compare(priority, other.priority);
+            return result != 0 ? result : Long.compare(sequenceNumber, other.sequenceNumber);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common.proto.persistable;
+
+/**
+ * A JournaledPersistableEnvelope which tracks the items changed since the last poll at the source, so a journal write
+ * only serializes the changed items instead of serializing and comparing the whole envelope.
+ */
+public interface ChangeTrackingPersistableEnvelope extends JournaledPersistableEnvelope {
+
+    /**
+     * Returns the items changed or removed since the last call and starts tracking anew. Called by the
+     * PersistenceManager on the user thread, like toPersistableMessage.
+     *
+     * @return the changed items, serialized and keyed like the items of toJournalItems, and the removed keys
+     */
+    JournalChanges pollJournalChanges();
+}
@@ -0,0 +1,74 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common.proto.persistable;
+
+import com.google.protobuf.ByteString;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The items of a {@link ChangeTrackingPersistableEnvelope} which changed or got removed, keyed like the journal items.
+ * A key is either changed or removed. Not thread safe.
+ */
+public final class JournalChanges {
+    private final LinkedHashMap<String, ByteString> changedItems = new LinkedHashMap<>();
+    private final Set<String> removedKeys = new LinkedHashSet<>();
+
+    public void putItem(String key, ByteString item) {
+        removedKeys.remove(key);
+        changedItems.put(key, item);
+    }
+
+    public void removeItem(String key) {
+        changedItems.remove(key);
+        removedKeys.add(key);
+    }
+
+    /**
+     * Applies the given changes, which happened after ours.
+     */
+    public void addAll(JournalChanges newerChanges) {
+        newerChanges.changedItems.forEach(this::putItem);
+        newerChanges.removedKeys.forEach(this::removeItem);
+    }
+
+    public void clear() {
+        changedItems.clear();
+        removedKeys.clear();
+    }
+
+    public Map<String, ByteString> getChangedItems() {
+        return Collections.unmodifiableMap(changedItems);
+    }
+
+    public Set<String> getRemovedKeys() {
+        return Collections.unmodifiableSet(removedKeys);
+    }
+
+    public int size() {
+        return changedItems.size() + removedKeys.size();
+    }
+
+    public boolean isEmpty() {
+        return changedItems.isEmpty() && removedKeys.isEmpty();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common.proto.persistable;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+
+/**
+ * A PersistableEnvelope consisting of independent items. The PersistenceManager persists it as a snapshot plus an
+ * append-only journal of the changed and removed items, so a write costs in proportion to the change rather than to
+ * the size of the envelope.
+ * <p>
+ * Both methods operate on the serialized form only and must not depend on the state of the instance, as they are
+ * used for replaying the journal before the persisted data is applied.
+ */
+public interface JournaledPersistableEnvelope extends PersistableEnvelope {
+
+    /**
+     * @param proto the serialized envelope
+     * @return the serialized items in their order, keyed by a stable unique id (e.g. the trade id or payload hash)
+     */
+    LinkedHashMap<String, ByteString> toJournalItems(protobuf.PersistableEnvelope proto);
+
+    /**
+     * @param items the serialized items as returned by toJournalItems
+     * @return the serialized envelope containing the given items
+     */
+    protobuf.PersistableEnvelope fromJournalItems(Collection<ByteString> items) throws InvalidProtocolBufferException;
+}
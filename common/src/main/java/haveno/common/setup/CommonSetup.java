@@ -18,6 +18,7 @@
 package haveno.common.setup;
 
 import ch.qos.logback.classic.Level;
+import haveno.common.TaskWatchdog;
 import haveno.common.UserThread;
 import haveno.common.app.AsciiLogo;
 import haveno.common.app.DevEnv;
@@ -50,6 +51,10 @@ public class CommonSetup {
         setupSigIntHandlers(gracefulShutDownHandler);
 
         DevEnv.setup(config);
+
+        if (config.taskWatchdogThresholdMs > 0) {
+            TaskWatchdog.enable(config.taskWatchdogThresholdMs);
+        }
     }
 
     public static void printSystemLoadPeriodically(int delayMin) {
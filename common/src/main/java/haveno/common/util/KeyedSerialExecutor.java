@@ -0,0 +1,232 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tasks serially per key while tasks of different keys run concurrently.
+ * <p>
+ * Each key has a lightweight queue which is drained by a single carrier thread at a time, so tasks submitted for
+ * the same key are executed in submission order and never overlap. A key's queue is reclaimed as soon as it runs
+ * empty, so no map entry is retained for idle keys. By default the carriers are platform threads of a cached pool,
+ * i.e. each busy key has its own thread and idle threads are reclaimed. Virtual threads are not used as many tasks
+ * block in synchronized blocks and monitor waits, which would pin their carrier threads.
+ */
+@Slf4j
+public class KeyedSerialExecutor {
+
+    private final ConcurrentHashMap<String, SerialQueue> queues = new ConcurrentHashMap<>();
+    private final AtomicInteger numQueuedTasks = new AtomicInteger(0);
+    private final Executor carrier;
+
+    public KeyedSerialExecutor(String name) {
+        this(Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat(name + "-%d")
+                .setDaemon(true)
+                .build()));
+    }
+
+    public KeyedSerialExecutor(Executor carrier) {
+        this.carrier = carrier;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Submit the given command to be run after all previously submitted commands of the same key.
+     * The carrier thread is renamed to the key while the command runs.
+     *
+     * @param command the command to execute
+     * @param key the key to serialize on
+     * @return a future completing when the command has run
+     * @throws RejectedExecutionException if the key is being shut down
+     */
+    public Future<?> execute(Runnable command, String key) {
+        return enqueue(command, key, false);
+    }
+
+    /**
+     * Wait until all commands submitted for the given key before this call have completed. Commands submitted
+     * for the key in the meantime are rejected. If the commands do not complete within the timeout, the running
+     * command is interrupted and the remaining queued commands are cancelled.
+     *
+     * @param key the key to wait for
+     * @param timeoutMs the timeout in milliseconds or null to wait indefinitely
+     */
+    public void shutDown(String key, Long timeoutMs) {
+        if (!queues.containsKey(key)) return;
+        Future<?> barrier;
+        try {
+            barrier = enqueue(() -> {}, key, true);
+        } catch (RejectedExecutionException e) {
+            return; // shut down by another caller
+        }
+        try {
+            if (timeoutMs == null) barrier.get();
+            else barrier.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            cancel(key);
+        } catch (InterruptedException e) {
+            cancel(key);
+            throw new RuntimeException(e);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            remove(key);
+        }
+    }
+
+    /**
+     * Cancel all queued commands of the given key and interrupt the running one.
+     *
+     * @param key the key to cancel
+     */
+    public void cancel(String key) {
+        SerialQueue queue = queues.get(key);
+        if (queue == null) return;
+        synchronized (queue) {
+            FutureTask<?> task;
+            while ((task = queue.tasks.poll()) != null) {
+                task.cancel(false);
+                numQueuedTasks.decrementAndGet();
+            }
+            if (queue.thread != null) queue.thread.interrupt();
+        }
+    }
+
+    /**
+     * Detach the queue of the given key. Its queued commands still run, but commands submitted afterwards
+     * run on a new queue, so they might overlap with the remaining commands of the detached queue.
+     *
+     * @param key the key to remove
+     */
+    public void remove(String key) {
+        SerialQueue queue = queues.get(key);
+        if (queue == null) return;
+        synchronized (queue) {
+            queue.detached = true;
+            queues.remove(key, queue);
+        }
+    }
+
+    public boolean isCurrentThread(Thread thread, String key) {
+        SerialQueue queue = queues.get(key);
+        return queue != null && queue.thread == thread;
+    }
+
+    /**
+     * @return the number of keys which currently have queued or running commands
+     */
+    public int getNumKeys() {
+        return queues.size();
+    }
+
+    /**
+     * @return the number of commands which are queued and not yet started
+     */
+    public int getNumQueuedTasks() {
+        return numQueuedTasks.get();
+    }
+
+    public void shutDownCarrier() {
+        if (carrier instanceof ExecutorService) ((ExecutorService) carrier).shutdownNow();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private Future<?> enqueue(Runnable command, String key, boolean shutDownAfter) {
+        FutureTask<?> task = new FutureTask<>(() -> {
+            Thread thread = Thread.currentThread();
+            String name = thread.getName();
+            thread.setName(key);
+            try {
+                command.run();
+            } finally {
+                thread.setName(name);
+            }
+        }, null);
+        while (true) {
+            SerialQueue queue = queues.computeIfAbsent(key, k -> new SerialQueue());
+            boolean startDrain;
+            synchronized (queue) {
+                // The queue got reclaimed or removed in the meantime, use a new one
+                if (queue.detached) continue;
+                if (queue.shuttingDown) throw new RejectedExecutionException("Executor for " + key + " is shutting down");
+                queue.tasks.add(task);
+                if (shutDownAfter) queue.shuttingDown = true;
+                startDrain = !queue.draining;
+                queue.draining = true;
+            }
+            numQueuedTasks.incrementAndGet();
+            if (startDrain) carrier.execute(() -> drain(key, queue));
+            return task;
+        }
+    }
+
+    private void drain(String key, SerialQueue queue) {
+        synchronized (queue) {
+            queue.thread = Thread.currentThread();
+        }
+        while (true) {
+            FutureTask<?> next;
+            synchronized (queue) {
+                next = queue.tasks.poll();
+                if (next == null) {
+                    queue.draining = false;
+                    queue.thread = null;
+                    // reclaim idle key, a key being shut down is removed by shutDown
+                    if (!queue.shuttingDown && !queue.detached) {
+                        queue.detached = true;
+                        queues.remove(key, queue);
+                    }
+                    return;
+                }
+            }
+            numQueuedTasks.decrementAndGet();
+            next.run();
+            if (Thread.interrupted()) log.debug("Task for key {} was interrupted", key);
+        }
+    }
+
+    private static class SerialQueue {
+        private final Queue<FutureTask<?>> tasks = new ArrayDeque<>();
+        private boolean draining;
+        private boolean shuttingDown;
+        private boolean detached;
+        private volatile Thread thread;
+    }
+}
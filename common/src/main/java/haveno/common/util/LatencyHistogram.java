@@ -0,0 +1,82 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations with power of two buckets in microseconds: bucket 0 counts durations below 1 us,
+ * bucket i durations from 2^(i-1) us to below 2^i us. Percentiles are reported as the upper bound of their bucket,
+ * so they are at most a factor of 2 too high.
+ */
+public class LatencyHistogram {
+    private static final int NUM_BUCKETS = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos));
+        int bucket = Math.min(NUM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxMs() {
+        return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+    }
+
+    /**
+     * @param percentile the percentile between 0 and 100
+     * @return the upper bound in milliseconds of the bucket containing the percentile, 0 if nothing got recorded
+     */
+    public double getPercentileMs(double percentile) {
+        long total = count.get();
+        if (total == 0) return 0;
+
+        long threshold = (long) Math.ceil(total * percentile / 100);
+        long sum = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            sum += buckets.get(i);
+            if (sum >= Math.max(1, threshold)) return (1L << i) / 1000d;
+        }
+        return getMaxMs();
+    }
+
+    public void reset() {
+        for (int i = 0; i < NUM_BUCKETS; i++) buckets.set(i, 0);
+        count.set(0);
+        maxNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() +
+                ", p50=" + getPercentileMs(50) + " ms" +
+                ", p99=" + getPercentileMs(99) + " ms" +
+                ", max=" + getMaxMs() + " ms";
+    }
+}
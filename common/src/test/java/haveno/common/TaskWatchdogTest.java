@@ -0,0 +1,104 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TaskWatchdogTest {
+
+    @AfterEach
+    public void tearDown() {
+        TaskWatchdog.disable();
+        TaskWatchdog.reset();
+    }
+
+    @Test
+    public void testStalledTaskIsReportedWithStack() throws Exception {
+        TaskWatchdog.enable(100);
+        ThreadUtils.execute(new SleepingTask(400), "TaskWatchdogTest").get(5, TimeUnit.SECONDS);
+        ThreadUtils.execute(() -> {}, "TaskWatchdogTest").get(5, TimeUnit.SECONDS);
+
+        List<TaskWatchdog.Offender> offenders = TaskWatchdog.getTopOffenders(10);
+        assertEquals(1, offenders.size());
+        TaskWatchdog.Offender offender = offenders.get(0);
+        assertEquals(SleepingTask.class.getName(), offender.getName());
+        assertEquals(1, offender.getCount());
+        assertTrue(offender.getMaxMs() >= 400);
+        assertNotNull(offender.getLastStack());
+        assertTrue(offender.getLastStack().contains("SleepingTask.run"));
+        assertEquals(2, TaskWatchdog.getHistograms().get("ThreadUtils.run").getCount());
+    }
+
+    @Test
+    public void testNestedTasksRestoreOuterTask() {
+        TaskWatchdog.enable(60_000);
+        TaskWatchdog.RunningTask outer = TaskWatchdog.taskStarted(() -> {});
+        TaskWatchdog.RunningTask inner = TaskWatchdog.taskStarted(new SleepingTask(0));
+        TaskWatchdog.taskCompleted(inner);
+        TaskWatchdog.taskCompleted(outer);
+        assertTrue(TaskWatchdog.getTopOffenders(10).isEmpty());
+    }
+
+    @Test
+    public void testLambdaTaskName() {
+        Runnable lambda = () -> {};
+        assertEquals(TaskWatchdogTest.class.getName(), TaskWatchdog.getTaskName(lambda));
+    }
+
+    @Test
+    public void testWrappedTaskName() {
+        Runnable task = new SleepingTask(0);
+        TaskWatchdog.WrappingTask wrapper = new TaskWatchdog.WrappingTask() {
+            @Override
+            public void run() {
+                task.run();
+            }
+
+            @Override
+            public Runnable getWrappedTask() {
+                return task;
+            }
+        };
+        assertEquals(SleepingTask.class.getName(), TaskWatchdog.getTaskName(wrapper));
+    }
+
+    private static class SleepingTask implements Runnable {
+        private final long sleepMs;
+
+        private SleepingTask(long sleepMs) {
+            this.sleepMs = sleepMs;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Thread.sleep(sleepMs);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimingWheelTimerTest {
+
+    @Test
+    public void testTimersFireInOrderAndNotEarly() throws Exception {
+        // Delays beyond the first level are cascaded down before they fire
+        long[] delays = {0, 300, 120, 700, 3300, 4000, 2100};
+        CountDownLatch latch = new CountDownLatch(delays.length);
+        List<Long> firedDelays = new ArrayList<>();
+        AtomicLong earliness = new AtomicLong();
+        for (long delay : delays) {
+            long start = System.nanoTime();
+            new TimingWheelTimer().runLater(Duration.ofMillis(delay), () -> {
+                long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                if (elapsed < delay) earliness.set(delay - elapsed);
+                synchronized (firedDelays) {
+                    firedDelays.add(delay);
+                }
+                latch.countDown();
+            });
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(0, earliness.get());
+        List<Long> sorted = new ArrayList<>(firedDelays);
+        sorted.sort(Long::compare);
+        assertEquals(sorted, firedDelays);
+    }
+
+    @Test
+    public void testStoppedTimerDoesNotFire() throws Exception {
+        AtomicInteger numFired = new AtomicInteger();
+        long numCancelled = TimingWheel.getNumCancelled();
+        Timer timer = new TimingWheelTimer().runLater(Duration.ofMillis(200), numFired::incrementAndGet);
+        timer.stop();
+
+        CountDownLatch latch = new CountDownLatch(1);
+        new TimingWheelTimer().runLater(Duration.ofMillis(400), latch::countDown);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, numFired.get());
+        assertTrue(TimingWheel.getNumCancelled() > numCancelled);
+    }
+
+    @Test
+    public void testPeriodicTimerCanBeStoppedFromItsAction() throws Exception {
+        AtomicInteger numFired = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+        Timer[] timer = new Timer[1];
+        timer[0] = new TimingWheelTimer().runPeriodically(Duration.ofMillis(60), () -> {
+            if (numFired.incrementAndGet() == 3) {
+                timer[0].stop();
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(300);
+        assertEquals(3, numFired.get());
+    }
+
+    @Test
+    public void testPeriodicTimerDoesNotFireMoreOftenThanItsInterval() throws Exception {
+        // 70 ms is not a multiple of the tick, a truncated interval would fire every 50 ms
+        long intervalMs = 70;
+        AtomicInteger numFired = new AtomicInteger();
+        long start = System.nanoTime();
+        Timer timer = new TimingWheelTimer().runPeriodically(Duration.ofMillis(intervalMs), numFired::incrementAndGet);
+        Thread.sleep(1000);
+        timer.stop();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(numFired.get() > 0);
+        assertTrue(numFired.get() <= elapsedMs / intervalMs, "Fired " + numFired.get() + " times in " + elapsedMs + " ms");
+    }
+}
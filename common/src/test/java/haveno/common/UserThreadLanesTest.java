@@ -0,0 +1,96 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UserThreadLanesTest {
+    private ExecutorService userThreadExecutor;
+
+    @AfterEach
+    public void tearDown() {
+        UserThread.shutDownLanes();
+        UserThread.setExecutor(MoreExecutors.directExecutor());
+        if (userThreadExecutor != null) userThreadExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testLanesRunOnTheirOwnThread() throws Exception {
+        userThreadExecutor = Executors.newSingleThreadExecutor();
+        UserThread.setExecutor(userThreadExecutor);
+        UserThread.enableLanes();
+        long numNetworkTasks = UserThread.getRunLatency(UserThread.Lane.NETWORK).getCount();
+
+        CompletableFuture<Thread> mainThread = new CompletableFuture<>();
+        UserThread.execute(() -> mainThread.complete(Thread.currentThread()));
+        CompletableFuture<Thread> networkThread = new CompletableFuture<>();
+        UserThread.execute(() -> {
+            UserThread.checkLane(UserThread.Lane.NETWORK);
+            assertFalse(UserThread.isLaneThread(Thread.currentThread(), UserThread.Lane.MAIN));
+            networkThread.complete(Thread.currentThread());
+        }, UserThread.Lane.NETWORK);
+
+        assertNotEquals(mainThread.get(5, TimeUnit.SECONDS), networkThread.get(5, TimeUnit.SECONDS));
+        assertThrows(IllegalStateException.class, () -> UserThread.checkLane(UserThread.Lane.NETWORK));
+        assertEquals(numNetworkTasks + 1, UserThread.getRunLatency(UserThread.Lane.NETWORK).getCount());
+    }
+
+    @Test
+    public void testLanesRunOnUserThreadIfNotEnabled() throws Exception {
+        userThreadExecutor = Executors.newSingleThreadExecutor();
+        UserThread.setExecutor(userThreadExecutor);
+
+        CompletableFuture<Boolean> onMainLane = new CompletableFuture<>();
+        UserThread.execute(() -> onMainLane.complete(UserThread.isLaneThread(Thread.currentThread(), UserThread.Lane.MAIN) &&
+                UserThread.isLaneThread(Thread.currentThread(), UserThread.Lane.NETWORK)), UserThread.Lane.NETWORK);
+        assertTrue(onMainLane.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testMainLatencyIsOnlyRecordedWithLanes() throws Exception {
+        userThreadExecutor = Executors.newSingleThreadExecutor();
+        UserThread.setExecutor(userThreadExecutor);
+        long numMainTasks = UserThread.getRunLatency(UserThread.Lane.MAIN).getCount();
+
+        CompletableFuture<Void> withoutLanes = new CompletableFuture<>();
+        UserThread.execute(() -> withoutLanes.complete(null));
+        withoutLanes.get(5, TimeUnit.SECONDS);
+        assertEquals(numMainTasks, UserThread.getRunLatency(UserThread.Lane.MAIN).getCount());
+
+        UserThread.enableLanes();
+        // The run time is recorded after the task returned, so it is only certain once the next task ran
+        UserThread.await(() -> {
+        });
+        UserThread.await(() -> {
+        });
+        assertTrue(UserThread.getRunLatency(UserThread.Lane.MAIN).getCount() > numMainTasks);
+    }
+}
@@ -19,6 +19,7 @@ import static haveno.common.config.Config.DEFAULT_CONFIG_FILE_NAME;
 import static haveno.common.config.Config.HELP;
 import static haveno.common.config.Config.TORRC_FILE;
 import static haveno.common.config.Config.USER_DATA_DIR;
+import static haveno.common.config.Config.USE_VIRTUAL_THREADS_FOR_P2P;
 import static java.io.File.createTempFile;
 import static java.lang.String.format;
 import static java.lang.System.getProperty;
@@ -270,6 +271,27 @@ public class ConfigTests {
         configWithOpts(opt(APP_DATA_DIR, symlink));
     }
 
+    @Test
+    public void whenUseVirtualThreadsForP2POptionIsNotSet_thenItIsDisabled() {
+        assertFalse(new Config().useVirtualThreadsForP2P);
+        assertTrue(configWithOpts(opt(USE_VIRTUAL_THREADS_FOR_P2P, true)).useVirtualThreadsForP2P);
+    }
+
+    @Test
+    public void whenUseVirtualThreadsForP2PIsEnabledByDefault_thenCommandLineAndConfigFileCanDisableIt() throws IOException {
+        File userDataDir = createTempDirectory("haveno").toFile();
+        assertTrue(new Config("HavenoTest", userDataDir, true).useVirtualThreadsForP2P);
+        assertFalse(new Config("HavenoTest", userDataDir, true,
+                opt(USE_VIRTUAL_THREADS_FOR_P2P, false).toString()).useVirtualThreadsForP2P);
+
+        File configFile = createTempFile("haveno", "properties");
+        try (PrintWriter writer = new PrintWriter(configFile)) {
+            writer.println(new ConfigFileOption(USE_VIRTUAL_THREADS_FOR_P2P, "false"));
+        }
+        assertFalse(new Config("HavenoTest", userDataDir, true,
+                opt(CONFIG_FILE, configFile.getAbsolutePath()).toString()).useVirtualThreadsForP2P);
+    }
+
 
     // == TEST SUPPORT FACILITIES ========================================================
 
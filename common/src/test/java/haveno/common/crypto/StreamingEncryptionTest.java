@@ -0,0 +1,102 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StreamingEncryptionTest {
+    private static final int CHUNK_SIZE = 1024;
+
+    private final SecretKey secretKey = Encryption.generateSecretKey(256);
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        // Empty, smaller than a chunk, exactly one chunk and several chunks with a partial last chunk
+        for (int size : new int[]{0, 10, CHUNK_SIZE, 5 * CHUNK_SIZE + 17}) {
+            byte[] plainText = randomBytes(size);
+            byte[] encrypted = encrypt(plainText);
+            assertTrue(StreamingEncryption.isStreamingFormat(new BufferedInputStream(new ByteArrayInputStream(encrypted))));
+            assertArrayEquals(plainText, decrypt(encrypted, secretKey));
+        }
+    }
+
+    @Test
+    public void testOldFormatIsNotDetected() throws Exception {
+        byte[] encrypted = Encryption.encryptPayloadWithHmac(randomBytes(100), secretKey);
+        assertFalse(StreamingEncryption.isStreamingFormat(new BufferedInputStream(new ByteArrayInputStream(encrypted))));
+    }
+
+    @Test
+    public void testTamperedChunkIsRejected() throws Exception {
+        byte[] encrypted = encrypt(randomBytes(3 * CHUNK_SIZE));
+        encrypted[encrypted.length - CHUNK_SIZE] ^= 1;
+        assertThrows(IOException.class, () -> decrypt(encrypted, secretKey));
+    }
+
+    @Test
+    public void testTruncatedStreamIsRejected() throws Exception {
+        byte[] encrypted = encrypt(randomBytes(3 * CHUNK_SIZE));
+        // Cut off the last chunk (flag, length, ciphertext and tag), the remaining chunks are all valid
+        byte[] truncated = Arrays.copyOf(encrypted, encrypted.length - (1 + 4 + CHUNK_SIZE + 16));
+        assertThrows(IOException.class, () -> decrypt(truncated, secretKey));
+    }
+
+    @Test
+    public void testWrongKeyIsRejected() throws Exception {
+        byte[] encrypted = encrypt(randomBytes(100));
+        assertThrows(IOException.class, () -> decrypt(encrypted, Encryption.generateSecretKey(256)));
+    }
+
+    private byte[] encrypt(byte[] plainText) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (StreamingEncryption.EncryptingOutputStream encryptingOutputStream =
+                     StreamingEncryption.encryptingStream(out, secretKey, CHUNK_SIZE)) {
+            // Write in odd sized pieces to cross the chunk boundaries
+            for (int i = 0; i < plainText.length; i += 333) {
+                encryptingOutputStream.write(plainText, i, Math.min(333, plainText.length - i));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] decrypt(byte[] encrypted, SecretKey key) throws IOException {
+        try (InputStream in = StreamingEncryption.decryptingStream(new ByteArrayInputStream(encrypted), key)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common.file;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JsonFileManagerTest {
+    @TempDir
+    File dir;
+
+    @Test
+    public void testAppendedFileIsRotated() throws Exception {
+        JsonFileManager jsonFileManager = new JsonFileManager(dir);
+        try {
+            for (String line : List.of("a", "b", "c", "d")) {
+                jsonFileManager.appendLinesToDiscThreaded(List.of(line), "stats", 1, 2);
+                awaitWrites(jsonFileManager);
+            }
+
+            assertEquals("d\n", read("stats.ndjson"));
+            assertEquals("c\n", read("stats.1.ndjson"));
+            assertEquals("b\n", read("stats.2.ndjson"));
+            assertFalse(new File(dir, "stats.3.ndjson").exists());
+
+            // Replacing the file deletes the rotated files
+            jsonFileManager.writeLinesToDiscThreaded(List.of("x"), "stats");
+            awaitWrites(jsonFileManager);
+            assertEquals("x\n", read("stats.ndjson"));
+            assertFalse(new File(dir, "stats.1.ndjson").exists());
+            assertFalse(new File(dir, "stats.2.ndjson").exists());
+        } finally {
+            jsonFileManager.shutDown();
+        }
+    }
+
+    @Test
+    public void testFileIsNotRotatedBelowMaxSize() throws Exception {
+        JsonFileManager jsonFileManager = new JsonFileManager(dir);
+        try {
+            jsonFileManager.appendLinesToDiscThreaded(List.of("a"), "stats", 1024, 2);
+            awaitWrites(jsonFileManager);
+            jsonFileManager.appendLinesToDiscThreaded(List.of("b"), "stats", 1024, 2);
+            awaitWrites(jsonFileManager);
+
+            assertEquals("a\nb\n", read("stats.ndjson"));
+            assertFalse(new File(dir, "stats.1.ndjson").exists());
+        } finally {
+            jsonFileManager.shutDown();
+        }
+    }
+
+    // The writes are done on a single thread, so all writes submitted before are completed once our task runs
+    private static void awaitWrites(JsonFileManager jsonFileManager) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        jsonFileManager.getExecutor().execute(latch::countDown);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    private String read(String fileName) throws Exception {
+        return Files.readString(new File(dir, fileName).toPath(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common.persistence;
+
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ItemStoreTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    public void testItemsAreStoredByKey() throws Exception {
+        ItemStore store = new ItemStore(dir, "TestStore", null);
+        store.put("Trade/1", ByteString.copyFromUtf8("first"));
+        store.put("Trade/2", ByteString.copyFromUtf8("second"));
+        store.put("Trade/1", ByteString.copyFromUtf8("first updated"));
+
+        ItemStore reopened = new ItemStore(dir, "TestStore", null);
+        assertEquals(ByteString.copyFromUtf8("first updated"), reopened.get("Trade/1"));
+        assertEquals(ByteString.copyFromUtf8("second"), reopened.get("Trade/2"));
+        assertNull(reopened.get("Trade/3"));
+
+        reopened.remove("Trade/2");
+        assertNull(reopened.get("Trade/2"));
+    }
+
+    @Test
+    public void testOtherKeys() throws Exception {
+        ItemStore store = new ItemStore(dir, "TestStore", null);
+        store.put("a", ByteString.copyFromUtf8("a"));
+        store.put("b", ByteString.copyFromUtf8("b"));
+        store.put("c", ByteString.copyFromUtf8("c"));
+
+        assertEquals(List.of("b"), store.getOtherKeys(Set.of("a", "c")));
+        assertEquals(List.of(), store.getOtherKeys(Set.of("a", "b", "c")));
+    }
+}
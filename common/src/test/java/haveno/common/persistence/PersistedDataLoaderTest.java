@@ -0,0 +1,85 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common.persistence;
+
+import haveno.common.proto.persistable.PersistedDataHost;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PersistedDataLoaderTest {
+
+    @Test
+    public void testResultsAreAppliedInOrderOfHosts() throws Exception {
+        List<String> applied = Collections.synchronizedList(new ArrayList<>());
+        List<PersistedDataHost> hosts = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            // The reads of the first hosts complete last
+            hosts.add(new SlowHost("host-" + i, (5 - i) * 20L, applied));
+        }
+
+        CountDownLatch completed = new CountDownLatch(1);
+        new PersistedDataLoader().load(hosts, completed::countDown);
+
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("host-0", "host-1", "host-2", "host-3", "host-4"), applied);
+    }
+
+    @Test
+    public void testEmptyHostList() throws Exception {
+        CountDownLatch completed = new CountDownLatch(1);
+        new PersistedDataLoader().load(new ArrayList<>(), completed::countDown);
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+    }
+
+    private static class SlowHost implements PersistedDataHost {
+        private final String name;
+        private final long readTime;
+        private final List<String> applied;
+
+        SlowHost(String name, long readTime, List<String> applied) {
+            this.name = name;
+            this.readTime = readTime;
+            this.applied = applied;
+        }
+
+        @Override
+        public void readPersisted(Runnable completeHandler) {
+            PersistedDataLoader.Slot slot = PersistedDataLoader.getCurrentSlot();
+            assertNotNull(slot);
+            new Thread(() -> {
+                try {
+                    Thread.sleep(readTime);
+                } catch (InterruptedException ignore) {
+                }
+                slot.apply(() -> {
+                    applied.add(name);
+                    completeHandler.run();
+                });
+            }).start();
+        }
+    }
+}
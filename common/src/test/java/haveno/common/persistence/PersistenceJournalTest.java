@@ -0,0 +1,226 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common.persistence;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+import haveno.common.proto.persistable.ChangeTrackingPersistableEnvelope;
+import haveno.common.proto.persistable.JournalChanges;
+import haveno.common.proto.persistable.JournaledPersistableEnvelope;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PersistenceJournalTest {
+    private static final String FILE_NAME = "TestStore";
+
+    @TempDir
+    File dir;
+
+    @Test
+    public void testChangesAreReplayedOnSnapshot() throws Exception {
+        byte[] snapshotBytes = {1, 2, 3};
+        protobuf.PersistableEnvelope snapshot = envelope("a=1", "b=1", "c=1");
+        PersistenceJournal journal = newJournal();
+        assertEquals(snapshot, journal.replay(snapshot, snapshotBytes));
+
+        assertTrue(journal.append(envelope("a=1", "b=2", "c=1", "d=1")));
+        assertTrue(journal.append(envelope("b=2", "c=1", "d=1")));
+        assertEquals(3, journal.getNumRecords());
+        // Unchanged items are not appended
+        long journalSize = journal.getJournalSize();
+        assertTrue(journal.append(envelope("b=2", "c=1", "d=1")));
+        assertEquals(journalSize, journal.getJournalSize());
+
+        assertEquals(List.of("b=2", "c=1", "d=1"), paths(newJournal().replay(snapshot, snapshotBytes)));
+    }
+
+    @Test
+    public void testJournalOfOtherSnapshotIsIgnored() throws Exception {
+        protobuf.PersistableEnvelope snapshot = envelope("a=1");
+        PersistenceJournal journal = newJournal();
+        journal.replay(snapshot, new byte[]{1});
+        assertTrue(journal.append(envelope("a=2")));
+
+        // A new snapshot was written but the journal was not reset
+        protobuf.PersistableEnvelope newSnapshot = envelope("a=3");
+        assertEquals(List.of("a=3"), paths(newJournal().replay(newSnapshot, new byte[]{2})));
+    }
+
+    @Test
+    public void testIncompleteRecordIsDropped() throws Exception {
+        byte[] snapshotBytes = {1};
+        protobuf.PersistableEnvelope snapshot = envelope("a=1");
+        PersistenceJournal journal = newJournal();
+        journal.replay(snapshot, snapshotBytes);
+        assertTrue(journal.append(envelope("a=2")));
+        long validSize = journal.getJournalSize();
+
+        // Simulate a crash in the middle of a write
+        try (FileOutputStream out = new FileOutputStream(journal.getFile(), true)) {
+            out.write(new byte[]{0, 0, 0, 100, 1, 2});
+        }
+
+        PersistenceJournal replayed = newJournal();
+        assertEquals(List.of("a=2"), paths(replayed.replay(snapshot, snapshotBytes)));
+        assertEquals(validSize, journal.getFile().length());
+
+        assertTrue(replayed.append(envelope("a=3")));
+        assertEquals(List.of("a=3"), paths(newJournal().replay(snapshot, snapshotBytes)));
+    }
+
+    @Test
+    public void testSnapshotRequiredIfJournalGetsTooLarge() throws Exception {
+        protobuf.PersistableEnvelope snapshot = envelope("a=1");
+        PersistenceJournal journal = newJournal();
+        assertFalse(journal.append(snapshot));
+
+        journal.reset(snapshot, new byte[]{1});
+        String largeValue = "a=" + "x".repeat((int) PersistenceJournal.MIN_COMPACTION_SIZE);
+        assertFalse(journal.append(envelope(largeValue)));
+
+        // After a new snapshot we can append again
+        journal.reset(envelope(largeValue), new byte[]{2});
+        assertTrue(journal.append(envelope(largeValue, "b=1")));
+    }
+
+    @Test
+    public void testCorruptedRecordIsSkipped() throws Exception {
+        byte[] snapshotBytes = {1};
+        protobuf.PersistableEnvelope snapshot = envelope("a=1", "b=1", "c=1");
+        PersistenceJournal journal = newJournal();
+        journal.replay(snapshot, snapshotBytes);
+        assertTrue(journal.append(envelope("a=2", "b=1", "c=1")));
+        long secondRecordStart = journal.getJournalSize();
+        assertTrue(journal.append(envelope("a=2", "b=2", "c=1")));
+        assertTrue(journal.append(envelope("a=2", "b=2", "c=2")));
+        long journalSize = journal.getJournalSize();
+
+        // The first byte after the length of the second record is the tag of its key, we make it invalid
+        try (RandomAccessFile raf = new RandomAccessFile(journal.getFile(), "rw")) {
+            raf.seek(secondRecordStart + 4);
+            raf.write(0xFF);
+        }
+
+        PersistenceJournal replayed = newJournal();
+        assertEquals(List.of("a=2", "b=1", "c=2"), paths(replayed.replay(snapshot, snapshotBytes)));
+        // The records after the corrupted one are kept, but we require a new snapshot
+        assertEquals(journalSize, journal.getFile().length());
+        assertFalse(replayed.isAppendable());
+        assertFalse(replayed.append(envelope("a=3", "b=2", "c=2")));
+    }
+
+    @Test
+    public void testTrackedChangesAreAppended() throws Exception {
+        byte[] snapshotBytes = {1};
+        protobuf.PersistableEnvelope snapshot = envelope("a=1", "b=1", "c=1");
+        PersistenceJournal journal = newTrackingJournal();
+        journal.replay(snapshot, snapshotBytes);
+        // The tracked changes start with the snapshot written after the replay
+        assertFalse(journal.isAppendable());
+
+        journal.reset(snapshot, snapshotBytes);
+        JournalChanges changes = new JournalChanges();
+        changes.putItem("b", ByteString.copyFrom("b=2", StandardCharsets.UTF_8));
+        changes.removeItem("c");
+        changes.putItem("d", ByteString.copyFrom("d=1", StandardCharsets.UTF_8));
+        assertTrue(journal.append(changes) > 0);
+        assertEquals(3, journal.getNumRecords());
+        assertEquals(0, journal.append(new JournalChanges()));
+
+        assertEquals(List.of("a=1", "b=2", "d=1"), paths(newTrackingJournal().replay(snapshot, snapshotBytes)));
+    }
+
+    @Test
+    public void testSnapshotRequiredIfTrackedChangesGetTooLarge() throws Exception {
+        PersistenceJournal journal = newTrackingJournal();
+        journal.reset(envelope("a=1"), new byte[]{1});
+        JournalChanges changes = new JournalChanges();
+        changes.putItem("a", ByteString.copyFrom("a=" + "x".repeat((int) PersistenceJournal.MIN_COMPACTION_SIZE), StandardCharsets.UTF_8));
+        journal.append(changes);
+
+        assertFalse(journal.isAppendable());
+        assertThrows(IllegalStateException.class, () -> journal.append(new JournalChanges()));
+
+        journal.reset(envelope("a=2"), new byte[]{2});
+        assertTrue(journal.isAppendable());
+    }
+
+    private PersistenceJournal newJournal() {
+        return new PersistenceJournal(dir, FILE_NAME, new TestEnvelope(), null);
+    }
+
+    private PersistenceJournal newTrackingJournal() {
+        return new PersistenceJournal(dir, FILE_NAME, new TrackingTestEnvelope(), null);
+    }
+
+    private static protobuf.PersistableEnvelope envelope(String... paths) {
+        return protobuf.PersistableEnvelope.newBuilder()
+                .setNavigationPath(protobuf.NavigationPath.newBuilder().addAllPath(List.of(paths)))
+                .build();
+    }
+
+    private static List<String> paths(protobuf.PersistableEnvelope envelope) {
+        return envelope.getNavigationPath().getPathList();
+    }
+
+    // Items are "key=value" strings
+    private static class TestEnvelope implements JournaledPersistableEnvelope {
+        @Override
+        public LinkedHashMap<String, ByteString> toJournalItems(protobuf.PersistableEnvelope proto) {
+            LinkedHashMap<String, ByteString> items = new LinkedHashMap<>();
+            proto.getNavigationPath().getPathList()
+                    .forEach(path -> items.put(path.split("=")[0], ByteString.copyFrom(path, StandardCharsets.UTF_8)));
+            return items;
+        }
+
+        @Override
+        public protobuf.PersistableEnvelope fromJournalItems(Collection<ByteString> items) {
+            return envelope(items.stream()
+                    .map(item -> item.toString(StandardCharsets.UTF_8))
+                    .collect(Collectors.toList())
+                    .toArray(new String[0]));
+        }
+
+        @Override
+        public Message toProtoMessage() {
+            return envelope();
+        }
+    }
+
+    // The changes are passed to the journal directly in the tests
+    private static class TrackingTestEnvelope extends TestEnvelope implements ChangeTrackingPersistableEnvelope {
+        @Override
+        public JournalChanges pollJournalChanges() {
+            return new JournalChanges();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common.persistence;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+import haveno.common.proto.persistable.JournaledPersistableEnvelope;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SegmentedStoreTest {
+    private static final String FILE_NAME = "TestStore";
+
+    @TempDir
+    File dir;
+
+    @Test
+    public void testOnlyChangedItemsAreWritten() throws Exception {
+        SegmentedStore store = newStore();
+        assertFalse(store.exists());
+        long initialBytes = store.write(envelope("a=1", "b=1", "c=1"));
+        assertTrue(store.exists());
+        assertEquals(3, segmentFiles().size());
+
+        long bytes = store.write(envelope("a=1", "b=2", "c=1"));
+        assertTrue(bytes > 0 && bytes < initialBytes);
+        assertEquals(0, store.write(envelope("a=1", "b=2", "c=1")));
+
+        store.write(envelope("a=1", "c=1", "d=1"));
+        assertEquals(3, segmentFiles().size());
+        assertEquals(List.of("a=1", "c=1", "d=1"), paths(newStore().read(corrupted -> {})));
+    }
+
+    @Test
+    public void testOrderIsKept() throws Exception {
+        SegmentedStore store = newStore();
+        store.write(envelope("c=1", "a=1", "b=1"));
+        store.write(envelope("c=2", "a=1", "b=1", "d=1"));
+
+        SegmentedStore readStore = newStore();
+        assertEquals(List.of("c=2", "a=1", "b=1", "d=1"), paths(readStore.read(corrupted -> {})));
+
+        // New items are appended after the items read from disk
+        readStore.write(envelope("c=2", "b=1", "d=1", "e=1"));
+        assertEquals(List.of("c=2", "b=1", "d=1", "e=1"), paths(newStore().read(corrupted -> {})));
+    }
+
+    @Test
+    public void testCorruptedSegmentIsSkipped() throws Exception {
+        newStore().write(envelope("a=1", "b=1"));
+        try (FileOutputStream out = new FileOutputStream(segmentFiles().get(0))) {
+            out.write(new byte[]{1, 2, 3});
+        }
+
+        List<String> corruptedSegments = new ArrayList<>();
+        List<String> paths = paths(newStore().read(corruptedSegments::add));
+        assertEquals(1, paths.size());
+        assertEquals(1, corruptedSegments.size());
+        assertEquals(1, segmentFiles().size());
+    }
+
+    @Test
+    public void testStaleSegmentsOfInterruptedMigrationAreDeleted() throws Exception {
+        newStore().write(envelope("a=1", "b=1"));
+        // The migration got interrupted before the marker file was written
+        assertTrue(new File(segmentDir(), "complete").delete());
+
+        // A store which did not read the segments as it migrates again from the storage file
+        newStore().write(envelope("a=2"));
+        assertEquals(List.of("a=2"), paths(newStore().read(corrupted -> {})));
+        assertEquals(1, segmentFiles().size());
+    }
+
+    @Test
+    public void testSegmentsAreNotDeletedAfterFailedRead() throws Exception {
+        newStore().write(envelope("a=1", "b=1"));
+
+        SegmentedStore store = newStore();
+        store.onReadFailed();
+        assertFalse(store.isWritable());
+        assertThrows(IOException.class, () -> store.write(envelope()));
+        assertEquals(2, segmentFiles().size());
+        File[] backups = new File(dir, "backup_of_corrupted_data").listFiles();
+        assertEquals(1, backups == null ? 0 : backups.length);
+
+        store.recover();
+        assertTrue(store.isWritable());
+        store.write(envelope("c=1"));
+        assertEquals(List.of("c=1"), paths(newStore().read(corrupted -> {})));
+    }
+
+    @Test
+    public void testSegmentsAreNotWrittenWithoutRead() throws Exception {
+        newStore().write(envelope("a=1", "b=1"));
+
+        // The segments are complete, so a store which did not read them would delete the items missing in memory
+        assertThrows(IOException.class, () -> newStore().write(envelope("a=2")));
+        assertEquals(List.of("a=1", "b=1"), paths(newStore().read(corrupted -> {})));
+    }
+
+    @Test
+    public void testFailedReadMakesStoreNotWritable() throws Exception {
+        newStore().write(envelope("a=1"));
+
+        SegmentedStore store = new SegmentedStore(dir, FILE_NAME, new TestEnvelope() {
+            @Override
+            public protobuf.PersistableEnvelope fromJournalItems(Collection<ByteString> items) {
+                throw new IllegalStateException("Cannot resolve items");
+            }
+        }, null, 2);
+        assertThrows(IllegalStateException.class, () -> store.read(corrupted -> {}));
+        assertFalse(store.isWritable());
+        assertEquals(1, segmentFiles().size());
+    }
+
+    private SegmentedStore newStore() {
+        return new SegmentedStore(dir, FILE_NAME, new TestEnvelope(), null, 2);
+    }
+
+    private File segmentDir() {
+        return new File(dir, FILE_NAME + SegmentedStore.DIR_SUFFIX);
+    }
+
+    private List<File> segmentFiles() {
+        File[] files = segmentDir().listFiles((d, name) -> name.endsWith(".seg"));
+        return files == null ? List.of() : List.of(files);
+    }
+
+    private static protobuf.PersistableEnvelope envelope(String... paths) {
+        return protobuf.PersistableEnvelope.newBuilder()
+                .setNavigationPath(protobuf.NavigationPath.newBuilder().addAllPath(List.of(paths)))
+                .build();
+    }
+
+    private static List<String> paths(protobuf.PersistableEnvelope envelope) {
+        return envelope.getNavigationPath().getPathList();
+    }
+
+    // Items are "key=value" strings
+    private static class TestEnvelope implements JournaledPersistableEnvelope {
+        @Override
+        public LinkedHashMap<String, ByteString> toJournalItems(protobuf.PersistableEnvelope proto) {
+            LinkedHashMap<String, ByteString> items = new LinkedHashMap<>();
+            proto.getNavigationPath().getPathList()
+                    .forEach(path -> items.put(path.split("=")[0], ByteString.copyFrom(path, StandardCharsets.UTF_8)));
+            return items;
+        }
+
+        @Override
+        public protobuf.PersistableEnvelope fromJournalItems(Collection<ByteString> items) {
+            return envelope(items.stream()
+                    .map(item -> item.toString(StandardCharsets.UTF_8))
+                    .collect(Collectors.toList())
+                    .toArray(new String[0]));
+        }
+
+        @Override
+        public Message toProtoMessage() {
+            return envelope();
+        }
+    }
+}
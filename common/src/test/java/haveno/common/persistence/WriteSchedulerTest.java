@@ -0,0 +1,133 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WriteSchedulerTest {
+
+    @Test
+    public void testQueuedWritesOfSameFileAreCoalesced() throws Exception {
+        WriteScheduler scheduler = new WriteScheduler();
+        CountDownLatch firstWriteStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstWrite = new CountDownLatch(1);
+        List<protobuf.PersistableEnvelope> written = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger concurrentWrites = new AtomicInteger();
+        AtomicInteger maxConcurrentWrites = new AtomicInteger();
+        WriteScheduler.Writer writer = (serialized, force) -> {
+            maxConcurrentWrites.accumulateAndGet(concurrentWrites.incrementAndGet(), Math::max);
+            firstWriteStarted.countDown();
+            try {
+                releaseFirstWrite.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            written.add(serialized);
+            concurrentWrites.decrementAndGet();
+            return 1;
+        };
+
+        CountDownLatch completed = new CountDownLatch(4);
+        scheduler.submit("file", PersistenceManager.Source.PRIVATE, writer, envelope(1), false, completed::countDown);
+        assertTrue(firstWriteStarted.await(5, TimeUnit.SECONDS));
+        // The first write is running, the next ones replace each other
+        for (int i = 2; i <= 4; i++) {
+            scheduler.submit("file", PersistenceManager.Source.PRIVATE, writer, envelope(i), false, completed::countDown);
+        }
+        releaseFirstWrite.countDown();
+
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(envelope(1), envelope(4)), written);
+        assertEquals(1, maxConcurrentWrites.get());
+    }
+
+    @Test
+    public void testHighPriorityWriteOvertakesQueuedLowPriorityWrites() throws Exception {
+        WriteScheduler scheduler = new WriteScheduler();
+        CountDownLatch blockingWritesStarted = new CountDownLatch(2);
+        CountDownLatch releaseFirstBlockingWrite = new CountDownLatch(1);
+        CountDownLatch releaseSecondBlockingWrite = new CountDownLatch(1);
+        CountDownLatch secondBlockingWriteCompleted = new CountDownLatch(1);
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+
+        // Both write threads are busy, so the next writes get queued
+        scheduler.submit("blocking1", PersistenceManager.Source.PRIVATE,
+                blockingWriter("blocking1", blockingWritesStarted, releaseFirstBlockingWrite, written), envelope(1), false, null);
+        scheduler.submit("blocking2", PersistenceManager.Source.PRIVATE,
+                blockingWriter("blocking2", blockingWritesStarted, releaseSecondBlockingWrite, written), envelope(1), false,
+                secondBlockingWriteCompleted::countDown);
+        assertTrue(blockingWritesStarted.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch networkWritesCompleted = new CountDownLatch(2);
+        CountDownLatch privateWriteCompleted = new CountDownLatch(1);
+        scheduler.submit("network1", PersistenceManager.Source.NETWORK, writer("network1", written), envelope(1), false, networkWritesCompleted::countDown);
+        scheduler.submit("network2", PersistenceManager.Source.NETWORK, writer("network2", written), envelope(1), false, networkWritesCompleted::countDown);
+        scheduler.submit("private", PersistenceManager.Source.PRIVATE, writer("private", written), envelope(1), false, privateWriteCompleted::countDown);
+
+        // The only free write thread takes the write with the highest priority although it was submitted last
+        releaseFirstBlockingWrite.countDown();
+        assertTrue(privateWriteCompleted.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("blocking1", "private"), written.subList(0, 2));
+
+        releaseSecondBlockingWrite.countDown();
+        assertTrue(networkWritesCompleted.await(5, TimeUnit.SECONDS));
+        assertTrue(secondBlockingWriteCompleted.await(5, TimeUnit.SECONDS));
+        assertEquals(5, written.size());
+    }
+
+    private static WriteScheduler.Writer writer(String fileName, List<String> written) {
+        return (serialized, force) -> {
+            written.add(fileName);
+            return 1;
+        };
+    }
+
+    private static WriteScheduler.Writer blockingWriter(String fileName,
+                                                        CountDownLatch started,
+                                                        CountDownLatch release,
+                                                        List<String> written) {
+        return (serialized, force) -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            written.add(fileName);
+            return 1;
+        };
+    }
+
+    private static protobuf.PersistableEnvelope envelope(int sequenceNumber) {
+        return protobuf.PersistableEnvelope.newBuilder()
+                .setSequenceNumberMap(protobuf.SequenceNumberMap.newBuilder()
+                        .addSequenceNumberEntries(protobuf.SequenceNumberEntry.newBuilder()
+                                .setMapValue(protobuf.MapValue.newBuilder().setSequenceNr(sequenceNumber))))
+                .build();
+    }
+}
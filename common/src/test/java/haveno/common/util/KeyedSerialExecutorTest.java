@@ -0,0 +1,172 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KeyedSerialExecutorTest {
+
+    @Test
+    public void testTasksOfSameKeyRunInOrder() throws Exception {
+        KeyedSerialExecutor executor = new KeyedSerialExecutor("test");
+        List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+        Future<?> last = null;
+        for (int i = 0; i < 1000; i++) {
+            int value = i;
+            last = executor.execute(() -> results.add(value), "key");
+        }
+        last.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1000, results.size());
+        for (int i = 0; i < 1000; i++) assertEquals(i, results.get(i));
+    }
+
+    @Test
+    public void testDifferentKeysRunConcurrently() throws Exception {
+        KeyedSerialExecutor executor = new KeyedSerialExecutor("test");
+        CountDownLatch blocker = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }, "blocked");
+
+        // must complete although the other key is blocked
+        executor.execute(() -> {}, "free").get(5, TimeUnit.SECONDS);
+        // the free key is reclaimed by its carrier after the future completed
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getNumKeys() > 1 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals(1, executor.getNumKeys());
+
+        blocker.countDown();
+        executor.shutDown("blocked", 5000L);
+    }
+
+    @Test
+    public void testIdleKeysAreReclaimed() throws Exception {
+        KeyedSerialExecutor executor = new KeyedSerialExecutor("test");
+        for (int i = 0; i < 100; i++) executor.execute(() -> {}, "key-" + i);
+        for (int i = 0; i < 100; i++) executor.shutDown("key-" + i, 5000L);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getNumKeys() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals(0, executor.getNumKeys());
+        assertEquals(0, executor.getNumQueuedTasks());
+    }
+
+    @Test
+    public void testShutDownTimeoutCancelsQueuedTasks() throws Exception {
+        KeyedSerialExecutor executor = new KeyedSerialExecutor("test");
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException ignored) {
+            }
+        }, "key");
+        Future<?> queued = executor.execute(() -> {}, "key");
+        started.await();
+
+        executor.shutDown("key", 50L);
+        assertTrue(queued.isCancelled());
+    }
+
+    @Test
+    public void testShutDownRejectsNewTasks() throws Exception {
+        KeyedSerialExecutor executor = new KeyedSerialExecutor("test");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch blocker = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }, "key");
+        started.await();
+
+        Thread shutDownThread = new Thread(() -> executor.shutDown("key", null));
+        shutDownThread.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        boolean rejected = false;
+        while (!rejected && System.currentTimeMillis() < deadline) {
+            try {
+                Future<?> future = executor.execute(() -> {}, "key");
+                future.cancel(false);
+                Thread.sleep(10);
+            } catch (RejectedExecutionException e) {
+                rejected = true;
+            }
+        }
+        assertTrue(rejected);
+
+        blocker.countDown();
+        shutDownThread.join(5000);
+        assertFalse(shutDownThread.isAlive());
+        // a new queue is used after the shut down completed
+        executor.execute(() -> {}, "key").get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testThreadNameIsRestored() throws Exception {
+        KeyedSerialExecutor executor = new KeyedSerialExecutor("test");
+        String[] name = new String[1];
+        Thread[] thread = new Thread[1];
+        executor.execute(() -> {
+            thread[0] = Thread.currentThread();
+            name[0] = thread[0].getName();
+        }, "key").get(5, TimeUnit.SECONDS);
+
+        assertEquals("key", name[0]);
+        assertTrue(thread[0].getName().startsWith("test-"));
+    }
+
+    @Test
+    public void testRemoveStartsNewQueue() throws Exception {
+        KeyedSerialExecutor executor = new KeyedSerialExecutor("test");
+        CountDownLatch blocker = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }, "key");
+
+        executor.remove("key");
+        // not blocked by the task of the removed queue
+        executor.execute(() -> {}, "key").get(5, TimeUnit.SECONDS);
+        blocker.countDown();
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.common.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileMs(50));
+
+        for (int i = 0; i < 99; i++) histogram.record(TimeUnit.MICROSECONDS.toNanos(300));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(100));
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(100, histogram.getMaxMs());
+        // Bucket upper bounds are at most a factor 2 above the recorded durations
+        assertEquals(0.512, histogram.getPercentileMs(50));
+        assertEquals(0.512, histogram.getPercentileMs(99));
+        double p100 = histogram.getPercentileMs(100);
+        assertTrue(p100 >= 100 && p100 <= 200, "p100=" + p100);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+}
@@ -53,6 +53,7 @@ import haveno.core.user.User;
 import haveno.network.p2p.BootstrapListener;
 import haveno.network.p2p.P2PService;
 import haveno.network.p2p.storage.P2PDataStorage;
+import haveno.network.p2p.storage.payload.PersistableNetworkPayload;
 import haveno.network.p2p.storage.persistence.AppendOnlyDataStoreService;
 import java.math.BigInteger;
 import java.security.PublicKey;
@@ -138,11 +139,13 @@ public class AccountAgeWitnessService {
     @Getter
     private final AccountAgeWitnessUtils accountAgeWitnessUtils;
 
+    // Witnesses added at runtime. The persisted and historical witnesses are not copied to the heap but looked up in
+    // the accountAgeWitnessStorageService.
     private final Map<P2PDataStorage.ByteArray, AccountAgeWitness> accountAgeWitnessMap = new HashMap<>();
 
-    // The accountAgeWitnessMap is very large (70k items) and access is a bit expensive. We usually only access less
-    // than 100 items, those who have offers online. So we use a cache for a fast lookup and only if
-    // not found there we use the accountAgeWitnessMap and put then the new item into our cache.
+    // A lookup in the accountAgeWitnessStorageService is a bit expensive as the historical witnesses get
+    // deserialized. We usually only access less than 100 items, those who have offers online. So we use a cache for
+    // a fast lookup and only if not found there we look up the witness and put then the new item into our cache.
     private final Map<P2PDataStorage.ByteArray, AccountAgeWitness> accountAgeWitnessCache = new ConcurrentHashMap<>();
 
 
@@ -190,12 +193,6 @@ public class AccountAgeWitnessService {
                 addToMap((AccountAgeWitness) payload);
         });
 
-        // At startup the P2PDataStorage initializes earlier, otherwise we get the listener called.
-        accountAgeWitnessStorageService.getMapOfAllData().values().stream()
-                .filter(e -> e instanceof AccountAgeWitness)
-                .map(e -> (AccountAgeWitness) e)
-                .forEach(this::addToMap);
-
         if (p2PService.isBootstrapped()) {
             onBootStrapped();
         } else {
@@ -256,7 +253,8 @@ public class AccountAgeWitnessService {
                 return;
             }
 
-            if (!accountAgeWitnessMap.containsKey(hash)) {
+            if (!accountAgeWitnessMap.containsKey(hash) &&
+                    !accountAgeWitnessStorageService.getMapOfAllData().containsKey(hash)) {
                 p2PService.addPersistableNetworkPayload(accountAgeWitness, false);
             }
         }
@@ -320,9 +318,16 @@ public class AccountAgeWitnessService {
                 return Optional.of(accountAgeWitnessCache.get(hashAsByteArray));
             }
 
-            if (accountAgeWitnessMap.containsKey(hashAsByteArray)) {
-                AccountAgeWitness accountAgeWitness = accountAgeWitnessMap.get(hashAsByteArray);
-
+            AccountAgeWitness accountAgeWitness = accountAgeWitnessMap.get(hashAsByteArray);
+            if (accountAgeWitness == null) {
+                // The witnesses received at startup by the P2PDataStorage are not passed to our listener, we look them
+                // up in the store
+                PersistableNetworkPayload payload = accountAgeWitnessStorageService.getMapOfAllData().get(hashAsByteArray);
+                if (payload instanceof AccountAgeWitness) {
+                    accountAgeWitness = (AccountAgeWitness) payload;
+                }
+            }
+            if (accountAgeWitness != null) {
                 // We add it to our fast lookup cache
                 accountAgeWitnessCache.put(hashAsByteArray, accountAgeWitness);
 
@@ -70,4 +70,9 @@ public class AccountAgeWitnessStorageService extends HistoricalDataStoreService<
     protected AccountAgeWitnessStore createStore() {
         return new AccountAgeWitnessStore();
     }
+
+    @Override
+    protected PersistableNetworkPayload fromProto(protobuf.PersistableNetworkPayload proto) {
+        return AccountAgeWitness.fromProto(proto.getAccountAgeWitness());
+    }
 }
@@ -27,6 +27,7 @@ import haveno.network.p2p.storage.payload.ExpirablePayload;
 import haveno.network.p2p.storage.payload.ProtectedStoragePayload;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 
@@ -63,6 +64,12 @@ public final class Alert implements ProtectedStoragePayload, ExpirablePayload {
     @Nullable
     private Map<String, String> extraDataMap;
 
+    // cache
+    @Nullable
+    @Setter
+    @ToString.Exclude
+    private transient volatile byte[] hashOfPayload;
+
     public Alert(String message,
                  boolean isUpdateInfo,
                  boolean isPreReleaseInfo,
@@ -144,6 +151,9 @@ public final class Alert implements ProtectedStoragePayload, ExpirablePayload {
         this.ownerPubKey = ownerPubKey;
 
         ownerPubKeyBytes = Sig.getPublicKeyBytes(ownerPubKey);
+
+        // The signature is part of the payload hash
+        hashOfPayload = null;
     }
 
     public boolean isNewVersion(Preferences preferences) {
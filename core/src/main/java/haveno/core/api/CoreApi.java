@@ -42,6 +42,7 @@ import haveno.common.crypto.IncorrectPasswordException;
 import haveno.common.handlers.ErrorMessageHandler;
 import haveno.common.handlers.FaultHandler;
 import haveno.common.handlers.ResultHandler;
+import haveno.common.util.Tuple2;
 import haveno.core.api.model.AddressBalanceInfo;
 import haveno.core.api.model.BalancesInfo;
 import haveno.core.api.model.MarketDepthInfo;
@@ -581,6 +582,16 @@ public class CoreApi {
         return coreTradesService.getTrades();
     }
 
+    public Tuple2<List<Trade>, Integer> getTrades(String currencyCode,
+                                                  long fromDate,
+                                                  long toDate,
+                                                  boolean openOnly,
+                                                  boolean closedOnly,
+                                                  int offset,
+                                                  int limit) {
+        return coreTradesService.getTrades(currencyCode, fromDate, toDate, openOnly, closedOnly, offset, limit);
+    }
+
     public List<ChatMessage> getChatMessages(String tradeId) {
         return coreTradesService.getChatMessages(tradeId);
     }
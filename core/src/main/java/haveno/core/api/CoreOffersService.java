@@ -64,10 +64,10 @@ import haveno.core.util.PriceUtil;
 import static java.lang.String.format;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.util.ArrayList;
 import java.util.Comparator;
 import static java.util.Comparator.comparing;
 import java.util.List;
+import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -116,27 +116,28 @@ public class CoreOffersService {
 
     // excludes my offers
     List<Offer> getOffers() {
-        List<Offer> offers = new ArrayList<>(offerBookService.getOffers()).stream()
-                .filter(o -> !o.isMyOffer(keyRing))
-                .filter(o -> {
-                    Result result = offerFilter.canTakeOffer(o, coreContext.isApiUser());
-                    return result.isValid() || result == Result.HAS_NO_PAYMENT_ACCOUNT_VALID_FOR_OFFER;
-                })
+        List<Offer> offers = offerBookService.getOffers().stream()
+                .filter(this::isAvailableOffer)
                 .collect(Collectors.toList());
         return offers;
     }
 
     List<Offer> getOffers(String direction, String currencyCode) {
-        return getOffers().stream()
+        // use the market of the offer book if both are given, it is already sorted by price
+        List<Offer> offers = direction == null || direction.isEmpty() || currencyCode == null || currencyCode.isEmpty() ?
+                offerBookService.getOffers() :
+                offerBookService.getOffers(currencyCode, OfferDirection.valueOf(direction.toUpperCase()));
+        return offers.stream()
                 .filter(o -> offerMatchesDirectionAndCurrency(o, direction, currencyCode))
+                .filter(this::isAvailableOffer)
                 .sorted(priceComparator(direction))
                 .collect(Collectors.toList());
     }
 
     Offer getOffer(String id) {
-        return getOffers().stream()
-                .filter(o -> o.getId().equals(id))
-                .findAny().orElseThrow(() ->
+        return Optional.ofNullable(offerBookService.getOffer(id))
+                .filter(this::isAvailableOffer)
+                .orElseThrow(() ->
                         new IllegalStateException(format("offer with id '%s' not found", id)));
     }
 
@@ -347,6 +348,13 @@ public class CoreOffersService {
                 errorMessageHandler);
     }
 
+    // excludes my offers and offers we cannot take
+    private boolean isAvailableOffer(Offer offer) {
+        if (offer.isMyOffer(keyRing)) return false;
+        Result result = offerFilter.canTakeOffer(offer, coreContext.isApiUser());
+        return result.isValid() || result == Result.HAS_NO_PAYMENT_ACCOUNT_VALID_FOR_OFFER;
+    }
+
     private boolean offerMatchesDirectionAndCurrency(Offer offer,
                                                      String direction,
                                                      String currencyCode) {
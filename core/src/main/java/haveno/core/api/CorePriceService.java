@@ -46,7 +46,6 @@ import haveno.core.offer.OfferBookService;
 import haveno.core.offer.OfferDirection;
 import haveno.core.provider.price.PriceFeedService;
 import haveno.core.trade.HavenoUtils;
-import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
@@ -97,27 +96,11 @@ class CorePriceService {
      public MarketDepthInfo getMarketDepth(String currencyCode) throws ExecutionException, InterruptedException, TimeoutException, IllegalArgumentException  {
         if (priceFeedService.requestAllPrices().get(currencyCode.toUpperCase()) == null) throw new IllegalArgumentException("Currency not found: " + currencyCode) ;
 
-        // Offer price can be null (if price feed unavailable), thus a null-tolerant comparator is used.
-        Comparator<Offer> offerPriceComparator = Comparator.comparing(Offer::getPrice, Comparator.nullsLast(Comparator.naturalOrder()));
-
-        // Trading xmr-traditional is considered as buying/selling XMR, but trading xmr-crypto is
-        // considered as buying/selling crypto. Because of this, when viewing a xmr-crypto pair,
-        // the buy column is actually the sell column and vice versa. To maintain the expected
-        // ordering, we have to reverse the price comparator.
-        boolean isCrypto = CurrencyUtil.isCryptoCurrency(currencyCode);
-        if (isCrypto) offerPriceComparator = offerPriceComparator.reversed();
-
-        // Offer amounts are used for the secondary sort. They are sorted from high to low.
-        Comparator<Offer> offerAmountComparator = Comparator.comparing(Offer::getAmount).reversed();
-
-        var buyOfferSortComparator =
-                offerPriceComparator.reversed() // Buy offers, as opposed to sell offers, are primarily sorted from high price to low.
-                        .thenComparing(offerAmountComparator);
-        var sellOfferSortComparator =
-                offerPriceComparator
-                        .thenComparing(offerAmountComparator);
-        List<Offer> buyOffers = offerBookService.getOffersByCurrency(OfferDirection.BUY.name(), currencyCode).stream().sorted(buyOfferSortComparator).collect(Collectors.toList());
-        List<Offer> sellOffers = offerBookService.getOffersByCurrency(OfferDirection.SELL.name(), currencyCode).stream().sorted(sellOfferSortComparator).collect(Collectors.toList());
+        // The offer book keeps the offers of each market sorted best price first, then by amount from high to low.
+        // Trading xmr-traditional is considered as buying/selling XMR, but trading xmr-crypto is considered as
+        // buying/selling crypto, so the order is reversed for crypto markets.
+        List<Offer> buyOffers = offerBookService.getOffers(currencyCode, OfferDirection.BUY);
+        List<Offer> sellOffers = offerBookService.getOffers(currencyCode, OfferDirection.SELL);
 
         // Create buyer hashmap {key:price, value:count}, uses LinkedHashMap to maintain insertion order
         double accumulatedAmount = 0;
@@ -34,10 +34,12 @@
 
 package haveno.core.api;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import haveno.common.handlers.ErrorMessageHandler;
 import haveno.common.handlers.ResultHandler;
+import haveno.common.util.Tuple2;
 import haveno.core.offer.Offer;
 import haveno.core.offer.OfferDirection;
 import haveno.core.offer.OfferUtil;
@@ -47,6 +49,7 @@ import haveno.core.support.messages.ChatMessage;
 import haveno.core.support.traderchat.TradeChatSession;
 import haveno.core.support.traderchat.TraderChatManager;
 import haveno.core.trade.ClosedTradableManager;
+import haveno.core.trade.ClosedTradeSummary;
 import haveno.core.trade.Trade;
 import haveno.core.trade.TradeManager;
 import haveno.core.trade.TradeUtil;
@@ -60,7 +63,11 @@ import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiPredicate;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -215,8 +222,9 @@ class CoreTradesService {
         return tradeManager.getOpenTrade(tradeId);
     }
 
+    // An archived trade is loaded on the archive thread, the API calls are not run on the UserThread
     private Optional<Trade> getClosedTrade(String tradeId) {
-        return closedTradableManager.getTradeById(tradeId);
+        return closedTradableManager.loadTradeById(tradeId).join();
     }
 
     List<Trade> getTrades() {
@@ -227,6 +235,79 @@ class CoreTradesService {
         return trades;
     }
 
+    /**
+     * Returns a page of the open and closed trades matching the filter. The trades are ordered like by getTrades,
+     * with the archived closed trades before the other closed trades. Only the archived trades of the page are
+     * loaded from disk, so archived trades are only included if a limit is given.
+     *
+     * @param currencyCode the currency code of the trades or empty for all currencies
+     * @param fromDate     the min. trade date in ms or 0
+     * @param toDate       the trade date in ms the trades must be older than or 0
+     * @param openOnly     true for open trades only
+     * @param closedOnly   true for closed trades only
+     * @param offset       the number of matching trades to skip
+     * @param limit        the max. number of trades to return or 0 for all trades which are not archived
+     * @return the trades of the page and the number of all matching trades
+     */
+    Tuple2<List<Trade>, Integer> getTrades(String currencyCode,
+                                           long fromDate,
+                                           long toDate,
+                                           boolean openOnly,
+                                           boolean closedOnly,
+                                           int offset,
+                                           int limit) {
+        coreWalletsService.verifyWalletsAreAvailable();
+        coreWalletsService.verifyEncryptedWalletIsUnlocked();
+        if (openOnly && closedOnly)
+            throw new IllegalArgumentException("open only and closed only cannot be combined");
+        if (offset < 0 || limit < 0)
+            throw new IllegalArgumentException("offset and limit must not be negative");
+
+        BiPredicate<String, Long> filter = (tradeCurrencyCode, date) ->
+                (currencyCode.isEmpty() || currencyCode.equalsIgnoreCase(tradeCurrencyCode)) &&
+                        (fromDate == 0 || date >= fromDate) &&
+                        (toDate == 0 || date < toDate);
+
+        // Either a Trade or the ClosedTradeSummary of an archived trade
+        List<Object> matches = new ArrayList<>();
+        if (!closedOnly) {
+            tradeManager.getOpenTrades().stream()
+                    .filter(trade -> filter.test(trade.getOffer().getCurrencyCode(), getDate(trade)))
+                    .forEach(matches::add);
+        }
+        if (!openOnly) {
+            List<Trade> closedTrades = closedTradableManager.getClosedTrades();
+            if (limit > 0) {
+                // A trade is contained in both if the app stopped after archiving it but before it got removed from
+                // the closed trades
+                Set<String> closedTradeIds = closedTrades.stream()
+                        .map(Trade::getId)
+                        .collect(Collectors.toSet());
+                closedTradableManager.getArchivedSummaries().stream()
+                        .filter(ClosedTradeSummary::isTrade)
+                        .filter(summary -> !closedTradeIds.contains(summary.getId()))
+                        .filter(summary -> filter.test(summary.getCurrencyCode(), summary.getDate()))
+                        .forEach(matches::add);
+            }
+            closedTrades.stream()
+                    .filter(trade -> filter.test(trade.getOffer().getCurrencyCode(), getDate(trade)))
+                    .forEach(matches::add);
+        }
+
+        // The archived trades of the page are loaded on the archive thread
+        List<CompletableFuture<Optional<Trade>>> loads = getPage(matches, offset, limit).stream()
+                .map(match -> match instanceof Trade ?
+                        CompletableFuture.completedFuture(Optional.of((Trade) match)) :
+                        closedTradableManager.loadArchivedTradable((ClosedTradeSummary) match)
+                                .thenApply(tradable -> tradable.map(e -> (Trade) e)))
+                .collect(Collectors.toList());
+        List<Trade> trades = loads.stream()
+                .map(CompletableFuture::join)
+                .flatMap(Optional::stream)
+                .collect(Collectors.toList());
+        return new Tuple2<>(trades, matches.size());
+    }
+
     List<ChatMessage> getChatMessages(String tradeId) {
         Trade trade;
         var tradeOptional = tradeManager.getOpenTrade(tradeId);
@@ -255,6 +336,18 @@ class CoreTradesService {
         traderChatManager.sendChatMessage(chatMessage);
     }
 
+    // Returns the items after offset, at most limit items or all if limit is 0
+    @VisibleForTesting
+    static <T> List<T> getPage(List<T> items, int offset, int limit) {
+        int fromIndex = Math.min(offset, items.size());
+        int toIndex = limit == 0 ? items.size() : (int) Math.min((long) fromIndex + limit, items.size());
+        return items.subList(fromIndex, toIndex);
+    }
+
+    private static long getDate(Trade trade) {
+        return trade.getDate() != null ? trade.getDate().getTime() : 0;
+    }
+
     private boolean isFollowingBuyerProtocol(Trade trade) {
         return tradeManager.getTradeProtocol(trade) instanceof BuyerProtocol;
     }
@@ -45,6 +45,7 @@ import haveno.common.config.ConfigException;
 import haveno.common.config.HavenoHelpFormatter;
 import haveno.common.crypto.IncorrectPasswordException;
 import haveno.common.handlers.ResultHandler;
+import haveno.common.persistence.PersistedDataLoader;
 import haveno.common.persistence.PersistenceManager;
 import haveno.common.proto.persistable.PersistedDataHost;
 import haveno.common.setup.CommonSetup;
@@ -115,7 +116,7 @@ public abstract class HavenoExecutable implements GracefulShutDownHandler, Haven
 
     public int execute(String[] args) {
         try {
-            config = new Config(appName, Utilities.getUserDataDir(), args);
+            config = new Config(appName, Utilities.getUserDataDir(), useVirtualThreadsForP2PByDefault(), args);
             if (config.helpRequested) {
                 config.printHelp(System.out, new HavenoHelpFormatter(fullName, scriptName, version));
                 System.exit(EXIT_SUCCESS);
@@ -152,6 +153,11 @@ public abstract class HavenoExecutable implements GracefulShutDownHandler, Haven
 
     protected abstract void configUserThread();
 
+    // Default of the useVirtualThreadsForP2P option if it is not set at the command line or in the config file
+    protected boolean useVirtualThreadsForP2PByDefault() {
+        return false;
+    }
+
     protected void addCapabilities() {
     }
 
@@ -286,14 +292,8 @@ public abstract class HavenoExecutable implements GracefulShutDownHandler, Haven
             hosts.addAll(additionalHosts);
         }
 
-        AtomicInteger remaining = new AtomicInteger(hosts.size());
-        hosts.forEach(host -> {
-            host.readPersisted(() -> {
-                if (remaining.decrementAndGet() == 0) {
-                    UserThread.execute(completeHandler);
-                }
-            });
-        });
+        // The hosts are listed in the order their data has to be applied, the files are read concurrently
+        new PersistedDataLoader().load(hosts, completeHandler);
     }
 
     protected void setupAvoidStandbyMode() {
@@ -18,6 +18,7 @@
 package haveno.core.app;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import haveno.common.TimingWheelTimer;
 import haveno.common.UserThread;
 import haveno.common.app.AppModule;
 import haveno.common.app.Version;
@@ -62,6 +63,7 @@ public class HavenoHeadlessAppMain extends HavenoExecutable {
                 .setDaemon(true)
                 .build();
         UserThread.setExecutor(Executors.newSingleThreadExecutor(threadFactory));
+        UserThread.setTimerClass(TimingWheelTimer.class);
     }
 
     @Override
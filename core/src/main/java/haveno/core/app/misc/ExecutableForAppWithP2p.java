@@ -37,6 +37,7 @@ package haveno.core.app.misc;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import haveno.common.ThreadUtils;
+import haveno.common.TimingWheelTimer;
 import haveno.common.UserThread;
 import haveno.common.app.DevEnv;
 import haveno.common.config.Config;
@@ -93,6 +94,7 @@ public abstract class ExecutableForAppWithP2p extends HavenoExecutable {
                 .setDaemon(true)
                 .build();
         UserThread.setExecutor(Executors.newSingleThreadExecutor(threadFactory));
+        UserThread.setTimerClass(TimingWheelTimer.class);
     }
 
     @Override
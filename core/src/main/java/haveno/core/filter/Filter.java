@@ -26,7 +26,9 @@ import haveno.common.util.ExtraDataMapValidator;
 import haveno.common.util.Utilities;
 import haveno.network.p2p.storage.payload.ExpirablePayload;
 import haveno.network.p2p.storage.payload.ProtectedStoragePayload;
+import lombok.Setter;
 import lombok.Value;
+import lombok.experimental.NonFinal;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.annotation.Nullable;
@@ -83,6 +85,12 @@ public final class Filter implements ProtectedStoragePayload, ExpirablePayload {
 
     private transient PublicKey ownerPubKey;
 
+    // cache
+    @Nullable
+    @NonFinal
+    @Setter
+    private transient volatile byte[] hashOfPayload;
+
     // added at v1.3.8
     private final boolean disableAutoConf;
 
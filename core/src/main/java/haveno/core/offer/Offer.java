@@ -101,7 +101,6 @@ public class Offer implements NetworkPayload, PersistablePayload {
     final transient private StringProperty errorMessageProperty = new SimpleStringProperty();
     @JsonExclude
     @Nullable
-    @Setter
     transient private PriceFeedService priceFeedService;
 
     // Used only as cache
@@ -109,6 +108,11 @@ public class Offer implements NetworkPayload, PersistablePayload {
     @JsonExclude
     transient private String currencyCode;
 
+    // Cache of the price, valid until the market price of the currency changes or gets outdated
+    @Nullable
+    @JsonExclude
+    transient private volatile CachedPrice cachedPrice;
+
     @JsonExclude
     @Getter
     @Setter
@@ -171,15 +175,44 @@ public class Offer implements NetworkPayload, PersistablePayload {
             availabilityProtocol.cancel();
     }
 
+    /**
+     * Returns the price of the offer. The price of a market based offer is derived from the market price and cached
+     * until the market price of the currency changes, see PriceFeedService.getPriceVersion, so comparators can call
+     * it repeatedly without recomputing it.
+     */
     @Nullable
     public Price getPrice() {
-        String currencyCode = getCurrencyCode();
         if (!offerPayload.isUseMarketBasedPrice()) {
-            return Price.valueOf(currencyCode, offerPayload.getPrice());
+            CachedPrice cached = cachedPrice;
+            if (cached == null) {
+                cached = new CachedPrice(0, Long.MAX_VALUE, Price.valueOf(getCurrencyCode(), offerPayload.getPrice()));
+                cachedPrice = cached;
+            }
+            return cached.price;
         }
 
         checkNotNull(priceFeedService, "priceFeed must not be null");
+        String currencyCode = getCurrencyCode();
+        // The version is read before the market price, so a concurrent update makes the cache outdated but never
+        // leaves an outdated price with the new version
+        long priceVersion = priceFeedService.getPriceVersion(currencyCode);
+        CachedPrice cached = cachedPrice;
+        if (cached != null && cached.priceVersion == priceVersion && System.currentTimeMillis() < cached.validUntilMs) {
+            return cached.price;
+        }
+
         MarketPrice marketPrice = priceFeedService.getMarketPrice(currencyCode);
+        Price price = getMarketBasedPrice(marketPrice);
+        long validUntilMs = price == null ?
+                Long.MAX_VALUE :
+                (marketPrice.getTimestampSec() + MarketPrice.MARKET_PRICE_MAX_AGE_SEC) * 1000;
+        cachedPrice = new CachedPrice(priceVersion, validUntilMs, price);
+        return price;
+    }
+
+    @Nullable
+    private Price getMarketBasedPrice(@Nullable MarketPrice marketPrice) {
+        String currencyCode = getCurrencyCode();
         if (marketPrice != null && marketPrice.isRecentExternalPriceAvailable()) {
             double factor;
             double marketPriceMargin = offerPayload.getMarketPriceMarginPct();
@@ -211,6 +244,11 @@ public class Offer implements NetworkPayload, PersistablePayload {
         }
     }
 
+    public void setPriceFeedService(@Nullable PriceFeedService priceFeedService) {
+        this.priceFeedService = priceFeedService;
+        cachedPrice = null;
+    }
+
     public long getFixedPrice() {
         return offerPayload.getPrice();
     }
@@ -642,4 +680,17 @@ public class Offer implements NetworkPayload, PersistablePayload {
                 ", offerPayload=" + offerPayload +
                 '}';
     }
+
+    private static final class CachedPrice {
+        private final long priceVersion;
+        private final long validUntilMs;
+        @Nullable
+        private final Price price;
+
+        private CachedPrice(long priceVersion, long validUntilMs, @Nullable Price price) {
+            this.priceVersion = priceVersion;
+            this.validUntilMs = validUntilMs;
+            this.price = price;
+        }
+    }
 }
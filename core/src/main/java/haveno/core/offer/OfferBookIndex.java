@@ -0,0 +1,286 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.core.offer;
+
+import haveno.core.locale.CurrencyUtil;
+import haveno.core.monetary.Price;
+
+import javax.annotation.Nullable;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+/**
+ * Order book of the valid offers: indexed by offer id and by reserve tx key image, and per market (currency code and
+ * direction) sorted best price first, like the market depth.
+ * <p>
+ * The markets are sorted by a snapshot of the offer prices, so a price change can never corrupt the order. Prices of
+ * market based offers change with the market price of their currency, so a market with market based offers is
+ * re-sorted lazily on the next access after the price version of its currency changed. As the market is almost
+ * sorted at that point, this is close to linear.
+ * <p>
+ * Not thread safe, the caller has to synchronize on the index.
+ */
+final class OfferBookIndex {
+
+    private final Map<String, Offer> offersById = new LinkedHashMap<>();
+    private final Map<String, Set<String>> offerIdsByKeyImage = new HashMap<>();
+    private final Map<MarketKey, Market> markets = new HashMap<>();
+    // Provides the version of the market price per currency code, see PriceFeedService.getPriceVersion
+    private final ToLongFunction<String> priceVersionProvider;
+
+    OfferBookIndex(ToLongFunction<String> priceVersionProvider) {
+        this.priceVersionProvider = priceVersionProvider;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Adds the offer or replaces the offer with the same id.
+     */
+    void put(Offer offer) {
+        remove(offer.getId());
+        offersById.put(offer.getId(), offer);
+        for (String keyImage : getKeyImages(offer)) {
+            offerIdsByKeyImage.computeIfAbsent(keyImage, k -> new HashSet<>()).add(offer.getId());
+        }
+        markets.computeIfAbsent(new MarketKey(offer), Market::new).add(offer, getPriceVersion(offer.getCurrencyCode()));
+    }
+
+    @Nullable
+    Offer remove(String offerId) {
+        Offer offer = offersById.remove(offerId);
+        if (offer == null) return null;
+
+        for (String keyImage : getKeyImages(offer)) {
+            Set<String> offerIds = offerIdsByKeyImage.get(keyImage);
+            if (offerIds == null) continue;
+            offerIds.remove(offerId);
+            if (offerIds.isEmpty()) offerIdsByKeyImage.remove(keyImage);
+        }
+        MarketKey marketKey = new MarketKey(offer);
+        Market market = markets.get(marketKey);
+        if (market != null) {
+            market.remove(offer);
+            if (market.isEmpty()) markets.remove(marketKey);
+        }
+        return offer;
+    }
+
+    boolean contains(String offerId) {
+        return offersById.containsKey(offerId);
+    }
+
+    @Nullable
+    Offer get(String offerId) {
+        return offersById.get(offerId);
+    }
+
+    int size() {
+        return offersById.size();
+    }
+
+    Collection<Offer> getOffers() {
+        return Collections.unmodifiableCollection(offersById.values());
+    }
+
+    /**
+     * @return the offers of the market sorted best price first, then by amount from high to low
+     */
+    List<Offer> getOffers(String currencyCode, OfferDirection direction) {
+        Market market = markets.get(new MarketKey(currencyCode, direction));
+        return market == null ? Collections.emptyList() : market.getOffers(getPriceVersion(currencyCode));
+    }
+
+    @Nullable
+    Offer getBestOffer(String currencyCode, OfferDirection direction) {
+        Market market = markets.get(new MarketKey(currencyCode, direction));
+        return market == null ? null : market.getBestOffer(getPriceVersion(currencyCode));
+    }
+
+    /**
+     * @return the offers which reserved any of the given key images
+     */
+    List<Offer> getOffersByKeyImages(Collection<String> keyImages) {
+        Set<String> offerIds = new LinkedHashSet<>();
+        for (String keyImage : keyImages) {
+            Set<String> ids = offerIdsByKeyImage.get(keyImage);
+            if (ids != null) offerIds.addAll(ids);
+        }
+        List<Offer> offers = new ArrayList<>(offerIds.size());
+        for (String offerId : offerIds) offers.add(offersById.get(offerId));
+        return offers;
+    }
+
+    boolean isKeyImageReservedByOtherOffer(String keyImage, String offerId) {
+        Set<String> offerIds = offerIdsByKeyImage.get(keyImage);
+        return offerIds != null && (offerIds.size() > 1 || !offerIds.contains(offerId));
+    }
+
+    private long getPriceVersion(String currencyCode) {
+        return priceVersionProvider.applyAsLong(currencyCode);
+    }
+
+    static List<String> getKeyImages(Offer offer) {
+        List<String> keyImages = offer.getOfferPayload().getReserveTxKeyImages();
+        return keyImages == null ? Collections.emptyList() : keyImages;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Static classes
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class MarketKey {
+        private final String currencyCode;
+        private final OfferDirection direction;
+
+        private MarketKey(Offer offer) {
+            this(offer.getCurrencyCode(), offer.getDirection());
+        }
+
+        private MarketKey(String currencyCode, OfferDirection direction) {
+            this.currencyCode = currencyCode.toUpperCase();
+            this.direction = direction;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof MarketKey)) return false;
+            MarketKey that = (MarketKey) o;
+            return currencyCode.equals(that.currencyCode) && direction == that.direction;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * currencyCode.hashCode() + direction.hashCode();
+        }
+    }
+
+    // An offer with the price and amount it is sorted by
+    private static final class Entry {
+        private final Offer offer;
+        private final BigInteger amount;
+        private long priceValue;
+        private boolean hasPrice;
+
+        private Entry(Offer offer) {
+            this.offer = offer;
+            amount = offer.getAmount();
+            updatePrice();
+        }
+
+        private void updatePrice() {
+            Price price = offer.getPrice();
+            hasPrice = price != null;
+            priceValue = hasPrice ? price.getValue() : 0;
+        }
+    }
+
+    private static final class Market {
+        private final List<Entry> entries = new ArrayList<>();
+        private final Map<String, Entry> entriesByOfferId = new HashMap<>();
+        private final Comparator<Entry> comparator;
+        private int numMarketBasedOffers;
+        // Price version of the currency the entries got sorted with
+        private long priceVersion;
+
+        private Market(MarketKey key) {
+            // Trading xmr-traditional is considered as buying/selling XMR, but trading xmr-crypto is considered as
+            // buying/selling crypto, so the best price of a crypto market is on the opposite side, see
+            // CorePriceService.getMarketDepth
+            boolean highestPriceFirst = (key.direction == OfferDirection.BUY) != CurrencyUtil.isCryptoCurrency(key.currencyCode);
+            Comparator<Entry> priceComparator = Comparator.comparingLong(entry -> entry.priceValue);
+            if (highestPriceFirst) priceComparator = priceComparator.reversed();
+            // Offers without price are last, equal prices are sorted by amount from high to low
+            comparator = Comparator.<Entry, Boolean>comparing(entry -> !entry.hasPrice)
+                    .thenComparing(priceComparator)
+                    .thenComparing((Entry entry) -> entry.amount, Comparator.nullsLast(Comparator.<BigInteger>reverseOrder()));
+        }
+
+        private void add(Offer offer, long currentPriceVersion) {
+            sortIfOutdated(currentPriceVersion);
+            Entry entry = new Entry(offer);
+            if (offer.isUseMarketBasedPrice()) numMarketBasedOffers++;
+            entriesByOfferId.put(offer.getId(), entry);
+            int index = Collections.binarySearch(entries, entry, comparator);
+            entries.add(index < 0 ? -index - 1 : index, entry);
+        }
+
+        private void remove(Offer offer) {
+            Entry entry = entriesByOfferId.remove(offer.getId());
+            if (entry == null) return;
+
+            entries.remove(indexOf(entry));
+            if (entry.offer.isUseMarketBasedPrice()) numMarketBasedOffers--;
+        }
+
+        // The entries keep the snapshot they are sorted by, so the entry is found by a binary search on its sort key
+        // and then among the entries with an equal sort key
+        private int indexOf(Entry entry) {
+            int index = Collections.binarySearch(entries, entry, comparator);
+            if (index < 0) throw new IllegalStateException("Entry of offer " + entry.offer.getId() + " is not sorted");
+            for (int i = index; i >= 0 && comparator.compare(entries.get(i), entry) == 0; i--) {
+                if (entries.get(i) == entry) return i;
+            }
+            for (int i = index + 1; i < entries.size() && comparator.compare(entries.get(i), entry) == 0; i++) {
+                if (entries.get(i) == entry) return i;
+            }
+            throw new IllegalStateException("Entry of offer " + entry.offer.getId() + " is not sorted");
+        }
+
+        private boolean isEmpty() {
+            return entries.isEmpty();
+        }
+
+        private List<Offer> getOffers(long currentPriceVersion) {
+            sortIfOutdated(currentPriceVersion);
+            List<Offer> offers = new ArrayList<>(entries.size());
+            for (Entry entry : entries) offers.add(entry.offer);
+            return offers;
+        }
+
+        @Nullable
+        private Offer getBestOffer(long currentPriceVersion) {
+            sortIfOutdated(currentPriceVersion);
+            return entries.isEmpty() ? null : entries.get(0).offer;
+        }
+
+        private void sortIfOutdated(long currentPriceVersion) {
+            if (priceVersion == currentPriceVersion) return;
+            priceVersion = currentPriceVersion;
+            if (numMarketBasedOffers == 0) return;
+            for (Entry entry : entries) entry.updatePrice();
+            entries.sort(comparator);
+        }
+    }
+}
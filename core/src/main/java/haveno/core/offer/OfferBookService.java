@@ -69,6 +69,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import monero.daemon.model.MoneroKeyImageSpentStatus;
@@ -80,6 +81,7 @@ import monero.daemon.model.MoneroKeyImageSpentStatus;
 public class OfferBookService {
 
     private final static long INVALID_OFFERS_TIMEOUT = 5 * 60 * 1000; // 5 minutes
+    private final static long DUMP_STATISTICS_DELAY_SEC = 10;
 
     private final P2PService p2PService;
     private final PriceFeedService priceFeedService;
@@ -87,9 +89,10 @@ public class OfferBookService {
     private final FilterManager filterManager;
     private final JsonFileManager jsonFileManager;
     private final XmrConnectionService xmrConnectionService;
-    private final List<Offer> validOffers = new ArrayList<Offer>();
+    private final OfferBookIndex validOffers;
     private final List<Offer> invalidOffers = new ArrayList<Offer>();
     private final Map<String, Timer> invalidOfferTimers = new HashMap<>();
+    private final AtomicBoolean dumpStatisticsScheduled = new AtomicBoolean();
 
     public interface OfferBookChangedListener {
         void onAdded(Offer offer);
@@ -111,6 +114,7 @@ public class OfferBookService {
         this.priceFeedService = priceFeedService;
         this.filterManager = filterManager;
         this.xmrConnectionService = xmrConnectionService;
+        validOffers = new OfferBookIndex(priceFeedService::getPriceVersion);
         jsonFileManager = new JsonFileManager(storageDir);
 
         // listen for offers
@@ -176,12 +180,12 @@ public class OfferBookService {
                     addOfferBookChangedListener(new OfferBookChangedListener() {
                         @Override
                         public void onAdded(Offer offer) {
-                            doDumpStatistics();
+                            scheduleDumpStatistics();
                         }
 
                         @Override
                         public void onRemoved(Offer offer) {
-                            doDumpStatistics();
+                            scheduleDumpStatistics();
                         }
                     });
                     UserThread.runAfter(OfferBookService.this::doDumpStatistics, 1);
@@ -265,14 +269,35 @@ public class OfferBookService {
 
     public List<Offer> getOffers() {
         synchronized (validOffers) {
-            return new ArrayList<>(validOffers);
+            return new ArrayList<>(validOffers.getOffers());
+        }
+    }
+
+    /**
+     * @return the offers of the market sorted best price first, then by amount from high to low
+     */
+    public List<Offer> getOffers(String currencyCode, OfferDirection direction) {
+        synchronized (validOffers) {
+            return validOffers.getOffers(currencyCode, direction);
         }
     }
 
     public List<Offer> getOffersByCurrency(String direction, String currencyCode) {
-        return getOffers().stream()
-                .filter(o -> o.getOfferPayload().getBaseCurrencyCode().equalsIgnoreCase(currencyCode) && o.getDirection().name() == direction)
-                .collect(Collectors.toList());
+        return getOffers(currencyCode, OfferDirection.valueOf(direction.toUpperCase()));
+    }
+
+    @Nullable
+    public Offer getBestOffer(String currencyCode, OfferDirection direction) {
+        synchronized (validOffers) {
+            return validOffers.getBestOffer(currencyCode, direction);
+        }
+    }
+
+    @Nullable
+    public Offer getOffer(String offerId) {
+        synchronized (validOffers) {
+            return validOffers.get(offerId);
+        }
     }
 
     public void removeOfferAtShutDown(OfferPayload offerPayload) {
@@ -315,18 +340,14 @@ public class OfferBookService {
     }
 
     private boolean hasValidOffer(String offerId) {
-        for (Offer offer : getOffers()) {
-            if (offer.getId().equals(offerId)) {
-                return true;
-            }
+        synchronized (validOffers) {
+            return validOffers.contains(offerId);
         }
-        return false;
     }
     
     private void replaceValidOffer(Offer offer) {
         synchronized (validOffers) {
-            removeValidOffer(offer.getId());
-            validOffers.add(offer);
+            validOffers.put(offer);
         }
     }
 
@@ -349,7 +370,7 @@ public class OfferBookService {
 
     private void removeValidOffer(String offerId) {
         synchronized (validOffers) {
-            validOffers.removeIf(offer -> offer.getId().equals(offerId));
+            validOffers.remove(offerId);
         }
     }
 
@@ -382,7 +403,12 @@ public class OfferBookService {
         // validate against existing offers
         synchronized (validOffers) {
             int numOffersWithSharedKeyImages = 0;
-            for (Offer offer : validOffers) {
+            // only offers sharing a key image can conflict
+            List<String> keyImages = offerPayload.getReserveTxKeyImages();
+            Collection<Offer> candidates = keyImages == null || keyImages.isEmpty() ?
+                    validOffers.getOffers() :
+                    validOffers.getOffersByKeyImages(keyImages);
+            for (Offer offer : candidates) {
 
                 // validate that no offer has overlapping but different key images
                 if (!offer.getOfferPayload().getReserveTxKeyImages().equals(offerPayload.getReserveTxKeyImages()) && 
@@ -411,24 +437,23 @@ public class OfferBookService {
     private void removeKeyImages(Offer offer) {
         Set<String> unsharedKeyImages = new HashSet<>(offer.getOfferPayload().getReserveTxKeyImages());
         synchronized (validOffers) {
-            for (Offer validOffer : validOffers) {
-                if (validOffer.getId().equals(offer.getId())) continue;
-                unsharedKeyImages.removeAll(validOffer.getOfferPayload().getReserveTxKeyImages());
-            }
+            unsharedKeyImages.removeIf(keyImage -> validOffers.isKeyImageReservedByOtherOffer(keyImage, offer.getId()));
         }
         xmrConnectionService.getKeyImagePoller().removeKeyImages(unsharedKeyImages, OfferBookService.class.getSimpleName());
     }
     
     private void updateAffectedOffers(String keyImage) {
-        for (Offer offer : getOffers()) {
-            if (offer.getOfferPayload().getReserveTxKeyImages().contains(keyImage)) {
-                updateReservedFundsSpentStatus(offer);
-                synchronized (offerBookChangedListeners) {
-                    offerBookChangedListeners.forEach(listener -> {
-                        listener.onRemoved(offer);
-                        listener.onAdded(offer);
-                    });
-                }
+        List<Offer> affectedOffers;
+        synchronized (validOffers) {
+            affectedOffers = validOffers.getOffersByKeyImages(Collections.singletonList(keyImage));
+        }
+        for (Offer offer : affectedOffers) {
+            updateReservedFundsSpentStatus(offer);
+            synchronized (offerBookChangedListeners) {
+                offerBookChangedListeners.forEach(listener -> {
+                    listener.onRemoved(offer);
+                    listener.onAdded(offer);
+                });
             }
         }
     }
@@ -441,6 +466,16 @@ public class OfferBookService {
         }
     }
 
+    // Offer changes usually come in bursts, so we write the file at most once per DUMP_STATISTICS_DELAY_SEC
+    private void scheduleDumpStatistics() {
+        if (dumpStatisticsScheduled.compareAndSet(false, true)) {
+            UserThread.runAfter(() -> {
+                dumpStatisticsScheduled.set(false);
+                doDumpStatistics();
+            }, DUMP_STATISTICS_DELAY_SEC);
+        }
+    }
+
     private void doDumpStatistics() {
         // We filter the case that it is a MarketBasedPrice but the price is not available
         // That should only be possible if the price feed provider is not available
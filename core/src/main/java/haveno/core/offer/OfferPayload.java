@@ -51,7 +51,7 @@ import java.util.concurrent.TimeUnit;
 
 // OfferPayload has about 1.4 kb. We should look into options to make it smaller but will be hard to do it in a
 // backward compatible way. Maybe a candidate when segwit activation is done as hardfork?
-@EqualsAndHashCode(exclude = {"hash"})
+@EqualsAndHashCode(exclude = {"hash", "hashOfPayload"})
 @Getter
 @Slf4j
 public final class OfferPayload implements ProtectedStoragePayload, ExpirablePayload, RequiresOwnerIsOnlinePayload {
@@ -77,17 +77,18 @@ public final class OfferPayload implements ProtectedStoragePayload, ExpirablePay
     protected final PubKeyRing pubKeyRing;
     // cache
     protected transient byte[] hash;
+    // cache of the hash used as key in the P2PDataStorage, cleared by the setters of the mutable fields below
+    @Nullable
+    @Setter
+    protected transient volatile byte[] hashOfPayload;
     @Nullable
     protected final Map<String, String> extraDataMap;
 
     // address and signature of signing arbitrator
-    @Setter
     @Nullable
     protected NodeAddress arbitratorSigner;
-    @Setter
     @Nullable
     protected byte[] arbitratorSignature;
-    @Setter
     @Nullable
     protected List<String> reserveTxKeyImages;
 
@@ -246,6 +247,21 @@ public final class OfferPayload implements ProtectedStoragePayload, ExpirablePay
         this.extraInfo = extraInfo;
     }
 
+    public void setArbitratorSigner(@Nullable NodeAddress arbitratorSigner) {
+        this.arbitratorSigner = arbitratorSigner;
+        hashOfPayload = null;
+    }
+
+    public void setArbitratorSignature(@Nullable byte[] arbitratorSignature) {
+        this.arbitratorSignature = arbitratorSignature;
+        hashOfPayload = null;
+    }
+
+    public void setReserveTxKeyImages(@Nullable List<String> reserveTxKeyImages) {
+        this.reserveTxKeyImages = reserveTxKeyImages;
+        hashOfPayload = null;
+    }
+
     public byte[] getHash() {
         if (this.hash == null) {
             this.hash = Hash.getSha256Hash(this.toProtoMessage().toByteArray());
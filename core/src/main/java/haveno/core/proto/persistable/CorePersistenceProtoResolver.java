@@ -33,6 +33,7 @@ import haveno.core.proto.CoreProtoResolver;
 import haveno.core.support.dispute.arbitration.ArbitrationDisputeList;
 import haveno.core.support.dispute.mediation.MediationDisputeList;
 import haveno.core.support.dispute.refund.RefundDisputeList;
+import haveno.core.trade.ClosedTradesArchive;
 import haveno.core.trade.TradableList;
 import haveno.core.trade.statistics.TradeStatistics3Store;
 import haveno.core.user.PreferencesPayload;
@@ -84,6 +85,8 @@ public class CorePersistenceProtoResolver extends CoreProtoResolver implements P
                     return EncryptedConnectionList.fromProto(proto.getEncryptedConnectionList());
                 case TRADABLE_LIST:
                     return TradableList.fromProto(proto.getTradableList(), this, xmrWalletService.get());
+                case CLOSED_TRADES_ARCHIVE:
+                    return ClosedTradesArchive.fromProto(proto.getClosedTradesArchive());
                 case ARBITRATION_DISPUTE_LIST:
                     return ArbitrationDisputeList.fromProto(proto.getArbitrationDisputeList(), this);
                 case MEDIATION_DISPUTE_LIST:
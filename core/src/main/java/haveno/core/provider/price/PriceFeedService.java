@@ -56,9 +56,11 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -72,6 +74,8 @@ public class PriceFeedService {
     private static final long PERIOD_SEC = 60;
 
     private final Map<String, MarketPrice> cache = new HashMap<>();
+    // Incremented per currency if its market price changed, so derived prices can be cached until then
+    private final Map<String, AtomicLong> priceVersions = new ConcurrentHashMap<>();
     private PriceProvider priceProvider;
     @Nullable
     private Consumer<Double> priceConsumer;
@@ -301,7 +305,7 @@ public class PriceFeedService {
             String currencyCodeBase = CurrencyUtil.getCurrencyCodeBase(currencyCode);
             synchronized (cache) {
                 if (!cache.containsKey(currencyCodeBase) || !cache.get(currencyCodeBase).isExternallyProvidedPrice()) {
-                    cache.put(currencyCodeBase, new MarketPrice(currencyCodeBase,
+                    putMarketPrice(currencyCodeBase, new MarketPrice(currencyCodeBase,
                             MathUtils.scaleDownByPowerOf10(price.getValue(), CurrencyUtil.isCryptoCurrency(currencyCode) ? CryptoMoney.SMALLEST_UNIT_EXPONENT : TraditionalMoney.SMALLEST_UNIT_EXPONENT),
                             0,
                             false));
@@ -342,6 +346,18 @@ public class PriceFeedService {
         return updateCounter;
     }
 
+    /**
+     * Returns the version of the market price of the given currency, which changes whenever the market price of
+     * the currency changes. Allows to cache prices derived from the market price without locking or allocations.
+     *
+     * @param currencyCode the currency code
+     * @return the version of the market price, 0 if there was never a market price for the currency
+     */
+    public long getPriceVersion(String currencyCode) {
+        AtomicLong version = priceVersions.get(CurrencyUtil.getCurrencyCodeBase(currencyCode));
+        return version == null ? 0 : version.get();
+    }
+
     public Date getLastRequestTimeStamp() {
         return new Date(epochInMillisAtLastRequest);
     }
@@ -456,6 +472,14 @@ public class PriceFeedService {
         return result;
     }
 
+    // Must be called with the lock of the cache
+    private void putMarketPrice(String currencyCode, MarketPrice marketPrice) {
+        MarketPrice previous = cache.put(currencyCode, marketPrice);
+        if (!marketPrice.equals(previous)) {
+            priceVersions.computeIfAbsent(currencyCode, k -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
     private void requestAllPrices(PriceProvider provider, Runnable resultHandler, FaultHandler faultHandler) {
         if (httpClient.hasPendingRequest()) {
             log.warn("We have a pending request open. We ignore that request. httpClient {}", httpClient);
@@ -477,7 +501,7 @@ public class PriceFeedService {
                     Map<String, MarketPrice> priceMap = result;
 
                     synchronized (cache) {
-                        cache.putAll(priceMap);
+                        priceMap.forEach(PriceFeedService.this::putMarketPrice);
                     }
 
                     resultHandler.run();
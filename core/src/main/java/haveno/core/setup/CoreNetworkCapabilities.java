@@ -39,7 +39,10 @@ public class CoreNetworkCapabilities {
                 Capability.REFUND_AGENT,
                 Capability.TRADE_STATISTICS_HASH_UPDATE,
                 Capability.NO_ADDRESS_PRE_FIX,
-                Capability.TRADE_STATISTICS_3
+                Capability.TRADE_STATISTICS_3,
+                Capability.KNOWN_PAYLOADS_FILTER,
+                Capability.STREAMED_GET_DATA_RESPONSE,
+                Capability.COMPRESSED_ENVELOPES
         );
 
         log.info(Capabilities.app.prettyPrint());
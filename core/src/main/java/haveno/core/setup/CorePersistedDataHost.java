@@ -44,7 +44,8 @@ import java.util.List;
 @Slf4j
 public class CorePersistedDataHost {
 
-    // All classes which are persisting objects need to be added here
+    // All classes which are persisting objects need to be added here.
+    // The files are read concurrently, but the data is applied in the order of that list.
     public static List<PersistedDataHost> getPersistedDataHosts(Injector injector) {
         List<PersistedDataHost> persistedDataHosts = new ArrayList<>();
         persistedDataHosts.add(injector.getInstance(Preferences.class));
@@ -25,6 +25,7 @@ import haveno.network.p2p.storage.payload.ExpirablePayload;
 import haveno.network.p2p.storage.payload.ProtectedStoragePayload;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.annotation.Nullable;
@@ -56,6 +57,11 @@ public abstract class DisputeAgent implements ProtectedStoragePayload, Expirable
     @Nullable
     protected Map<String, String> extraDataMap;
 
+    // cache
+    @Nullable
+    @Setter
+    private transient volatile byte[] hashOfPayload;
+
     public DisputeAgent(NodeAddress nodeAddress,
                         PubKeyRing pubKeyRing,
                         List<String> languageCodes,
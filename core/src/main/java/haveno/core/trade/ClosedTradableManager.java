@@ -17,11 +17,20 @@
 
 package haveno.core.trade;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import haveno.common.UserThread;
+import haveno.common.config.Config;
 import haveno.common.crypto.KeyRing;
+import haveno.common.persistence.ItemStore;
 import haveno.common.persistence.PersistenceManager;
 import haveno.common.proto.persistable.PersistedDataHost;
+import haveno.common.proto.persistable.PersistenceProtoResolver;
+import haveno.common.util.SingleThreadExecutorUtils;
 import haveno.core.offer.Offer;
 import haveno.core.offer.OpenOffer;
 import haveno.core.provider.price.PriceFeedService;
@@ -31,12 +40,20 @@ import haveno.network.p2p.NodeAddress;
 import javafx.collections.ObservableList;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.File;
 import java.math.BigInteger;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -49,17 +66,37 @@ import static haveno.core.trade.ClosedTradableUtil.isOpenOffer;
  * Manages closed trades or offers.
  * BsqSwap trades are once confirmed moved in the closed trades domain as well.
  * We do not manage the persistence of BsqSwap trades here but in BsqSwapTradeManager.
+ *
+ * If enabled by {@link Config#ARCHIVE_CLOSED_TRADES_AFTER_DAYS}, old closed trades and canceled offers are moved to
+ * the archive at startup and then every {@link #ARCHIVE_INTERVAL_HOURS} hours. Only their summaries are kept in
+ * memory, the tradables are loaded from disk on demand by {@link #loadArchivedTradable} on the archive thread. The
+ * last {@link #MAX_LOADED_ARCHIVED_TRADABLES} loaded tradables are shared. A changed one is written back by
+ * {@link #requestPersistence(Tradable)} and is not evicted before that completed.
  */
 @Slf4j
 public class ClosedTradableManager implements PersistedDataHost {
+    static final int MAX_LOADED_ARCHIVED_TRADABLES = 100;
+    private static final long ARCHIVE_INTERVAL_HOURS = 1;
+
     private final KeyRing keyRing;
     private final PriceFeedService priceFeedService;
     private final Preferences preferences;
     private final TradeStatisticsManager tradeStatisticsManager;
     private final PersistenceManager<TradableList<Tradable>> persistenceManager;
     private final CleanupMailboxMessagesService cleanupMailboxMessagesService;
+    private final PersistenceManager<ClosedTradesArchive> archivePersistenceManager;
+    private final PersistenceProtoResolver persistenceProtoResolver;
+    private final int archiveClosedTradesAfterDays;
 
     private final TradableList<Tradable> closedTradables = new TradableList<>();
+    private final ClosedTradesArchive archive = new ClosedTradesArchive();
+    private final ItemStore archivedTradables;
+    // Archived tradables are written, loaded and reconciled with the summaries on that thread
+    private final ExecutorService archiveExecutor = SingleThreadExecutorUtils.getSingleThreadExecutor("ClosedTradesArchive");
+    // Loaded archived tradables by their key in access order. All callers get the same instance while it is loaded,
+    // so mutations are not lost. Guarded by itself.
+    private final LinkedHashMap<String, LoadedArchivedTradable> loadedArchivedTradables = new LinkedHashMap<>(16, 0.75f, true);
+    private boolean isArchiving;
 
     @Inject
     public ClosedTradableManager(KeyRing keyRing,
@@ -67,15 +104,24 @@ public class ClosedTradableManager implements PersistedDataHost {
                                  Preferences preferences,
                                  TradeStatisticsManager tradeStatisticsManager,
                                  PersistenceManager<TradableList<Tradable>> persistenceManager,
-                                 CleanupMailboxMessagesService cleanupMailboxMessagesService) {
+                                 CleanupMailboxMessagesService cleanupMailboxMessagesService,
+                                 PersistenceManager<ClosedTradesArchive> archivePersistenceManager,
+                                 PersistenceProtoResolver persistenceProtoResolver,
+                                 @Named(Config.STORAGE_DIR) File storageDir,
+                                 @Named(Config.ARCHIVE_CLOSED_TRADES_AFTER_DAYS) int archiveClosedTradesAfterDays) {
         this.keyRing = keyRing;
         this.priceFeedService = priceFeedService;
         this.preferences = preferences;
         this.tradeStatisticsManager = tradeStatisticsManager;
         this.cleanupMailboxMessagesService = cleanupMailboxMessagesService;
         this.persistenceManager = persistenceManager;
+        this.archivePersistenceManager = archivePersistenceManager;
+        this.persistenceProtoResolver = persistenceProtoResolver;
+        this.archiveClosedTradesAfterDays = archiveClosedTradesAfterDays;
 
-        this.persistenceManager.initialize(closedTradables, "ClosedTrades", PersistenceManager.Source.PRIVATE);
+        this.persistenceManager.initializeSegmented(closedTradables, "ClosedTrades", PersistenceManager.Source.PRIVATE);
+        this.archivePersistenceManager.initialize(archive, "ClosedTradesArchive", PersistenceManager.Source.PRIVATE);
+        archivedTradables = new ItemStore(storageDir, "ClosedTradesArchive", keyRing);
     }
 
     @Override
@@ -87,6 +133,14 @@ public class ClosedTradableManager implements PersistedDataHost {
                         .filter(tradable -> tradable.getOffer() != null)
                         .forEach(tradable -> tradable.getOffer().setPriceFeedService(priceFeedService));
             }
+            readPersistedArchive(completeHandler);
+        },
+        () -> readPersistedArchive(completeHandler));
+    }
+
+    private void readPersistedArchive(Runnable completeHandler) {
+        archivePersistenceManager.readPersisted(persisted -> {
+            archive.setAll(persisted.getSummaries());
             completeHandler.run();
         },
         completeHandler);
@@ -95,6 +149,12 @@ public class ClosedTradableManager implements PersistedDataHost {
     public void onAllServicesInitialized() {
         cleanupMailboxMessagesService.handleTrades(getClosedTrades());
         maybeClearSensitiveData();
+        reconcileArchive();
+        maybeArchive();
+        // Trades closed while the app is running get old enough to be archived as well
+        if (archiveClosedTradesAfterDays > 0) {
+            UserThread.runPeriodically(this::maybeArchive, ARCHIVE_INTERVAL_HOURS, TimeUnit.HOURS);
+        }
     }
 
     public void add(Tradable tradable) {
@@ -146,16 +206,132 @@ public class ClosedTradableManager implements PersistedDataHost {
         }
     }
 
+    // Archived tradables are only returned if they got loaded already, use loadTradeById to load them
     public Optional<Tradable> getTradableById(String id) {
         synchronized (closedTradables.getList()) {
-            return closedTradables.stream().filter(e -> e.getId().equals(id)).findFirst();
+            Optional<Tradable> tradable = closedTradables.stream().filter(e -> e.getId().equals(id)).findFirst();
+            if (tradable.isPresent()) return tradable;
         }
+        return archive.getById(id).stream()
+                .map(this::getLoadedArchivedTradable)
+                .flatMap(Optional::stream)
+                .findFirst();
     }
 
+    // Archived trades are only returned if they got loaded already, use loadTradeById to load them
     public Optional<Trade> getTradeById(String id) {
         synchronized (closedTradables.getList()) {
-            return getClosedTrades().stream().filter(e -> e.getId().equals(id)).findFirst();
+            Optional<Trade> trade = getClosedTrades().stream().filter(e -> e.getId().equals(id)).findFirst();
+            if (trade.isPresent()) return trade;
         }
+        return archive.getById(id).stream()
+                .filter(ClosedTradeSummary::isTrade)
+                .map(this::getLoadedArchivedTradable)
+                .flatMap(Optional::stream)
+                .findFirst()
+                .map(tradable -> (Trade) tradable);
+    }
+
+    /**
+     * @return true if a closed or archived tradable has the given id. Nothing is loaded from disk.
+     */
+    public boolean containsTradableWithId(String id) {
+        synchronized (closedTradables.getList()) {
+            if (closedTradables.stream().anyMatch(e -> e.getId().equals(id))) return true;
+        }
+        return !archive.getById(id).isEmpty();
+    }
+
+    /**
+     * Returns the closed trade with the given id. An archived trade is loaded on the archive thread if it was not
+     * loaded already.
+     *
+     * @param id the trade id
+     * @return a future completed with the trade or empty if not found
+     */
+    public CompletableFuture<Optional<Trade>> loadTradeById(String id) {
+        Optional<Trade> trade = getTradeById(id);
+        if (trade.isPresent()) {
+            return CompletableFuture.completedFuture(trade);
+        }
+        return archive.getById(id).stream()
+                .filter(ClosedTradeSummary::isTrade)
+                .findFirst()
+                .map(summary -> loadArchivedTradable(summary).thenApply(tradable -> tradable.map(e -> (Trade) e)))
+                .orElseGet(() -> CompletableFuture.completedFuture(Optional.empty()));
+    }
+
+    /**
+     * @return the summaries of the archived closed trades and canceled offers in the order they got archived
+     */
+    public List<ClosedTradeSummary> getArchivedSummaries() {
+        return archive.getSummaries();
+    }
+
+    /**
+     * Loads an archived tradable from disk on the archive thread. Once loaded, the same instance is returned.
+     *
+     * @param summary the summary of the archived tradable
+     * @return a future completed with the tradable or empty if it cannot be loaded
+     */
+    public CompletableFuture<Optional<Tradable>> loadArchivedTradable(ClosedTradeSummary summary) {
+        String key = summary.getKey();
+        LoadedArchivedTradable loaded;
+        synchronized (loadedArchivedTradables) {
+            loaded = loadedArchivedTradables.computeIfAbsent(key, k -> new LoadedArchivedTradable(
+                    CompletableFuture.supplyAsync(() -> readArchivedTradable(k), archiveExecutor)));
+            evictLoadedArchivedTradables();
+        }
+        // A failed load is retried at the next call
+        loaded.load.thenAccept(tradable -> {
+            if (tradable.isEmpty()) {
+                synchronized (loadedArchivedTradables) {
+                    loadedArchivedTradables.remove(key, loaded);
+                }
+            }
+        });
+        return loaded.load;
+    }
+
+    /**
+     * Persists a changed closed tradable. A loaded archived tradable is written back to the archive, it is kept
+     * loaded until the write completed. Other tradables are persisted with the closed tradables.
+     *
+     * @param tradable the changed tradable
+     */
+    public void requestPersistence(Tradable tradable) {
+        String key = ClosedTradeSummary.toKey(tradable);
+        LoadedArchivedTradable loaded;
+        synchronized (loadedArchivedTradables) {
+            loaded = loadedArchivedTradables.get(key);
+            if (loaded == null || loaded.load.getNow(Optional.empty()).orElse(null) != tradable) {
+                loaded = null;
+            } else {
+                loaded.numPendingWrites++;
+            }
+        }
+        if (loaded == null) {
+            requestPersistence();
+            return;
+        }
+
+        // We serialize on the user thread and write on the archive thread
+        ByteString item = tradable.toProtoMessage().toByteString();
+        archive.add(ClosedTradeSummary.from(tradable));
+        archivePersistenceManager.requestPersistence();
+        LoadedArchivedTradable written = loaded;
+        archiveExecutor.execute(() -> {
+            try {
+                archivedTradables.put(key, item);
+                synchronized (loadedArchivedTradables) {
+                    written.numPendingWrites--;
+                    evictLoadedArchivedTradables();
+                }
+            } catch (Throwable t) {
+                // The tradable stays loaded, so the change is written with its next persistence request
+                log.error("Writing back archived tradable {} failed", key, t);
+            }
+        });
     }
 
     public void maybeClearSensitiveData() {
@@ -199,11 +375,23 @@ public class ClosedTradableManager implements PersistedDataHost {
             return 0;
         }
         NodeAddress addressInTrade = castToTradeModel(tradable).getTradePeerNodeAddress();
-        return (int) getTradeModelStream()
-                .map(Trade::getTradePeerNodeAddress)
+        // A trade is contained in both if the app stopped after archiving it but before it got removed from the
+        // closed trades
+        Set<String> closedTradeIds = getTradeModelStream()
+                .map(Trade::getId)
+                .collect(Collectors.toSet());
+        long numArchivedTrades = archive.getSummaries().stream()
+                .filter(ClosedTradeSummary::isTrade)
+                .filter(summary -> !closedTradeIds.contains(summary.getId()))
+                .map(ClosedTradeSummary::getPeerNodeAddress)
                 .filter(Objects::nonNull)
                 .filter(address -> address.equals(addressInTrade))
                 .count();
+        return (int) (getTradeModelStream()
+                .map(Trade::getTradePeerNodeAddress)
+                .filter(Objects::nonNull)
+                .filter(address -> address.equals(addressInTrade))
+                .count() + numArchivedTrades);
     }
 
     public BigInteger getTotalTradeFee(List<Tradable> tradableList) {
@@ -239,4 +427,139 @@ public class ClosedTradableManager implements PersistedDataHost {
             }
         }
     }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Archive
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Moves the closed trades and canceled offers older than archiveClosedTradesAfterDays to the archive
+    void maybeArchive() {
+        if (archiveClosedTradesAfterDays <= 0 || isArchiving) return;
+
+        Date archiveDate = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(archiveClosedTradesAfterDays));
+        List<Tradable> tradables;
+        List<ByteString> items = new ArrayList<>();
+        synchronized (closedTradables.getList()) {
+            tradables = closedTradables.stream()
+                    .filter(tradable -> tradable.getDate() != null && tradable.getDate().before(archiveDate))
+                    .filter(tradable -> !(tradable instanceof Trade) || !((Trade) tradable).isFundsLockedIn())
+                    .collect(Collectors.toList());
+            // We serialize on the user thread and write on the archive thread
+            tradables.forEach(tradable -> items.add(tradable.toProtoMessage().toByteString()));
+        }
+        if (tradables.isEmpty()) return;
+
+        // The tradables are only removed from the closed tradables once written, so we must not archive them twice
+        isArchiving = true;
+        archiveExecutor.execute(() -> {
+            long ts = System.currentTimeMillis();
+            List<Tradable> archived = new ArrayList<>();
+            for (int i = 0; i < tradables.size(); i++) {
+                try {
+                    archivedTradables.put(ClosedTradeSummary.toKey(tradables.get(i)), items.get(i));
+                    archived.add(tradables.get(i));
+                } catch (Throwable t) {
+                    log.error("Archiving closed tradable {} failed. We keep it in the closed trades.", tradables.get(i).getId(), t);
+                    break;
+                }
+            }
+            log.info("Writing {} closed tradables to the archive completed in {} ms", archived.size(), System.currentTimeMillis() - ts);
+
+            UserThread.execute(() -> {
+                isArchiving = false;
+                // The summaries are persisted first, a tradable without summary is recovered by reconcileArchive
+                archived.forEach(tradable -> archive.add(ClosedTradeSummary.from(tradable)));
+                archivePersistenceManager.requestPersistence();
+                synchronized (closedTradables.getList()) {
+                    closedTradables.getObservableList().removeAll(new HashSet<>(archived));
+                }
+                requestPersistence();
+            });
+        });
+    }
+
+    // Adds the summaries of archived tradables which got archived but whose summaries were not persisted
+    void reconcileArchive() {
+        Set<String> keys = archive.getKeys();
+        archiveExecutor.execute(() -> {
+            try {
+                List<ClosedTradeSummary> missingSummaries = new ArrayList<>();
+                for (String key : archivedTradables.getOtherKeys(keys)) {
+                    ByteString item = archivedTradables.get(key);
+                    if (item != null) {
+                        missingSummaries.add(ClosedTradeSummary.from(toTradable(item)));
+                    }
+                }
+                if (missingSummaries.isEmpty()) return;
+
+                log.warn("Recovered {} summaries of archived closed tradables", missingSummaries.size());
+                UserThread.execute(() -> {
+                    missingSummaries.forEach(archive::add);
+                    archivePersistenceManager.requestPersistence();
+                });
+            } catch (Throwable t) {
+                log.error("Reconciling the closed trades archive failed", t);
+            }
+        });
+    }
+
+    // Called on the archive thread
+    private Optional<Tradable> readArchivedTradable(String key) {
+        try {
+            ByteString item = archivedTradables.get(key);
+            if (item == null) {
+                log.warn("Archived tradable {} not found", key);
+                return Optional.empty();
+            }
+            return Optional.of(toTradable(item));
+        } catch (Throwable t) {
+            log.error("Loading archived tradable {} failed", key, t);
+            return Optional.empty();
+        }
+    }
+
+    private Optional<Tradable> getLoadedArchivedTradable(ClosedTradeSummary summary) {
+        synchronized (loadedArchivedTradables) {
+            LoadedArchivedTradable loaded = loadedArchivedTradables.get(summary.getKey());
+            return loaded != null ? loaded.load.getNow(Optional.empty()) : Optional.empty();
+        }
+    }
+
+    // Evicts the least recently used archived tradables which completed loading and have no pending write.
+    // Called while holding the lock of loadedArchivedTradables.
+    private void evictLoadedArchivedTradables() {
+        Iterator<LoadedArchivedTradable> iterator = loadedArchivedTradables.values().iterator();
+        while (loadedArchivedTradables.size() > MAX_LOADED_ARCHIVED_TRADABLES && iterator.hasNext()) {
+            LoadedArchivedTradable loaded = iterator.next();
+            if (loaded.load.isDone() && loaded.numPendingWrites == 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private Tradable toTradable(ByteString item) throws InvalidProtocolBufferException {
+        protobuf.PersistableEnvelope proto = protobuf.PersistableEnvelope.newBuilder()
+                .setTradableList(protobuf.TradableList.newBuilder().addTradable(protobuf.Tradable.parseFrom(item)))
+                .build();
+        Tradable tradable = ((TradableList<?>) persistenceProtoResolver.fromProto(proto)).getList().get(0);
+        if (tradable.getOffer() != null) {
+            tradable.getOffer().setPriceFeedService(priceFeedService);
+        }
+        return tradable;
+    }
+
+    @VisibleForTesting
+    void awaitArchiveThread() {
+        CompletableFuture.runAsync(() -> {}, archiveExecutor).join();
+    }
+
+    private static final class LoadedArchivedTradable {
+        private final CompletableFuture<Optional<Tradable>> load;
+        // Guarded by loadedArchivedTradables
+        private int numPendingWrites;
+
+        private LoadedArchivedTradable(CompletableFuture<Optional<Tradable>> load) {
+            this.load = load;
+        }
+    }
 }
@@ -0,0 +1,131 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.core.trade;
+
+import haveno.common.proto.persistable.PersistablePayload;
+import haveno.core.monetary.Price;
+import haveno.core.offer.OpenOffer;
+import haveno.network.p2p.NodeAddress;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import javax.annotation.Nullable;
+import java.math.BigInteger;
+import java.util.Optional;
+
+/**
+ * Compact summary of an archived closed trade or canceled offer. The summaries are kept in memory while the full
+ * tradable is only loaded on demand.
+ */
+@EqualsAndHashCode
+@Getter
+public final class ClosedTradeSummary implements PersistablePayload {
+    private final String key;
+    private final String id;
+    // Simple class name of the tradable, e.g. BuyerAsMakerTrade or OpenOffer
+    private final String tradableType;
+    private final long date;
+    private final String currencyCode;
+    // Amount and price in atomic units, 0 if not known
+    private final long amount;
+    private final long price;
+    private final String state;
+    @Nullable
+    private final NodeAddress peerNodeAddress;
+
+    public ClosedTradeSummary(String key,
+                              String id,
+                              String tradableType,
+                              long date,
+                              String currencyCode,
+                              long amount,
+                              long price,
+                              String state,
+                              @Nullable NodeAddress peerNodeAddress) {
+        this.key = key;
+        this.id = id;
+        this.tradableType = tradableType;
+        this.date = date;
+        this.currencyCode = currencyCode;
+        this.amount = amount;
+        this.price = price;
+        this.state = state;
+        this.peerNodeAddress = peerNodeAddress;
+    }
+
+    public static ClosedTradeSummary from(Tradable tradable) {
+        String state = tradable instanceof Trade ?
+                ((Trade) tradable).getState().name() :
+                ((OpenOffer) tradable).getState().name();
+        return new ClosedTradeSummary(toKey(tradable),
+                tradable.getId(),
+                tradable.getClass().getSimpleName(),
+                tradable.getDate() != null ? tradable.getDate().getTime() : 0,
+                tradable.getOffer().getCurrencyCode(),
+                tradable.getOptionalAmount().or(() -> Optional.ofNullable(tradable.getOffer().getAmount()))
+                        .map(BigInteger::longValueExact)
+                        .orElse(0L),
+                tradable.getOptionalPrice().map(Price::getValue).orElse(0L),
+                state,
+                tradable.getOptionalTradePeerNodeAddress().orElse(null));
+    }
+
+    // Same key as used for the persisted items of the TradableList
+    public static String toKey(Tradable tradable) {
+        if (tradable instanceof Trade) {
+            return "Trade/" + tradable.getId() + "/" + ((Trade) tradable).getUid();
+        }
+        return tradable.getClass().getSimpleName() + "/" + tradable.getId();
+    }
+
+    public boolean isTrade() {
+        return !OpenOffer.class.getSimpleName().equals(tradableType);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // PROTO BUFFER
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public protobuf.ClosedTradeSummary toProtoMessage() {
+        protobuf.ClosedTradeSummary.Builder builder = protobuf.ClosedTradeSummary.newBuilder()
+                .setKey(key)
+                .setId(id)
+                .setTradableType(tradableType)
+                .setDate(date)
+                .setCurrencyCode(currencyCode)
+                .setAmount(amount)
+                .setPrice(price)
+                .setState(state);
+        Optional.ofNullable(peerNodeAddress).ifPresent(e -> builder.setPeerNodeAddress(e.toProtoMessage()));
+        return builder.build();
+    }
+
+    public static ClosedTradeSummary fromProto(protobuf.ClosedTradeSummary proto) {
+        return new ClosedTradeSummary(proto.getKey(),
+                proto.getId(),
+                proto.getTradableType(),
+                proto.getDate(),
+                proto.getCurrencyCode(),
+                proto.getAmount(),
+                proto.getPrice(),
+                proto.getState(),
+                proto.hasPeerNodeAddress() ? NodeAddress.fromProto(proto.getPeerNodeAddress()) : null);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.core.trade;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import haveno.common.proto.persistable.JournaledPersistableEnvelope;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Index of the archived closed trades and canceled offers by their key. The full tradables are stored in an
+ * ItemStore and only loaded on demand.
+ */
+public final class ClosedTradesArchive implements JournaledPersistableEnvelope {
+    private final Map<String, ClosedTradeSummary> summaries = new LinkedHashMap<>();
+
+    public ClosedTradesArchive() {
+    }
+
+    private ClosedTradesArchive(Collection<ClosedTradeSummary> summaries) {
+        setAll(summaries);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public synchronized void setAll(Collection<ClosedTradeSummary> summaries) {
+        this.summaries.clear();
+        summaries.forEach(this::add);
+    }
+
+    public synchronized boolean add(ClosedTradeSummary summary) {
+        return summaries.put(summary.getKey(), summary) == null;
+    }
+
+    public synchronized boolean remove(String key) {
+        return summaries.remove(key) != null;
+    }
+
+    public synchronized Optional<ClosedTradeSummary> get(String key) {
+        return Optional.ofNullable(summaries.get(key));
+    }
+
+    // The id is not unique, e.g. a canceled offer and a trade might have the same id
+    public synchronized List<ClosedTradeSummary> getById(String id) {
+        return summaries.values().stream()
+                .filter(summary -> summary.getId().equals(id))
+                .collect(Collectors.toList());
+    }
+
+    public synchronized boolean contains(String key) {
+        return summaries.containsKey(key);
+    }
+
+    public synchronized Set<String> getKeys() {
+        return Set.copyOf(summaries.keySet());
+    }
+
+    // In the order the summaries got archived
+    public synchronized List<ClosedTradeSummary> getSummaries() {
+        return new ArrayList<>(summaries.values());
+    }
+
+    public synchronized int size() {
+        return summaries.size();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // PROTO BUFFER
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public synchronized Message toProtoMessage() {
+        return protobuf.PersistableEnvelope.newBuilder()
+                .setClosedTradesArchive(protobuf.ClosedTradesArchive.newBuilder()
+                        .addAllClosedTradeSummary(summaries.values().stream()
+                                .map(ClosedTradeSummary::toProtoMessage)
+                                .collect(Collectors.toList())))
+                .build();
+    }
+
+    public static ClosedTradesArchive fromProto(protobuf.ClosedTradesArchive proto) {
+        return new ClosedTradesArchive(proto.getClosedTradeSummaryList().stream()
+                .map(ClosedTradeSummary::fromProto)
+                .collect(Collectors.toList()));
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // JournaledPersistableEnvelope implementation
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public LinkedHashMap<String, ByteString> toJournalItems(protobuf.PersistableEnvelope proto) {
+        LinkedHashMap<String, ByteString> items = new LinkedHashMap<>();
+        proto.getClosedTradesArchive().getClosedTradeSummaryList()
+                .forEach(summary -> items.put(summary.getKey(), summary.toByteString()));
+        return items;
+    }
+
+    @Override
+    public protobuf.PersistableEnvelope fromJournalItems(Collection<ByteString> items) throws InvalidProtocolBufferException {
+        protobuf.ClosedTradesArchive.Builder builder = protobuf.ClosedTradesArchive.newBuilder();
+        for (ByteString item : items) {
+            builder.addClosedTradeSummary(protobuf.ClosedTradeSummary.parseFrom(item));
+        }
+        return protobuf.PersistableEnvelope.newBuilder().setClosedTradesArchive(builder).build();
+    }
+
+    @Override
+    public String toString() {
+        return "ClosedTradesArchive{" +
+                "\n     size=" + size() +
+                "\n}";
+    }
+}
@@ -17,9 +17,12 @@
 
 package haveno.core.trade;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
 import haveno.common.proto.ProtoUtil;
 import haveno.common.proto.ProtobufferRuntimeException;
+import haveno.common.proto.persistable.JournaledPersistableEnvelope;
 import haveno.common.proto.persistable.PersistableListAsObservable;
 import haveno.core.offer.OpenOffer;
 import haveno.core.proto.CoreProtoResolver;
@@ -27,11 +30,12 @@ import haveno.core.xmr.wallet.XmrWalletService;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @Slf4j
-public final class TradableList<T extends Tradable> extends PersistableListAsObservable<T> {
+public final class TradableList<T extends Tradable> extends PersistableListAsObservable<T> implements JournaledPersistableEnvelope {
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Constructor
@@ -88,6 +92,58 @@ public final class TradableList<T extends Tradable> extends PersistableListAsObs
         return new TradableList<>(list);
     }
 
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // JournaledPersistableEnvelope implementation
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public LinkedHashMap<String, ByteString> toJournalItems(protobuf.PersistableEnvelope proto) {
+        LinkedHashMap<String, ByteString> items = new LinkedHashMap<>();
+        proto.getTradableList().getTradableList().forEach(tradable -> {
+            String key = getJournalKey(tradable);
+            // Should not happen, but we must not lose an item if 2 items have the same key
+            for (int i = 2; items.containsKey(key); i++) {
+                key = getJournalKey(tradable) + "#" + i;
+            }
+            items.put(key, tradable.toByteString());
+        });
+        return items;
+    }
+
+    @Override
+    public protobuf.PersistableEnvelope fromJournalItems(Collection<ByteString> items) throws InvalidProtocolBufferException {
+        protobuf.TradableList.Builder builder = protobuf.TradableList.newBuilder();
+        for (ByteString item : items) {
+            builder.addTradable(protobuf.Tradable.parseFrom(item));
+        }
+        return protobuf.PersistableEnvelope.newBuilder().setTradableList(builder).build();
+    }
+
+    private static String getJournalKey(protobuf.Tradable tradable) {
+        switch (tradable.getMessageCase()) {
+            case OPEN_OFFER:
+                return "OpenOffer/" + tradable.getOpenOffer().getOffer().getOfferPayload().getId();
+            case SIGNED_OFFER:
+                return "SignedOffer/" + tradable.getSignedOffer().getOfferId();
+            case BUYER_AS_MAKER_TRADE:
+                return getJournalKey(tradable.getBuyerAsMakerTrade().getTrade());
+            case BUYER_AS_TAKER_TRADE:
+                return getJournalKey(tradable.getBuyerAsTakerTrade().getTrade());
+            case SELLER_AS_MAKER_TRADE:
+                return getJournalKey(tradable.getSellerAsMakerTrade().getTrade());
+            case SELLER_AS_TAKER_TRADE:
+                return getJournalKey(tradable.getSellerAsTakerTrade().getTrade());
+            case ARBITRATOR_TRADE:
+                return getJournalKey(tradable.getArbitratorTrade().getTrade());
+            default:
+                return tradable.getMessageCase().name();
+        }
+    }
+
+    private static String getJournalKey(protobuf.Trade trade) {
+        return "Trade/" + trade.getOffer().getOfferPayload().getId() + "/" + trade.getUid();
+    }
+
     @Override
     public String toString() {
         return "TradableList{" +
@@ -250,7 +250,7 @@ public class TradeManager implements PersistedDataHost, DecryptedDirectMessageLi
         this.referralIdService = referralIdService;
         this.persistenceManager = persistenceManager;
 
-        this.persistenceManager.initialize(tradableList, "PendingTrades", PersistenceManager.Source.PRIVATE);
+        this.persistenceManager.initializeSegmented(tradableList, "PendingTrades", PersistenceManager.Source.PRIVATE);
 
         p2PService.addDecryptedDirectMessageListener(this);
 
@@ -1272,7 +1272,7 @@ public class TradeManager implements PersistedDataHost, DecryptedDirectMessageLi
     public boolean wasOfferAlreadyUsedInTrade(String offerId) {
         return getOpenTrade(offerId).isPresent() ||
                 failedTradesManager.getTradeById(offerId).isPresent() ||
-                closedTradableManager.getTradableById(offerId).isPresent();
+                closedTradableManager.containsTradableWithId(offerId);
     }
 
     public boolean isBuyer(Offer offer) {
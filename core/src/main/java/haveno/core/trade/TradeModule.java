@@ -28,6 +28,7 @@ import haveno.core.trade.failed.FailedTradesManager;
 import haveno.core.trade.statistics.ReferralIdService;
 
 import static com.google.inject.name.Names.named;
+import static haveno.common.config.Config.ARCHIVE_CLOSED_TRADES_AFTER_DAYS;
 import static haveno.common.config.Config.DUMP_STATISTICS;
 
 public class TradeModule extends AppModule {
@@ -48,5 +49,6 @@ public class TradeModule extends AppModule {
         bind(ReferralIdService.class).in(Singleton.class);
 
         bindConstant().annotatedWith(named(DUMP_STATISTICS)).to(config.dumpStatistics);
+        bindConstant().annotatedWith(named(ARCHIVE_CLOSED_TRADES_AFTER_DAYS)).to(config.archiveClosedTradesAfterDays);
     }
 }
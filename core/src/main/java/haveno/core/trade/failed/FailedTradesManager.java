@@ -64,7 +64,7 @@ public class FailedTradesManager implements PersistedDataHost {
         this.persistenceManager = persistenceManager;
         this.tradeUtil = tradeUtil;
 
-        this.persistenceManager.initialize(failedTrades, "FailedTrades", PersistenceManager.Source.PRIVATE);
+        this.persistenceManager.initializeSegmented(failedTrades, "FailedTrades", PersistenceManager.Source.PRIVATE);
     }
 
     @Override
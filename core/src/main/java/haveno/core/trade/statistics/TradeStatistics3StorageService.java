@@ -73,6 +73,11 @@ public class TradeStatistics3StorageService extends HistoricalDataStoreService<T
         return new TradeStatistics3Store();
     }
 
+    @Override
+    protected PersistableNetworkPayload fromProto(protobuf.PersistableNetworkPayload proto) {
+        return TradeStatistics3.fromProto(proto.getTradeStatistics3());
+    }
+
     public void persistNow() {
         persistenceManager.persistNow(() -> {
         });
@@ -20,6 +20,7 @@ package haveno.core.trade.statistics;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
+import haveno.common.UserThread;
 import haveno.common.config.Config;
 import haveno.common.file.JsonFileManager;
 import haveno.core.locale.CurrencyTuple;
@@ -30,14 +31,17 @@ import haveno.core.trade.Trade;
 import haveno.core.util.JsonUtil;
 import haveno.network.p2p.P2PService;
 import haveno.network.p2p.storage.P2PDataStorage;
+import haveno.network.p2p.storage.payload.PersistableNetworkPayload;
 import haveno.network.p2p.storage.persistence.AppendOnlyDataStoreService;
 import java.io.File;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableSet;
@@ -47,6 +51,15 @@ import lombok.extern.slf4j.Slf4j;
 @Singleton
 @Slf4j
 public class TradeStatisticsManager {
+    private static final String TRADE_STATISTICS_FILE_NAME = "trade_statistics";
+    // The sorted trade_statistics.json is rewritten at most once in that interval, new trade statistics are
+    // appended to trade_statistics.ndjson immediately
+    private static final long SNAPSHOT_INTERVAL_SEC = 60;
+    // trade_statistics.ndjson is rotated once it reached that size. It is rewritten with all trade statistics at
+    // startup, which deletes the rotated files.
+    private static final long MAX_NDJSON_FILE_SIZE = 10 * 1024 * 1024;
+    private static final int MAX_ROTATED_NDJSON_FILES = 5;
+
     private final P2PService p2PService;
     private final PriceFeedService priceFeedService;
     private final TradeStatistics3StorageService tradeStatistics3StorageService;
@@ -54,6 +67,7 @@ public class TradeStatisticsManager {
     private final boolean dumpStatistics;
     private final ObservableSet<TradeStatistics3> observableTradeStatisticsSet = FXCollections.observableSet();
     private JsonFileManager jsonFileManager;
+    private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
 
     @Inject
     public TradeStatisticsManager(P2PService p2PService,
@@ -85,20 +99,26 @@ public class TradeStatisticsManager {
                 if (!tradeStatistics.isValid()) {
                     return;
                 }
+                boolean added;
                 synchronized (observableTradeStatisticsSet) {
-                    observableTradeStatisticsSet.add(tradeStatistics);
+                    added = observableTradeStatisticsSet.add(tradeStatistics);
                     priceFeedService.applyLatestHavenoMarketPrice(observableTradeStatisticsSet);
                 }
-                maybeDumpStatistics();
+                // A trade statistics object we have already must not be appended again
+                if (added) {
+                    maybeAppendStatistics(tradeStatistics);
+                }
             }
         });
 
+        // The observable set is the model of the market views and the price feed, so it needs all trade statistics.
+        // We deserialize them once from the store view.
         Set<TradeStatistics3> set = tradeStatistics3StorageService.getMapOfAllData().values().stream()
                 .filter(e -> e instanceof TradeStatistics3)
                 .map(e -> (TradeStatistics3) e)
                 .filter(TradeStatistics3::isValid)
                 .collect(Collectors.toSet());
-        
+
 
         // remove duplicates in early trades due to bug
         deduplicateEarlyTradeStatistics(set);
@@ -199,20 +219,56 @@ public class TradeStatisticsManager {
             jsonFileManager.writeToDiscThreaded(JsonUtil.objectToJson(activeCryptoCurrencyList), "active_crypto_currency_list");
         }
 
-        List<TradeStatisticsForJson> list = observableTradeStatisticsSet.stream()
+        List<TradeStatisticsForJson> list = dumpTradeStatisticsSnapshot();
+
+        // The NDJSON file is only rewritten at startup, afterwards new trade statistics are appended
+        List<String> lines = new ArrayList<>(list.size());
+        for (int i = list.size() - 1; i >= 0; i--) {
+            lines.add(JsonUtil.objectToCompactJson(list.get(i)));
+        }
+        jsonFileManager.writeLinesToDiscThreaded(lines, TRADE_STATISTICS_FILE_NAME);
+    }
+
+    private void maybeAppendStatistics(TradeStatistics3 tradeStatistics) {
+        // Before the initial dump the new trade statistics are part of it
+        if (!dumpStatistics || jsonFileManager == null) {
+            return;
+        }
+
+        jsonFileManager.appendLinesToDiscThreaded(List.of(JsonUtil.objectToCompactJson(new TradeStatisticsForJson(tradeStatistics))),
+                TRADE_STATISTICS_FILE_NAME,
+                MAX_NDJSON_FILE_SIZE,
+                MAX_ROTATED_NDJSON_FILES);
+        if (snapshotScheduled.compareAndSet(false, true)) {
+            UserThread.runAfter(() -> {
+                snapshotScheduled.set(false);
+                dumpTradeStatisticsSnapshot();
+            }, SNAPSHOT_INTERVAL_SEC);
+        }
+    }
+
+    // Returns the trade statistics sorted by date, newest first
+    private List<TradeStatisticsForJson> dumpTradeStatisticsSnapshot() {
+        List<TradeStatistics3> tradeStatistics;
+        synchronized (observableTradeStatisticsSet) {
+            tradeStatistics = new ArrayList<>(observableTradeStatisticsSet);
+        }
+        List<TradeStatisticsForJson> list = tradeStatistics.stream()
                 .map(TradeStatisticsForJson::new)
                 .sorted((o1, o2) -> (Long.compare(o2.tradeDate, o1.tradeDate)))
                 .collect(Collectors.toList());
         TradeStatisticsForJson[] array = new TradeStatisticsForJson[list.size()];
         list.toArray(array);
-        jsonFileManager.writeToDiscThreaded(JsonUtil.objectToJson(array), "trade_statistics");
+        jsonFileManager.writeToDiscThreaded(JsonUtil.objectToJson(array), TRADE_STATISTICS_FILE_NAME);
+        return list;
     }
 
     public void maybeRepublishTradeStatistics(Set<Trade> trades,
                                               @Nullable String referralId,
                                               boolean isTorNetworkNode) {
         long ts = System.currentTimeMillis();
-        Set<P2PDataStorage.ByteArray> hashes = tradeStatistics3StorageService.getMapOfAllData().keySet();
+        // The view looks up the hashes in the index of the historical stores, nothing gets copied or deserialized
+        Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> allTradeStatistics = tradeStatistics3StorageService.getMapOfAllData();
         trades.forEach(trade -> {
             if (!trade.shouldPublishTradeStatistics()) {
                 log.debug("Trade: {} should not publish trade statistics", trade.getShortId());
@@ -235,8 +291,8 @@ public class TradeStatisticsManager {
                 return;
             }
 
-            boolean hasTradeStatistics3 = hashes.contains(new P2PDataStorage.ByteArray(tradeStatistics3.getHash()));
-            boolean hasTradeStatistics3Fuzzed = hashes.contains(new P2PDataStorage.ByteArray(tradeStatistics3Fuzzed.getHash()));
+            boolean hasTradeStatistics3 = allTradeStatistics.containsKey(new P2PDataStorage.ByteArray(tradeStatistics3.getHash()));
+            boolean hasTradeStatistics3Fuzzed = allTradeStatistics.containsKey(new P2PDataStorage.ByteArray(tradeStatistics3Fuzzed.getHash()));
             if (hasTradeStatistics3 || hasTradeStatistics3Fuzzed) {
                 log.debug("Trade: {}. We have already a tradeStatistics matching the hash of tradeStatistics3.",
                         trade.getShortId());
@@ -253,6 +309,6 @@ public class TradeStatisticsManager {
             p2PService.addPersistableNetworkPayload(tradeStatistics3, true);
         });
         log.info("maybeRepublishTradeStatistics took {} ms. Number of tradeStatistics: {}. Number of own trades: {}",
-                System.currentTimeMillis() - ts, hashes.size(), trades.size());
+                System.currentTimeMillis() - ts, allTradeStatistics.size(), trades.size());
     }
 }
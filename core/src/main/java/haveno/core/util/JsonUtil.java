@@ -19,6 +19,7 @@ package haveno.core.util;
 
 import com.google.gson.ExclusionStrategy;
 import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import haveno.common.util.JsonExclude;
 import haveno.core.offer.OfferPayload;
@@ -26,6 +27,11 @@ import haveno.core.trade.Contract;
 
 
 public class JsonUtil {
+    // Gson instances are thread safe
+    private static final Gson COMPACT_GSON = new GsonBuilder()
+            .setExclusionStrategies(new AnnotationExclusionStrategy())
+            .create();
+
     public static String objectToJson(Object object) {
         GsonBuilder gsonBuilder = new GsonBuilder()
                 .setExclusionStrategies(new AnnotationExclusionStrategy())
@@ -37,6 +43,11 @@ public class JsonUtil {
         return gsonBuilder.create().toJson(object);
     }
 
+    // Without line breaks, e.g. for a line of a NDJSON file
+    public static String objectToCompactJson(Object object) {
+        return COMPACT_GSON.toJson(object);
+    }
+
     private static class AnnotationExclusionStrategy implements ExclusionStrategy {
         @Override
         public boolean shouldSkipField(FieldAttributes f) {
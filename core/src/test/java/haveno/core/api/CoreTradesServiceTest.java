@@ -0,0 +1,50 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.core.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CoreTradesServiceTest {
+    private static final List<Integer> ITEMS = List.of(0, 1, 2, 3, 4);
+
+    @Test
+    public void testGetPage() {
+        assertEquals(List.of(0, 1), CoreTradesService.getPage(ITEMS, 0, 2));
+        assertEquals(List.of(2, 3), CoreTradesService.getPage(ITEMS, 2, 2));
+        assertEquals(List.of(4), CoreTradesService.getPage(ITEMS, 4, 2));
+        assertEquals(List.of(), CoreTradesService.getPage(ITEMS, 5, 2));
+        assertEquals(List.of(), CoreTradesService.getPage(ITEMS, 10, 2));
+    }
+
+    @Test
+    public void testGetPageWithoutLimitReturnsAllAfterOffset() {
+        assertEquals(ITEMS, CoreTradesService.getPage(ITEMS, 0, 0));
+        assertEquals(List.of(3, 4), CoreTradesService.getPage(ITEMS, 3, 0));
+        assertEquals(List.of(), CoreTradesService.getPage(ITEMS, 10, 0));
+    }
+
+    @Test
+    public void testGetPageDoesNotOverflow() {
+        assertEquals(List.of(1, 2, 3, 4), CoreTradesService.getPage(ITEMS, 1, Integer.MAX_VALUE));
+        assertEquals(List.of(), CoreTradesService.getPage(ITEMS, Integer.MAX_VALUE, Integer.MAX_VALUE));
+    }
+}
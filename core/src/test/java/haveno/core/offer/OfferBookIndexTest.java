@@ -0,0 +1,156 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.core.offer;
+
+import haveno.core.monetary.Price;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OfferBookIndexTest {
+
+    @Test
+    public void testMarketsAreSortedBestPriceFirst() {
+        OfferBookIndex index = new OfferBookIndex(currencyCode -> 0);
+        index.put(offer("b1", "USD", OfferDirection.BUY, 100, 1, false, List.of("k1")));
+        index.put(offer("b2", "USD", OfferDirection.BUY, 120, 1, false, List.of("k2")));
+        index.put(offer("b3", "USD", OfferDirection.BUY, 100, 5, false, List.of("k3")));
+        index.put(offer("s1", "USD", OfferDirection.SELL, 130, 1, false, List.of("k4")));
+        index.put(offer("s2", "USD", OfferDirection.SELL, 125, 1, false, List.of("k5")));
+        index.put(offer("e1", "EUR", OfferDirection.SELL, 90, 1, false, List.of("k6")));
+
+        assertEquals(List.of("b2", "b3", "b1"), ids(index.getOffers("USD", OfferDirection.BUY)));
+        assertEquals(List.of("s2", "s1"), ids(index.getOffers("usd", OfferDirection.SELL)));
+        assertEquals("b2", index.getBestOffer("USD", OfferDirection.BUY).getId());
+        assertEquals(List.of("e1"), ids(index.getOffers("EUR", OfferDirection.SELL)));
+        assertTrue(index.getOffers("EUR", OfferDirection.BUY).isEmpty());
+        assertEquals(6, index.size());
+    }
+
+    @Test
+    public void testCryptoMarketsAreReversed() {
+        OfferBookIndex index = new OfferBookIndex(currencyCode -> 0);
+        index.put(offer("b1", "BTC", OfferDirection.BUY, 100, 1, false, List.of("k1")));
+        index.put(offer("b2", "BTC", OfferDirection.BUY, 120, 1, false, List.of("k2")));
+
+        assertEquals(List.of("b1", "b2"), ids(index.getOffers("BTC", OfferDirection.BUY)));
+    }
+
+    @Test
+    public void testReplaceAndRemove() {
+        OfferBookIndex index = new OfferBookIndex(currencyCode -> 0);
+        index.put(offer("o1", "USD", OfferDirection.SELL, 100, 1, false, List.of("k1", "k2")));
+        index.put(offer("o2", "USD", OfferDirection.SELL, 110, 1, false, List.of("k2")));
+        // replacing moves the offer to its new position
+        index.put(offer("o1", "USD", OfferDirection.SELL, 120, 1, false, List.of("k1", "k2")));
+
+        assertEquals(List.of("o2", "o1"), ids(index.getOffers("USD", OfferDirection.SELL)));
+        assertEquals(List.of("o1", "o2"), ids(index.getOffersByKeyImages(List.of("k2"))));
+        assertTrue(index.isKeyImageReservedByOtherOffer("k2", "o1"));
+        assertFalse(index.isKeyImageReservedByOtherOffer("k1", "o1"));
+
+        assertEquals("o1", index.remove("o1").getId());
+        assertNull(index.remove("o1"));
+        assertFalse(index.contains("o1"));
+        assertTrue(index.getOffersByKeyImages(List.of("k1")).isEmpty());
+        assertEquals(List.of("o2"), ids(index.getOffers("USD", OfferDirection.SELL)));
+    }
+
+    @Test
+    public void testMarketBasedOffersAreResortedAfterPriceChange() {
+        long[] priceVersion = {1};
+        OfferBookIndex index = new OfferBookIndex(currencyCode -> currencyCode.equals("USD") ? priceVersion[0] : 0);
+        Offer fixed = offer("fixed", "USD", OfferDirection.SELL, 100, 1, false, List.of("k1"));
+        Offer marketBased = offer("market", "USD", OfferDirection.SELL, 110, 1, true, List.of("k2"));
+        index.put(fixed);
+        index.put(marketBased);
+        assertEquals(List.of("fixed", "market"), ids(index.getOffers("USD", OfferDirection.SELL)));
+
+        // without a new price version the snapshot of the price is used
+        Price newPrice = Price.valueOf("USD", 90);
+        when(marketBased.getPrice()).thenReturn(newPrice);
+        assertEquals(List.of("fixed", "market"), ids(index.getOffers("USD", OfferDirection.SELL)));
+
+        priceVersion[0]++;
+        assertEquals(List.of("market", "fixed"), ids(index.getOffers("USD", OfferDirection.SELL)));
+        assertEquals("market", index.getBestOffer("USD", OfferDirection.SELL).getId());
+    }
+
+    @Test
+    public void testRemoveOfferWithEqualSortKey() {
+        OfferBookIndex index = new OfferBookIndex(currencyCode -> 0);
+        for (int i = 0; i < 5; i++) {
+            index.put(offer("o" + i, "USD", OfferDirection.SELL, 100, 1, false, List.of("k" + i)));
+        }
+        index.put(offer("cheaper", "USD", OfferDirection.SELL, 90, 1, false, List.of("k5")));
+
+        assertEquals("o3", index.remove("o3").getId());
+        assertEquals("o0", index.remove("o0").getId());
+        List<String> ids = ids(index.getOffers("USD", OfferDirection.SELL));
+        assertEquals("cheaper", ids.get(0));
+        assertEquals(List.of("o1", "o2", "o4"), ids.subList(1, ids.size()).stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testRemoveMarketBasedOfferAfterPriceChange() {
+        long[] priceVersion = {1};
+        OfferBookIndex index = new OfferBookIndex(currencyCode -> priceVersion[0]);
+        Offer marketBased = offer("market", "USD", OfferDirection.SELL, 110, 1, true, List.of("k1"));
+        index.put(offer("fixed", "USD", OfferDirection.SELL, 100, 1, false, List.of("k2")));
+        index.put(marketBased);
+
+        // the entry is found by the price it got sorted with, also before the market is re-sorted
+        when(marketBased.getPrice()).thenReturn(Price.valueOf("USD", 90));
+        priceVersion[0]++;
+        assertEquals("market", index.remove("market").getId());
+        assertEquals(List.of("fixed"), ids(index.getOffers("USD", OfferDirection.SELL)));
+    }
+
+    private static Offer offer(String id,
+                               String currencyCode,
+                               OfferDirection direction,
+                               long price,
+                               long amount,
+                               boolean useMarketBasedPrice,
+                               List<String> keyImages) {
+        OfferPayload payload = mock(OfferPayload.class);
+        when(payload.getReserveTxKeyImages()).thenReturn(keyImages);
+        Offer offer = mock(Offer.class);
+        when(offer.getId()).thenReturn(id);
+        when(offer.getOfferPayload()).thenReturn(payload);
+        when(offer.getCurrencyCode()).thenReturn(currencyCode);
+        when(offer.getDirection()).thenReturn(direction);
+        when(offer.getPrice()).thenReturn(Price.valueOf(currencyCode, price));
+        when(offer.getAmount()).thenReturn(BigInteger.valueOf(amount));
+        when(offer.isUseMarketBasedPrice()).thenReturn(useMarketBasedPrice);
+        return offer;
+    }
+
+    private static List<String> ids(List<Offer> offers) {
+        return offers.stream().map(Offer::getId).collect(Collectors.toList());
+    }
+}
@@ -17,11 +17,26 @@
 
 package haveno.core.offer;
 
+import haveno.core.monetary.Price;
+import haveno.core.provider.price.MarketPrice;
+import haveno.core.provider.price.PriceFeedService;
 import org.junit.jupiter.api.Test;
 
+import java.time.Instant;
+
+import static com.natpryce.makeiteasy.MakeItEasy.make;
+import static com.natpryce.makeiteasy.MakeItEasy.with;
+import static haveno.core.offer.OfferMaker.btcUsdOffer;
+import static haveno.core.offer.OfferMaker.useMarketBasedPrice;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class OfferTest {
@@ -45,4 +60,25 @@ public class OfferTest {
         Offer offer = new Offer(payload);
         assertTrue(offer.isRange());
     }
+
+    @Test
+    public void testMarketBasedPriceIsCachedUntilPriceVersionChanges() {
+        PriceFeedService priceFeedService = mock(PriceFeedService.class);
+        when(priceFeedService.getPriceVersion(anyString())).thenReturn(1L);
+        when(priceFeedService.getMarketPrice(anyString()))
+                .thenReturn(new MarketPrice("USD", 100, Instant.now().getEpochSecond(), true));
+        Offer offer = make(btcUsdOffer.but(with(useMarketBasedPrice, true)));
+        offer.setPriceFeedService(priceFeedService);
+
+        Price price = offer.getPrice();
+        assertSame(price, offer.getPrice());
+        verify(priceFeedService, times(1)).getMarketPrice(anyString());
+
+        when(priceFeedService.getPriceVersion(anyString())).thenReturn(2L);
+        when(priceFeedService.getMarketPrice(anyString()))
+                .thenReturn(new MarketPrice("USD", 200, Instant.now().getEpochSecond(), true));
+        Price newPrice = offer.getPrice();
+        assertNotSame(price, newPrice);
+        assertEquals(2 * price.getValue(), newPrice.getValue());
+    }
 }
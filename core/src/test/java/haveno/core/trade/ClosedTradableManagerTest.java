@@ -0,0 +1,191 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.core.trade;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import haveno.common.UserThread;
+import haveno.common.persistence.PersistenceManager;
+import haveno.common.proto.persistable.PersistenceProtoResolver;
+import haveno.core.offer.Offer;
+import haveno.core.offer.OpenOffer;
+import haveno.core.provider.price.PriceFeedService;
+import haveno.core.trade.statistics.TradeStatisticsManager;
+import haveno.core.user.Preferences;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ClosedTradableManagerTest {
+    private static final int ARCHIVE_AFTER_DAYS = 10;
+
+    @TempDir
+    File storageDir;
+    private PersistenceProtoResolver persistenceProtoResolver;
+
+    @BeforeEach
+    public void setUp() {
+        UserThread.setExecutor(MoreExecutors.directExecutor());
+        persistenceProtoResolver = mock(PersistenceProtoResolver.class);
+        // The archived offers are restored as new mocks with the id and version they were written with
+        when(persistenceProtoResolver.fromProto(any())).thenAnswer(invocation -> {
+            protobuf.PersistableEnvelope proto = invocation.getArgument(0);
+            protobuf.OpenOffer openOffer = proto.getTradableList().getTradable(0).getOpenOffer();
+            return new TradableList<>(List.of(mockOpenOffer(openOffer.getChallenge(), new Date(), openOffer.getTriggerPrice())));
+        });
+    }
+
+    @Test
+    public void testMaybeArchiveMovesOnlyOldTradables() {
+        ClosedTradableManager manager = createManager();
+        OpenOffer oldOffer = mockOpenOffer("old", daysAgo(ARCHIVE_AFTER_DAYS + 1), 1);
+        OpenOffer newOffer = mockOpenOffer("new", daysAgo(1), 1);
+        manager.add(oldOffer);
+        manager.add(newOffer);
+
+        manager.maybeArchive();
+        manager.awaitArchiveThread();
+
+        assertEquals(List.of(newOffer), manager.getTradableList());
+        assertEquals(1, manager.getArchivedSummaries().size());
+        assertEquals("OpenOffer/old", manager.getArchivedSummaries().get(0).getKey());
+        assertTrue(manager.containsTradableWithId("old"));
+        // Not loaded yet
+        assertFalse(manager.getTradableById("old").isPresent());
+
+        Tradable loaded = manager.loadArchivedTradable(manager.getArchivedSummaries().get(0)).join().orElseThrow();
+        assertEquals("old", loaded.getId());
+        assertSame(loaded, manager.loadArchivedTradable(manager.getArchivedSummaries().get(0)).join().orElseThrow());
+        assertSame(loaded, manager.getTradableById("old").orElseThrow());
+    }
+
+    @Test
+    public void testLoadedArchivedTradablesAreEvicted() {
+        ClosedTradableManager manager = createManager();
+        int numOffers = ClosedTradableManager.MAX_LOADED_ARCHIVED_TRADABLES + 1;
+        for (int i = 0; i < numOffers; i++) {
+            manager.add(mockOpenOffer(String.valueOf(i), daysAgo(ARCHIVE_AFTER_DAYS + 1), 1));
+        }
+        manager.maybeArchive();
+        manager.awaitArchiveThread();
+
+        for (ClosedTradeSummary summary : manager.getArchivedSummaries()) {
+            assertTrue(manager.loadArchivedTradable(summary).join().isPresent());
+        }
+
+        // The least recently used one got evicted and is loaded again on demand
+        String firstId = manager.getArchivedSummaries().get(0).getId();
+        String lastId = manager.getArchivedSummaries().get(numOffers - 1).getId();
+        assertFalse(manager.getTradableById(firstId).isPresent());
+        assertTrue(manager.getTradableById(lastId).isPresent());
+        assertTrue(manager.loadArchivedTradable(manager.getArchivedSummaries().get(0)).join().isPresent());
+    }
+
+    @Test
+    public void testChangedArchivedTradableIsWrittenBack() {
+        ClosedTradableManager manager = createManager();
+        manager.add(mockOpenOffer("old", daysAgo(ARCHIVE_AFTER_DAYS + 1), 1));
+        manager.maybeArchive();
+        manager.awaitArchiveThread();
+
+        OpenOffer loaded = (OpenOffer) manager.loadArchivedTradable(manager.getArchivedSummaries().get(0)).join().orElseThrow();
+        when(loaded.toProtoMessage()).thenReturn(toProto("old", 2));
+        manager.requestPersistence(loaded);
+        manager.awaitArchiveThread();
+
+        // The summaries are not persisted by the mocked persistence manager, so they are recovered from the archive
+        ClosedTradableManager restarted = createManager();
+        restarted.reconcileArchive();
+        restarted.awaitArchiveThread();
+
+        assertEquals(1, restarted.getArchivedSummaries().size());
+        OpenOffer reloaded = (OpenOffer) restarted.loadArchivedTradable(restarted.getArchivedSummaries().get(0)).join().orElseThrow();
+        assertEquals(2, reloaded.getTriggerPrice());
+    }
+
+    @Test
+    public void testReconcileArchiveRecoversMissingSummaries() {
+        ClosedTradableManager manager = createManager();
+        manager.add(mockOpenOffer("a", daysAgo(ARCHIVE_AFTER_DAYS + 1), 1));
+        manager.add(mockOpenOffer("b", daysAgo(ARCHIVE_AFTER_DAYS + 2), 1));
+        manager.maybeArchive();
+        manager.awaitArchiveThread();
+
+        ClosedTradableManager restarted = createManager();
+        assertTrue(restarted.getArchivedSummaries().isEmpty());
+        restarted.reconcileArchive();
+        restarted.awaitArchiveThread();
+
+        assertEquals(2, restarted.getArchivedSummaries().size());
+        assertTrue(restarted.containsTradableWithId("a"));
+        assertTrue(restarted.containsTradableWithId("b"));
+        Optional<Tradable> loaded = restarted.loadArchivedTradable(restarted.getArchivedSummaries().get(0)).join();
+        assertTrue(loaded.isPresent());
+    }
+
+    @SuppressWarnings("unchecked")
+    private ClosedTradableManager createManager() {
+        return new ClosedTradableManager(null,
+                mock(PriceFeedService.class),
+                mock(Preferences.class),
+                mock(TradeStatisticsManager.class),
+                mock(PersistenceManager.class),
+                mock(CleanupMailboxMessagesService.class),
+                mock(PersistenceManager.class),
+                persistenceProtoResolver,
+                storageDir,
+                ARCHIVE_AFTER_DAYS);
+    }
+
+    // The version is stored as trigger price to detect which state got written
+    private static OpenOffer mockOpenOffer(String id, Date date, long version) {
+        Offer offer = mock(Offer.class);
+        when(offer.getCurrencyCode()).thenReturn("USD");
+        OpenOffer openOffer = mock(OpenOffer.class);
+        when(openOffer.getId()).thenReturn(id);
+        when(openOffer.getDate()).thenReturn(date);
+        when(openOffer.getOffer()).thenReturn(offer);
+        when(openOffer.getState()).thenReturn(OpenOffer.State.CANCELED);
+        when(openOffer.getTriggerPrice()).thenReturn(version);
+        when(openOffer.toProtoMessage()).thenReturn(toProto(id, version));
+        return openOffer;
+    }
+
+    private static protobuf.Tradable toProto(String id, long version) {
+        return protobuf.Tradable.newBuilder()
+                .setOpenOffer(protobuf.OpenOffer.newBuilder().setChallenge(id).setTriggerPrice(version))
+                .build();
+    }
+
+    private static Date daysAgo(int days) {
+        return new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days));
+    }
+}
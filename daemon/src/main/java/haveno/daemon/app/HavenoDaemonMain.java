@@ -18,6 +18,7 @@
 package haveno.daemon.app;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import haveno.common.TimingWheelTimer;
 import haveno.common.UserThread;
 import haveno.common.app.AppModule;
 import haveno.common.crypto.IncorrectPasswordException;
@@ -80,6 +81,8 @@ public class HavenoDaemonMain extends HavenoHeadlessAppMain {
                 .setDaemon(true)
                 .build();
         UserThread.setExecutor(Executors.newSingleThreadExecutor(threadFactory));
+        UserThread.setTimerClass(TimingWheelTimer.class);
+        UserThread.enableLanes();
     }
 
     @Override
@@ -0,0 +1,96 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.daemon.grpc;
+
+import com.google.inject.Inject;
+import haveno.common.TaskWatchdog;
+import haveno.core.api.CoreApi;
+import haveno.daemon.grpc.interceptor.CallRateMeteringInterceptor;
+import haveno.daemon.grpc.interceptor.GrpcCallRateMeter;
+import haveno.proto.grpc.DiagnosticsGrpc.DiagnosticsImplBase;
+import haveno.proto.grpc.GetThreadStatsReply;
+import haveno.proto.grpc.GetThreadStatsRequest;
+import haveno.proto.grpc.LatencyHistogramInfo;
+import haveno.proto.grpc.StalledTaskInfo;
+import io.grpc.ServerInterceptor;
+import io.grpc.stub.StreamObserver;
+import java.util.HashMap;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+
+import static haveno.daemon.grpc.interceptor.GrpcServiceRateMeteringConfig.getCustomRateMeteringInterceptor;
+import static haveno.proto.grpc.DiagnosticsGrpc.getGetThreadStatsMethod;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+@Slf4j
+class GrpcDiagnosticsService extends DiagnosticsImplBase {
+    private static final int DEFAULT_TOP_N = 10;
+
+    private final CoreApi coreApi;
+    private final GrpcExceptionHandler exceptionHandler;
+
+    @Inject
+    public GrpcDiagnosticsService(CoreApi coreApi, GrpcExceptionHandler exceptionHandler) {
+        this.coreApi = coreApi;
+        this.exceptionHandler = exceptionHandler;
+    }
+
+    @Override
+    public void getThreadStats(GetThreadStatsRequest req, StreamObserver<GetThreadStatsReply> responseObserver) {
+        try {
+            var reply = GetThreadStatsReply.newBuilder()
+                    .setWatchdogEnabled(TaskWatchdog.isEnabled())
+                    .setStallThresholdMs(TaskWatchdog.getStallThresholdMs());
+            TaskWatchdog.getHistograms().forEach((name, histogram) -> reply.addHistograms(LatencyHistogramInfo.newBuilder()
+                    .setName(name)
+                    .setCount(histogram.getCount())
+                    .setP50Ms(histogram.getPercentileMs(50))
+                    .setP99Ms(histogram.getPercentileMs(99))
+                    .setMaxMs(histogram.getMaxMs())));
+            int topN = req.getTopN() > 0 ? req.getTopN() : DEFAULT_TOP_N;
+            TaskWatchdog.getTopOffenders(topN).forEach(offender -> {
+                var stalledTask = StalledTaskInfo.newBuilder()
+                        .setName(offender.getName())
+                        .setCount(offender.getCount())
+                        .setTotalMs(offender.getTotalMs())
+                        .setMaxMs(offender.getMaxMs());
+                if (offender.getLastStack() != null) stalledTask.setLastStack(offender.getLastStack());
+                reply.addStalledTasks(stalledTask);
+            });
+            responseObserver.onNext(reply.build());
+            responseObserver.onCompleted();
+        } catch (Throwable cause) {
+            exceptionHandler.handleException(log, cause, responseObserver);
+        }
+    }
+
+    final ServerInterceptor[] interceptors() {
+        Optional<ServerInterceptor> rateMeteringInterceptor = rateMeteringInterceptor();
+        return rateMeteringInterceptor.map(serverInterceptor ->
+                new ServerInterceptor[]{serverInterceptor}).orElseGet(() -> new ServerInterceptor[0]);
+    }
+
+    final Optional<ServerInterceptor> rateMeteringInterceptor() {
+        return getCustomRateMeteringInterceptor(coreApi.getConfig().appDataDir, this.getClass())
+                .or(() -> Optional.of(CallRateMeteringInterceptor.valueOf(
+                        new HashMap<>() {{
+                            put(getGetThreadStatsMethod().getFullMethodName(), new GrpcCallRateMeter(1, SECONDS));
+                        }}
+                )));
+    }
+}
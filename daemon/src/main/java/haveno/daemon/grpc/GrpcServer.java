@@ -42,6 +42,7 @@ public class GrpcServer {
                       GrpcAccountService accountService,
                       GrpcDisputeAgentsService disputeAgentsService,
                       GrpcDisputesService disputesService,
+                      GrpcDiagnosticsService diagnosticsService,
                       GrpcHelpService helpService,
                       GrpcOffersService offersService,
                       GrpcPaymentAccountsService paymentAccountsService,
@@ -58,6 +59,7 @@ public class GrpcServer {
                 .addService(interceptForward(accountService, accountService.interceptors()))
                 .addService(interceptForward(disputeAgentsService, disputeAgentsService.interceptors()))
                 .addService(interceptForward(disputesService, disputesService.interceptors()))
+                .addService(interceptForward(diagnosticsService, diagnosticsService.interceptors()))
                 .addService(interceptForward(helpService, helpService.interceptors()))
                 .addService(interceptForward(offersService, offersService.interceptors()))
                 .addService(interceptForward(paymentAccountsService, paymentAccountsService.interceptors()))
@@ -115,13 +115,21 @@ class GrpcTradesService extends TradesImplBase {
     public void getTrades(GetTradesRequest req,
                          StreamObserver<GetTradesReply> responseObserver) {
         try {
-            List<TradeInfo> trades = coreApi.getTrades()
+            var page = coreApi.getTrades(req.getCurrencyCode(),
+                    req.getFromDate(),
+                    req.getToDate(),
+                    req.getOpenOnly(),
+                    req.getClosedOnly(),
+                    req.getOffset(),
+                    req.getLimit());
+            List<TradeInfo> trades = page.first
                     .stream().map(TradeInfo::toTradeInfo)
                     .collect(Collectors.toList());
             var reply = GetTradesReply.newBuilder()
                     .addAllTrades(trades.stream()
                             .map(TradeInfo::toProtoMessage)
                             .collect(Collectors.toList()))
+                    .setTotalCount(page.second)
                     .build();
             responseObserver.onNext(reply);
             responseObserver.onCompleted();
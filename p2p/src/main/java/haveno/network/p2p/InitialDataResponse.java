@@ -20,4 +20,9 @@ package haveno.network.p2p;
 // Marker interface for initial data response
 public interface InitialDataResponse {
     Class<? extends InitialDataRequest> associatedRequest();
+
+    // False if the response is sent in chunks and more chunks will follow
+    default boolean isFinalResponse() {
+        return true;
+    }
 }
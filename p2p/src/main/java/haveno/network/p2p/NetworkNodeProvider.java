@@ -45,6 +45,7 @@ public class NetworkNodeProvider implements Provider<NetworkNode> {
             @Nullable BanFilter banFilter,
             @Named(Config.MAX_CONNECTIONS) int maxConnections,
             @Named(Config.USE_LOCALHOST_FOR_P2P) boolean useLocalhostForP2P,
+            @Named(Config.USE_VIRTUAL_THREADS_FOR_P2P) boolean useVirtualThreadsForP2P,
             @Named(Config.NODE_PORT) int port,
             @Named(Config.HIDDEN_SERVICE_ADDRESS) String hiddenServiceAddress,
             @Named(Config.TOR_DIR) File torDir,
@@ -75,6 +76,7 @@ public class NetworkNodeProvider implements Provider<NetworkNode> {
                 networkNode = new TorNetworkNodeDirectBind(port, networkProtoResolver, banFilter, maxConnections, hiddenServiceAddress);
             }
         }
+        networkNode.setUseVirtualThreads(useVirtualThreadsForP2P);
     }
 
     private TorMode getTorMode(BridgeAddressProvider bridgeAddressProvider,
@@ -40,6 +40,7 @@ import static haveno.common.config.Config.TOR_CONTROL_USE_SAFE_COOKIE_AUTH;
 import static haveno.common.config.Config.TOR_DIR;
 import static haveno.common.config.Config.TOR_STREAM_ISOLATION;
 import static haveno.common.config.Config.USE_LOCALHOST_FOR_P2P;
+import static haveno.common.config.Config.USE_VIRTUAL_THREADS_FOR_P2P;
 import haveno.network.Socks5ProxyProvider;
 import haveno.network.http.HttpClient;
 import haveno.network.http.HttpClientImpl;
@@ -84,6 +85,7 @@ public class P2PModule extends AppModule {
         requestStaticInjection(Connection.class);
 
         bindConstant().annotatedWith(named(USE_LOCALHOST_FOR_P2P)).to(config.useLocalhostForP2P);
+        bindConstant().annotatedWith(named(USE_VIRTUAL_THREADS_FOR_P2P)).to(config.useVirtualThreadsForP2P);
 
         bind(File.class).annotatedWith(named(TOR_DIR)).toInstance(config.torDir);
 
@@ -535,7 +535,7 @@ public class MailboxMessageService implements HashMapChangedListener, PersistedD
                 mailboxMessageList.add(mailboxItem);
                 log.trace("## handleMailboxItem uid={}\nhash={}",
                         uid,
-                        P2PDataStorage.get32ByteHashAsByteArray(mailboxItem.getProtectedMailboxStorageEntry().getProtectedStoragePayload()));
+                        P2PDataStorage.getHashOfPayload(mailboxItem.getProtectedMailboxStorageEntry()));
 
                 requestPersistence();
             }
@@ -631,7 +631,7 @@ public class MailboxMessageService implements HashMapChangedListener, PersistedD
                     keyRing.getSignatureKeyPair(),
                     receiversPubKey);
 
-            P2PDataStorage.ByteArray hashOfPayload = P2PDataStorage.get32ByteHashAsByteArray(mailboxStoragePayload);
+            P2PDataStorage.ByteArray hashOfPayload = P2PDataStorage.getHashOfPayload(mailboxStoragePayload);
             if (p2PDataStorage.getMap().containsKey(hashOfPayload)) {
                 boolean result = p2PDataStorage.remove(updatedEntry, networkNode.getNodeAddress());
                 if (result) {
@@ -695,7 +695,7 @@ public class MailboxMessageService implements HashMapChangedListener, PersistedD
         mailboxMessageList.remove(mailboxItem);
         log.trace("## removeMailboxItemFromMap uid={}\nhash={}\nmailboxItemsByUid={}",
                 uid,
-                P2PDataStorage.get32ByteHashAsByteArray(mailboxItem.getProtectedMailboxStorageEntry().getProtectedStoragePayload()),
+                P2PDataStorage.getHashOfPayload(mailboxItem.getProtectedMailboxStorageEntry()),
                 mailboxItemsByUid.keySet()
         );
         requestPersistence();
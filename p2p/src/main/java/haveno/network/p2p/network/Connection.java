@@ -40,8 +40,8 @@ import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.inject.Inject;
 import com.google.protobuf.InvalidProtocolBufferException;
 import haveno.common.Proto;
-import haveno.common.ThreadUtils;
 import haveno.common.app.Capabilities;
+import haveno.common.app.Capability;
 import haveno.common.app.HasCapabilities;
 import haveno.common.app.Version;
 import haveno.common.config.Config;
@@ -60,9 +60,11 @@ import haveno.network.p2p.peers.keepalive.messages.KeepAliveMessage;
 import haveno.network.p2p.storage.P2PDataStorage;
 import haveno.network.p2p.storage.messages.AddDataMessage;
 import haveno.network.p2p.storage.messages.AddPersistableNetworkPayloadMessage;
+import haveno.network.p2p.storage.messages.BroadcastMessage;
 import haveno.network.p2p.storage.messages.RemoveDataMessage;
 import haveno.network.p2p.storage.payload.CapabilityRequiringPayload;
 import haveno.network.p2p.storage.payload.PersistableNetworkPayload;
+import java.io.BufferedInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -76,14 +78,17 @@ import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
@@ -97,7 +102,9 @@ import org.jetbrains.annotations.Nullable;
 
 /**
  * Connection is created by the server thread or by sendMessage from NetworkNode.
- * All handlers are called on User thread.
+ * All handlers are called via the connection's dispatcher, which preserves the order of events per connection.
+ * The dispatchers of all connections run in parallel, but hand the handlers over to one shared thread, so handlers
+ * are never called concurrently. Only {@link MessageListener#preProcessMessage} runs in parallel.
  */
 @Slf4j
 public class Connection implements HasCapabilities, Runnable, MessageListener {
@@ -116,7 +123,12 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
     //TODO decrease limits again after testing
     private static final int SOCKET_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(240);
     private static final int SHUTDOWN_TIMEOUT = 100;
-    private static final String THREAD_ID = Connection.class.getSimpleName();
+    private static final int CLOSE_MESSAGE_TIMEOUT = 2000;
+    // Max size of a broadcast message which gets coalesced with other queued messages
+    private static final int MAX_COALESCABLE_SIZE = 10 * 1024;
+    // Read buffer of the input handler if it runs on a virtual thread, so the length prefix and small envelopes
+    // are read without a socket read per byte
+    private static final int INPUT_BUFFER_SIZE = 16 * 1024;
 
     public static int getPermittedMessageSize() {
         return PERMITTED_MESSAGE_SIZE;
@@ -142,6 +154,11 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
     private final String uid;
     private final ExecutorService executorService;
     @Getter
+    private final SendScheduler sendScheduler;
+    private final boolean useVirtualThreads;
+    @Getter
+    private final ConnectionDispatcher dispatcher;
+    @Getter
     private final Statistic statistic;
     @Getter
     private final ConnectionState connectionState;
@@ -161,7 +178,6 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
     private final ObjectProperty<NodeAddress> peersNodeAddressProperty = new SimpleObjectProperty<>();
     private final List<Long> messageTimeStamps = new ArrayList<>();
     private final CopyOnWriteArraySet<MessageListener> messageListeners = new CopyOnWriteArraySet<>();
-    private volatile long lastSendTimeStamp = 0;
     // We use a weak reference here to ensure that no connection causes a memory leak in case it get closed without
     // the shutDown being called.
     private final CopyOnWriteArraySet<WeakReference<SupportedCapabilitiesListener>> capabilitiesListeners = new CopyOnWriteArraySet<>();
@@ -190,13 +206,24 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                ConnectionListener connectionListener,
                @Nullable NodeAddress peersNodeAddress,
                NetworkProtoResolver networkProtoResolver,
-               @Nullable BanFilter banFilter) {
+               @Nullable BanFilter banFilter,
+               boolean useVirtualThreads) {
         this.socket = socket;
         this.connectionListener = connectionListener;
         this.banFilter = banFilter;
+        this.useVirtualThreads = useVirtualThreads;
 
         this.uid = UUID.randomUUID().toString();
-        this.executorService = SingleThreadExecutorUtils.getSingleThreadExecutor("Executor service for connection with uid " + uid);
+        this.executorService = useVirtualThreads ?
+                Executors.newSingleThreadExecutor(Thread.ofVirtual().name("InputHandler-" + Utilities.toTruncatedString(uid, 15)).factory()) :
+                SingleThreadExecutorUtils.getSingleThreadExecutor("Executor service for connection with uid " + uid);
+        this.dispatcher = new ConnectionDispatcher("Connection-" + Utilities.toTruncatedString(uid, 15));
+        // We permit a burst of writes for the send throttle sleep time, after that one write per trigger interval
+        int sendMsgThrottleTrigger = Math.max(1, getSendMsgThrottleTrigger());
+        this.sendScheduler = new SendScheduler("Connection-" + Utilities.toTruncatedString(uid, 15),
+                this::write,
+                (int) Math.ceil((double) getSendMsgThrottleSleep() / sendMsgThrottleTrigger),
+                sendMsgThrottleTrigger);
 
         statistic = new Statistic();
 
@@ -217,7 +244,9 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
             // the associated ObjectOutputStream on the other end of the connection has written.
             // It will not return until that header has been read.
             protoOutputStream = new ProtoOutputStream(socket.getOutputStream(), statistic);
-            protoInputStream = socket.getInputStream();
+            protoInputStream = useVirtualThreads ?
+                    new BufferedInputStream(socket.getInputStream(), INPUT_BUFFER_SIZE) :
+                    socket.getInputStream();
             // We create a thread for handling inputStream data
             executorService.submit(this);
 
@@ -227,7 +256,7 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                     reportInvalidRequest(RuleViolation.PEER_BANNED, "We created an outbound connection with a banned peer");
                 }
             }
-            ThreadUtils.execute(() -> connectionListener.onConnection(this), THREAD_ID);
+            dispatcher.executeOnListenerThread(() -> connectionListener.onConnection(this));
         } catch (Throwable e) {
             handleException(e);
         }
@@ -242,13 +271,36 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
         return capabilities;
     }
 
-    void sendMessage(NetworkEnvelope networkEnvelope) {
-        long ts = System.currentTimeMillis();
+    /**
+     * Queues the envelope for sending. Writes are paced by the connection's SendScheduler, so the calling thread is
+     * never blocked for throttling.
+     *
+     * @return a future completing when the envelope was written or completing exceptionally if the write failed
+     */
+    CompletableFuture<Void> sendMessage(NetworkEnvelope networkEnvelope) {
+        return sendMessage(networkEnvelope, null);
+    }
+
+    /**
+     * Sends the shared encoding of the envelope. As the envelope is shared with other connections it does not get
+     * modified. If some envelopes of a BundleOfEnvelopes fail the capability check we send a copy of the bundle
+     * without them, encoded for this connection only.
+     */
+    CompletableFuture<Void> sendMessage(PreEncodedEnvelope preEncodedEnvelope) {
+        NetworkEnvelope networkEnvelope = preEncodedEnvelope.getEnvelope();
+        if (networkEnvelope instanceof BundleOfEnvelopes && !testCapabilityWithoutUpdate(networkEnvelope)) {
+            BundleOfEnvelopes copy = new BundleOfEnvelopes(new ArrayList<>(((BundleOfEnvelopes) networkEnvelope).getEnvelopes()));
+            return sendMessage(copy, null);
+        }
+        return sendMessage(networkEnvelope, preEncodedEnvelope);
+    }
+
+    private CompletableFuture<Void> sendMessage(NetworkEnvelope networkEnvelope, @Nullable PreEncodedEnvelope preEncodedEnvelope) {
         log.debug(">> Send networkEnvelope of type: {}", networkEnvelope.getClass().getSimpleName());
 
         if (stopped) {
             log.debug("called sendMessage but was already stopped");
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
         if (banFilter != null &&
@@ -256,34 +308,96 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                 banFilter.isPeerBanned(peersNodeAddressOptional.get())) {
             String errorMessage = "We tried to send a message to a banned peer. message=" + networkEnvelope.getClass().getSimpleName();
             reportInvalidRequest(RuleViolation.PEER_BANNED, errorMessage);
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
-        if (!testCapability(networkEnvelope)) {
+        boolean isCapabilitySupported = preEncodedEnvelope == null ?
+                testCapability(networkEnvelope) :
+                testCapabilityWithoutUpdate(networkEnvelope);
+        if (!isCapabilitySupported) {
             log.debug("Capability for networkEnvelope is required but not supported");
+            return CompletableFuture.completedFuture(null);
+        }
+        // We serialize only once on the calling thread and use the proto for the size and for writing
+        protobuf.NetworkEnvelope proto = preEncodedEnvelope == null ? networkEnvelope.toProtoNetworkEnvelope() : null;
+        int networkEnvelopeSize = proto != null ? proto.getSerializedSize() : preEncodedEnvelope.getSerializedSize();
+        return sendScheduler.enqueue(new SendScheduler.OutboundMessage(networkEnvelope,
+                proto,
+                preEncodedEnvelope,
+                networkEnvelopeSize,
+                isCoalescable(networkEnvelope, networkEnvelopeSize),
+                // The CloseConnectionMessage is sent right before we close the socket, so it must not wait for
+                // the queued messages
+                networkEnvelope instanceof CloseConnectionMessage));
+    }
+
+    // Small broadcast messages can be sent bundled if the peer got too many writes. Their order does not matter as
+    // the storage handles them by their sequence number.
+    private boolean isCoalescable(NetworkEnvelope networkEnvelope, int size) {
+        return networkEnvelope instanceof BroadcastMessage &&
+                !(networkEnvelope instanceof BundleOfEnvelopes) &&
+                size <= MAX_COALESCABLE_SIZE &&
+                capabilities.contains(Capability.BUNDLE_OF_ENVELOPES);
+    }
+
+    // Called from the SendScheduler. Several messages are sent as one BundleOfEnvelopes.
+    private void write(List<SendScheduler.OutboundMessage> batch) {
+        long ts = System.currentTimeMillis();
+        if (stopped) {
+            log.debug("Write of {} messages skipped as connection was already stopped", batch.size());
             return;
         }
-        int networkEnvelopeSize = networkEnvelope.toProtoNetworkEnvelope().getSerializedSize();
-        try {
-            // Throttle outbound network_messages
-            long now = System.currentTimeMillis();
-            long elapsed = now - lastSendTimeStamp;
-            if (elapsed < getSendMsgThrottleTrigger()) {
-                log.debug("We got 2 sendMessage requests in less than {} ms. We set the thread to sleep " +
-                                "for {} ms to avoid flooding our peer. lastSendTimeStamp={}, now={}, elapsed={}, networkEnvelope={}",
-                        getSendMsgThrottleTrigger(), getSendMsgThrottleSleep(), lastSendTimeStamp, now, elapsed,
-                        networkEnvelope.getClass().getSimpleName());
-
-                Thread.sleep(getSendMsgThrottleSleep());
-            }
 
-            lastSendTimeStamp = now;
+        NetworkEnvelope networkEnvelope;
+        protobuf.NetworkEnvelope proto;
+        PreEncodedEnvelope preEncodedEnvelope;
+        int networkEnvelopeSize;
+        if (batch.size() == 1) {
+            SendScheduler.OutboundMessage message = batch.get(0);
+            networkEnvelope = message.getNetworkEnvelope();
+            proto = message.getProto();
+            preEncodedEnvelope = message.getPreEncodedEnvelope();
+            networkEnvelopeSize = message.getSize();
+        } else {
+            networkEnvelope = new BundleOfEnvelopes(batch.stream()
+                    .map(SendScheduler.OutboundMessage::getNetworkEnvelope)
+                    .collect(Collectors.toList()));
+            proto = networkEnvelope.toProtoNetworkEnvelope();
+            preEncodedEnvelope = null;
+            networkEnvelopeSize = proto.getSerializedSize();
+            log.debug("Coalesced {} queued messages into a BundleOfEnvelopes of {} bytes", batch.size(), networkEnvelopeSize);
+        }
+
+        // Large envelopes are sent compressed if the peer supports it
+        if (networkEnvelopeSize >= EnvelopeCompression.MIN_SIZE && capabilities.contains(Capability.COMPRESSED_ENVELOPES)) {
+            int compressedSize = networkEnvelopeSize;
+            if (proto != null) {
+                protobuf.NetworkEnvelope compressedProto = EnvelopeCompression.compress(proto, networkEnvelopeSize);
+                if (compressedProto != null) {
+                    proto = compressedProto;
+                    compressedSize = compressedProto.getSerializedSize();
+                }
+            } else {
+                PreEncodedEnvelope compressedEnvelope = preEncodedEnvelope.getCompressed();
+                if (compressedEnvelope != null) {
+                    preEncodedEnvelope = compressedEnvelope;
+                    compressedSize = compressedEnvelope.getSerializedSize();
+                }
+            }
+            statistic.addSentCompressedMessage(networkEnvelope, networkEnvelopeSize, compressedSize);
+        }
 
-            if (!stopped) {
-                protoOutputStream.writeEnvelope(networkEnvelope);
-                ThreadUtils.execute(() -> messageListeners.forEach(e -> e.onMessageSent(networkEnvelope, this)), THREAD_ID);
-                ThreadUtils.execute(() -> connectionStatistics.addSendMsgMetrics(System.currentTimeMillis() - ts, networkEnvelopeSize), THREAD_ID);
+        try {
+            if (proto != null) {
+                protoOutputStream.writeEnvelope(networkEnvelope, proto);
+            } else {
+                protoOutputStream.writeEnvelope(preEncodedEnvelope);
             }
+            int size = networkEnvelopeSize;
+            // Listeners get the messages as sent by the caller, not the BundleOfEnvelopes we coalesced them into
+            dispatcher.executeOnListenerThread(() -> batch.forEach(message ->
+                    messageListeners.forEach(e -> e.onMessageSent(message.getNetworkEnvelope(), this))));
+            dispatcher.execute(() -> connectionStatistics.addSendMsgMetrics(System.currentTimeMillis() - ts, size));
         } catch (Throwable t) {
             handleException(t);
             throw new RuntimeException(t);
@@ -304,6 +418,17 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                 .orElse(true);
     }
 
+    private boolean testCapabilityWithoutUpdate(NetworkEnvelope networkEnvelope) {
+        if (networkEnvelope instanceof BundleOfEnvelopes) {
+            return ((BundleOfEnvelopes) networkEnvelope).getEnvelopes().stream()
+                    .allMatch(this::testCapabilityWithoutUpdate);
+        }
+
+        return extractCapabilityRequiringPayload(networkEnvelope)
+                .map(this::testCapability)
+                .orElse(true);
+    }
+
     private boolean testCapability(CapabilityRequiringPayload capabilityRequiringPayload) {
         boolean result = capabilities.containsAll(capabilityRequiringPayload.getRequiredCapabilities());
         if (!result) {
@@ -411,13 +536,19 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
         if (networkEnvelope instanceof BundleOfEnvelopes) {
             onBundleOfEnvelopes((BundleOfEnvelopes) networkEnvelope, connection);
         } else {
-            ThreadUtils.execute(() -> messageListeners.forEach(e -> e.onMessage(networkEnvelope, connection)), THREAD_ID);
+            dispatchMessage(networkEnvelope, connection);
         }
     }
 
+    private void dispatchMessage(NetworkEnvelope networkEnvelope, Connection connection) {
+        dispatcher.execute(() -> messageListeners.forEach(e -> e.preProcessMessage(networkEnvelope, connection)));
+        dispatcher.executeOnListenerThread(() -> messageListeners.forEach(e -> e.onMessage(networkEnvelope, connection)));
+    }
+
     private void onBundleOfEnvelopes(BundleOfEnvelopes bundleOfEnvelopes, Connection connection) {
         Map<P2PDataStorage.ByteArray, Set<NetworkEnvelope>> itemsByHash = new HashMap<>();
-        Set<NetworkEnvelope> envelopesToProcess = new HashSet<>();
+        // We keep the order in which the envelopes got bundled
+        Set<NetworkEnvelope> envelopesToProcess = new LinkedHashSet<>();
         List<NetworkEnvelope> networkEnvelopes = bundleOfEnvelopes.getEnvelopes();
         for (NetworkEnvelope networkEnvelope : networkEnvelopes) {
             // If SendersNodeAddressMessage we do some verifications and apply if successful, otherwise we return false.
@@ -447,9 +578,7 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                 envelopesToProcess.add(networkEnvelope);
             }
         }
-        envelopesToProcess.forEach(envelope -> ThreadUtils.execute(() -> {
-                messageListeners.forEach(listener -> listener.onMessage(envelope, connection));
-        }, THREAD_ID));
+        envelopesToProcess.forEach(envelope -> dispatchMessage(envelope, connection));
     }
 
 
@@ -509,7 +638,8 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                     try {
                         String reason = closeConnectionReason == CloseConnectionReason.RULE_VIOLATION ?
                                 getRuleViolation().name() : closeConnectionReason.name();
-                        sendMessage(new CloseConnectionMessage(reason));
+                        // We wait until the message left the send queue before we stop
+                        sendMessage(new CloseConnectionMessage(reason)).get(CLOSE_MESSAGE_TIMEOUT, TimeUnit.MILLISECONDS);
 
                         stopped = true;
 
@@ -518,7 +648,7 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                         log.error(ExceptionUtils.getStackTrace(t));
                     } finally {
                         stopped = true;
-                        ThreadUtils.execute(() -> doShutDown(closeConnectionReason, shutDownCompleteHandler), THREAD_ID);
+                        dispatcher.execute(() -> doShutDown(closeConnectionReason, shutDownCompleteHandler));
                     }
                 }, "Connection:SendCloseConnectionMessage-" + this.uid).start();
             } else {
@@ -528,12 +658,12 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
         } else {
             //TODO find out why we get called that
             log.debug("stopped was already at shutDown call");
-            ThreadUtils.execute(() -> doShutDown(closeConnectionReason, shutDownCompleteHandler), THREAD_ID);
+            dispatcher.execute(() -> doShutDown(closeConnectionReason, shutDownCompleteHandler));
         }
     }
 
     private void doShutDown(CloseConnectionReason closeConnectionReason, @Nullable Runnable shutDownCompleteHandler) {
-        ThreadUtils.execute(() -> connectionListener.onDisconnect(closeConnectionReason, this), THREAD_ID);
+        dispatcher.executeOnListenerThread(() -> connectionListener.onDisconnect(closeConnectionReason, this));
         try {
             protoOutputStream.onConnectionShutdown();
             socket.close();
@@ -543,6 +673,7 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
             log.error("Exception at shutdown. {}\n", e.getMessage(), e);
         } finally {
             capabilitiesListeners.clear();
+            sendScheduler.shutDown();
 
             try {
                 protoInputStream.close();
@@ -554,7 +685,7 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
 
             log.debug("Connection shutdown complete {}", this);
             if (shutDownCompleteHandler != null)
-                ThreadUtils.execute(shutDownCompleteHandler, THREAD_ID);
+                dispatcher.executeOnListenerThread(shutDownCompleteHandler);
         }
     }
 
@@ -782,7 +913,8 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                         return;
                     }
 
-                    // Throttle inbound network messages
+                    // Throttle inbound network messages. We do that before decompressing so a flooding peer does
+                    // not cost us the decompression.
                     long now = System.currentTimeMillis();
                     long elapsed = now - lastReadTimeStamp;
                     if (elapsed < 10) {
@@ -792,13 +924,26 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                         Thread.sleep(20);
                     }
 
+                    if (violatesThrottleLimit() && reportInvalidRequest(RuleViolation.THROTTLE_LIMIT_EXCEEDED, "Violates throttle limit"))
+                        return;
+
+                    // The size on the wire, which is smaller than the size of the envelope if it was compressed
+                    int receivedSize = proto.getSerializedSize();
+                    boolean wasCompressed = proto.hasCompressedEnvelope();
+                    if (wasCompressed) {
+                        proto = EnvelopeCompression.decompress(proto.getCompressedEnvelope(), MAX_PERMITTED_MESSAGE_SIZE);
+                    }
+
                     NetworkEnvelope networkEnvelope = networkProtoResolver.fromProto(proto);
                     lastReadTimeStamp = now;
                     log.debug("<< Received networkEnvelope of type: {}", networkEnvelope.getClass().getSimpleName());
                     int size = proto.getSerializedSize();
 
                     // We want to track the size of each object even if it is invalid data
-                    statistic.addReceivedBytes(size);
+                    statistic.addReceivedBytes(receivedSize);
+                    if (wasCompressed) {
+                        statistic.addReceivedCompressedMessage(networkEnvelope, size, receivedSize);
+                    }
 
                     // We want to track the network_messages also before the checks, so do it early...
                     statistic.addReceivedMessage(networkEnvelope);
@@ -826,9 +971,6 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                             return;
                     }
 
-                    if (violatesThrottleLimit() && reportInvalidRequest(RuleViolation.THROTTLE_LIMIT_EXCEEDED, "Violates throttle limit"))
-                        return;
-
                     // Check P2P network ID
                     String errorMessage = "RuleViolation.WRONG_NETWORK_ID. version of message=" + proto.getMessageVersion() +
                             ", app version=" + Version.getP2PMessageVersion() +
@@ -873,7 +1015,7 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                         }
 
                         onMessage(networkEnvelope, this);
-                        ThreadUtils.execute(() -> connectionStatistics.addReceivedMsgMetrics(System.currentTimeMillis() - ts, size), THREAD_ID);
+                        dispatcher.execute(() -> connectionStatistics.addReceivedMsgMetrics(System.currentTimeMillis() - ts, size));
                     }
                 } catch (InvalidClassException e) {
                     reportInvalidRequest(RuleViolation.INVALID_CLASS, e.getMessage());
@@ -919,7 +1061,7 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
         capabilitiesListeners.forEach(weakListener -> {
             SupportedCapabilitiesListener supportedCapabilitiesListener = weakListener.get();
             if (supportedCapabilitiesListener != null) {
-                ThreadUtils.execute(() -> supportedCapabilitiesListener.onChanged(supportedCapabilities), THREAD_ID);
+                dispatcher.executeOnListenerThread(() -> supportedCapabilitiesListener.onChanged(supportedCapabilities));
             }
         });
         return false;
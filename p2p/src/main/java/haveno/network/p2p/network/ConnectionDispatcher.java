@@ -0,0 +1,129 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.network.p2p.network;
+
+import haveno.common.ThreadUtils;
+import haveno.common.util.KeyedSerialExecutor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serial dispatcher for the events of a single connection (received messages, sent message callbacks,
+ * statistics updates and connect/disconnect events).
+ * <p>
+ * Tasks of one connection are run strictly in submission order on the connection's own virtual thread, while the
+ * tasks of different connections run in parallel. Tasks submitted by {@link #execute(Runnable)} must therefore be
+ * thread safe, e.g. the statistics of the connection or the {@link MessageListener#preProcessMessage} hook which
+ * verifies signatures ahead of time. The message and connection listeners (P2PDataStorage, PeerManager, the GetData
+ * handlers, ...) are not thread safe, so they are called by {@link #executeOnListenerThread(Runnable)}, which hands
+ * the task over to the "Connection" thread shared by all connections once the tasks submitted before it have run.
+ * This keeps the order of events per connection and the listeners are never called concurrently.
+ */
+@Slf4j
+public class ConnectionDispatcher {
+
+    static final String LISTENER_THREAD_ID = "Connection";
+    private static final KeyedSerialExecutor EXECUTOR = new KeyedSerialExecutor(
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(ConnectionDispatcher.class.getSimpleName() + "-", 0).factory()));
+
+    private final String name;
+    private final AtomicInteger queueSize = new AtomicInteger(0);
+    private final AtomicInteger maxQueueSize = new AtomicInteger(0);
+    private final AtomicLong numDispatched = new AtomicLong(0);
+    private final AtomicLong totalDispatchLatency = new AtomicLong(0);
+    private final AtomicLong maxDispatchLatency = new AtomicLong(0);
+
+    ConnectionDispatcher(String name) {
+        this.name = name;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Run the thread safe command on the connection's own thread after the commands submitted before.
+     */
+    public void execute(Runnable command) {
+        dispatch(command, false);
+    }
+
+    /**
+     * Run the command on the listener thread shared by all connections after the commands submitted before.
+     */
+    public void executeOnListenerThread(Runnable command) {
+        dispatch(command, true);
+    }
+
+    public int getQueueSize() {
+        return queueSize.get();
+    }
+
+    public int getMaxQueueSize() {
+        return maxQueueSize.get();
+    }
+
+    public long getNumDispatched() {
+        return numDispatched.get();
+    }
+
+    public long getMaxDispatchLatency() {
+        return maxDispatchLatency.get();
+    }
+
+    public long getAverageDispatchLatency() {
+        long num = numDispatched.get();
+        return num == 0 ? 0 : totalDispatchLatency.get() / num;
+    }
+
+    public String getInfo() {
+        return "Dispatch queue: " + getQueueSize() + " (max " + getMaxQueueSize() + "); " +
+                "dispatched: " + getNumDispatched() + "; " +
+                "dispatch latency avg/max: " + getAverageDispatchLatency() + " / " + getMaxDispatchLatency() + " ms";
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void dispatch(Runnable command, boolean onListenerThread) {
+        long enqueuedAt = System.currentTimeMillis();
+        maxQueueSize.accumulateAndGet(queueSize.incrementAndGet(), Math::max);
+        EXECUTOR.execute(() -> {
+            // Handing over from the connection's thread keeps the order with the commands submitted before
+            if (onListenerThread) ThreadUtils.execute(() -> run(command, enqueuedAt), LISTENER_THREAD_ID);
+            else run(command, enqueuedAt);
+        }, name);
+    }
+
+    private void run(Runnable command, long enqueuedAt) {
+        queueSize.decrementAndGet();
+        long latency = System.currentTimeMillis() - enqueuedAt;
+        totalDispatchLatency.addAndGet(latency);
+        maxDispatchLatency.accumulateAndGet(latency, Math::max);
+        numDispatched.incrementAndGet();
+        try {
+            command.run();
+        } catch (Throwable t) {
+            log.error("Error at dispatching task of {}: {}", name, t.getMessage(), t);
+        }
+    }
+}
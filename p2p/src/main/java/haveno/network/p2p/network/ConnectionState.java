@@ -107,7 +107,10 @@ public class ConnectionState implements MessageListener {
             numInitialDataRequests++;
             onInitialDataExchange();
         } else if (networkEnvelope instanceof InitialDataResponse) {
-            numInitialDataResponses++;
+            // A chunked response counts once, at its last chunk
+            if (((InitialDataResponse) networkEnvelope).isFinalResponse()) {
+                numInitialDataResponses++;
+            }
             onInitialDataExchange();
         } else if (networkEnvelope instanceof PrefixedSealedAndSignedMessage &&
                 connection.getPeersNodeAddressOptional().isPresent()) {
@@ -105,7 +105,9 @@ public class ConnectionStatistics implements MessageListener {
                         "Sent data: %s; %s" + ls +
                         "Received data: %s; %s" + ls +
                         "CPU time spent on sending messages: %s" + ls +
-                        "CPU time spent on receiving messages: %s",
+                        "CPU time spent on receiving messages: %s" + ls +
+                        "%s" + ls +
+                        "%s",
                 age,
                 seedNode ? "[Seed node] " : "", peer,
                 connectionState.getPeerType().name(),
@@ -116,7 +118,9 @@ public class ConnectionStatistics implements MessageListener {
                 Utilities.readableFileSize(sentBytes), sentDataMap.toString(),
                 Utilities.readableFileSize(receivedBytes), receivedDataMap.toString(),
                 Utilities.formatDurationAsWords(timeOnSendMsg),
-                Utilities.formatDurationAsWords(timeOnReceivedMsg));
+                Utilities.formatDurationAsWords(timeOnReceivedMsg),
+                connection.getDispatcher().getInfo(),
+                connection.getSendScheduler().getInfo());
     }
 
     @Override
@@ -151,7 +155,8 @@ public class ConnectionStatistics implements MessageListener {
 
         if (networkEnvelope instanceof InitialDataRequest) {
             rrtMap.putIfAbsent(key, System.currentTimeMillis());
-        } else if (networkEnvelope instanceof InitialDataResponse) {
+        } else if (networkEnvelope instanceof InitialDataResponse &&
+                ((InitialDataResponse) networkEnvelope).isFinalResponse()) {
             String associatedRequest = ((InitialDataResponse) networkEnvelope).associatedRequest().getSimpleName();
             if (rrtMap.containsKey(associatedRequest)) {
                 rrtMap.put(associatedRequest, System.currentTimeMillis() - rrtMap.get(associatedRequest));
@@ -0,0 +1,153 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.network.p2p.network;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import haveno.common.app.Version;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate compression of serialized NetworkEnvelopes. A compressed envelope is sent wrapped in a NetworkEnvelope
+ * with a CompressedEnvelope, so the length delimited framing on the wire is unchanged. Only used for peers with
+ * Capability.COMPRESSED_ENVELOPES and envelopes of at least MIN_SIZE bytes.
+ */
+final class EnvelopeCompression {
+    // Below that size the saved bytes are not worth the CPU time
+    static final int MIN_SIZE = 2 * 1024;
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private EnvelopeCompression() {
+    }
+
+    /**
+     * @param serializedEnvelope array holding the serialized NetworkEnvelope
+     * @param offset offset of the serialized NetworkEnvelope in the array
+     * @param length length of the serialized NetworkEnvelope
+     * @return the wrapper envelope with the compressed data or null if compression does not reduce the size
+     */
+    @Nullable
+    static protobuf.NetworkEnvelope compress(byte[] serializedEnvelope, int offset, int length) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(serializedEnvelope, offset, length);
+            deflater.finish();
+            ByteString.Output output = ByteString.newOutput(Math.max(64, length / 4));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                int numBytes = deflater.deflate(buffer);
+                output.write(buffer, 0, numBytes);
+                if (output.size() >= length) {
+                    return null;
+                }
+            }
+            return wrap(output.toByteString(), length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Compresses the envelope while serializing it, so no serialized copy of the uncompressed envelope is created.
+     *
+     * @param envelope the NetworkEnvelope to compress
+     * @param serializedSize the serialized size of the envelope
+     * @return the wrapper envelope with the compressed data or null if compression does not reduce the size
+     */
+    @Nullable
+    static protobuf.NetworkEnvelope compress(protobuf.NetworkEnvelope envelope, int serializedSize) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            ByteString.Output output = ByteString.newOutput(Math.max(64, serializedSize / 4));
+            DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(output, deflater, BUFFER_SIZE);
+            CodedOutputStream codedOutputStream = CodedOutputStream.newInstance(deflaterOutputStream, BUFFER_SIZE);
+            envelope.writeTo(codedOutputStream);
+            codedOutputStream.flush();
+            deflaterOutputStream.finish();
+            if (output.size() >= serializedSize) {
+                return null;
+            }
+            return wrap(output.toByteString(), serializedSize);
+        } catch (IOException e) {
+            // Cannot happen when writing to memory
+            throw new IllegalStateException("Failed to compress " + envelope.getMessageCase(), e);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static protobuf.NetworkEnvelope wrap(ByteString compressedData, int uncompressedSize) {
+        return protobuf.NetworkEnvelope.newBuilder()
+                .setMessageVersion(Version.getP2PMessageVersion())
+                .setCompressedEnvelope(protobuf.CompressedEnvelope.newBuilder()
+                        .setData(compressedData)
+                        .setUncompressedSize(uncompressedSize))
+                .build();
+    }
+
+    /**
+     * @param compressedEnvelope the received compressed envelope
+     * @param maxSize the max. permitted size of the uncompressed envelope
+     * @return the uncompressed NetworkEnvelope
+     * @throws StreamCorruptedException if the data is invalid or exceeds the declared or max. size
+     */
+    static protobuf.NetworkEnvelope decompress(protobuf.CompressedEnvelope compressedEnvelope, int maxSize)
+            throws StreamCorruptedException {
+        int uncompressedSize = compressedEnvelope.getUncompressedSize();
+        if (uncompressedSize <= 0 || uncompressedSize > maxSize) {
+            throw new StreamCorruptedException("Invalid uncompressed size of compressed envelope: " + uncompressedSize);
+        }
+
+        // We never inflate more than the declared size to protect us from decompression bombs
+        byte[] uncompressed = new byte[uncompressedSize];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressedEnvelope.getData().asReadOnlyByteBuffer());
+            int numBytes = 0;
+            while (numBytes < uncompressedSize) {
+                int inflated = inflater.inflate(uncompressed, numBytes, uncompressedSize - numBytes);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                numBytes += inflated;
+            }
+            // The data has to end exactly at the declared size
+            boolean hasMoreData = !inflater.finished() && inflater.inflate(new byte[1]) > 0;
+            if (numBytes != uncompressedSize || hasMoreData || !inflater.finished()) {
+                throw new StreamCorruptedException("Compressed envelope does not match declared size " + uncompressedSize);
+            }
+            protobuf.NetworkEnvelope envelope = protobuf.NetworkEnvelope.parseFrom(uncompressed);
+            if (envelope.hasCompressedEnvelope()) {
+                throw new StreamCorruptedException("Nested compressed envelopes are not permitted");
+            }
+            return envelope;
+        } catch (DataFormatException | InvalidProtocolBufferException e) {
+            throw new StreamCorruptedException("Invalid compressed envelope: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+}
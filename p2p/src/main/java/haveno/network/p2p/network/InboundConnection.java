@@ -29,6 +29,15 @@ public class InboundConnection extends Connection {
             ConnectionListener connectionListener,
             NetworkProtoResolver networkProtoResolver,
             @Nullable BanFilter banFilter) {
-        super(socket, messageListener, connectionListener, null, networkProtoResolver, banFilter);
+        this(socket, messageListener, connectionListener, networkProtoResolver, banFilter, false);
+    }
+
+    public InboundConnection(Socket socket,
+            MessageListener messageListener,
+            ConnectionListener connectionListener,
+            NetworkProtoResolver networkProtoResolver,
+            @Nullable BanFilter banFilter,
+            boolean useVirtualThreads) {
+        super(socket, messageListener, connectionListener, null, networkProtoResolver, banFilter, useVirtualThreads);
     }
 }
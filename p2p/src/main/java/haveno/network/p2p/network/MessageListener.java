@@ -22,6 +22,14 @@ import haveno.common.proto.network.NetworkEnvelope;
 public interface MessageListener {
     void onMessage(NetworkEnvelope networkEnvelope, Connection connection);
 
+    /**
+     * Called before onMessage on the dispatcher of the connection. The connections are dispatched in parallel, so
+     * implementations must be thread safe. Used to do expensive work which does not depend on the state of the
+     * listener, like verifying signatures, before onMessage gets called on the shared listener thread.
+     */
+    default void preProcessMessage(NetworkEnvelope networkEnvelope, Connection connection) {
+    }
+
     default void onMessageSent(NetworkEnvelope networkEnvelope, Connection connection) {
     }
 }
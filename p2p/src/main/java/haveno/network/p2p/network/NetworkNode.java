@@ -39,6 +39,7 @@ import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ReadOnlyObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import lombok.Getter;
+import lombok.Setter;
 
 import java.net.ServerSocket;
 import java.net.Socket;
@@ -55,6 +56,8 @@ import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -82,6 +85,11 @@ public abstract class NetworkNode implements MessageListener {
     private final ListeningExecutorService connectionExecutor;
     private final ListeningExecutorService sendMessageExecutor;
     private Server server;
+    // If set, the server and the input handlers of the connections run on virtual threads instead of a platform
+    // thread per socket. Must be set before the node is started.
+    @Getter
+    @Setter
+    private boolean useVirtualThreads;
 
     @Getter
     private volatile boolean isShutDownStarted;
@@ -145,7 +153,7 @@ public abstract class NetworkNode implements MessageListener {
                     "We will create a new outbound connection.", peersNodeAddress);
 
             SettableFuture<Connection> resultFuture = SettableFuture.create(); 
-            CompletableFuture<Connection> future = CompletableFuture.supplyAsync(() -> {
+            CompletableFuture<Connection> future = CompletableFuture.<CompletableFuture<Connection>>supplyAsync(() -> {
                 try {
                     Thread.currentThread().setName("NetworkNode.connectionExecutor:SendMessage-to-"
                             + Utilities.toTruncatedString(peersNodeAddress.getFullAddress(), 15));
@@ -187,8 +195,8 @@ public abstract class NetworkNode implements MessageListener {
                                 log.error("Error at closing socket " + throwable);
                             }
                         }
-                        existingConnection.sendMessage(networkEnvelope);
-                        return existingConnection;
+                        Connection connectionToUse = existingConnection;
+                        return existingConnection.sendMessage(networkEnvelope).thenApply(v -> connectionToUse);
                     } else {
                         ConnectionListener connectionListener = new ConnectionListener() {
                             @Override
@@ -214,7 +222,8 @@ public abstract class NetworkNode implements MessageListener {
                                 connectionListener,
                                 peersNodeAddress,
                                 networkProtoResolver,
-                                banFilter);
+                                banFilter,
+                                useVirtualThreads);
 
                         if (log.isDebugEnabled()) {
                             log.debug("\n\n%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%\n" +
@@ -226,13 +235,12 @@ public abstract class NetworkNode implements MessageListener {
                                     + "\n%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%\n");
                         }
                         // can take a while when using tor
-                        outboundConnection.sendMessage(networkEnvelope);
-                        return outboundConnection;
+                        return outboundConnection.sendMessage(networkEnvelope).thenApply(v -> outboundConnection);
                     }
                 } catch (Exception e) {
                     throw new RuntimeException(e);
                 }
-            }, connectionExecutor);
+            }, connectionExecutor).thenCompose(Function.identity());
 
             // handle future with timeout
             if (timeoutSeconds != null) future.orTimeout(timeoutSeconds, TimeUnit.SECONDS);
@@ -300,19 +308,40 @@ public abstract class NetworkNode implements MessageListener {
     public SettableFuture<Connection> sendMessage(Connection connection,
             NetworkEnvelope networkEnvelope,
             ListeningExecutorService executor) {
+        return sendMessage(connection, executor, () -> connection.sendMessage(networkEnvelope));
+    }
+
+    /**
+     * Sends an envelope which is encoded only once for all connections it is sent to.
+     */
+    public SettableFuture<Connection> sendMessage(Connection connection,
+            PreEncodedEnvelope preEncodedEnvelope,
+            ListeningExecutorService executor) {
+        return sendMessage(connection, executor, () -> connection.sendMessage(preEncodedEnvelope));
+    }
+
+    // The executor only serializes and queues the message, the write is done by the connection's SendScheduler
+    private SettableFuture<Connection> sendMessage(Connection connection,
+            ListeningExecutorService executor,
+            Supplier<CompletableFuture<Void>> sendTask) {
         SettableFuture<Connection> resultFuture = SettableFuture.create();
         try {
-            ListenableFuture<Connection> future = executor.submit(() -> {
+            ListenableFuture<CompletableFuture<Void>> future = executor.submit(() -> {
                 String id = connection.getPeersNodeAddressOptional().isPresent() ? connection.getPeersNodeAddressOptional().get().getFullAddress() : connection.getUid();
                 Thread.currentThread().setName("NetworkNode:SendMessage-to-" + Utilities.toTruncatedString(id, 15));
 
-                connection.sendMessage(networkEnvelope);
-                return connection;
+                return sendTask.get();
             });
 
             Futures.addCallback(future, new FutureCallback<>() {
-                public void onSuccess(Connection connection) {
-                    UserThread.execute(() -> resultFuture.set(connection));
+                public void onSuccess(CompletableFuture<Void> sentFuture) {
+                    sentFuture.whenComplete((result, throwable) -> {
+                        if (throwable == null) {
+                            UserThread.execute(() -> resultFuture.set(connection));
+                        } else {
+                            UserThread.execute(() -> resolveWithException(resultFuture, throwable));
+                        }
+                    });
                 }
 
                 public void onFailure(@NotNull Throwable throwable) {
@@ -487,7 +516,8 @@ public abstract class NetworkNode implements MessageListener {
                 NetworkNode.this,
                 connectionListener,
                 networkProtoResolver,
-                banFilter);
+                banFilter,
+                useVirtualThreads);
         server.start();
     }
 
@@ -30,6 +30,16 @@ public class OutboundConnection extends Connection {
                               NodeAddress peersNodeAddress,
                               NetworkProtoResolver networkProtoResolver,
                               @Nullable BanFilter banFilter) {
-        super(socket, messageListener, connectionListener, peersNodeAddress, networkProtoResolver, banFilter);
+        this(socket, messageListener, connectionListener, peersNodeAddress, networkProtoResolver, banFilter, false);
+    }
+
+    public OutboundConnection(Socket socket,
+                              MessageListener messageListener,
+                              ConnectionListener connectionListener,
+                              NodeAddress peersNodeAddress,
+                              NetworkProtoResolver networkProtoResolver,
+                              @Nullable BanFilter banFilter,
+                              boolean useVirtualThreads) {
+        super(socket, messageListener, connectionListener, peersNodeAddress, networkProtoResolver, banFilter, useVirtualThreads);
     }
 }
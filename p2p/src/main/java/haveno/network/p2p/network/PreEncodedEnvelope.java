@@ -0,0 +1,117 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.network.p2p.network;
+
+import com.google.protobuf.CodedOutputStream;
+import haveno.common.proto.network.NetworkEnvelope;
+import lombok.Getter;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A NetworkEnvelope with its length delimited protobuf encoding, to be shared by all connections the same envelope
+ * is sent to (e.g. at broadcasts). The encoding is done at most once, at the first send, and the encoded bytes are
+ * written directly to the socket. The same applies to the compressed encoding.
+ * <p>
+ * The envelope must not be changed after creating the PreEncodedEnvelope.
+ */
+public final class PreEncodedEnvelope {
+    @Getter
+    private final NetworkEnvelope envelope;
+    private volatile byte[] delimitedBytes;
+    private volatile int serializedSize;
+    // Set to this if the envelope is not compressible
+    private volatile PreEncodedEnvelope compressed;
+
+    public PreEncodedEnvelope(NetworkEnvelope envelope) {
+        this.envelope = envelope;
+    }
+
+    private PreEncodedEnvelope(NetworkEnvelope envelope, protobuf.NetworkEnvelope proto) {
+        this.envelope = envelope;
+        this.serializedSize = proto.getSerializedSize();
+        this.delimitedBytes = toDelimitedBytes(proto);
+    }
+
+    /**
+     * @return the size of the encoded envelope without the length prefix
+     */
+    public int getSerializedSize() {
+        encode();
+        return serializedSize;
+    }
+
+    void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(encode());
+    }
+
+    /**
+     * @return the compressed encoding of the envelope or null if compression does not reduce its size
+     */
+    @Nullable
+    PreEncodedEnvelope getCompressed() {
+        PreEncodedEnvelope result = compressed;
+        if (result == null) {
+            synchronized (this) {
+                result = compressed;
+                if (result == null) {
+                    byte[] bytes = encode();
+                    protobuf.NetworkEnvelope proto = EnvelopeCompression.compress(bytes,
+                            bytes.length - serializedSize,
+                            serializedSize);
+                    result = proto != null ? new PreEncodedEnvelope(envelope, proto) : this;
+                    compressed = result;
+                }
+            }
+        }
+        return result != this ? result : null;
+    }
+
+    private byte[] encode() {
+        byte[] bytes = delimitedBytes;
+        if (bytes == null) {
+            synchronized (this) {
+                bytes = delimitedBytes;
+                if (bytes == null) {
+                    protobuf.NetworkEnvelope proto = envelope.toProtoNetworkEnvelope();
+                    serializedSize = proto.getSerializedSize();
+                    bytes = toDelimitedBytes(proto);
+                    delimitedBytes = bytes;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static byte[] toDelimitedBytes(protobuf.NetworkEnvelope proto) {
+        int size = proto.getSerializedSize();
+        byte[] bytes = new byte[CodedOutputStream.computeUInt32SizeNoTag(size) + size];
+        CodedOutputStream codedOutputStream = CodedOutputStream.newInstance(bytes);
+        try {
+            codedOutputStream.writeUInt32NoTag(size);
+            proto.writeTo(codedOutputStream);
+        } catch (IOException e) {
+            // Cannot happen when writing to a byte array of the exact size
+            throw new IllegalStateException("Failed to encode " + proto.getMessageCase(), e);
+        }
+        codedOutputStream.checkNoSpaceLeft();
+        return bytes;
+    }
+}
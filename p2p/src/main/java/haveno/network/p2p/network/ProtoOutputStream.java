@@ -49,11 +49,21 @@ class ProtoOutputStream {
         this.statistic = statistic;
     }
 
-    void writeEnvelope(NetworkEnvelope envelope) {
+    void writeEnvelope(NetworkEnvelope envelope, protobuf.NetworkEnvelope proto) {
+        writeEnvelope(envelope, proto.getSerializedSize(), () -> proto.writeDelimitedTo(outputStream));
+    }
+
+    void writeEnvelope(PreEncodedEnvelope preEncodedEnvelope) {
+        writeEnvelope(preEncodedEnvelope.getEnvelope(),
+                preEncodedEnvelope.getSerializedSize(),
+                () -> preEncodedEnvelope.writeTo(outputStream));
+    }
+
+    private void writeEnvelope(NetworkEnvelope envelope, int serializedSize, EnvelopeWriter writer) {
         lock.lock();
 
         try {
-            writeEnvelopeOrThrow(envelope);
+            writeEnvelopeOrThrow(envelope, serializedSize, writer);
         } catch (IOException e) {
             if (!isConnectionActive.get()) {
                 // Connection was closed by us.
@@ -86,16 +96,15 @@ class ProtoOutputStream {
         }
     }
 
-    private void writeEnvelopeOrThrow(NetworkEnvelope envelope) throws IOException {
+    private void writeEnvelopeOrThrow(NetworkEnvelope envelope, int serializedSize, EnvelopeWriter writer) throws IOException {
         long ts = System.currentTimeMillis();
-        protobuf.NetworkEnvelope proto = envelope.toProtoNetworkEnvelope();
-        proto.writeDelimitedTo(outputStream);
+        writer.write();
         outputStream.flush();
         long duration = System.currentTimeMillis() - ts;
         if (duration > 10000) {
             log.info("Sending {} to peer took {} sec.", envelope.getClass().getSimpleName(), duration / 1000d);
         }
-        statistic.addSentBytes(proto.getSerializedSize());
+        statistic.addSentBytes(serializedSize);
         statistic.addSentMessage(envelope);
 
         if (!(envelope instanceof KeepAliveMessage)) {
@@ -111,4 +120,8 @@ class ProtoOutputStream {
             return false;
         }
     }
+
+    private interface EnvelopeWriter {
+        void write() throws IOException;
+    }
 }
@@ -0,0 +1,316 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.network.p2p.network;
+
+import haveno.common.proto.network.NetworkEnvelope;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Outbound queue of a single connection.
+ * <p>
+ * Writes to the peer are paced by a token bucket instead of putting the sending thread to sleep. The caller only
+ * enqueues the message and the queue is drained on a shared pool of virtual threads, which waits for a token if the
+ * peer got too many writes in a short time. Coalescable messages queued up in the meantime are written as one batch
+ * (sent as a BundleOfEnvelopes by the connection), so a burst of offer publications or refreshes results in a few
+ * writes and does not delay the sends to other peers.
+ * <p>
+ * Urgent messages (e.g. the CloseConnectionMessage) are written before all other queued messages and without
+ * waiting for a token.
+ */
+@Slf4j
+public class SendScheduler {
+
+    private static final ExecutorService CARRIER = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("SendScheduler-", 0).factory());
+
+    // Max number of messages coalesced into one write
+    static final int MAX_BATCH_SIZE = 100;
+
+    interface Writer {
+        void write(List<OutboundMessage> batch) throws Exception;
+    }
+
+    private final String name;
+    private final Writer writer;
+    private final int capacity;
+    private final long refillIntervalNanos;
+
+    private final Queue<OutboundMessage> queue = new ConcurrentLinkedQueue<>();
+    private final Queue<OutboundMessage> urgentQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final AtomicInteger queueSize = new AtomicInteger(0);
+    private final AtomicInteger maxQueueSize = new AtomicInteger(0);
+    private final AtomicLong numSent = new AtomicLong(0);
+    private final AtomicLong numWrites = new AtomicLong(0);
+    private final AtomicLong totalWaitTime = new AtomicLong(0);
+    private final AtomicLong maxWaitTime = new AtomicLong(0);
+    private volatile boolean stopped;
+    @Nullable
+    private volatile Thread drainThread;
+
+    // Only accessed by the draining thread
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param name              the name used for logging
+     * @param writer            writes a batch of messages to the peer
+     * @param capacity          max number of writes which can be done as a burst
+     * @param refillIntervalMs  time in ms after which a new write is permitted
+     */
+    SendScheduler(String name, Writer writer, int capacity, long refillIntervalMs) {
+        this.name = name;
+        this.writer = writer;
+        this.capacity = Math.max(1, capacity);
+        this.refillIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, refillIntervalMs));
+        this.tokens = this.capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return a future completing when the message was written or completing exceptionally if the write failed
+     */
+    CompletableFuture<Void> enqueue(OutboundMessage message) {
+        if (message.urgent) {
+            urgentQueue.add(message);
+        } else {
+            queue.add(message);
+        }
+        int size = queueSize.incrementAndGet();
+        maxQueueSize.accumulateAndGet(size, Math::max);
+        if (message.urgent) {
+            // The draining thread might wait for a token
+            Thread thread = drainThread;
+            if (thread != null) LockSupport.unpark(thread);
+        }
+        maybeDrain();
+        return message.future;
+    }
+
+    /**
+     * Queued messages which are not written yet are completed without being sent, as done for messages sent after
+     * the connection was stopped.
+     */
+    void shutDown() {
+        stopped = true;
+        Thread thread = drainThread;
+        if (thread != null) LockSupport.unpark(thread);
+        maybeDrain();
+    }
+
+    public int getQueueSize() {
+        return queueSize.get();
+    }
+
+    public int getMaxQueueSize() {
+        return maxQueueSize.get();
+    }
+
+    public long getNumSent() {
+        return numSent.get();
+    }
+
+    public long getNumWrites() {
+        return numWrites.get();
+    }
+
+    public long getMaxWaitTime() {
+        return maxWaitTime.get();
+    }
+
+    public long getAverageWaitTime() {
+        long num = numSent.get();
+        return num == 0 ? 0 : totalWaitTime.get() / num;
+    }
+
+    public String getInfo() {
+        return "Send queue: " + getQueueSize() + " (max " + getMaxQueueSize() + "); " +
+                "sent: " + getNumSent() + " in " + getNumWrites() + " writes; " +
+                "send wait time avg/max: " + getAverageWaitTime() + " / " + getMaxWaitTime() + " ms";
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void maybeDrain() {
+        if (draining.compareAndSet(false, true)) {
+            CARRIER.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        drainThread = Thread.currentThread();
+        try {
+            while (hasQueuedMessages()) {
+                if (stopped || Thread.currentThread().isInterrupted()) {
+                    discardQueuedMessages();
+                    return;
+                }
+                OutboundMessage urgentMessage = urgentQueue.poll();
+                if (urgentMessage != null) {
+                    queueSize.decrementAndGet();
+                    write(Collections.singletonList(urgentMessage));
+                    continue;
+                }
+                if (!acquireToken()) continue;
+
+                List<OutboundMessage> batch = pollBatch();
+                if (batch.isEmpty()) continue;
+                write(batch);
+            }
+        } finally {
+            drainThread = null;
+            draining.set(false);
+            // A message might have been added after our last poll but before we released the flag
+            if (hasQueuedMessages()) maybeDrain();
+        }
+    }
+
+    private boolean hasQueuedMessages() {
+        return !urgentQueue.isEmpty() || !queue.isEmpty();
+    }
+
+    // Waits for the next token. Returns false if we got stopped or an urgent message got queued in the meantime.
+    private boolean acquireToken() {
+        while (true) {
+            long now = System.nanoTime();
+            long numNewTokens = (now - lastRefill) / refillIntervalNanos;
+            if (numNewTokens > 0) {
+                tokens = Math.min(capacity, tokens + numNewTokens);
+                lastRefill = tokens == capacity ? now : lastRefill + numNewTokens * refillIntervalNanos;
+            }
+            if (tokens >= 1) {
+                tokens--;
+                return true;
+            }
+            if (stopped || Thread.currentThread().isInterrupted() || !urgentQueue.isEmpty()) return false;
+            // We park a virtual thread, so neither the caller nor a platform thread is blocked. shutDown unparks us.
+            LockSupport.parkNanos(this, lastRefill + refillIntervalNanos - now);
+        }
+    }
+
+    // Polls the next message and all coalescable messages directly following it, so the order of the messages
+    // is not changed.
+    private List<OutboundMessage> pollBatch() {
+        OutboundMessage first = queue.poll();
+        if (first == null) return Collections.emptyList();
+        queueSize.decrementAndGet();
+        if (!first.coalescable) return Collections.singletonList(first);
+
+        List<OutboundMessage> batch = new ArrayList<>();
+        batch.add(first);
+        OutboundMessage next;
+        while (batch.size() < MAX_BATCH_SIZE && (next = queue.peek()) != null && next.coalescable) {
+            batch.add(queue.poll());
+            queueSize.decrementAndGet();
+        }
+        return batch;
+    }
+
+    private void write(List<OutboundMessage> batch) {
+        long now = System.currentTimeMillis();
+        batch.forEach(message -> {
+            long waitTime = now - message.enqueuedAt;
+            totalWaitTime.addAndGet(waitTime);
+            maxWaitTime.accumulateAndGet(waitTime, Math::max);
+        });
+        numSent.addAndGet(batch.size());
+        numWrites.incrementAndGet();
+        try {
+            writer.write(batch);
+            batch.forEach(message -> message.future.complete(null));
+        } catch (Throwable t) {
+            log.debug("Write of {} failed: {}", name, t.toString());
+            batch.forEach(message -> message.future.completeExceptionally(t));
+        }
+    }
+
+    private void discardQueuedMessages() {
+        OutboundMessage message;
+        while ((message = urgentQueue.poll()) != null || (message = queue.poll()) != null) {
+            queueSize.decrementAndGet();
+            message.future.complete(null);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Static classes
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * A message prepared for sending. Either the serialized proto or the shared pre-encoded envelope is set.
+     */
+    @Getter
+    static final class OutboundMessage {
+        private final NetworkEnvelope networkEnvelope;
+        @Nullable
+        private final protobuf.NetworkEnvelope proto;
+        @Nullable
+        private final PreEncodedEnvelope preEncodedEnvelope;
+        private final int size;
+        // If set the message can be sent together with the other coalescable messages queued after it
+        private final boolean coalescable;
+        // If set the message is written before all other queued messages and without waiting for a token
+        private final boolean urgent;
+        private final long enqueuedAt = System.currentTimeMillis();
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        OutboundMessage(NetworkEnvelope networkEnvelope,
+                        @Nullable protobuf.NetworkEnvelope proto,
+                        @Nullable PreEncodedEnvelope preEncodedEnvelope,
+                        int size,
+                        boolean coalescable) {
+            this(networkEnvelope, proto, preEncodedEnvelope, size, coalescable, false);
+        }
+
+        OutboundMessage(NetworkEnvelope networkEnvelope,
+                        @Nullable protobuf.NetworkEnvelope proto,
+                        @Nullable PreEncodedEnvelope preEncodedEnvelope,
+                        int size,
+                        boolean coalescable,
+                        boolean urgent) {
+            this.networkEnvelope = networkEnvelope;
+            this.proto = proto;
+            this.preEncodedEnvelope = preEncodedEnvelope;
+            this.size = size;
+            this.coalescable = coalescable;
+            this.urgent = urgent;
+        }
+    }
+}
@@ -45,13 +45,19 @@ class Server implements Runnable {
     private final int localPort;
     private final Set<Connection> connections = new CopyOnWriteArraySet<>();
     private final NetworkProtoResolver networkProtoResolver;
-    private final Thread serverThread = new Thread(this);
+    private final boolean useVirtualThreads;
+    private final Thread serverThread;
 
+    // With useVirtualThreads the accept loop and the input handlers of the accepted connections run on virtual
+    // threads, so a seed node with many peers does not need a platform thread per connection.
     public Server(ServerSocket serverSocket,
             MessageListener messageListener,
             ConnectionListener connectionListener,
             NetworkProtoResolver networkProtoResolver,
-            @Nullable BanFilter banFilter) {
+            @Nullable BanFilter banFilter,
+            boolean useVirtualThreads) {
+        this.useVirtualThreads = useVirtualThreads;
+        this.serverThread = useVirtualThreads ? Thread.ofVirtual().unstarted(this) : new Thread(this);
         this.networkProtoResolver = networkProtoResolver;
         this.serverSocket = serverSocket;
         this.localPort = serverSocket.getLocalPort();
@@ -80,7 +86,8 @@ class Server implements Runnable {
                                 messageListener,
                                 connectionListener,
                                 networkProtoResolver,
-                                banFilter);
+                                banFilter,
+                                useVirtualThreads);
 
                         log.debug("\n\n%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%\n" +
                                 "Server created new inbound connection:"
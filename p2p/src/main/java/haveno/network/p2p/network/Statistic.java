@@ -32,10 +32,15 @@ import java.util.Date;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Network statistics per connection. As we are also interested in total network statistics
  * we use static properties to get traffic of all connections combined.
+ * The byte counters are atomics, as they are updated on the thread of the connection. Their properties are only
+ * updated on the user thread. The message counters are owned by the NETWORK lane of the UserThread, they are
+ * concurrent maps only so other threads can read them.
  */
 @Slf4j
 public class Statistic {
@@ -46,16 +51,22 @@ public class Statistic {
 
 
     private final static long startTime = System.currentTimeMillis();
+    private final static AtomicLong totalSentBytesCounter = new AtomicLong();
+    private final static AtomicLong totalReceivedBytesCounter = new AtomicLong();
     private final static LongProperty totalSentBytes = new SimpleLongProperty(0);
     private final static DoubleProperty totalSentBytesPerSec = new SimpleDoubleProperty(0);
     private final static LongProperty totalReceivedBytes = new SimpleLongProperty(0);
     private final static DoubleProperty totalReceivedBytesPerSec = new SimpleDoubleProperty(0);
+    // Written on the NETWORK lane
     private final static Map<String, Integer> totalReceivedMessages = new ConcurrentHashMap<>();
     private final static Map<String, Integer> totalSentMessages = new ConcurrentHashMap<>();
     private final static LongProperty numTotalSentMessages = new SimpleLongProperty(0);
     private final static DoubleProperty numTotalSentMessagesPerSec = new SimpleDoubleProperty(0);
     private final static LongProperty numTotalReceivedMessages = new SimpleLongProperty(0);
     private final static DoubleProperty numTotalReceivedMessagesPerSec = new SimpleDoubleProperty(0);
+    // Compression ratio per message type of the envelopes sent or received compressed
+    private final static Map<String, CompressionStats> totalSentCompressionStats = new ConcurrentHashMap<>();
+    private final static Map<String, CompressionStats> totalReceivedCompressionStats = new ConcurrentHashMap<>();
 
     static {
         UserThread.runPeriodically(() -> {
@@ -66,8 +77,8 @@ public class Statistic {
             numTotalSentMessagesPerSec.set(((double) numTotalSentMessages.get()) / passed);
             numTotalReceivedMessagesPerSec.set(((double) numTotalReceivedMessages.get()) / passed);
 
-            totalSentBytesPerSec.set(((double) totalSentBytes.get()) / passed);
-            totalReceivedBytesPerSec.set(((double) totalReceivedBytes.get()) / passed);
+            totalSentBytesPerSec.set(((double) totalSentBytesCounter.get()) / passed);
+            totalReceivedBytesPerSec.set(((double) totalReceivedBytesCounter.get()) / passed);
         }, 1);
 
         // We log statistics every 60 minutes
@@ -79,13 +90,17 @@ public class Statistic {
                             "Number of sent messages per sec: {};" + ls +
                             "Bytes received: {}" + ls +
                             "Number of received messages/Received messages: {} / {};" + ls +
-                            "Number of received messages per sec: {}" + ls,
-                    Utilities.readableFileSize(totalSentBytes.get()),
+                            "Number of received messages per sec: {}" + ls +
+                            "Compression of sent messages: {}" + ls +
+                            "Compression of received messages: {}" + ls,
+                    Utilities.readableFileSize(totalSentBytesCounter.get()),
                     numTotalSentMessages.get(), totalSentMessages,
                     numTotalSentMessagesPerSec.get(),
-                    Utilities.readableFileSize(totalReceivedBytes.get()),
+                    Utilities.readableFileSize(totalReceivedBytesCounter.get()),
                     numTotalReceivedMessages.get(), totalReceivedMessages,
-                    numTotalReceivedMessagesPerSec.get());
+                    numTotalReceivedMessagesPerSec.get(),
+                    totalSentCompressionStats,
+                    totalReceivedCompressionStats);
         }, TimeUnit.MINUTES.toSeconds(60));
     }
 
@@ -127,9 +142,13 @@ public class Statistic {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     private final Date creationDate;
-    private long lastActivityTimestamp = System.currentTimeMillis();
+    private volatile long lastActivityTimestamp = System.currentTimeMillis();
+    private final AtomicLong sentBytesCounter = new AtomicLong();
+    private final AtomicLong receivedBytesCounter = new AtomicLong();
+    private final AtomicBoolean bytesPropertiesUpdateQueued = new AtomicBoolean();
     private final LongProperty sentBytes = new SimpleLongProperty(0);
     private final LongProperty receivedBytes = new SimpleLongProperty(0);
+    // Written on the NETWORK lane
     private final Map<String, Integer> receivedMessages = new ConcurrentHashMap<>();
     private final Map<String, Integer> sentMessages = new ConcurrentHashMap<>();
     private final IntegerProperty roundTripTime = new SimpleIntegerProperty(0);
@@ -148,52 +167,66 @@ public class Statistic {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     void updateLastActivityTimestamp() {
-        UserThread.execute(() -> lastActivityTimestamp = System.currentTimeMillis());
+        lastActivityTimestamp = System.currentTimeMillis();
     }
 
     void addSentBytes(int value) {
-        UserThread.execute(() -> {
-            sentBytes.set(sentBytes.get() + value);
-            totalSentBytes.set(totalSentBytes.get() + value);
-        });
+        sentBytesCounter.addAndGet(value);
+        totalSentBytesCounter.addAndGet(value);
+        queueBytesPropertiesUpdate();
     }
 
     void addReceivedBytes(int value) {
+        receivedBytesCounter.addAndGet(value);
+        totalReceivedBytesCounter.addAndGet(value);
+        queueBytesPropertiesUpdate();
+    }
+
+    // At most one update is queued per connection, it applies all bytes counted until it runs
+    private void queueBytesPropertiesUpdate() {
+        if (!bytesPropertiesUpdateQueued.compareAndSet(false, true)) return;
+
         UserThread.execute(() -> {
-            receivedBytes.set(receivedBytes.get() + value);
-            totalReceivedBytes.set(totalReceivedBytes.get() + value);
+            bytesPropertiesUpdateQueued.set(false);
+            sentBytes.set(sentBytesCounter.get());
+            receivedBytes.set(receivedBytesCounter.get());
+            totalSentBytes.set(totalSentBytesCounter.get());
+            totalReceivedBytes.set(totalReceivedBytesCounter.get());
         });
     }
 
     // TODO would need msg inspection to get useful information...
     void addReceivedMessage(NetworkEnvelope networkEnvelope) {
         String messageClassName = networkEnvelope.getClass().getSimpleName();
-        int counter = 1;
-        if (receivedMessages.containsKey(messageClassName)) {
-            counter = receivedMessages.get(messageClassName) + 1;
-        }
-        receivedMessages.put(messageClassName, counter);
-
-        counter = 1;
-        if (totalReceivedMessages.containsKey(messageClassName)) {
-            counter = totalReceivedMessages.get(messageClassName) + 1;
-        }
-        totalReceivedMessages.put(messageClassName, counter);
+        UserThread.execute(() -> {
+            incrementCounter(receivedMessages, messageClassName);
+            incrementCounter(totalReceivedMessages, messageClassName);
+        }, UserThread.Lane.NETWORK);
     }
 
     void addSentMessage(NetworkEnvelope networkEnvelope) {
         String messageClassName = networkEnvelope.getClass().getSimpleName();
-        int counter = 1;
-        if (sentMessages.containsKey(messageClassName)) {
-            counter = sentMessages.get(messageClassName) + 1;
-        }
-        sentMessages.put(messageClassName, counter);
+        UserThread.execute(() -> {
+            incrementCounter(sentMessages, messageClassName);
+            incrementCounter(totalSentMessages, messageClassName);
+        }, UserThread.Lane.NETWORK);
+    }
 
-        counter = 1;
-        if (totalSentMessages.containsKey(messageClassName)) {
-            counter = totalSentMessages.get(messageClassName) + 1;
-        }
-        totalSentMessages.put(messageClassName, counter);
+    // The counters are read and written in two steps, which is only safe as they are written on one lane
+    private static void incrementCounter(Map<String, Integer> counters, String messageClassName) {
+        UserThread.checkLane(UserThread.Lane.NETWORK);
+        Integer counter = counters.get(messageClassName);
+        counters.put(messageClassName, counter == null ? 1 : counter + 1);
+    }
+
+    void addSentCompressedMessage(NetworkEnvelope networkEnvelope, int uncompressedSize, int compressedSize) {
+        totalSentCompressionStats.computeIfAbsent(networkEnvelope.getClass().getSimpleName(), k -> new CompressionStats())
+                .add(uncompressedSize, compressedSize);
+    }
+
+    void addReceivedCompressedMessage(NetworkEnvelope networkEnvelope, int uncompressedSize, int compressedSize) {
+        totalReceivedCompressionStats.computeIfAbsent(networkEnvelope.getClass().getSimpleName(), k -> new CompressionStats())
+                .add(uncompressedSize, compressedSize);
     }
 
     public void setRoundTripTime(int roundTripTime) {
@@ -213,7 +246,7 @@ public class Statistic {
     }
 
     public long getSentBytes() {
-        return sentBytes.get();
+        return sentBytesCounter.get();
     }
 
     public LongProperty sentBytesProperty() {
@@ -221,7 +254,7 @@ public class Statistic {
     }
 
     public long getReceivedBytes() {
-        return receivedBytes.get();
+        return receivedBytesCounter.get();
     }
 
     public LongProperty receivedBytesProperty() {
@@ -237,7 +270,7 @@ public class Statistic {
     }
 
     public static long getTotalSentBytes() {
-        return totalSentBytes.get();
+        return totalSentBytesCounter.get();
     }
 
     public static double getTotalSentBytesPerSec() {
@@ -245,7 +278,7 @@ public class Statistic {
     }
 
     public static long getTotalReceivedBytes() {
-        return totalReceivedBytes.get();
+        return totalReceivedBytesCounter.get();
     }
 
     public static double getTotalReceivedBytesPerSec() {
@@ -260,16 +293,65 @@ public class Statistic {
         return numTotalSentMessagesPerSec.get();
     }
 
+    public static Map<String, CompressionStats> getTotalSentCompressionStats() {
+        return totalSentCompressionStats;
+    }
+
+    public static Map<String, CompressionStats> getTotalReceivedCompressionStats() {
+        return totalReceivedCompressionStats;
+    }
+
     @Override
     public String toString() {
         return "Statistic{" +
                 "\n     creationDate=" + creationDate +
                 ",\n     lastActivityTimestamp=" + lastActivityTimestamp +
-                ",\n     sentBytes=" + sentBytes +
-                ",\n     receivedBytes=" + receivedBytes +
+                ",\n     sentBytes=" + sentBytesCounter +
+                ",\n     receivedBytes=" + receivedBytesCounter +
                 ",\n     receivedMessages=" + receivedMessages +
                 ",\n     sentMessages=" + sentMessages +
                 ",\n     roundTripTime=" + roundTripTime +
                 "\n}";
     }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // CompressionStats
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public static final class CompressionStats {
+        private final AtomicLong numMessages = new AtomicLong();
+        private final AtomicLong uncompressedBytes = new AtomicLong();
+        private final AtomicLong compressedBytes = new AtomicLong();
+
+        private void add(int uncompressedSize, int compressedSize) {
+            numMessages.incrementAndGet();
+            uncompressedBytes.addAndGet(uncompressedSize);
+            compressedBytes.addAndGet(compressedSize);
+        }
+
+        public long getNumMessages() {
+            return numMessages.get();
+        }
+
+        public long getUncompressedBytes() {
+            return uncompressedBytes.get();
+        }
+
+        public long getCompressedBytes() {
+            return compressedBytes.get();
+        }
+
+        public double getRatio() {
+            long uncompressed = uncompressedBytes.get();
+            return uncompressed > 0 ? (double) compressedBytes.get() / uncompressed : 1;
+        }
+
+        @Override
+        public String toString() {
+            return "messages=" + getNumMessages() +
+                    ", " + Utilities.readableFileSize(getUncompressedBytes()) +
+                    " -> " + Utilities.readableFileSize(getCompressedBytes()) +
+                    String.format(" (ratio %.2f)", getRatio());
+        }
+    }
 }
@@ -21,11 +21,13 @@ import haveno.network.p2p.BundleOfEnvelopes;
 import haveno.network.p2p.NodeAddress;
 import haveno.network.p2p.network.Connection;
 import haveno.network.p2p.network.NetworkNode;
+import haveno.network.p2p.network.PreEncodedEnvelope;
 import haveno.network.p2p.storage.messages.BroadcastMessage;
 
 import haveno.common.Timer;
 import haveno.common.UserThread;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListeningExecutorService;
@@ -35,9 +37,11 @@ import com.google.common.util.concurrent.SettableFuture;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -86,6 +90,9 @@ public class BroadcastHandler implements PeerManager.Listener {
     @Nullable
     private Timer timeoutTimer;
     private final Set<SettableFuture<Connection>> sendMessageFutures = new CopyOnWriteArraySet<>();
+    // The message for a connection is encoded once and shared with all connections getting the same subset of the
+    // broadcastRequests. The key holds the indexes of that subset in the broadcastRequests in ascending order.
+    private final Map<List<Integer>, PreEncodedEnvelope> preEncodedEnvelopes = new ConcurrentHashMap<>();
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Constructor
@@ -170,7 +177,7 @@ public class BroadcastHandler implements PeerManager.Listener {
                 }
 
                 try {
-                    sendToPeer(connection, broadcastRequestsForConnection, executor);
+                    sendToPeer(connection, broadcastRequests, broadcastRequestsForConnection, executor);
                 } catch (RejectedExecutionException e) {
                     log.error("RejectedExecutionException at broadcast ", e);
                     cleanup();
@@ -246,7 +253,8 @@ public class BroadcastHandler implements PeerManager.Listener {
     // We exclude the requests containing a message we received from that connection
     // Also we filter out messages which requires a capability but peer does not
     // support it.
-    private List<Broadcaster.BroadcastRequest> getBroadcastRequestsForConnection(Connection connection,
+    @VisibleForTesting
+    List<Broadcaster.BroadcastRequest> getBroadcastRequestsForConnection(Connection connection,
             List<Broadcaster.BroadcastRequest> broadcastRequests) {
         return broadcastRequests.stream()
                 .filter(broadcastRequest -> !connection.getPeersNodeAddressOptional().isPresent() ||
@@ -256,11 +264,11 @@ public class BroadcastHandler implements PeerManager.Listener {
     }
 
     private void sendToPeer(Connection connection,
+            List<Broadcaster.BroadcastRequest> broadcastRequests,
             List<Broadcaster.BroadcastRequest> broadcastRequestsForConnection,
             ListeningExecutorService executor) {
-        // Can be BundleOfEnvelopes or a single BroadcastMessage
-        BroadcastMessage broadcastMessage = getMessage(broadcastRequestsForConnection);
-        SettableFuture<Connection> future = networkNode.sendMessage(connection, broadcastMessage, executor);
+        PreEncodedEnvelope preEncodedEnvelope = getPreEncodedEnvelope(broadcastRequests, broadcastRequestsForConnection);
+        SettableFuture<Connection> future = networkNode.sendMessage(connection, preEncodedEnvelope, executor);
         sendMessageFutures.add(future);
         Futures.addCallback(future, new FutureCallback<>() {
             @Override
@@ -290,6 +298,23 @@ public class BroadcastHandler implements PeerManager.Listener {
         }, MoreExecutors.directExecutor());
     }
 
+    @VisibleForTesting
+    PreEncodedEnvelope getPreEncodedEnvelope(List<Broadcaster.BroadcastRequest> broadcastRequests,
+            List<Broadcaster.BroadcastRequest> broadcastRequestsForConnection) {
+        // broadcastRequestsForConnection is a filtered subsequence of broadcastRequests
+        List<Integer> key = new ArrayList<>(broadcastRequestsForConnection.size());
+        int index = 0;
+        for (Broadcaster.BroadcastRequest broadcastRequest : broadcastRequestsForConnection) {
+            while (broadcastRequests.get(index) != broadcastRequest) {
+                index++;
+            }
+            key.add(index++);
+        }
+        // Can be BundleOfEnvelopes or a single BroadcastMessage
+        return preEncodedEnvelopes.computeIfAbsent(key,
+                k -> new PreEncodedEnvelope(getMessage(broadcastRequestsForConnection)));
+    }
+
     private BroadcastMessage getMessage(List<Broadcaster.BroadcastRequest> broadcastRequests) {
         if (broadcastRequests.size() == 1) {
             // If we only have 1 message we avoid the overhead of the BundleOfEnvelopes and send the message directly
@@ -358,6 +383,7 @@ public class BroadcastHandler implements PeerManager.Listener {
                     }
                 });
         sendMessageFutures.clear();
+        preEncodedEnvelopes.clear();
 
         peerManager.removeListener(this);
         resultHandler.onCompleted(this);
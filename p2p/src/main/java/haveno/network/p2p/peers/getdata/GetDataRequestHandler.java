@@ -23,11 +23,13 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import haveno.common.Timer;
 import haveno.common.UserThread;
+import haveno.common.app.Capability;
 import haveno.network.p2p.network.CloseConnectionReason;
 import haveno.network.p2p.network.Connection;
 import haveno.network.p2p.network.NetworkNode;
 import haveno.network.p2p.peers.getdata.messages.GetDataRequest;
 import haveno.network.p2p.peers.getdata.messages.GetDataResponse;
+import haveno.network.p2p.storage.GetDataResponseChunks;
 import haveno.network.p2p.storage.P2PDataStorage;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
@@ -41,6 +43,9 @@ public class GetDataRequestHandler {
 
     private static final int MAX_ENTRIES = 5000;
 
+    // Chunks are kept well below the max. message size so the peer can apply the first chunks while we still send
+    private static final long MAX_CHUNK_SIZE = 1024 * 1024;
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Listener
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -84,6 +89,17 @@ public class GetDataRequestHandler {
                 .map(e -> "node address " + e.getFullAddress())
                 .orElseGet(() -> "connection UID " + connection.getUid());
 
+        if (connection.getCapabilities().contains(Capability.STREAMED_GET_DATA_RESPONSE)) {
+            GetDataResponseChunks chunks = dataStorage.buildGetDataResponseChunks(getDataRequest,
+                    MAX_ENTRIES,
+                    MAX_CHUNK_SIZE,
+                    connection.getCapabilities());
+            log.info("We send the getDataResponse to peer with {} in chunks", connectionInfo);
+            sendNextChunk(chunks, connection);
+            log.info("handle GetDataRequest took {} ms", System.currentTimeMillis() - ts);
+            return;
+        }
+
         AtomicBoolean wasPersistableNetworkPayloadsTruncated = new AtomicBoolean(false);
         AtomicBoolean wasProtectedStorageEntriesTruncated = new AtomicBoolean(false);
         GetDataResponse getDataResponse = dataStorage.buildGetDataResponse(
@@ -106,14 +122,7 @@ public class GetDataRequestHandler {
                 getDataResponse.getDataSet().size(),
                 getDataResponse.getPersistableNetworkPayloadSet().size());
 
-        if (timeoutTimer == null) {
-            timeoutTimer = UserThread.runAfter(() -> {  // setup before sending to avoid race conditions
-                        String errorMessage = "A timeout occurred for getDataResponse " +
-                                " on connection:" + connection;
-                        handleFault(errorMessage, CloseConnectionReason.SEND_MSG_TIMEOUT, connection);
-                    },
-                    TIMEOUT, TimeUnit.SECONDS);
-        }
+        startTimeoutTimer(connection);
 
         SettableFuture<Connection> future = networkNode.sendMessage(connection, getDataResponse);
         Futures.addCallback(future, new FutureCallback<>() {
@@ -153,6 +162,68 @@ public class GetDataRequestHandler {
     // Private
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    // We send the next chunk only after the previous one was sent, so only one chunk is serialized at a time
+    private void sendNextChunk(GetDataResponseChunks chunks, Connection connection) {
+        if (stopped) {
+            log.trace("We have stopped already. We do not send the next chunk.");
+            return;
+        }
+
+        GetDataResponse chunk = chunks.next();
+        stopTimeoutTimer();
+        startTimeoutTimer(connection);
+        SettableFuture<Connection> future = networkNode.sendMessage(connection, chunk);
+        Futures.addCallback(future, new FutureCallback<>() {
+            @Override
+            public void onSuccess(Connection connection) {
+                UserThread.execute(() -> {
+                    if (stopped) {
+                        log.trace("We have stopped already. We ignore that networkNode.sendMessage.onSuccess call.");
+                    } else if (chunk.isHasMoreChunks()) {
+                        sendNextChunk(chunks, connection);
+                    } else {
+                        log.info("Sent all {} chunks with {} items of the getDataResponse to {}",
+                                chunk.getChunkIndex() + 1, chunks.getNumItems(), connection.getPeersNodeAddressOptional());
+                        listener.onComplete((int) chunks.getTotalSize());
+                        cleanup();
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(@NotNull Throwable throwable) {
+                UserThread.execute(() -> {
+                    if (!stopped) {
+                        String errorMessage = "Sending chunk " + chunk.getChunkIndex() + " of getDataResponse to " +
+                                connection + " failed. That is expected if the peer is offline. " +
+                                "Exception: " + throwable.getMessage();
+                        handleFault(errorMessage, CloseConnectionReason.SEND_MSG_FAILURE, connection);
+                    } else {
+                        log.trace("We have stopped already. We ignore that networkNode.sendMessage.onFailure call.");
+                    }
+                });
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private void startTimeoutTimer(Connection connection) {
+        if (timeoutTimer == null) {
+            timeoutTimer = UserThread.runAfter(() -> {  // setup before sending to avoid race conditions
+                        String errorMessage = "A timeout occurred for getDataResponse " +
+                                " on connection:" + connection;
+                        handleFault(errorMessage, CloseConnectionReason.SEND_MSG_TIMEOUT, connection);
+                    },
+                    TIMEOUT, TimeUnit.SECONDS);
+        }
+    }
+
+    private void stopTimeoutTimer() {
+        if (timeoutTimer != null) {
+            timeoutTimer.stop();
+            timeoutTimer = null;
+        }
+    }
+
     private void handleFault(String errorMessage, CloseConnectionReason closeConnectionReason, Connection connection) {
         if (!stopped) {
             log.info(errorMessage + "\n\tcloseConnectionReason=" + closeConnectionReason);
@@ -165,9 +236,6 @@ public class GetDataRequestHandler {
 
     private void cleanup() {
         stopped = true;
-        if (timeoutTimer != null) {
-            timeoutTimer.stop();
-            timeoutTimer = null;
-        }
+        stopTimeoutTimer();
     }
 }
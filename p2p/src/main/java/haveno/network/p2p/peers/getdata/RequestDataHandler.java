@@ -23,6 +23,8 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import haveno.common.Timer;
 import haveno.common.UserThread;
+import haveno.common.app.Capabilities;
+import haveno.common.app.Capability;
 import haveno.common.proto.network.NetworkEnvelope;
 import haveno.common.proto.network.NetworkPayload;
 import haveno.common.util.Tuple2;
@@ -44,9 +46,11 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 @Slf4j
 class RequestDataHandler implements MessageListener {
@@ -87,6 +91,8 @@ class RequestDataHandler implements MessageListener {
     private Timer timeoutTimer;
     private final int nonce = new Random().nextInt();
     private boolean stopped;
+    // Index of the next expected chunk if the peer sends the response in chunks
+    private int expectedChunkIndex;
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -117,25 +123,15 @@ class RequestDataHandler implements MessageListener {
         if (!stopped) {
             GetDataRequest getDataRequest;
 
+            boolean useKnownPayloadsFilter = useKnownPayloadsFilter(peerManager.findPeersCapabilities(nodeAddress));
             if (isPreliminaryDataRequest)
-                getDataRequest = dataStorage.buildPreliminaryGetDataRequest(nonce);
+                getDataRequest = dataStorage.buildPreliminaryGetDataRequest(nonce, useKnownPayloadsFilter);
             else
-                getDataRequest = dataStorage.buildGetUpdatedDataRequest(networkNode.getNodeAddress(), nonce);
-
-            if (timeoutTimer == null) {
-                timeoutTimer = UserThread.runAfter(() -> {  // setup before sending to avoid race conditions
-                            if (!stopped) {
-                                String errorMessage = "A timeout occurred at sending getDataRequest:" + getDataRequest +
-                                        " on nodeAddress:" + nodeAddress;
-                                log.debug(errorMessage + " / RequestDataHandler=" + RequestDataHandler.this);
-                                handleFault(errorMessage, nodeAddress, CloseConnectionReason.SEND_MSG_TIMEOUT);
-                            } else {
-                                log.trace("We have stopped already. We ignore that timeoutTimer.run call. " +
-                                        "Might be caused by a previous networkNode.sendMessage.onFailure.");
-                            }
-                        },
-                        TIMEOUT);
-            }
+                getDataRequest = dataStorage.buildGetUpdatedDataRequest(networkNode.getNodeAddress(), nonce, useKnownPayloadsFilter);
+
+            // setup before sending to avoid race conditions
+            startTimeoutTimer(() -> "A timeout occurred at sending getDataRequest:" + getDataRequest +
+                    " on nodeAddress:" + nodeAddress, nodeAddress);
 
             getDataRequestType = getDataRequest.getClass().getSimpleName();
             log.info("\n\n>> We send a {} to peer {}\n", getDataRequestType, nodeAddress);
@@ -177,6 +173,15 @@ class RequestDataHandler implements MessageListener {
         }
     }
 
+    // We send the PersistableNetworkPayload keys as a bloom filter unless the peer is known to lack the capability.
+    // Peers not supporting the filter would ignore it and respond with all their PersistableNetworkPayloads, so
+    // we only send it to peers which advertised the capability. At startup the capabilities of the seed nodes are
+    // usually unknown, then we send the legacy keys. The capabilities are known from their response on.
+    static boolean useKnownPayloadsFilter(Optional<Capabilities> peersCapabilities) {
+        return peersCapabilities
+                .map(capabilities -> capabilities.contains(Capability.KNOWN_PAYLOADS_FILTER))
+                .orElse(false);
+    }
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // MessageListener implementation
@@ -198,9 +203,27 @@ class RequestDataHandler implements MessageListener {
                             return;
                         }
 
+                        if (getDataResponse.getChunkIndex() != expectedChunkIndex) {
+                            handleFault("Received chunk " + getDataResponse.getChunkIndex() + " of GetDataResponse " +
+                                            "but expected chunk " + expectedChunkIndex,
+                                    peersNodeAddress,
+                                    CloseConnectionReason.RULE_VIOLATION);
+                            return;
+                        }
+
+                        // Each chunk is applied at arrival, so we do not need to wait for the full response
                         dataStorage.processGetDataResponse(getDataResponse,
                                 connection.getPeersNodeAddressOptional().get());
 
+                        if (getDataResponse.isHasMoreChunks()) {
+                            int nextChunkIndex = ++expectedChunkIndex;
+                            startTimeoutTimer(() -> "A timeout occurred at receiving chunk " + nextChunkIndex +
+                                    " of GetDataResponse on nodeAddress:" + peersNodeAddress, peersNodeAddress);
+                            log.info("Processing GetDataResponse chunk {} took {} ms",
+                                    getDataResponse.getChunkIndex(), System.currentTimeMillis() - ts1);
+                            return;
+                        }
+
                         cleanup();
                         listener.onComplete(getDataResponse.isWasTruncated());
                     } else {
@@ -285,6 +308,22 @@ class RequestDataHandler implements MessageListener {
         stopTimeoutTimer();
     }
 
+    private void startTimeoutTimer(Supplier<String> errorMessageSupplier, NodeAddress nodeAddress) {
+        if (timeoutTimer == null) {
+            timeoutTimer = UserThread.runAfter(() -> {
+                        if (!stopped) {
+                            String errorMessage = errorMessageSupplier.get();
+                            log.debug(errorMessage + " / RequestDataHandler=" + RequestDataHandler.this);
+                            handleFault(errorMessage, nodeAddress, CloseConnectionReason.SEND_MSG_TIMEOUT);
+                        } else {
+                            log.trace("We have stopped already. We ignore that timeoutTimer.run call. " +
+                                    "Might be caused by a previous networkNode.sendMessage.onFailure.");
+                        }
+                    },
+                    TIMEOUT);
+        }
+    }
+
     private void stopTimeoutTimer() {
         if (timeoutTimer != null) {
             timeoutTimer.stop();
@@ -41,13 +41,28 @@ public abstract class GetDataRequest extends NetworkEnvelope implements Extended
     @Nullable
     protected final String version;
 
+    // Bloom filter of the PersistableNetworkPayload keys known by the requester. If set, those keys are not
+    // contained in excludedKeys. Not sent to peers known to lack Capability.KNOWN_PAYLOADS_FILTER, old peers
+    // ignore it.
+    @Nullable
+    protected final KnownPayloadsFilter knownPayloadsFilter;
+
     public GetDataRequest(String messageVersion,
                           int nonce,
                           Set<byte[]> excludedKeys,
                           @Nullable String version) {
+        this(messageVersion, nonce, excludedKeys, version, null);
+    }
+
+    public GetDataRequest(String messageVersion,
+                          int nonce,
+                          Set<byte[]> excludedKeys,
+                          @Nullable String version,
+                          @Nullable KnownPayloadsFilter knownPayloadsFilter) {
         super(messageVersion);
         this.nonce = nonce;
         this.excludedKeys = excludedKeys;
         this.version = version;
+        this.knownPayloadsFilter = knownPayloadsFilter;
     }
 }
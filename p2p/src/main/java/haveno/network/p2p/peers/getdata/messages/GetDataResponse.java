@@ -29,11 +29,15 @@ import haveno.network.p2p.SupportedCapabilitiesMessage;
 import haveno.network.p2p.storage.payload.PersistableNetworkPayload;
 import haveno.network.p2p.storage.payload.ProtectedMailboxStorageEntry;
 import haveno.network.p2p.storage.payload.ProtectedStorageEntry;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
 
+import javax.annotation.Nullable;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -56,6 +60,20 @@ public final class GetDataResponse extends NetworkEnvelope implements SupportedC
     // Added at v1.9.6
     private final boolean wasTruncated;
 
+    // If the requester supports Capability.STREAMED_GET_DATA_RESPONSE the response is sent as a sequence of chunks.
+    // All chunks but the last one have hasMoreChunks set.
+    private final int chunkIndex;
+    private final boolean hasMoreChunks;
+
+    // Proto messages of the items if they were built already to measure the size of a chunk. Used in
+    // toProtoNetworkEnvelope so the items are not converted again when the chunk is sent.
+    @Nullable
+    @Getter(AccessLevel.NONE)
+    transient private final List<protobuf.StorageEntryWrapper> dataSetProtos;
+    @Nullable
+    @Getter(AccessLevel.NONE)
+    transient private final List<protobuf.PersistableNetworkPayload> persistableNetworkPayloadProtos;
+
     public GetDataResponse(@NotNull Set<ProtectedStorageEntry> dataSet,
                            @NotNull Set<PersistableNetworkPayload> persistableNetworkPayloadSet,
                            int requestNonce,
@@ -66,6 +84,51 @@ public final class GetDataResponse extends NetworkEnvelope implements SupportedC
                 requestNonce,
                 isGetUpdatedDataResponse,
                 wasTruncated,
+                0,
+                false);
+    }
+
+    public GetDataResponse(@NotNull Set<ProtectedStorageEntry> dataSet,
+                           @NotNull Set<PersistableNetworkPayload> persistableNetworkPayloadSet,
+                           int requestNonce,
+                           boolean isGetUpdatedDataResponse,
+                           boolean wasTruncated,
+                           int chunkIndex,
+                           boolean hasMoreChunks) {
+        this(dataSet,
+                persistableNetworkPayloadSet,
+                requestNonce,
+                isGetUpdatedDataResponse,
+                wasTruncated,
+                chunkIndex,
+                hasMoreChunks,
+                null,
+                null,
+                Capabilities.app,
+                Version.getP2PMessageVersion());
+    }
+
+    /**
+     * Creates a chunk of a streamed response from items which were already converted to their proto messages.
+     * The proto messages have to match the items of dataSet and persistableNetworkPayloadSet.
+     */
+    public GetDataResponse(@NotNull Set<ProtectedStorageEntry> dataSet,
+                           @NotNull Set<PersistableNetworkPayload> persistableNetworkPayloadSet,
+                           @NotNull List<protobuf.StorageEntryWrapper> dataSetProtos,
+                           @NotNull List<protobuf.PersistableNetworkPayload> persistableNetworkPayloadProtos,
+                           int requestNonce,
+                           boolean isGetUpdatedDataResponse,
+                           int chunkIndex,
+                           boolean hasMoreChunks) {
+        this(dataSet,
+                persistableNetworkPayloadSet,
+                requestNonce,
+                isGetUpdatedDataResponse,
+                false,
+                chunkIndex,
+                hasMoreChunks,
+                dataSetProtos,
+                persistableNetworkPayloadProtos,
                 Capabilities.app,
                 Version.getP2PMessageVersion());
     }
@@ -79,6 +142,10 @@ public final class GetDataResponse extends NetworkEnvelope implements SupportedC
                             int requestNonce,
                             boolean isGetUpdatedDataResponse,
                             boolean wasTruncated,
+                            int chunkIndex,
+                            boolean hasMoreChunks,
+                            @Nullable List<protobuf.StorageEntryWrapper> dataSetProtos,
+                            @Nullable List<protobuf.PersistableNetworkPayload> persistableNetworkPayloadProtos,
                             @NotNull Capabilities supportedCapabilities,
                             String messageVersion) {
         super(messageVersion);
@@ -88,34 +155,46 @@ public final class GetDataResponse extends NetworkEnvelope implements SupportedC
         this.requestNonce = requestNonce;
         this.isGetUpdatedDataResponse = isGetUpdatedDataResponse;
         this.wasTruncated = wasTruncated;
+        this.chunkIndex = chunkIndex;
+        this.hasMoreChunks = hasMoreChunks;
+        this.dataSetProtos = dataSetProtos;
+        this.persistableNetworkPayloadProtos = persistableNetworkPayloadProtos;
         this.supportedCapabilities = supportedCapabilities;
     }
 
+    public static protobuf.StorageEntryWrapper toStorageEntryWrapper(ProtectedStorageEntry protectedStorageEntry) {
+        return protectedStorageEntry instanceof ProtectedMailboxStorageEntry ?
+                protobuf.StorageEntryWrapper.newBuilder()
+                        .setProtectedMailboxStorageEntry((protobuf.ProtectedMailboxStorageEntry) protectedStorageEntry.toProtoMessage())
+                        .build()
+                :
+                protobuf.StorageEntryWrapper.newBuilder()
+                        .setProtectedStorageEntry((protobuf.ProtectedStorageEntry) protectedStorageEntry.toProtoMessage())
+                        .build();
+    }
+
     @Override
     public protobuf.NetworkEnvelope toProtoNetworkEnvelope() {
         final protobuf.GetDataResponse.Builder builder = protobuf.GetDataResponse.newBuilder()
-                .addAllDataSet(dataSet.stream()
-                        .map(protectedStorageEntry -> protectedStorageEntry instanceof ProtectedMailboxStorageEntry ?
-                                protobuf.StorageEntryWrapper.newBuilder()
-                                        .setProtectedMailboxStorageEntry((protobuf.ProtectedMailboxStorageEntry) protectedStorageEntry.toProtoMessage())
-                                        .build()
-                                :
-                                protobuf.StorageEntryWrapper.newBuilder()
-                                        .setProtectedStorageEntry((protobuf.ProtectedStorageEntry) protectedStorageEntry.toProtoMessage())
-                                        .build())
-                        .collect(Collectors.toList()))
-                .addAllPersistableNetworkPayloadItems(persistableNetworkPayloadSet.stream()
-                        .map(PersistableNetworkPayload::toProtoMessage)
+                .addAllDataSet(dataSetProtos != null ? dataSetProtos : dataSet.stream()
+                        .map(GetDataResponse::toStorageEntryWrapper)
                         .collect(Collectors.toList()))
+                .addAllPersistableNetworkPayloadItems(persistableNetworkPayloadProtos != null ? persistableNetworkPayloadProtos :
+                        persistableNetworkPayloadSet.stream()
+                                .map(PersistableNetworkPayload::toProtoMessage)
+                                .collect(Collectors.toList()))
                 .setRequestNonce(requestNonce)
                 .setIsGetUpdatedDataResponse(isGetUpdatedDataResponse)
                 .setWasTruncated(wasTruncated)
+                .setChunkIndex(chunkIndex)
+                .setHasMoreChunks(hasMoreChunks)
                 .addAllSupportedCapabilities(Capabilities.toIntList(supportedCapabilities));
 
         protobuf.NetworkEnvelope proto = getNetworkEnvelopeBuilder()
                 .setGetDataResponse(builder)
                 .build();
-        log.info("Sending a GetDataResponse with {}", Utilities.readableFileSize(proto.getSerializedSize()));
+        log.info("Sending a GetDataResponse with {}{}", Utilities.readableFileSize(proto.getSerializedSize()),
+                hasMoreChunks || chunkIndex > 0 ? " (chunk " + chunkIndex + (hasMoreChunks ? "" : ", last") + ")" : "");
         return proto;
     }
 
@@ -135,6 +214,10 @@ public final class GetDataResponse extends NetworkEnvelope implements SupportedC
                 proto.getRequestNonce(),
                 proto.getIsGetUpdatedDataResponse(),
                 wasTruncated,
+                proto.getChunkIndex(),
+                proto.getHasMoreChunks(),
+                null,
+                null,
                 Capabilities.fromIntList(proto.getSupportedCapabilitiesList()),
                 messageVersion);
     }
@@ -143,4 +226,9 @@ public final class GetDataResponse extends NetworkEnvelope implements SupportedC
     public Class<? extends InitialDataRequest> associatedRequest() {
         return isGetUpdatedDataResponse ? GetUpdatedDataRequest.class : PreliminaryGetDataRequest.class;
     }
+
+    @Override
+    public boolean isFinalResponse() {
+        return !hasMoreChunks;
+    }
 }
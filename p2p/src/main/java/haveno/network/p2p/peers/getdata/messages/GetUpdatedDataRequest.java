@@ -41,10 +41,18 @@ public final class GetUpdatedDataRequest extends GetDataRequest implements Sende
     public GetUpdatedDataRequest(NodeAddress senderNodeAddress,
                                  int nonce,
                                  Set<byte[]> excludedKeys) {
+        this(senderNodeAddress, nonce, excludedKeys, null);
+    }
+
+    public GetUpdatedDataRequest(NodeAddress senderNodeAddress,
+                                 int nonce,
+                                 Set<byte[]> excludedKeys,
+                                 @Nullable KnownPayloadsFilter knownPayloadsFilter) {
         this(senderNodeAddress,
                 nonce,
                 excludedKeys,
                 Version.VERSION,
+                knownPayloadsFilter,
                 Version.getP2PMessageVersion());
     }
 
@@ -57,11 +65,13 @@ public final class GetUpdatedDataRequest extends GetDataRequest implements Sende
                                   int nonce,
                                   Set<byte[]> excludedKeys,
                                   @Nullable String version,
+                                  @Nullable KnownPayloadsFilter knownPayloadsFilter,
                                   String messageVersion) {
         super(messageVersion,
                 nonce,
                 excludedKeys,
-                version);
+                version,
+                knownPayloadsFilter);
         this.senderNodeAddress = senderNodeAddress;
     }
 
@@ -74,23 +84,27 @@ public final class GetUpdatedDataRequest extends GetDataRequest implements Sende
                         .map(ByteString::copyFrom)
                         .collect(Collectors.toList()));
         Optional.ofNullable(version).ifPresent(builder::setVersion);
+        Optional.ofNullable(knownPayloadsFilter).ifPresent(filter -> builder.setKnownPayloadsFilter(filter.toProtoMessage()));
         NetworkEnvelope proto = getNetworkEnvelopeBuilder()
                 .setGetUpdatedDataRequest(builder)
                 .build();
-        log.info("Sending a GetUpdatedDataRequest with {} kB and {} excluded key entries. Requesters version={}",
-                proto.getSerializedSize() / 1000d, excludedKeys.size(), version);
+        log.info("Sending a GetUpdatedDataRequest with {} kB and {} excluded key entries. knownPayloadsFilter={}. Requesters version={}",
+                proto.getSerializedSize() / 1000d, excludedKeys.size(), knownPayloadsFilter, version);
         return proto;
     }
 
     public static GetUpdatedDataRequest fromProto(protobuf.GetUpdatedDataRequest proto, String messageVersion) {
         Set<byte[]> excludedKeys = ProtoUtil.byteSetFromProtoByteStringList(proto.getExcludedKeysList());
         String requestersVersion = ProtoUtil.stringOrNullFromProto(proto.getVersion());
-        log.info("Received a GetUpdatedDataRequest with {} kB and {} excluded key entries. Requesters version={}",
-                proto.getSerializedSize() / 1000d, excludedKeys.size(), requestersVersion);
+        KnownPayloadsFilter knownPayloadsFilter = proto.hasKnownPayloadsFilter() ?
+                KnownPayloadsFilter.fromProto(proto.getKnownPayloadsFilter()) : null;
+        log.info("Received a GetUpdatedDataRequest with {} kB and {} excluded key entries. knownPayloadsFilter={}. Requesters version={}",
+                proto.getSerializedSize() / 1000d, excludedKeys.size(), knownPayloadsFilter, requestersVersion);
         return new GetUpdatedDataRequest(NodeAddress.fromProto(proto.getSenderNodeAddress()),
                 proto.getNonce(),
                 excludedKeys,
                 requestersVersion,
+                knownPayloadsFilter,
                 messageVersion);
     }
 }
@@ -0,0 +1,145 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.network.p2p.peers.getdata.messages;
+
+import com.google.common.hash.Hashing;
+import com.google.protobuf.ByteString;
+import haveno.common.proto.network.NetworkPayload;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collection;
+import java.util.Random;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Bloom filter of the keys of the PersistableNetworkPayloads a node already has. It is sent in a GetDataRequest
+ * instead of the full list of 32 byte keys (about 1.4 bytes per key instead of 32 bytes) to peers which are not
+ * known to lack Capability.KNOWN_PAYLOADS_FILTER.
+ * <p>
+ * A false positive means the responder does not send us a payload we are missing. As each request uses a new random
+ * tweak, a payload missed in the PreliminaryGetDataRequest is very likely delivered by the GetUpdatedDataRequest or
+ * at the next startup. ProtectedStorageEntry keys are never put into the filter as those items must not be missed.
+ */
+@Getter
+@EqualsAndHashCode
+public final class KnownPayloadsFilter implements NetworkPayload {
+    // 0.5% false positive probability
+    static final double FALSE_POSITIVE_PROBABILITY = 0.005;
+    // Upper bound for the bits array to protect the responder from oversized filters
+    private static final int MAX_NUM_BITS = 8 * 1024 * 1024;
+    private static final int MAX_NUM_HASH_FUNCTIONS = 20;
+
+    private final byte[] bits;
+    private final int numHashFunctions;
+    private final int tweak;
+    private final int numKeys;
+
+    public static KnownPayloadsFilter fromKeys(Collection<byte[]> keys) {
+        int numKeys = Math.max(1, keys.size());
+        long numBits = (long) Math.ceil(-numKeys * Math.log(FALSE_POSITIVE_PROBABILITY) / (Math.log(2) * Math.log(2)));
+        numBits = Math.max(64, Math.min(MAX_NUM_BITS, numBits));
+        int numHashFunctions = (int) Math.max(1, Math.min(MAX_NUM_HASH_FUNCTIONS, Math.round((double) numBits / numKeys * Math.log(2))));
+        KnownPayloadsFilter filter = new KnownPayloadsFilter(new byte[(int) ((numBits + 7) / 8)],
+                numHashFunctions,
+                new Random().nextInt(),
+                keys.size());
+        keys.forEach(filter::put);
+        return filter;
+    }
+
+    private KnownPayloadsFilter(byte[] bits, int numHashFunctions, int tweak, int numKeys) {
+        checkArgument(bits.length > 0 && bits.length <= MAX_NUM_BITS / 8, "Invalid filter size " + bits.length);
+        checkArgument(numHashFunctions > 0 && numHashFunctions <= MAX_NUM_HASH_FUNCTIONS,
+                "Invalid numHashFunctions " + numHashFunctions);
+        this.bits = bits;
+        this.numHashFunctions = numHashFunctions;
+        this.tweak = tweak;
+        this.numKeys = numKeys;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // PROTO BUFFER
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public protobuf.KnownPayloadsFilter toProtoMessage() {
+        return protobuf.KnownPayloadsFilter.newBuilder()
+                .setBits(ByteString.copyFrom(bits))
+                .setNumHashFunctions(numHashFunctions)
+                .setTweak(tweak)
+                .setNumKeys(numKeys)
+                .build();
+    }
+
+    public static KnownPayloadsFilter fromProto(protobuf.KnownPayloadsFilter proto) {
+        return new KnownPayloadsFilter(proto.getBits().toByteArray(),
+                proto.getNumHashFunctions(),
+                proto.getTweak(),
+                proto.getNumKeys());
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public boolean mightContain(byte[] key) {
+        for (long index : getBitIndexes(key)) {
+            if ((bits[(int) (index >>> 3)] & (1 << (index & 7))) == 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "KnownPayloadsFilter{" +
+                "size=" + bits.length +
+                ", numHashFunctions=" + numHashFunctions +
+                ", numKeys=" + numKeys +
+                '}';
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void put(byte[] key) {
+        for (long index : getBitIndexes(key)) {
+            bits[(int) (index >>> 3)] |= (byte) (1 << (index & 7));
+        }
+    }
+
+    // Double hashing (Kirsch-Mitzenmacher) on the two halves of a 128 bit murmur3 hash seeded with the tweak
+    private long[] getBitIndexes(byte[] key) {
+        long numBits = (long) bits.length * 8;
+        ByteBuffer hash = ByteBuffer.wrap(Hashing.murmur3_128(tweak).hashBytes(key).asBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        long h1 = hash.getLong(0);
+        long h2 = hash.getLong(8);
+        long[] indexes = new long[numHashFunctions];
+        for (int i = 0; i < numHashFunctions; i++) {
+            indexes[i] = Math.floorMod(h1 + i * h2, numBits);
+        }
+        return indexes;
+    }
+}
@@ -40,10 +40,15 @@ public final class PreliminaryGetDataRequest extends GetDataRequest implements A
     private final Capabilities supportedCapabilities;
 
     public PreliminaryGetDataRequest(int nonce, Set<byte[]> excludedKeys) {
+        this(nonce, excludedKeys, null);
+    }
+
+    public PreliminaryGetDataRequest(int nonce, Set<byte[]> excludedKeys, @Nullable KnownPayloadsFilter knownPayloadsFilter) {
         this(nonce,
                 excludedKeys,
                 Version.VERSION,
                 Capabilities.app,
+                knownPayloadsFilter,
                 Version.getP2PMessageVersion());
     }
 
@@ -56,8 +61,9 @@ public final class PreliminaryGetDataRequest extends GetDataRequest implements A
                                       Set<byte[]> excludedKeys,
                                       @Nullable String version,
                                       Capabilities supportedCapabilities,
+                                      @Nullable KnownPayloadsFilter knownPayloadsFilter,
                                       String messageVersion) {
-        super(messageVersion, nonce, excludedKeys, version);
+        super(messageVersion, nonce, excludedKeys, version, knownPayloadsFilter);
 
         this.supportedCapabilities = supportedCapabilities;
     }
@@ -71,23 +77,27 @@ public final class PreliminaryGetDataRequest extends GetDataRequest implements A
                         .map(ByteString::copyFrom)
                         .collect(Collectors.toList()));
         Optional.ofNullable(version).ifPresent(builder::setVersion);
+        Optional.ofNullable(knownPayloadsFilter).ifPresent(filter -> builder.setKnownPayloadsFilter(filter.toProtoMessage()));
         NetworkEnvelope proto = getNetworkEnvelopeBuilder()
                 .setPreliminaryGetDataRequest(builder)
                 .build();
-        log.info("Sending a PreliminaryGetDataRequest with {} kB and {} excluded key entries. Requesters version={}",
-                proto.getSerializedSize() / 1000d, excludedKeys.size(), version);
+        log.info("Sending a PreliminaryGetDataRequest with {} kB and {} excluded key entries. knownPayloadsFilter={}. Requesters version={}",
+                proto.getSerializedSize() / 1000d, excludedKeys.size(), knownPayloadsFilter, version);
         return proto;
     }
 
     public static PreliminaryGetDataRequest fromProto(protobuf.PreliminaryGetDataRequest proto, String messageVersion) {
         Set<byte[]> excludedKeys = ProtoUtil.byteSetFromProtoByteStringList(proto.getExcludedKeysList());
         String requestersVersion = ProtoUtil.stringOrNullFromProto(proto.getVersion());
-        log.info("Received a PreliminaryGetDataRequest with {} kB and {} excluded key entries. Requesters version={}",
-                proto.getSerializedSize() / 1000d, excludedKeys.size(), requestersVersion);
+        KnownPayloadsFilter knownPayloadsFilter = proto.hasKnownPayloadsFilter() ?
+                KnownPayloadsFilter.fromProto(proto.getKnownPayloadsFilter()) : null;
+        log.info("Received a PreliminaryGetDataRequest with {} kB and {} excluded key entries. knownPayloadsFilter={}. Requesters version={}",
+                proto.getSerializedSize() / 1000d, excludedKeys.size(), knownPayloadsFilter, requestersVersion);
         return new PreliminaryGetDataRequest(proto.getNonce(),
                 excludedKeys,
                 requestersVersion,
                 Capabilities.fromIntList(proto.getSupportedCapabilitiesList()),
+                knownPayloadsFilter,
                 messageVersion);
     }
 }
@@ -0,0 +1,123 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.network.p2p.storage;
+
+import haveno.network.p2p.peers.getdata.messages.GetDataResponse;
+import haveno.network.p2p.storage.payload.PersistableNetworkPayload;
+import haveno.network.p2p.storage.payload.ProtectedStorageEntry;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Splits the items of a GetDataResponse into chunks of at most maxEntriesPerChunk items and about maxChunkSize bytes.
+ * The ProtectedStorageEntries are sent before the PersistableNetworkPayloads. There is always at least one chunk, the
+ * last one has hasMoreChunks not set.
+ * <p>
+ * The items are taken from the given iterators only at next(), so only the items of the chunk currently sent are
+ * held. The items are converted to their proto messages once, to measure the chunk size, and the chunk is sent from
+ * those messages.
+ */
+public final class GetDataResponseChunks implements Iterator<GetDataResponse> {
+    private final Iterator<ProtectedStorageEntry> protectedStorageEntries;
+    private final Iterator<PersistableNetworkPayload> persistableNetworkPayloads;
+    private final int requestNonce;
+    private final boolean isGetUpdatedDataResponse;
+    private final int maxEntriesPerChunk;
+    private final long maxChunkSize;
+
+    private int chunkIndex;
+    // Number of the items returned so far
+    @Getter
+    private int numItems;
+    // Sum of the serialized size of the items returned so far
+    @Getter
+    private long totalSize;
+
+    GetDataResponseChunks(Iterator<ProtectedStorageEntry> protectedStorageEntries,
+                          Iterator<PersistableNetworkPayload> persistableNetworkPayloads,
+                          int requestNonce,
+                          boolean isGetUpdatedDataResponse,
+                          int maxEntriesPerChunk,
+                          long maxChunkSize) {
+        this.protectedStorageEntries = protectedStorageEntries;
+        this.persistableNetworkPayloads = persistableNetworkPayloads;
+        this.requestNonce = requestNonce;
+        this.isGetUpdatedDataResponse = isGetUpdatedDataResponse;
+        this.maxEntriesPerChunk = maxEntriesPerChunk;
+        this.maxChunkSize = maxChunkSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return chunkIndex == 0 || hasRemainingItems();
+    }
+
+    @Override
+    public GetDataResponse next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        Set<ProtectedStorageEntry> dataSet = new HashSet<>();
+        Set<PersistableNetworkPayload> persistableNetworkPayloadSet = new HashSet<>();
+        List<protobuf.StorageEntryWrapper> dataSetProtos = new ArrayList<>();
+        List<protobuf.PersistableNetworkPayload> persistableNetworkPayloadProtos = new ArrayList<>();
+        long chunkSize = 0;
+        while (!isFull(dataSet.size(), chunkSize) && protectedStorageEntries.hasNext()) {
+            ProtectedStorageEntry protectedStorageEntry = protectedStorageEntries.next();
+            protobuf.StorageEntryWrapper proto = GetDataResponse.toStorageEntryWrapper(protectedStorageEntry);
+            chunkSize += proto.getSerializedSize();
+            dataSet.add(protectedStorageEntry);
+            dataSetProtos.add(proto);
+        }
+        while (!isFull(dataSet.size() + persistableNetworkPayloadSet.size(), chunkSize) &&
+                persistableNetworkPayloads.hasNext()) {
+            PersistableNetworkPayload persistableNetworkPayload = persistableNetworkPayloads.next();
+            protobuf.PersistableNetworkPayload proto = persistableNetworkPayload.toProtoMessage();
+            chunkSize += proto.getSerializedSize();
+            persistableNetworkPayloadSet.add(persistableNetworkPayload);
+            persistableNetworkPayloadProtos.add(proto);
+        }
+        totalSize += chunkSize;
+        numItems += dataSet.size() + persistableNetworkPayloadSet.size();
+
+        return new GetDataResponse(dataSet,
+                persistableNetworkPayloadSet,
+                dataSetProtos,
+                persistableNetworkPayloadProtos,
+                requestNonce,
+                isGetUpdatedDataResponse,
+                chunkIndex++,
+                hasRemainingItems());
+    }
+
+    private boolean hasRemainingItems() {
+        return protectedStorageEntries.hasNext() || persistableNetworkPayloads.hasNext();
+    }
+
+    // The size limit is soft as the last added item can exceed it
+    private boolean isFull(int numItems, long chunkSize) {
+        return numItems >= maxEntriesPerChunk || chunkSize >= maxChunkSize;
+    }
+}
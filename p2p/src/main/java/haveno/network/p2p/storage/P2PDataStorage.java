@@ -18,7 +18,10 @@
 package haveno.network.p2p.storage;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import com.google.protobuf.ByteString;
@@ -48,6 +51,7 @@ import haveno.network.p2p.peers.Broadcaster;
 import haveno.network.p2p.peers.getdata.messages.GetDataRequest;
 import haveno.network.p2p.peers.getdata.messages.GetDataResponse;
 import haveno.network.p2p.peers.getdata.messages.GetUpdatedDataRequest;
+import haveno.network.p2p.peers.getdata.messages.KnownPayloadsFilter;
 import haveno.network.p2p.peers.getdata.messages.PreliminaryGetDataRequest;
 import haveno.network.p2p.storage.messages.AddDataMessage;
 import haveno.network.p2p.storage.messages.AddOncePayload;
@@ -77,6 +81,7 @@ import haveno.network.p2p.storage.persistence.SequenceNumberMap;
 import java.security.KeyPair;
 import java.security.PublicKey;
 import java.time.Clock;
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -85,8 +90,10 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
@@ -187,9 +194,8 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     @Override
     public void readPersisted(Runnable completeHandler) {
         persistenceManager.readPersisted(persisted -> {
-            synchronized (persisted.getMap()) {
-                sequenceNumberMap.setMap(getPurgedSequenceNumberMap(persisted.getMap()));
-            }
+            sequenceNumberMap.setAll(persisted);
+            purgeSequenceNumberMap();
             completeHandler.run();
         },
                 completeHandler);
@@ -200,9 +206,8 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     public void readPersistedSync() {
         SequenceNumberMap persisted = persistenceManager.getPersisted();
         if (persisted != null) {
-            synchronized (persisted.getMap()) {
-                sequenceNumberMap.setMap(getPurgedSequenceNumberMap(persisted.getMap()));
-            }
+            sequenceNumberMap.setAll(persisted);
+            purgeSequenceNumberMap();
         }
     }
 
@@ -248,8 +253,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     // to our excluded keys to reduce initial data response data size.
     public void addProtectedMailboxStorageEntryToMap(ProtectedStorageEntry protectedStorageEntry) {
         synchronized (map) {
-            ProtectedStoragePayload protectedStoragePayload = protectedStorageEntry.getProtectedStoragePayload();
-            ByteArray hashOfPayload = get32ByteHashAsByteArray(protectedStoragePayload);
+            ByteArray hashOfPayload = getHashOfPayload(protectedStorageEntry);
             map.put(hashOfPayload, protectedStorageEntry);
             //log.trace("## addProtectedMailboxStorageEntryToMap hashOfPayload={}, map={}", hashOfPayload, printMap());
         }
@@ -263,6 +267,17 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
      * Returns a PreliminaryGetDataRequest that can be sent to a peer node to request missing Payload data.
      */
     public PreliminaryGetDataRequest buildPreliminaryGetDataRequest(int nonce) {
+        return buildPreliminaryGetDataRequest(nonce, false);
+    }
+
+    /**
+     * Returns a PreliminaryGetDataRequest that can be sent to a peer node to request missing Payload data.
+     * If useKnownPayloadsFilter is set the PersistableNetworkPayload keys are sent as a KnownPayloadsFilter.
+     */
+    public PreliminaryGetDataRequest buildPreliminaryGetDataRequest(int nonce, boolean useKnownPayloadsFilter) {
+        if (useKnownPayloadsFilter) {
+            return new PreliminaryGetDataRequest(nonce, getKeysAsByteSet(map), buildKnownPayloadsFilter());
+        }
         return new PreliminaryGetDataRequest(nonce, getKnownPayloadHashes());
     }
 
@@ -270,6 +285,19 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
      * Returns a GetUpdatedDataRequest that can be sent to a peer node to request missing Payload data.
      */
     public GetUpdatedDataRequest buildGetUpdatedDataRequest(NodeAddress senderNodeAddress, int nonce) {
+        return buildGetUpdatedDataRequest(senderNodeAddress, nonce, false);
+    }
+
+    /**
+     * Returns a GetUpdatedDataRequest that can be sent to a peer node to request missing Payload data.
+     * If useKnownPayloadsFilter is set the PersistableNetworkPayload keys are sent as a KnownPayloadsFilter.
+     */
+    public GetUpdatedDataRequest buildGetUpdatedDataRequest(NodeAddress senderNodeAddress,
+                                                            int nonce,
+                                                            boolean useKnownPayloadsFilter) {
+        if (useKnownPayloadsFilter) {
+            return new GetUpdatedDataRequest(senderNodeAddress, nonce, getKeysAsByteSet(map), buildKnownPayloadsFilter());
+        }
         return new GetUpdatedDataRequest(senderNodeAddress, nonce, getKnownPayloadHashes());
     }
 
@@ -281,13 +309,20 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         // PersistedStoragePayload items don't get removed, so we don't have an issue with the case that
         // an object gets removed in between PreliminaryGetDataRequest and the GetUpdatedDataRequest and we would
         // miss that event if we do not load the full set or use some delta handling.
-        Map<ByteArray, PersistableNetworkPayload> mapForDataRequest = getMapForDataRequest();
-        Set<byte[]> excludedKeys = getKeysAsByteSet(mapForDataRequest);
-        Set<byte[]> excludedKeysFromProtectedStorageEntryMap = getKeysAsByteSet(map);
-        excludedKeys.addAll(excludedKeysFromProtectedStorageEntryMap);
+        Collection<byte[]> keysForDataRequest = getKeysForDataRequest();
+        Set<byte[]> excludedKeys = getKeysAsByteSet(map, keysForDataRequest.size());
+        excludedKeys.addAll(keysForDataRequest);
         return excludedKeys;
     }
 
+    /**
+     * Returns a bloom filter of the PersistableNetworkPayload keys. The keys of the ProtectedStorageEntries are
+     * never added to the filter as a false positive there would hide an offer or mailbox message from us.
+     */
+    private KnownPayloadsFilter buildKnownPayloadsFilter() {
+        return KnownPayloadsFilter.fromKeys(getKeysForDataRequest());
+    }
+
     /**
      * Returns a GetDataResponse object that contains the Payloads known locally, but not remotely.
      */
@@ -300,12 +335,15 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
 
         Set<P2PDataStorage.ByteArray> excludedKeysAsByteArray =
                 P2PDataStorage.ByteArray.convertBytesSetToByteArraySet(getDataRequest.getExcludedKeys());
+        Predicate<ByteArray> isKnownPersistableNetworkPayload =
+                getIsKnownPersistableNetworkPayload(getDataRequest, excludedKeysAsByteArray);
 
         // Pre v 1.4.0 requests do not have set the requesters version field so it is null.
         // The methods in HistoricalDataStoreService will return all historical data in that case.
         // mapForDataResponse contains the filtered by version data from HistoricalDataStoreService as well as all other
-        // maps of the remaining appendOnlyDataStoreServices.
-        Map<ByteArray, PersistableNetworkPayload> mapForDataResponse = getMapForDataResponse(getDataRequest.getVersion());
+        // maps of the remaining appendOnlyDataStoreServices. Payloads known by the requester are not added.
+        Map<ByteArray, PersistableNetworkPayload> mapForDataResponse = getMapForDataResponse(getDataRequest.getVersion(),
+                isKnownPersistableNetworkPayload);
 
         // Give a bit of tolerance for message overhead
         double maxSize = Connection.getMaxPermittedMessageSize() * 0.6;
@@ -315,14 +353,14 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         Set<PersistableNetworkPayload> filteredPersistableNetworkPayloads = filterKnownHashes(
                 mapForDataResponse,
                 Function.identity(),
-                excludedKeysAsByteArray,
+                isKnownPersistableNetworkPayload,
                 peerCapabilities,
                 maxEntriesPerType,
                 limit,
                 wasPersistableNetworkPayloadsTruncated,
                 true);
         log.info("{} PersistableNetworkPayload entries remained after filtered by excluded keys. " +
-                "Original map had {} entries.",
+                "{} entries were not known by the requester.",
                 filteredPersistableNetworkPayloads.size(), mapForDataResponse.size());
         log.trace("## buildGetDataResponse filteredPersistableNetworkPayloadHashes={}",
                 filteredPersistableNetworkPayloads.stream()
@@ -334,7 +372,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         Set<ProtectedStorageEntry> filteredProtectedStorageEntries = filterKnownHashes(
                 map,
                 ProtectedStorageEntry::getProtectedStoragePayload,
-                excludedKeysAsByteArray,
+                excludedKeysAsByteArray::contains,
                 peerCapabilities,
                 maxEntriesPerType,
                 limit,
@@ -345,7 +383,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                 filteredProtectedStorageEntries.size(), map.size());
         log.trace("## buildGetDataResponse filteredProtectedStorageEntryHashes={}",
                 filteredProtectedStorageEntries.stream()
-                        .map(e -> get32ByteHashAsByteArray((e.getProtectedStoragePayload())))
+                        .map(P2PDataStorage::getHashOfPayload)
                         .toArray());
 
         boolean wasTruncated = wasPersistableNetworkPayloadsTruncated.get() || wasProtectedStorageEntriesTruncated.get();
@@ -357,12 +395,103 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                 wasTruncated);
     }
 
+    /**
+     * Returns the Payloads known locally, but not remotely, as a sequence of GetDataResponse chunks. Used for peers
+     * supporting Capability.STREAMED_GET_DATA_RESPONSE.
+     * <p>
+     * In contrast to buildGetDataResponse nothing gets truncated by size, as each chunk is bounded by
+     * maxEntriesPerChunk and maxChunkSize. Only DateSortedTruncatablePayloads exceeding their maxItems are cut off.
+     * ProtectedStorageEntries are sent first, ordered by GetDataResponsePriority, so the requester gets the offers and
+     * mailbox messages with the first chunks. The chunks are read from the map and the stores while iterating, so
+     * the items are not collected before and only the items of the current chunk are held.
+     */
+    public GetDataResponseChunks buildGetDataResponseChunks(GetDataRequest getDataRequest,
+                                                            int maxEntriesPerChunk,
+                                                            long maxChunkSize,
+                                                            Capabilities peerCapabilities) {
+        Set<P2PDataStorage.ByteArray> excludedKeysAsByteArray =
+                P2PDataStorage.ByteArray.convertBytesSetToByteArraySet(getDataRequest.getExcludedKeys());
+        Predicate<ByteArray> isKnownPersistableNetworkPayload =
+                getIsKnownPersistableNetworkPayload(getDataRequest, excludedKeysAsByteArray);
+
+        // We iterate the map once per priority instead of sorting the entries
+        List<Predicate<ProtectedStorageEntry>> priorities = List.of(
+                entry -> entry.getGetDataResponsePriority() == GetDataResponsePriority.HIGH,
+                entry -> entry.getGetDataResponsePriority() == GetDataResponsePriority.MID,
+                entry -> entry.getGetDataResponsePriority() != GetDataResponsePriority.HIGH &&
+                        entry.getGetDataResponsePriority() != GetDataResponsePriority.MID);
+        Iterator<ProtectedStorageEntry> protectedStorageEntries = Iterators.concat(Iterators.transform(
+                priorities.iterator(),
+                hasPriority -> map.entrySet().stream()
+                        .filter(entry -> !excludedKeysAsByteArray.contains(entry.getKey()))
+                        .map(Map.Entry::getValue)
+                        .filter(hasPriority)
+                        .filter(entry -> shouldTransmitPayloadToPeer(peerCapabilities, entry.getProtectedStoragePayload()))
+                        .iterator()));
+
+        // PersistableNetworkPayloads all have the default priority, so they are sent in the order of the stores
+        Iterator<PersistableNetworkPayload> persistableNetworkPayloads = keepNewestDateSortedItems(Iterators.filter(
+                getIteratorForDataResponse(getDataRequest.getVersion(), isKnownPersistableNetworkPayload),
+                payload -> shouldTransmitPayloadToPeer(peerCapabilities, payload)));
+
+        return new GetDataResponseChunks(protectedStorageEntries,
+                persistableNetworkPayloads,
+                getDataRequest.getNonce(),
+                getDataRequest instanceof GetUpdatedDataRequest,
+                maxEntriesPerChunk,
+                maxChunkSize);
+    }
+
+    // The filter is only applied to the PersistableNetworkPayloads, see buildKnownPayloadsFilter
+    private static Predicate<ByteArray> getIsKnownPersistableNetworkPayload(GetDataRequest getDataRequest,
+                                                                            Set<ByteArray> excludedKeys) {
+        KnownPayloadsFilter knownPayloadsFilter = getDataRequest.getKnownPayloadsFilter();
+        return knownPayloadsFilter == null ?
+                excludedKeys::contains :
+                key -> excludedKeys.contains(key) || knownPayloadsFilter.mightContain(key.bytes);
+    }
+
+    // The DateSortedTruncatablePayloads are held back and only the newest maxItems of them are appended after the
+    // other payloads, as done in filterKnownHashes. So we hold at most maxItems of them instead of all payloads.
+    private static Iterator<PersistableNetworkPayload> keepNewestDateSortedItems(Iterator<PersistableNetworkPayload> items) {
+        PriorityQueue<DateSortedTruncatablePayload> newestDateSortedItems =
+                new PriorityQueue<>(Comparator.comparing(DateSortedTruncatablePayload::getDate));
+        Iterator<PersistableNetworkPayload> otherItems = Iterators.filter(items, item -> {
+            if (!(item instanceof DateSortedTruncatablePayload)) {
+                return true;
+            }
+            DateSortedTruncatablePayload dateSortedItem = (DateSortedTruncatablePayload) item;
+            newestDateSortedItems.add(dateSortedItem);
+            if (newestDateSortedItems.size() > dateSortedItem.maxItems()) {
+                newestDateSortedItems.poll();
+            }
+            return false;
+        });
+        // Only polled once all other items are consumed
+        Iterator<PersistableNetworkPayload> dateSortedItems = new AbstractIterator<>() {
+            @Override
+            protected PersistableNetworkPayload computeNext() {
+                DateSortedTruncatablePayload item = newestDateSortedItems.poll();
+                return item != null ? item : endOfData();
+            }
+        };
+        return Iterators.concat(otherItems, dateSortedItems);
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Utils for collecting the exclude hashes
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     private Map<ByteArray, PersistableNetworkPayload> getMapForDataRequest() {
         Map<ByteArray, PersistableNetworkPayload> map = new HashMap<>();
+        getMapsForDataRequest().forEach(map::putAll);
+        return map;
+    }
+
+    // The maps of the stores are not merged, so no map is built for each request. A key contained in two stores
+    // is sent twice which does no harm.
+    private List<Map<ByteArray, PersistableNetworkPayload>> getMapsForDataRequest() {
+        List<Map<ByteArray, PersistableNetworkPayload>> maps = new ArrayList<>();
         appendOnlyDataStoreService.getServices()
                 .forEach(service -> {
                     Map<ByteArray, PersistableNetworkPayload> serviceMap;
@@ -374,47 +503,88 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                     } else {
                         serviceMap = service.getMap();
                     }
-                    map.putAll(serviceMap);
+                    maps.add(serviceMap);
                     log.debug("We added {} entries from {} to the excluded key set of our request",
                             serviceMap.size(), service.getClass().getSimpleName());
                 });
-        return map;
+        return maps;
+    }
+
+    // A view on the keys of the maps of the stores
+    private Collection<byte[]> getKeysForDataRequest() {
+        List<Map<ByteArray, PersistableNetworkPayload>> maps = getMapsForDataRequest();
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<byte[]> iterator() {
+                return Iterators.concat(Iterators.transform(maps.iterator(),
+                        serviceMap -> Iterators.transform(serviceMap.keySet().iterator(), key -> key.bytes)));
+            }
+
+            @Override
+            public int size() {
+                return maps.stream().mapToInt(Map::size).sum();
+            }
+        };
     }
 
     public Map<ByteArray, PersistableNetworkPayload> getMapForDataResponse(String requestersVersion) {
+        return getMapForDataResponse(requestersVersion, hash -> false);
+    }
+
+    // Payloads with a hash matching isKnown are not added. Filtering by hash first spares us the deserialization of
+    // the historical payloads the requester has already.
+    private Map<ByteArray, PersistableNetworkPayload> getMapForDataResponse(String requestersVersion,
+                                                                          Predicate<ByteArray> isKnown) {
         Map<ByteArray, PersistableNetworkPayload> map = new HashMap<>();
         appendOnlyDataStoreService.getServices()
                 .forEach(service -> {
-                    Map<ByteArray, PersistableNetworkPayload> serviceMap;
+                    int preSize = map.size();
                     if (service instanceof HistoricalDataStoreService) {
                         var historicalDataStoreService = (HistoricalDataStoreService<? extends PersistableNetworkPayloadStore>) service;
-                        serviceMap = historicalDataStoreService.getMapSinceVersion(requestersVersion);
+                        map.putAll(historicalDataStoreService.getMapSinceVersion(requestersVersion, isKnown));
                     } else {
-                        serviceMap = service.getMap();
+                        service.getMap().forEach((hash, payload) -> {
+                            if (!isKnown.test(hash)) {
+                                map.put(hash, payload);
+                            }
+                        });
                     }
-                    map.putAll(serviceMap);
                     log.info("We added {} entries from {} to be filtered by excluded keys",
-                            serviceMap.size(), service.getClass().getSimpleName());
+                            map.size() - preSize, service.getClass().getSimpleName());
                 });
         return map;
     }
 
+    // As getMapForDataResponse, but the payloads are read from the stores while iterating
+    private Iterator<PersistableNetworkPayload> getIteratorForDataResponse(String requestersVersion,
+                                                                           Predicate<ByteArray> isKnown) {
+        return Iterators.concat(Iterators.transform(appendOnlyDataStoreService.getServices().iterator(), service -> {
+            if (service instanceof HistoricalDataStoreService) {
+                var historicalDataStoreService = (HistoricalDataStoreService<? extends PersistableNetworkPayloadStore>) service;
+                return historicalDataStoreService.iteratorSinceVersion(requestersVersion, isKnown);
+            }
+            return service.getMap().entrySet().stream()
+                    .filter(entry -> !isKnown.test(entry.getKey()))
+                    .map(Map.Entry::getValue)
+                    .iterator();
+        }));
+    }
+
     /**
      * Generic function that can be used to filter a Map<ByteArray, ProtectedStorageEntry || PersistableNetworkPayload>
-     * by a given set of keys and peer capabilities.
+     * by a given predicate for the known keys and peer capabilities.
      */
     static private <T extends NetworkPayload> Set<T> filterKnownHashes(
             Map<ByteArray, T> toFilter,
             Function<T, ? extends NetworkPayload> asPayload,
-            Set<ByteArray> knownHashes,
+            Predicate<ByteArray> isKnownHash,
             Capabilities peerCapabilities,
             int maxEntries,
             long limit,
             AtomicBoolean outTruncated,
             boolean isPersistableNetworkPayload) {
-        log.info("Filter {} data based on {} knownHashes",
-                isPersistableNetworkPayload ? "PersistableNetworkPayload" : "ProtectedStorageEntry",
-                knownHashes.size());
+        log.info("Filter {} data based on knownHashes",
+                isPersistableNetworkPayload ? "PersistableNetworkPayload" : "ProtectedStorageEntry");
 
         AtomicLong totalSize = new AtomicLong();
         AtomicBoolean exceededSizeLimit = new AtomicBoolean();
@@ -430,7 +600,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
 
         // Map.Entry.value can be ProtectedStorageEntry or PersistableNetworkPayload. We call it item in the steam iterations.
         List<T> filteredItems = entries.stream()
-                .filter(entry -> !knownHashes.contains(entry.getKey()))
+                .filter(entry -> !isKnownHash.test(entry.getKey()))
                 .map(Map.Entry::getValue)
                 .filter(item -> shouldTransmitPayloadToPeer(peerCapabilities, asPayload.apply(item)))
                 .collect(Collectors.toList());
@@ -535,9 +705,16 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     }
 
     private Set<byte[]> getKeysAsByteSet(Map<ByteArray, ? extends PersistablePayload> map) {
-        return map.keySet().stream()
-                .map(e -> e.bytes)
-                .collect(Collectors.toSet());
+        return getKeysAsByteSet(map, 0);
+    }
+
+    // The set is sized for additionalSize more keys, so adding the keys of another map does not cause a resize
+    private Set<byte[]> getKeysAsByteSet(Map<ByteArray, ? extends PersistablePayload> map, int additionalSize) {
+        Set<byte[]> keys = new HashSet<>((int) ((map.size() + additionalSize) / 0.75f) + 1);
+        for (ByteArray key : map.keySet()) {
+            keys.add(key.bytes);
+        }
+        return keys;
     }
 
     /**
@@ -572,7 +749,13 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         Set<ProtectedStorageEntry> protectedStorageEntries = getDataResponse.getDataSet();
         Set<PersistableNetworkPayload> persistableNetworkPayloadSet = getDataResponse.getPersistableNetworkPayloadSet();
         long ts = System.currentTimeMillis();
-        protectedStorageEntries.forEach(protectedStorageEntry -> {
+
+        // Hashing and signature verification are done in parallel, the verified entries are then applied in order
+        List<ProtectedStorageEntryVerifier.VerifiedEntry> verifiedEntries = ProtectedStorageEntryVerifier.verify(protectedStorageEntries);
+        log.info("Verifying {} protectedStorageEntries took {} ms.", protectedStorageEntries.size(), this.clock.millis() - ts);
+        verifiedEntries.forEach(verifiedEntry -> {
+            ProtectedStorageEntry protectedStorageEntry = verifiedEntry.getProtectedStorageEntry();
+
             // We rebroadcast high priority data after a delay for better resilience
             if (protectedStorageEntry.getProtectedStoragePayload().getGetDataResponsePriority() == GetDataResponsePriority.HIGH) {
                 UserThread.runAfter(() -> {
@@ -582,10 +765,11 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
             }
 
             // We don't broadcast here (last param) as we are only connected to the seed node and would be pointless
-            addProtectedStorageEntry(protectedStorageEntry, sender, null, false);
+            addProtectedStorageEntry(protectedStorageEntry, verifiedEntry.getHashOfPayload(), sender, null, false);
 
         });
         log.info("Processing {} protectedStorageEntries took {} ms.", protectedStorageEntries.size(), this.clock.millis() - ts);
+        ProtectedStorageEntryVerifier.maybeLogStats();
 
         ts = this.clock.millis();
         persistableNetworkPayloadSet.forEach(e -> {
@@ -596,7 +780,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                 // Usually we only get about a few hundred or max. a few 1000 items. 82645 is all
                 // trade stats and all account age witness data.
 
-                // We only apply it once from first response
+                // We only apply it once from first response. A chunked response is applied with all its chunks.
                 if (!initialRequestApplied || getDataResponse.isWasTruncated()) {
                     addPersistableNetworkPayloadFromInitialRequest(e);
                 }
@@ -611,7 +795,9 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         // We only process PersistableNetworkPayloads implementing ProcessOncePersistableNetworkPayload once. It can cause performance
         // issues and since the data is rarely out of sync it is not worth it to apply them from multiple peers during
         // startup.
-        initialRequestApplied = true;
+        if (getDataResponse.isFinalResponse()) {
+            initialRequestApplied = true;
+        }
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -645,11 +831,8 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
             }
             removeFromMapAndDataStore(toRemoveList);
 
-            synchronized (sequenceNumberMap.getMap()) {
-                if (sequenceNumberMap.size() > this.maxSequenceNumberMapSizeBeforePurge) {
-                    sequenceNumberMap.setMap(getPurgedSequenceNumberMap(sequenceNumberMap.getMap()));
-                    requestPersistence();
-                }
+            if (sequenceNumberMap.size() > this.maxSequenceNumberMapSizeBeforePurge && purgeSequenceNumberMap() > 0) {
+                requestPersistence();
             }
         }
     }
@@ -682,6 +865,24 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         }
     }
 
+    // Runs on the dispatcher of the connection in parallel to the other connections. We only hash the payload and
+    // verify the signature here, both results are cached by the entry for the add or remove operation in onMessage.
+    @Override
+    public void preProcessMessage(NetworkEnvelope networkEnvelope, Connection connection) {
+        ProtectedStorageEntry protectedStorageEntry = null;
+        if (networkEnvelope instanceof AddDataMessage) {
+            protectedStorageEntry = ((AddDataMessage) networkEnvelope).getProtectedStorageEntry();
+        } else if (networkEnvelope instanceof RemoveDataMessage) {
+            protectedStorageEntry = ((RemoveDataMessage) networkEnvelope).getProtectedStorageEntry();
+        } else if (networkEnvelope instanceof RemoveMailboxDataMessage) {
+            protectedStorageEntry = ((RemoveMailboxDataMessage) networkEnvelope).getProtectedMailboxStorageEntry();
+        }
+        if (protectedStorageEntry != null) {
+            getHashOfPayload(protectedStorageEntry);
+            protectedStorageEntry.preVerifySignature();
+        }
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // ConnectionListener implementation
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -822,9 +1023,17 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                                              @Nullable NodeAddress sender,
                                              @Nullable BroadcastHandler.Listener listener,
                                              boolean allowBroadcast) {
+        ByteArray hashOfPayload = getHashOfPayload(protectedStorageEntry);
+        return addProtectedStorageEntry(protectedStorageEntry, hashOfPayload, sender, listener, allowBroadcast);
+    }
+
+    private boolean addProtectedStorageEntry(ProtectedStorageEntry protectedStorageEntry,
+                                             ByteArray hashOfPayload,
+                                             @Nullable NodeAddress sender,
+                                             @Nullable BroadcastHandler.Listener listener,
+                                             boolean allowBroadcast) {
         synchronized (map) {
             ProtectedStoragePayload protectedStoragePayload = protectedStorageEntry.getProtectedStoragePayload();
-            ByteArray hashOfPayload = get32ByteHashAsByteArray(protectedStoragePayload);
 
             //log.trace("## call addProtectedStorageEntry hash={}, map={}", hashOfPayload, printMap());
 
@@ -913,7 +1122,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                                                               @Nullable NodeAddress sender,
                                                               @Nullable BroadcastHandler.Listener listener) {
         ProtectedStoragePayload protectedStoragePayload = protectedMailboxStorageEntry.getProtectedStoragePayload();
-        ByteArray hashOfPayload = get32ByteHashAsByteArray(protectedStoragePayload);
+        ByteArray hashOfPayload = getHashOfPayload(protectedMailboxStorageEntry);
 
         //log.trace("## call republishProtectedStorageEntry hash={}, map={}", hashOfPayload, printMap());
 
@@ -999,7 +1208,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                           @Nullable NodeAddress sender) {
         synchronized (map) {
             ProtectedStoragePayload protectedStoragePayload = protectedStorageEntry.getProtectedStoragePayload();
-            ByteArray hashOfPayload = get32ByteHashAsByteArray(protectedStoragePayload);
+            ByteArray hashOfPayload = getHashOfPayload(protectedStorageEntry);
 
             // If we have seen a more recent operation for this payload, ignore this one
             if (!hasSequenceNrIncreased(protectedStorageEntry.getSequenceNumber(), hashOfPayload))
@@ -1046,14 +1255,14 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     public ProtectedStorageEntry getProtectedStorageEntry(ProtectedStoragePayload protectedStoragePayload,
                                                           KeyPair ownerStoragePubKey)
             throws CryptoException {
-        ByteArray hashOfData = get32ByteHashAsByteArray(protectedStoragePayload);
+        ByteArray hashOfData = getHashOfPayload(protectedStoragePayload);
         int sequenceNumber;
         if (sequenceNumberMap.containsKey(hashOfData))
             sequenceNumber = sequenceNumberMap.get(hashOfData).sequenceNr + 1;
         else
             sequenceNumber = 1;
 
-        byte[] hashOfDataAndSeqNr = P2PDataStorage.get32ByteHash(new DataAndSeqNrPair(protectedStoragePayload, sequenceNumber));
+        byte[] hashOfDataAndSeqNr = getHashOfDataAndSeqNr(protectedStoragePayload, sequenceNumber);
         byte[] signature = Sig.sign(ownerStoragePubKey.getPrivate(), hashOfDataAndSeqNr);
         return new ProtectedStorageEntry(protectedStoragePayload, ownerStoragePubKey.getPublic(), sequenceNumber, signature, this.clock);
     }
@@ -1061,14 +1270,14 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     public RefreshOfferMessage getRefreshTTLMessage(ProtectedStoragePayload protectedStoragePayload,
                                                     KeyPair ownerStoragePubKey)
             throws CryptoException {
-        ByteArray hashOfPayload = get32ByteHashAsByteArray(protectedStoragePayload);
+        ByteArray hashOfPayload = getHashOfPayload(protectedStoragePayload);
         int sequenceNumber;
         if (sequenceNumberMap.containsKey(hashOfPayload))
             sequenceNumber = sequenceNumberMap.get(hashOfPayload).sequenceNr + 1;
         else
             sequenceNumber = 1;
 
-        byte[] hashOfDataAndSeqNr = P2PDataStorage.get32ByteHash(new DataAndSeqNrPair(protectedStoragePayload, sequenceNumber));
+        byte[] hashOfDataAndSeqNr = getHashOfDataAndSeqNr(protectedStoragePayload, sequenceNumber);
         byte[] signature = Sig.sign(ownerStoragePubKey.getPrivate(), hashOfDataAndSeqNr);
         return new RefreshOfferMessage(hashOfDataAndSeqNr, signature, hashOfPayload.bytes, sequenceNumber);
     }
@@ -1077,14 +1286,14 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                                                                       KeyPair storageSignaturePubKey,
                                                                       PublicKey receiversPublicKey)
             throws CryptoException {
-        ByteArray hashOfData = get32ByteHashAsByteArray(expirableMailboxStoragePayload);
+        ByteArray hashOfData = getHashOfPayload(expirableMailboxStoragePayload);
         int sequenceNumber;
         if (sequenceNumberMap.containsKey(hashOfData))
             sequenceNumber = sequenceNumberMap.get(hashOfData).sequenceNr + 1;
         else
             sequenceNumber = 1;
 
-        byte[] hashOfDataAndSeqNr = P2PDataStorage.get32ByteHash(new DataAndSeqNrPair(expirableMailboxStoragePayload, sequenceNumber));
+        byte[] hashOfDataAndSeqNr = getHashOfDataAndSeqNr(expirableMailboxStoragePayload, sequenceNumber);
         byte[] signature = Sig.sign(storageSignaturePubKey.getPrivate(), hashOfDataAndSeqNr);
         return new ProtectedMailboxStorageEntry(expirableMailboxStoragePayload,
                 storageSignaturePubKey.getPublic(), sequenceNumber, signature, receiversPublicKey, this.clock);
@@ -1178,15 +1387,43 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         return new ByteArray(P2PDataStorage.get32ByteHash(data));
     }
 
-    // Get a new map with entries older than PURGE_AGE_DAYS purged from the given map.
-    private Map<ByteArray, MapValue> getPurgedSequenceNumberMap(Map<ByteArray, MapValue> persisted) {
-        Map<ByteArray, MapValue> purged = new HashMap<>();
-        long maxAgeTs = this.clock.millis() - TimeUnit.DAYS.toMillis(PURGE_AGE_DAYS);
-        persisted.forEach((key, value) -> {
-            if (value.timeStamp > maxAgeTs)
-                purged.put(key, value);
-        });
-        return purged;
+    public static ByteArray getHashOfPayload(ProtectedStorageEntry protectedStorageEntry) {
+        return getHashOfPayload(protectedStorageEntry.getProtectedStoragePayload());
+    }
+
+    /**
+     * Returns the hash of the payload. The hash is computed once and cached on the payload, so entries which wrap
+     * the same payload instance (e.g. refreshed or re-signed entries) share it. The bytes must not be modified.
+     */
+    public static ByteArray getHashOfPayload(ProtectedStoragePayload protectedStoragePayload) {
+        byte[] hashOfPayload = protectedStoragePayload.getHashOfPayload();
+        if (hashOfPayload == null) {
+            hashOfPayload = get32ByteHash(protectedStoragePayload);
+            protectedStoragePayload.setHashOfPayload(hashOfPayload);
+        }
+        return new ByteArray(hashOfPayload);
+    }
+
+    /**
+     * Returns the hash of the payload and the sequence number which is signed by the owner of a
+     * ProtectedStorageEntry. The same as hashing a {@link DataAndSeqNrPair}, but the proto message of the payload
+     * is built only once and also used to cache the hash of the payload if it is not cached yet.
+     */
+    public static byte[] getHashOfDataAndSeqNr(ProtectedStoragePayload protectedStoragePayload, int sequenceNumber) {
+        protobuf.StoragePayload storagePayload = (protobuf.StoragePayload) protectedStoragePayload.toProtoMessage();
+        if (protectedStoragePayload.getHashOfPayload() == null)
+            protectedStoragePayload.setHashOfPayload(Hash.getSha256Hash(storagePayload.toByteArray()));
+
+        return Hash.getSha256Hash(protobuf.DataAndSeqNrPair.newBuilder()
+                .setPayload(storagePayload)
+                .setSequenceNumber(sequenceNumber)
+                .build()
+                .toByteArray());
+    }
+
+    // Removes the entries older than PURGE_AGE_DAYS from the sequenceNumberMap. Returns the number of removed entries.
+    private int purgeSequenceNumberMap() {
+        return sequenceNumberMap.purge(this.clock.millis() - TimeUnit.DAYS.toMillis(PURGE_AGE_DAYS));
     }
 
     private void printData(String info) {
@@ -1195,13 +1432,13 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
             sb.append("Data set ").append(info).append(" operation");
             // We print the items sorted by hash with the payload class name and id
             List<Tuple2<String, ProtectedStorageEntry>> tempList = map.values().stream()
-                    .map(e -> new Tuple2<>(org.bitcoinj.core.Utils.HEX.encode(get32ByteHashAsByteArray(e.getProtectedStoragePayload()).bytes), e))
+                    .map(e -> new Tuple2<>(org.bitcoinj.core.Utils.HEX.encode(getHashOfPayload(e).bytes), e))
                     .sorted(Comparator.comparing(o -> o.first))
                     .collect(Collectors.toList());
             tempList.forEach(e -> {
                 ProtectedStorageEntry storageEntry = e.second;
                 ProtectedStoragePayload protectedStoragePayload = storageEntry.getProtectedStoragePayload();
-                MapValue mapValue = sequenceNumberMap.get(get32ByteHashAsByteArray(protectedStoragePayload));
+                MapValue mapValue = sequenceNumberMap.get(getHashOfPayload(storageEntry));
                 sb.append("\n")
                         .append("Hash=")
                         .append(e.first)
@@ -1275,7 +1512,6 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
      * Used as key object in map for cryptographic hash of stored data as byte[] as primitive data type cannot be
      * used as key
      */
-    @EqualsAndHashCode
     public static final class ByteArray implements PersistablePayload {
         // That object is saved to disc. We need to take care of changes to not break deserialization.
         public final byte[] bytes;
@@ -1293,6 +1529,19 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                 throw new IllegalArgumentException("Cannot create P2PDataStorage.ByteArray with empty byte[] array argument.");
         }
 
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ByteArray)) return false;
+            return Arrays.equals(bytes, ((ByteArray) o).bytes);
+        }
+
+        // Our keys are mostly 32 byte hashes, for those the leading bytes are a good hash code already
+        @Override
+        public int hashCode() {
+            return bytes.length == 32 ? Ints.fromBytes(bytes[0], bytes[1], bytes[2], bytes[3]) : Arrays.hashCode(bytes);
+        }
+
         @Override
         public String toString() {
             return "ByteArray{" +
@@ -1340,7 +1589,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         final public int sequenceNr;
         final public long timeStamp;
 
-        MapValue(int sequenceNr, long timeStamp) {
+        public MapValue(int sequenceNr, long timeStamp) {
             this.sequenceNr = sequenceNr;
             this.timeStamp = timeStamp;
         }
@@ -0,0 +1,137 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.network.p2p.storage;
+
+import haveno.network.p2p.storage.payload.ProtectedStorageEntry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Hashes the payloads and verifies the signatures of a batch of ProtectedStorageEntries in parallel on a bounded
+ * pool. The results are returned in the iteration order of the input so the caller can apply them to the map
+ * sequentially. The result of the signature verification is cached by the entry, so the later add operation does
+ * not verify it again. Timing stats are collected per payload class and logged at most every
+ * {@link #LOG_STATS_INTERVAL_MS}.
+ */
+@Slf4j
+class ProtectedStorageEntryVerifier {
+
+    // Below that size the overhead of the parallel execution is not worth it
+    static final int MIN_PARALLEL_BATCH_SIZE = 16;
+    private static final long LOG_STATS_INTERVAL_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final ForkJoinPool POOL = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+    @Getter
+    private static final Map<String, Stats> statsByPayloadClass = new ConcurrentHashMap<>();
+    private static final AtomicLong lastLogStatsTs = new AtomicLong(System.currentTimeMillis());
+
+    static List<VerifiedEntry> verify(Collection<ProtectedStorageEntry> protectedStorageEntries) {
+        if (protectedStorageEntries.isEmpty()) return Collections.emptyList();
+
+        List<ProtectedStorageEntry> entries = new ArrayList<>(protectedStorageEntries);
+        if (entries.size() < MIN_PARALLEL_BATCH_SIZE) {
+            return entries.stream()
+                    .map(ProtectedStorageEntryVerifier::verify)
+                    .collect(Collectors.toList());
+        }
+
+        // Encounter order is kept by the parallel stream
+        return POOL.submit(() -> entries.parallelStream()
+                        .map(ProtectedStorageEntryVerifier::verify)
+                        .collect(Collectors.toList()))
+                .join();
+    }
+
+    /**
+     * Logs the stats collected since the last call if the log interval has passed and resets them.
+     */
+    static void maybeLogStats() {
+        long now = System.currentTimeMillis();
+        long last = lastLogStatsTs.get();
+        if (now - last < LOG_STATS_INTERVAL_MS || !lastLogStatsTs.compareAndSet(last, now)) return;
+        if (statsByPayloadClass.isEmpty()) return;
+
+        StringBuilder sb = new StringBuilder("ProtectedStorageEntry verification stats of the last ")
+                .append(TimeUnit.MILLISECONDS.toMinutes(now - last)).append(" min:");
+        statsByPayloadClass.forEach((className, stats) -> sb.append("\n\t").append(className).append(": ").append(stats));
+        statsByPayloadClass.clear();
+        log.info(sb.toString());
+    }
+
+    private static VerifiedEntry verify(ProtectedStorageEntry protectedStorageEntry) {
+        long ts = System.nanoTime();
+        P2PDataStorage.ByteArray hashOfPayload = P2PDataStorage.getHashOfPayload(protectedStorageEntry);
+        long hashingDone = System.nanoTime();
+        boolean validForAdd = protectedStorageEntry.isValidForAddOperation();
+        long verificationDone = System.nanoTime();
+
+        String className = protectedStorageEntry.getProtectedStoragePayload().getClass().getSimpleName();
+        statsByPayloadClass.computeIfAbsent(className, k -> new Stats())
+                .add(hashingDone - ts, verificationDone - hashingDone);
+        return new VerifiedEntry(protectedStorageEntry, hashOfPayload, validForAdd);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Static classes
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Getter
+    static final class VerifiedEntry {
+        private final ProtectedStorageEntry protectedStorageEntry;
+        private final P2PDataStorage.ByteArray hashOfPayload;
+        private final boolean validForAdd;
+
+        private VerifiedEntry(ProtectedStorageEntry protectedStorageEntry,
+                              P2PDataStorage.ByteArray hashOfPayload,
+                              boolean validForAdd) {
+            this.protectedStorageEntry = protectedStorageEntry;
+            this.hashOfPayload = hashOfPayload;
+            this.validForAdd = validForAdd;
+        }
+    }
+
+    static final class Stats {
+        private final AtomicLong numEntries = new AtomicLong();
+        private final AtomicLong hashingNanos = new AtomicLong();
+        private final AtomicLong verificationNanos = new AtomicLong();
+
+        private void add(long hashingTime, long verificationTime) {
+            numEntries.incrementAndGet();
+            hashingNanos.addAndGet(hashingTime);
+            verificationNanos.addAndGet(verificationTime);
+        }
+
+        @Override
+        public String toString() {
+            return "entries=" + numEntries.get() +
+                    ", hashing=" + TimeUnit.NANOSECONDS.toMillis(hashingNanos.get()) + " ms" +
+                    ", signature verification=" + TimeUnit.NANOSECONDS.toMillis(verificationNanos.get()) + " ms";
+        }
+    }
+}
@@ -25,6 +25,7 @@ import haveno.network.p2p.PrefixedSealedAndSignedMessage;
 import haveno.network.p2p.storage.messages.AddOncePayload;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
 
@@ -66,6 +67,11 @@ public final class MailboxStoragePayload implements ProtectedStoragePayload, Exp
     @Nullable
     private Map<String, String> extraDataMap;
 
+    // cache
+    @Nullable
+    @Setter
+    private transient volatile byte[] hashOfPayload;
+
     public MailboxStoragePayload(PrefixedSealedAndSignedMessage prefixedSealedAndSignedMessage,
                                  @NotNull PublicKey senderPubKeyForAddOperation,
                                  PublicKey ownerPubKey,
@@ -28,6 +28,7 @@ import haveno.common.proto.network.NetworkProtoResolver;
 import haveno.common.proto.persistable.PersistablePayload;
 import haveno.common.util.Utilities;
 import haveno.network.p2p.storage.P2PDataStorage;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -46,6 +47,9 @@ public class ProtectedStorageEntry implements NetworkPayload, PersistablePayload
     private final int sequenceNumber;
     private final byte[] signature;
     private long creationTimeStamp;
+    // Payload, sequence number and signature are immutable so the result of the signature check can be reused
+    @Getter(AccessLevel.NONE)
+    transient private volatile Boolean signatureValid;
 
     public ProtectedStorageEntry(@NotNull ProtectedStoragePayload protectedStoragePayload,
                                  @NotNull PublicKey ownerPubKey,
@@ -199,12 +203,30 @@ public class ProtectedStorageEntry implements NetworkPayload, PersistablePayload
     }
 
     /*
-     * Returns true if the signature for the Entry is valid for the payload, sequence number, and ownerPubKey
+     * Verifies the signature and caches the result, so the add or remove operation does not verify it again. Used
+     * to verify the signature ahead of time on the thread which received the entry.
+     */
+    public void preVerifySignature() {
+        isSignatureValid();
+    }
+
+    /*
+     * Returns true if the signature for the Entry is valid for the payload, sequence number, and ownerPubKey.
+     * The result is computed once and cached. It is safe to call from any thread, so isValidForAddOperation() can
+     * be called ahead of time (e.g. in parallel for a GetDataResponse) before the entry gets added.
      */
     boolean isSignatureValid() {
+        Boolean result = signatureValid;
+        if (result == null) {
+            result = verifySignature();
+            signatureValid = result;
+        }
+        return result;
+    }
+
+    private boolean verifySignature() {
         try {
-            byte[] hashOfDataAndSeqNr = P2PDataStorage.get32ByteHash(
-                    new P2PDataStorage.DataAndSeqNrPair(this.protectedStoragePayload, this.sequenceNumber));
+            byte[] hashOfDataAndSeqNr = P2PDataStorage.getHashOfDataAndSeqNr(this.protectedStoragePayload, this.sequenceNumber);
 
             boolean result = Sig.verify(this.ownerPubKey, hashOfDataAndSeqNr, this.signature);
 
@@ -48,6 +48,23 @@ public interface ProtectedStoragePayload extends NetworkPayload {
     @Nullable
     Map<String, String> getExtraDataMap();
 
+    /**
+     * Returns the hash of the payload which is used as key in the P2PDataStorage if it was cached before by
+     * {@link #setHashOfPayload(byte[])}, otherwise null. The P2PDataStorage caches the hash when it hashes the
+     * payload, so implementations must clear it if they get mutated afterwards.
+     */
+    @Nullable
+    default byte[] getHashOfPayload() {
+        return null;
+    }
+
+    /**
+     * Caches the hash of the payload. Implementations keep it in a transient field which is excluded from the
+     * proto message and from equals/hashCode. By default nothing is cached.
+     */
+    default void setHashOfPayload(byte[] hashOfPayload) {
+    }
+
     static ProtectedStoragePayload fromProto(protobuf.StoragePayload storagePayload, NetworkProtoResolver networkProtoResolver) {
         return (ProtectedStoragePayload) networkProtoResolver.fromProto(storagePayload);
     }
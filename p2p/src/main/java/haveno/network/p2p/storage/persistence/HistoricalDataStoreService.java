@@ -18,6 +18,7 @@
 package haveno.network.p2p.storage.persistence;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
 import haveno.common.app.DevEnv;
 import haveno.common.app.Version;
 import haveno.common.persistence.PersistenceManager;
@@ -25,22 +26,34 @@ import haveno.network.p2p.storage.P2PDataStorage;
 import haveno.network.p2p.storage.payload.PersistableNetworkPayload;
 import lombok.extern.slf4j.Slf4j;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  * Manages historical data stores tagged with the release versions.
  * New data is added to the default map in the store (live data). Historical data is created from resource files.
  * For initial data requests we only use the live data as the users version is sent with the
  * request so the responding (seed)node can figure out if we miss any of the historical data.
+ * <p>
+ * The historical data never changes, so we do not keep it on the heap. At the first start with a new resource file
+ * we convert it to a {@link MappedPayloadStore} and later only map that file. Historical payloads are deserialized
+ * when they are looked up or iterated.
  */
 @Slf4j
 public abstract class HistoricalDataStoreService<T extends PersistableNetworkPayloadStore<? extends PersistableNetworkPayload>> extends MapStoreService<T, PersistableNetworkPayload> {
-    private ImmutableMap<String, PersistableNetworkPayloadStore<? extends PersistableNetworkPayload>> storesByVersion;
-    // Cache to avoid that we have to recreate the historical data at each request
-    private ImmutableMap<P2PDataStorage.ByteArray, PersistableNetworkPayload> allHistoricalPayloads;
+    private ImmutableMap<String, MappedPayloadStore> storesByVersion = ImmutableMap.of();
+    // Read-only view on the live data and the historical data
+    private final Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> mapOfAllData = new AllDataView();
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -59,46 +72,53 @@ public abstract class HistoricalDataStoreService<T extends PersistableNetworkPay
     // We give back a map of our live map and all historical maps newer than the requested version.
     // If requestersVersion is null we return all historical data.
     public Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> getMapSinceVersion(String requestersVersion) {
+        return getMapSinceVersion(requestersVersion, hash -> false);
+    }
+
+    // As above, but payloads with a hash matching isKnown are not added. The historical payloads are only
+    // deserialized if they get added, so the requester's known payloads do not cost us a deserialization.
+    public Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> getMapSinceVersion(String requestersVersion,
+                                                                                      Predicate<P2PDataStorage.ByteArray> isKnown) {
         // We add all our live data
-        Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> result = new HashMap<>(store.getMap());
+        Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> result = new HashMap<>();
+        store.getMap().forEach((hash, payload) -> {
+            if (!isKnown.test(hash)) {
+                result.put(hash, payload);
+            }
+        });
 
         // If we have a store with a newer version than the requesters version we will add those as well.
-        storesByVersion.entrySet().stream()
-                .filter(entry -> {
-                    // Old nodes not sending the version will get delivered all data
-                    if (requestersVersion == null) {
-                        log.info("The requester did not send a version. This is expected for not updated nodes.");
-                        return true;
-                    }
-
-                    // Otherwise we only add data if the requesters version is older then
-                    // the version of the particular store.
-                    String storeVersion = entry.getKey();
-                    boolean newVersion = Version.isNewVersion(storeVersion, requestersVersion);
-                    String details = newVersion ?
-                            "As our historical store is a newer version we add the data to our result map." :
-                            "As the requester version is not older as our historical store we do not " +
-                                    "add the data to the result map.";
-                    log.trace("The requester had version {}. Our historical data store has version {}.\n{}",
-                            requestersVersion, storeVersion, details);
-                    return newVersion;
-                })
-                .map(e -> e.getValue().getMap())
-                .forEach(result::putAll);
+        getStoresSinceVersion(requestersVersion).forEach(mappedStore -> mappedStore.forEach(isKnown, result::put));
 
         log.info("We found {} entries since requesters version {}",
                 result.size(), requestersVersion);
         return result;
     }
 
+    // As getMapSinceVersion, but the payloads are read from the stores while iterating instead of being collected
+    // in a map, so the caller can send them in chunks without holding all of them.
+    public Iterator<PersistableNetworkPayload> iteratorSinceVersion(String requestersVersion,
+                                                                    Predicate<P2PDataStorage.ByteArray> isKnown) {
+        Iterator<PersistableNetworkPayload> liveData = store.getMap().entrySet().stream()
+                .filter(entry -> !isKnown.test(entry.getKey()))
+                .map(Map.Entry::getValue)
+                .iterator();
+        Iterator<PersistableNetworkPayload> historicalData = Iterators.concat(Iterators.transform(
+                getStoresSinceVersion(requestersVersion).iterator(),
+                mappedStore -> mappedStore.valueIterator(isKnown)));
+        return Iterators.concat(liveData, historicalData);
+    }
+
     public Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> getMapOfLiveData() {
         return store.getMap();
     }
 
+    /**
+     * @return a read-only view on the live data and the historical data. Historical payloads are deserialized at
+     * each access, so callers iterating the values should not do that repeatedly.
+     */
     public Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> getMapOfAllData() {
-        Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> result = new HashMap<>(getMapOfLiveData());
-        result.putAll(allHistoricalPayloads);
-        return result;
+        return mapOfAllData;
     }
 
 
@@ -137,6 +157,21 @@ public abstract class HistoricalDataStoreService<T extends PersistableNetworkPay
         return null;
     }
 
+    // The historical data never changes, so only live data can be removed
+    @Override
+    PersistableNetworkPayload remove(P2PDataStorage.ByteArray hash) {
+        PersistableNetworkPayload result = getMapOfLiveData().remove(hash);
+        if (result != null) {
+            requestPersistence();
+        }
+        return result;
+    }
+
+    @Override
+    boolean containsKey(P2PDataStorage.ByteArray hash) {
+        return anyMapContainsKey(hash);
+    }
+
 
     @Override
     protected void readFromResources(String postFix, Runnable completeHandler) {
@@ -144,55 +179,105 @@ public abstract class HistoricalDataStoreService<T extends PersistableNetworkPay
             log.debug("We have created the {} store for the live data and filled it with {} entries from the persisted data.",
                     getFileName(), getMapOfLiveData().size());
 
-            // Now we add our historical data stores.
-            Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> allHistoricalPayloads = new HashMap<>();
-            Map<String, PersistableNetworkPayloadStore<? extends PersistableNetworkPayload>> storesByVersion = new HashMap<>();
-            AtomicInteger numFiles = new AtomicInteger(Version.HISTORICAL_RESOURCE_FILE_VERSION_TAGS.size());
-            Version.HISTORICAL_RESOURCE_FILE_VERSION_TAGS.forEach(version -> readHistoricalStoreFromResources(version,
+            // Now we add our historical data stores. We read them one after the other, so a store only contains
+            // payloads which are not contained in a previous store.
+            Map<String, MappedPayloadStore> storesByVersion = new LinkedHashMap<>();
+            readHistoricalStoresFromResources(Version.HISTORICAL_RESOURCE_FILE_VERSION_TAGS.iterator(),
                     postFix,
-                    allHistoricalPayloads,
                     storesByVersion,
                     () -> {
-                        if (numFiles.decrementAndGet() == 0) {
-                            // At last iteration we set the immutable map
-                            this.allHistoricalPayloads = ImmutableMap.copyOf(allHistoricalPayloads);
-                            this.storesByVersion = ImmutableMap.copyOf(storesByVersion);
-                            completeHandler.run();
-                        }
-                    }));
+                        this.storesByVersion = ImmutableMap.copyOf(storesByVersion);
+                        completeHandler.run();
+                    });
         });
     }
 
 
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Protected
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Deserializes a payload of the historical stores
+    protected abstract PersistableNetworkPayload fromProto(protobuf.PersistableNetworkPayload proto);
+
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Private
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    private void readHistoricalStoresFromResources(Iterator<String> versions,
+                                                   String postFix,
+                                                   Map<String, MappedPayloadStore> storesByVersion,
+                                                   Runnable completeHandler) {
+        if (!versions.hasNext()) {
+            completeHandler.run();
+            return;
+        }
+
+        readHistoricalStoreFromResources(versions.next(),
+                postFix,
+                storesByVersion,
+                () -> readHistoricalStoresFromResources(versions, postFix, storesByVersion, completeHandler));
+    }
+
     private void readHistoricalStoreFromResources(String version,
                                                   String postFix,
-                                                  Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> allHistoricalPayloads,
-                                                  Map<String, PersistableNetworkPayloadStore<? extends PersistableNetworkPayload>> storesByVersion,
+                                                  Map<String, MappedPayloadStore> storesByVersion,
                                                   Runnable completeHandler) {
 
         String fileName = getFileName() + "_" + version;
         boolean wasCreatedFromResources = makeFileFromResourceFile(fileName, postFix);
+        File mappedFile = new File(absolutePathOfStorageDir, fileName + MappedPayloadStore.FILE_SUFFIX);
+
+        // If we got a new resource file we have to recreate the mapped store
+        MappedPayloadStore mappedStore = wasCreatedFromResources ? null : MappedPayloadStore.open(mappedFile, this::fromProto);
+        if (mappedStore != null) {
+            log.debug("We have mapped {} with {} historical items.", mappedFile.getName(), mappedStore.size());
+            addHistoricalStore(version, mappedStore, storesByVersion);
+            completeHandler.run();
+            return;
+        }
 
         // If resource file does not exist we do not create a new store as it would never get filled.
         persistenceManager.readPersisted(fileName, persisted -> {
-                    storesByVersion.put(version, persisted);
-                    allHistoricalPayloads.putAll(persisted.getMap());
-                    log.debug("We have read from {} {} historical items.", fileName, persisted.getMap().size());
-                    pruneStore(persisted, version);
+                    MappedPayloadStore createdStore = createMappedStore(mappedFile, persisted, storesByVersion);
+                    if (createdStore != null) {
+                        addHistoricalStore(version, createdStore, storesByVersion);
+                    }
                     completeHandler.run();
                 },
                 completeHandler::run);
     }
 
-    private void pruneStore(PersistableNetworkPayloadStore<? extends PersistableNetworkPayload> historicalStore,
-                            String version) {
+    @Nullable
+    private MappedPayloadStore createMappedStore(File mappedFile,
+                                                 PersistableNetworkPayloadStore<? extends PersistableNetworkPayload> historicalStore,
+                                                 Map<String, MappedPayloadStore> storesByVersion) {
+        long ts = System.currentTimeMillis();
+        try {
+            int numEntries = MappedPayloadStore.write(mappedFile,
+                    historicalStore.getMap(),
+                    hash -> storesByVersion.values().stream().anyMatch(mappedStore -> mappedStore.containsKey(hash)));
+            log.info("Creating {} with {} historical items completed in {} ms",
+                    mappedFile.getName(), numEntries, System.currentTimeMillis() - ts);
+        } catch (Throwable t) {
+            log.error("Creating {} failed. We will retry at the next startup.", mappedFile.getName(), t);
+            return null;
+        }
+        return MappedPayloadStore.open(mappedFile, this::fromProto);
+    }
+
+    private void addHistoricalStore(String version,
+                                    MappedPayloadStore mappedStore,
+                                    Map<String, MappedPayloadStore> storesByVersion) {
+        storesByVersion.put(version, mappedStore);
+        pruneStore(mappedStore, version);
+    }
+
+    private void pruneStore(MappedPayloadStore historicalStore, String version) {
         Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> mapOfLiveData = getMapOfLiveData();
         int preLive = mapOfLiveData.size();
-        mapOfLiveData.keySet().removeAll(historicalStore.getMap().keySet());
+        mapOfLiveData.keySet().removeIf(historicalStore::containsKey);
         int postLive = mapOfLiveData.size();
         if (preLive > postLive) {
             log.debug("We pruned data from our live data store which are already contained in the historical data store with version {}. " +
@@ -204,7 +289,119 @@ public abstract class HistoricalDataStoreService<T extends PersistableNetworkPay
         requestPersistence();
     }
 
+    // The historical stores with a newer version than the requesters version
+    private List<MappedPayloadStore> getStoresSinceVersion(String requestersVersion) {
+        return storesByVersion.entrySet().stream()
+                .filter(entry -> {
+                    // Old nodes not sending the version will get delivered all data
+                    if (requestersVersion == null) {
+                        log.info("The requester did not send a version. This is expected for not updated nodes.");
+                        return true;
+                    }
+
+                    // Otherwise we only add data if the requesters version is older then
+                    // the version of the particular store.
+                    String storeVersion = entry.getKey();
+                    boolean newVersion = Version.isNewVersion(storeVersion, requestersVersion);
+                    String details = newVersion ?
+                            "As our historical store is a newer version we add the data to our result map." :
+                            "As the requester version is not older as our historical store we do not " +
+                                    "add the data to the result map.";
+                    log.trace("The requester had version {}. Our historical data store has version {}.\n{}",
+                            requestersVersion, storeVersion, details);
+                    return newVersion;
+                })
+                .map(Map.Entry::getValue)
+                .collect(Collectors.toList());
+    }
+
     private boolean anyMapContainsKey(P2PDataStorage.ByteArray hash) {
-        return getMapOfLiveData().containsKey(hash) || allHistoricalPayloads.containsKey(hash);
+        return getMapOfLiveData().containsKey(hash) || historicalStoresContainKey(hash);
+    }
+
+    private boolean historicalStoresContainKey(P2PDataStorage.ByteArray hash) {
+        for (MappedPayloadStore mappedStore : storesByVersion.values()) {
+            if (mappedStore.containsKey(hash)) return true;
+        }
+        return false;
+    }
+
+    private int getNumHistoricalPayloads() {
+        return storesByVersion.values().stream().mapToInt(MappedPayloadStore::size).sum();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // AllDataView
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // The live data and the historical stores do not contain the same keys as we prune the live data and only add
+    // payloads to the live data which are not contained in the historical stores.
+    private class AllDataView extends AbstractMap<P2PDataStorage.ByteArray, PersistableNetworkPayload> {
+        @Override
+        public int size() {
+            return getMapOfLiveData().size() + getNumHistoricalPayloads();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof P2PDataStorage.ByteArray && anyMapContainsKey((P2PDataStorage.ByteArray) key);
+        }
+
+        @Override
+        public PersistableNetworkPayload get(Object key) {
+            if (!(key instanceof P2PDataStorage.ByteArray)) return null;
+            PersistableNetworkPayload payload = getMapOfLiveData().get(key);
+            if (payload != null) return payload;
+            for (MappedPayloadStore mappedStore : storesByVersion.values()) {
+                payload = mappedStore.get((P2PDataStorage.ByteArray) key);
+                if (payload != null) return payload;
+            }
+            return null;
+        }
+
+        @Override
+        public Set<P2PDataStorage.ByteArray> keySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<P2PDataStorage.ByteArray> iterator() {
+                    // Iterating the keys does not deserialize the historical payloads
+                    Iterator<P2PDataStorage.ByteArray> liveKeys = Iterators.unmodifiableIterator(getMapOfLiveData().keySet().iterator());
+                    return Iterators.concat(liveKeys, Iterators.concat(storesByVersion.values().stream()
+                            .map(MappedPayloadStore::keyIterator)
+                            .iterator()));
+                }
+
+                @Override
+                public boolean contains(Object key) {
+                    return containsKey(key);
+                }
+
+                @Override
+                public int size() {
+                    return AllDataView.this.size();
+                }
+            };
+        }
+
+        @Override
+        public Set<Entry<P2PDataStorage.ByteArray, PersistableNetworkPayload>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<P2PDataStorage.ByteArray, PersistableNetworkPayload>> iterator() {
+                    Iterator<Entry<P2PDataStorage.ByteArray, PersistableNetworkPayload>> liveEntries = Iterators.unmodifiableIterator(
+                            Iterators.transform(getMapOfLiveData().entrySet().iterator(),
+                                    entry -> new SimpleImmutableEntry<>(entry.getKey(), entry.getValue())));
+                    return Iterators.concat(liveEntries, Iterators.concat(storesByVersion.values().stream()
+                            .map(MappedPayloadStore::iterator)
+                            .iterator()));
+                }
+
+                @Override
+                public int size() {
+                    return AllDataView.this.size();
+                }
+            };
+        }
     }
 }
@@ -0,0 +1,381 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.network.p2p.storage.persistence;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import haveno.common.file.FileUtil;
+import haveno.network.p2p.storage.P2PDataStorage;
+import haveno.network.p2p.storage.payload.PersistableNetworkPayload;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Read-only store of immutable PersistableNetworkPayloads which is memory-mapped instead of deserialized to the heap.
+ * Payloads are only deserialized when they are looked up or iterated, the OS pages in the parts of the file which
+ * are accessed.
+ * <p>
+ * File layout: header (magic, version, number of entries, number of index slots, offset of the index), the records
+ * (length-prefixed key and length-prefixed serialized PersistableNetworkPayload), then the index. The index is an
+ * open addressing hash table with linear probing, each slot holds the offset of a record or 0 if empty.
+ * <p>
+ * Used by {@link HistoricalDataStoreService} for the historical stores which never change once released.
+ */
+@Slf4j
+final class MappedPayloadStore {
+    static final String FILE_SUFFIX = ".mapped";
+    private static final int MAGIC = 0x484d5053;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 8;
+    private static final int SLOT_SIZE = 8;
+
+    @Getter
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final Function<protobuf.PersistableNetworkPayload, PersistableNetworkPayload> resolver;
+    private final int numEntries;
+    private final int numSlots;
+    private final int indexOffset;
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Write
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Writes the payloads to a temp file which replaces the given file once complete.
+     *
+     * @param file     the file to write
+     * @param payloads the payloads by their hash
+     * @param exclude  payloads with keys matching the predicate are not written
+     * @return the number of written payloads
+     */
+    static int write(File file,
+                     Map<P2PDataStorage.ByteArray, ? extends PersistableNetworkPayload> payloads,
+                     Predicate<P2PDataStorage.ByteArray> exclude) throws IOException {
+        File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            int numEntries = writeTempFile(tempFile, payloads, exclude);
+            FileUtil.renameFile(tempFile, file);
+            return numEntries;
+        } finally {
+            if (tempFile.exists() && !tempFile.delete()) {
+                log.warn("Could not delete temp file {}", tempFile);
+            }
+        }
+    }
+
+    private static int writeTempFile(File tempFile,
+                                     Map<P2PDataStorage.ByteArray, ? extends PersistableNetworkPayload> payloads,
+                                     Predicate<P2PDataStorage.ByteArray> exclude) throws IOException {
+        int numEntries = 0;
+        long[] recordOffsets = new long[payloads.size()];
+        byte[][] keys = new byte[payloads.size()][];
+        long offset = HEADER_SIZE;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024))) {
+            // Header is completed below once we know the offset of the index
+            out.write(new byte[HEADER_SIZE]);
+            for (Map.Entry<P2PDataStorage.ByteArray, ? extends PersistableNetworkPayload> entry : payloads.entrySet()) {
+                if (exclude.test(entry.getKey())) continue;
+                byte[] key = entry.getKey().bytes;
+                byte[] payload = entry.getValue().toProtoMessage().toByteArray();
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeInt(payload.length);
+                out.write(payload);
+                keys[numEntries] = key;
+                recordOffsets[numEntries] = offset;
+                numEntries++;
+                offset += 4 + key.length + 4 + payload.length;
+            }
+
+            int numSlots = getNumSlots(numEntries);
+            long[] slots = new long[numSlots];
+            for (int i = 0; i < numEntries; i++) {
+                int slot = getSlot(keys[i], numSlots);
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & (numSlots - 1);
+                }
+                slots[slot] = recordOffsets[i];
+            }
+            for (long slot : slots) {
+                out.writeLong(slot);
+            }
+            if (offset + (long) numSlots * SLOT_SIZE > Integer.MAX_VALUE) {
+                throw new IOException("Store is too large to be mapped: " + tempFile.getName());
+            }
+            out.flush();
+
+            try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(HEADER_SIZE)
+                        .putInt(MAGIC)
+                        .putInt(VERSION)
+                        .putInt(numEntries)
+                        .putInt(numSlots)
+                        .putLong(offset)
+                        .flip(), 0);
+                channel.force(true);
+            }
+        }
+        return numEntries;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Read
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @param file     the file written by {@link #write(File, Map, Predicate)}
+     * @param resolver deserializes the stored payloads
+     * @return the store, or null if the file does not exist or is not valid
+     */
+    @Nullable
+    static MappedPayloadStore open(File file,
+                                   Function<protobuf.PersistableNetworkPayload, PersistableNetworkPayload> resolver) {
+        if (!file.exists()) return null;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                log.warn("Mapped store {} has an invalid size of {} bytes", file.getName(), size);
+                return null;
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                log.warn("Mapped store {} has an unknown format", file.getName());
+                return null;
+            }
+            int numEntries = buffer.getInt(8);
+            int numSlots = buffer.getInt(12);
+            long indexOffset = buffer.getLong(16);
+            if (numEntries < 0 || numSlots != getNumSlots(numEntries) ||
+                    indexOffset < HEADER_SIZE || indexOffset + (long) numSlots * SLOT_SIZE != size) {
+                log.warn("Mapped store {} has an invalid header", file.getName());
+                return null;
+            }
+            return new MappedPayloadStore(file, buffer, resolver, numEntries, numSlots, (int) indexOffset);
+        } catch (IOException e) {
+            log.warn("Could not map store {}: {}", file.getName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private MappedPayloadStore(File file,
+                               MappedByteBuffer buffer,
+                               Function<protobuf.PersistableNetworkPayload, PersistableNetworkPayload> resolver,
+                               int numEntries,
+                               int numSlots,
+                               int indexOffset) {
+        this.file = file;
+        this.buffer = buffer;
+        this.resolver = resolver;
+        this.numEntries = numEntries;
+        this.numSlots = numSlots;
+        this.indexOffset = indexOffset;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    int size() {
+        return numEntries;
+    }
+
+    boolean containsKey(P2PDataStorage.ByteArray key) {
+        return findRecord(key.bytes) != 0;
+    }
+
+    @Nullable
+    PersistableNetworkPayload get(P2PDataStorage.ByteArray key) {
+        int recordOffset = findRecord(key.bytes);
+        if (recordOffset == 0) return null;
+        return readPayload(recordOffset + 4 + key.bytes.length);
+    }
+
+    /**
+     * @return an iterator over the records in file order. Payloads are deserialized while iterating.
+     */
+    Iterator<Map.Entry<P2PDataStorage.ByteArray, PersistableNetworkPayload>> iterator() {
+        return new Iterator<>() {
+            private int offset = HEADER_SIZE;
+
+            @Override
+            public boolean hasNext() {
+                return offset < indexOffset;
+            }
+
+            @Override
+            public Map.Entry<P2PDataStorage.ByteArray, PersistableNetworkPayload> next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                byte[] key = readBytes(offset);
+                int payloadOffset = offset + 4 + key.length;
+                PersistableNetworkPayload payload = readPayload(payloadOffset);
+                offset = payloadOffset + 4 + buffer.getInt(payloadOffset);
+                return new AbstractMap.SimpleImmutableEntry<>(new P2PDataStorage.ByteArray(key), payload);
+            }
+        };
+    }
+
+    /**
+     * Passes the records in file order to the consumer. Excluded records are skipped without deserializing them.
+     */
+    void forEach(Predicate<P2PDataStorage.ByteArray> exclude,
+                 BiConsumer<P2PDataStorage.ByteArray, PersistableNetworkPayload> consumer) {
+        int offset = HEADER_SIZE;
+        while (offset < indexOffset) {
+            P2PDataStorage.ByteArray key = new P2PDataStorage.ByteArray(readBytes(offset));
+            int payloadOffset = offset + 4 + key.bytes.length;
+            if (!exclude.test(key)) {
+                consumer.accept(key, readPayload(payloadOffset));
+            }
+            offset = payloadOffset + 4 + buffer.getInt(payloadOffset);
+        }
+    }
+
+    /**
+     * @return an iterator over the payloads in file order. Excluded records are skipped without deserializing them.
+     */
+    Iterator<PersistableNetworkPayload> valueIterator(Predicate<P2PDataStorage.ByteArray> exclude) {
+        return new Iterator<>() {
+            private int offset = HEADER_SIZE;
+            private PersistableNetworkPayload nextPayload;
+
+            @Override
+            public boolean hasNext() {
+                while (nextPayload == null && offset < indexOffset) {
+                    byte[] key = readBytes(offset);
+                    int payloadOffset = offset + 4 + key.length;
+                    offset = payloadOffset + 4 + buffer.getInt(payloadOffset);
+                    if (!exclude.test(new P2PDataStorage.ByteArray(key))) {
+                        nextPayload = readPayload(payloadOffset);
+                    }
+                }
+                return nextPayload != null;
+            }
+
+            @Override
+            public PersistableNetworkPayload next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                PersistableNetworkPayload payload = nextPayload;
+                nextPayload = null;
+                return payload;
+            }
+        };
+    }
+
+    /**
+     * @return an iterator over the keys in file order. No payload gets deserialized.
+     */
+    Iterator<P2PDataStorage.ByteArray> keyIterator() {
+        return new Iterator<>() {
+            private int offset = HEADER_SIZE;
+
+            @Override
+            public boolean hasNext() {
+                return offset < indexOffset;
+            }
+
+            @Override
+            public P2PDataStorage.ByteArray next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                byte[] key = readBytes(offset);
+                int payloadOffset = offset + 4 + key.length;
+                offset = payloadOffset + 4 + buffer.getInt(payloadOffset);
+                return new P2PDataStorage.ByteArray(key);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "MappedPayloadStore{" +
+                "file=" + file.getName() +
+                ", numEntries=" + numEntries +
+                ", size=" + buffer.capacity() +
+                '}';
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Returns the offset of the record or 0 if not found
+    private int findRecord(byte[] key) {
+        int slot = getSlot(key, numSlots);
+        while (true) {
+            long recordOffset = buffer.getLong(indexOffset + slot * SLOT_SIZE);
+            if (recordOffset == 0) return 0;
+            if (keyEquals((int) recordOffset, key)) return (int) recordOffset;
+            slot = (slot + 1) & (numSlots - 1);
+        }
+    }
+
+    private boolean keyEquals(int recordOffset, byte[] key) {
+        if (buffer.getInt(recordOffset) != key.length) return false;
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(recordOffset + 4 + i) != key[i]) return false;
+        }
+        return true;
+    }
+
+    private byte[] readBytes(int offset) {
+        byte[] bytes = new byte[buffer.getInt(offset)];
+        buffer.get(offset + 4, bytes);
+        return bytes;
+    }
+
+    private PersistableNetworkPayload readPayload(int offset) {
+        try {
+            return resolver.apply(protobuf.PersistableNetworkPayload.parseFrom(readBytes(offset)));
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalStateException("Corrupted payload in mapped store " + file.getName(), e);
+        }
+    }
+
+    // At least twice the number of entries as power of two, so the probe sequences stay short
+    private static int getNumSlots(int numEntries) {
+        return Integer.highestOneBit(Math.max(1, numEntries) * 2 - 1) << 1;
+    }
+
+    // Keys are hashes already, we only spread the bits of the deterministic Arrays.hashCode
+    private static int getSlot(byte[] key, int numSlots) {
+        int hash = Arrays.hashCode(key);
+        return (hash ^ (hash >>> 16)) & (numSlots - 1);
+    }
+}
@@ -17,21 +17,38 @@
 
 package haveno.network.p2p.storage.persistence;
 
-import haveno.common.proto.persistable.PersistableEnvelope;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import haveno.common.proto.persistable.ChangeTrackingPersistableEnvelope;
+import haveno.common.proto.persistable.JournalChanges;
+import haveno.common.util.Utilities;
 import haveno.network.p2p.storage.P2PDataStorage;
 
+import javax.annotation.Nullable;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 /**
  * This class was not generalized to HashMapPersistable (like we did with #ListPersistable) because
  * in protobuffer the map construct can't be anything, so the straightforward mapping was not possible.
  * Hence this Persistable class.
+ * <p>
+ * Seed nodes keep hundreds of thousands of entries, so the 32 byte payload hashes are stored in a
+ * {@link SequenceNumberTable} without objects per entry. The MapValues are only created at lookups. Keys of another
+ * length are not expected but kept in a regular map.
+ * <p>
+ * The keys changed since the last write are tracked, so between the snapshots only their entries get serialized and
+ * appended to the journal.
  */
-public class SequenceNumberMap implements PersistableEnvelope {
-    private Map<P2PDataStorage.ByteArray, P2PDataStorage.MapValue> map = new ConcurrentHashMap<>();
+public class SequenceNumberMap implements ChangeTrackingPersistableEnvelope {
+    private SequenceNumberTable table = new SequenceNumberTable();
+    private Map<P2PDataStorage.ByteArray, P2PDataStorage.MapValue> otherKeysMap = new HashMap<>();
+    // Keys put or purged since the last pollJournalChanges call
+    private Set<P2PDataStorage.ByteArray> changedKeys = new HashSet<>();
 
     public SequenceNumberMap() {
     }
@@ -41,73 +58,149 @@ public class SequenceNumberMap implements PersistableEnvelope {
     // PROTO BUFFER
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    private SequenceNumberMap(Map<P2PDataStorage.ByteArray, P2PDataStorage.MapValue> map) {
-        synchronized (this.map) {
-            this.map.putAll(map);
-        }
+    private SequenceNumberMap(int expectedSize) {
+        table = new SequenceNumberTable(expectedSize);
     }
 
     @Override
-    public protobuf.PersistableEnvelope toProtoMessage() {
-        synchronized (map) {
-            return protobuf.PersistableEnvelope.newBuilder()
-                    .setSequenceNumberMap(protobuf.SequenceNumberMap.newBuilder()
-                            .addAllSequenceNumberEntries(map.entrySet().stream()
-                                    .map(entry -> protobuf.SequenceNumberEntry.newBuilder()
-                                            .setBytes(entry.getKey().toProtoMessage())
-                                            .setMapValue(entry.getValue().toProtoMessage())
-                                            .build())
-                                    .collect(Collectors.toList())))
-                    .build();
-        }
+    public synchronized protobuf.PersistableEnvelope toProtoMessage() {
+        protobuf.SequenceNumberMap.Builder builder = protobuf.SequenceNumberMap.newBuilder();
+        table.forEach((key, sequenceNr, timeStamp) -> builder.addSequenceNumberEntries(toProto(key, sequenceNr, timeStamp)));
+        otherKeysMap.forEach((key, value) -> builder.addSequenceNumberEntries(toProto(key.bytes, value.sequenceNr, value.timeStamp)));
+        return protobuf.PersistableEnvelope.newBuilder()
+                .setSequenceNumberMap(builder)
+                .build();
     }
 
     public static SequenceNumberMap fromProto(protobuf.SequenceNumberMap proto) {
-        HashMap<P2PDataStorage.ByteArray, P2PDataStorage.MapValue> map = new HashMap<>();
+        SequenceNumberMap sequenceNumberMap = new SequenceNumberMap(proto.getSequenceNumberEntriesCount());
         proto.getSequenceNumberEntriesList()
-                .forEach(e -> map.put(P2PDataStorage.ByteArray.fromProto(e.getBytes()), P2PDataStorage.MapValue.fromProto(e.getMapValue())));
-        return new SequenceNumberMap(map);
+                .forEach(e -> sequenceNumberMap.putWithoutTracking(P2PDataStorage.ByteArray.fromProto(e.getBytes()),
+                        P2PDataStorage.MapValue.fromProto(e.getMapValue())));
+        return sequenceNumberMap;
+    }
+
+    private static protobuf.SequenceNumberEntry toProto(byte[] key, int sequenceNr, long timeStamp) {
+        return protobuf.SequenceNumberEntry.newBuilder()
+                .setBytes(protobuf.ByteArray.newBuilder().setBytes(ByteString.copyFrom(key)))
+                .setMapValue(protobuf.MapValue.newBuilder().setSequenceNr(sequenceNr).setTimeStamp(timeStamp))
+                .build();
     }
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
-    // API
+    // JournaledPersistableEnvelope implementation
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    public Map<P2PDataStorage.ByteArray, P2PDataStorage.MapValue> getMap() {
-        synchronized (map) {
-            return map;
+    @Override
+    public LinkedHashMap<String, ByteString> toJournalItems(protobuf.PersistableEnvelope proto) {
+        LinkedHashMap<String, ByteString> items = new LinkedHashMap<>();
+        proto.getSequenceNumberMap().getSequenceNumberEntriesList()
+                .forEach(entry -> items.put(getJournalKey(entry.getBytes().getBytes().toByteArray()), entry.toByteString()));
+        return items;
+    }
+
+    @Override
+    public protobuf.PersistableEnvelope fromJournalItems(Collection<ByteString> items) throws InvalidProtocolBufferException {
+        protobuf.SequenceNumberMap.Builder builder = protobuf.SequenceNumberMap.newBuilder();
+        for (ByteString item : items) {
+            builder.addSequenceNumberEntries(protobuf.SequenceNumberEntry.parseFrom(item));
         }
+        return protobuf.PersistableEnvelope.newBuilder().setSequenceNumberMap(builder).build();
+    }
+
+    @Override
+    public synchronized JournalChanges pollJournalChanges() {
+        JournalChanges changes = new JournalChanges();
+        changedKeys.forEach(key -> {
+            P2PDataStorage.MapValue value = get(key);
+            if (value != null) {
+                changes.putItem(getJournalKey(key.bytes), toProto(key.bytes, value.sequenceNr, value.timeStamp).toByteString());
+            } else {
+                changes.removeItem(getJournalKey(key.bytes));
+            }
+        });
+        changedKeys = new HashSet<>();
+        return changes;
     }
 
-    public void setMap(Map<P2PDataStorage.ByteArray, P2PDataStorage.MapValue> map) {
-        synchronized (this.map) {
-            this.map = map;
+    private static String getJournalKey(byte[] key) {
+        return Utilities.encodeToHex(key);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Replaces our entries with a copy of the entries of the given map, e.g. the persisted one.
+     */
+    public void setAll(SequenceNumberMap sequenceNumberMap) {
+        if (sequenceNumberMap == this) return;
+
+        SequenceNumberTable tableCopy;
+        Map<P2PDataStorage.ByteArray, P2PDataStorage.MapValue> otherKeysMapCopy;
+        synchronized (sequenceNumberMap) {
+            tableCopy = sequenceNumberMap.table.copy();
+            otherKeysMapCopy = new HashMap<>(sequenceNumberMap.otherKeysMap);
         }
+        synchronized (this) {
+            table = tableCopy;
+            otherKeysMap = otherKeysMapCopy;
+            // The PersistenceManager writes a snapshot before it appends changes, so we do not need to track them
+            changedKeys = new HashSet<>();
+        }
+    }
+
+    /**
+     * Removes all entries with a time stamp not after the given one.
+     *
+     * @return the number of removed entries
+     */
+    public synchronized int purge(long maxAgeTs) {
+        table.forEach((key, sequenceNr, timeStamp) -> {
+            if (timeStamp <= maxAgeTs) changedKeys.add(new P2PDataStorage.ByteArray(key));
+        });
+        otherKeysMap.forEach((key, value) -> {
+            if (value.timeStamp <= maxAgeTs) changedKeys.add(key);
+        });
+        int sizeBefore = otherKeysMap.size();
+        otherKeysMap.values().removeIf(value -> value.timeStamp <= maxAgeTs);
+        return table.purge(maxAgeTs) + sizeBefore - otherKeysMap.size();
     }
 
     // Delegates
-    public int size() {
-        synchronized (map) {
-            return map.size();
-        }
+    public synchronized int size() {
+        return table.size() + otherKeysMap.size();
     }
 
-    public boolean containsKey(P2PDataStorage.ByteArray key) {
-        synchronized (map) {
-            return map.containsKey(key);
-        }
+    public synchronized boolean containsKey(P2PDataStorage.ByteArray key) {
+        return isTableKey(key) ? table.containsKey(key.bytes) : otherKeysMap.containsKey(key);
     }
 
-    public P2PDataStorage.MapValue get(P2PDataStorage.ByteArray key) {
-        synchronized (map) {
-            return map.get(key);
-        }
+    @Nullable
+    public synchronized P2PDataStorage.MapValue get(P2PDataStorage.ByteArray key) {
+        if (!isTableKey(key)) return otherKeysMap.get(key);
+
+        int slot = table.findSlot(key.bytes);
+        return slot >= 0 ? new P2PDataStorage.MapValue(table.getSequenceNr(slot), table.getTimeStamp(slot)) : null;
     }
 
-    public void put(P2PDataStorage.ByteArray key, P2PDataStorage.MapValue value) {
-        synchronized (map) {
-            map.put(key, value);
+    public synchronized void put(P2PDataStorage.ByteArray key, P2PDataStorage.MapValue value) {
+        changedKeys.add(key);
+        putWithoutTracking(key, value);
+    }
+
+    private void putWithoutTracking(P2PDataStorage.ByteArray key, P2PDataStorage.MapValue value) {
+        if (isTableKey(key)) {
+            table.put(key.bytes, value.sequenceNr, value.timeStamp);
+        } else {
+            otherKeysMap.put(key, value);
         }
     }
+
+    private static boolean isTableKey(P2PDataStorage.ByteArray key) {
+        return key.bytes.length == SequenceNumberTable.KEY_LENGTH;
+    }
 }
@@ -0,0 +1,228 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.network.p2p.storage.persistence;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Open-addressing hash table from a 32 byte hash to a sequence number and a time stamp, stored in primitive arrays
+ * without an object per entry. The keys are stored as four big-endian longs. A slot takes 45 bytes
+ * (4 longs for the key, an int, a long and the used flag) instead of about 150 bytes for a ByteArray, a MapValue and
+ * the node of a HashMap.
+ * <p>
+ * Collisions are resolved by linear probing. Entries are only removed by {@link #purge(long)} which rebuilds the
+ * table, so we do not need tombstones. Not thread safe.
+ */
+final class SequenceNumberTable {
+    static final int KEY_LENGTH = 32;
+    private static final int MIN_CAPACITY = 16;
+    private static final double MAX_LOAD_FACTOR = 0.7;
+
+    private long[] keys;
+    private int[] sequenceNrs;
+    private long[] timeStamps;
+    private boolean[] used;
+    private int mask;
+    private int size;
+    private int maxSize;
+
+    SequenceNumberTable() {
+        this(MIN_CAPACITY);
+    }
+
+    SequenceNumberTable(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    int size() {
+        return size;
+    }
+
+    boolean containsKey(byte[] key) {
+        return findSlot(key) >= 0;
+    }
+
+    /**
+     * @return the slot of the key or -1 if the key is not contained. The slot is valid until the next put or purge.
+     */
+    int findSlot(byte[] key) {
+        if (key.length != KEY_LENGTH) return -1;
+        int slot = probe(getLong(key, 0), getLong(key, 8), getLong(key, 16), getLong(key, 24));
+        return used[slot] ? slot : -1;
+    }
+
+    int getSequenceNr(int slot) {
+        return sequenceNrs[slot];
+    }
+
+    long getTimeStamp(int slot) {
+        return timeStamps[slot];
+    }
+
+    void put(byte[] key, int sequenceNr, long timeStamp) {
+        checkArgument(key.length == KEY_LENGTH, "Key must have %s bytes", KEY_LENGTH);
+        if (size >= maxSize) {
+            rehash(size * 2);
+        }
+        long k0 = getLong(key, 0), k1 = getLong(key, 8), k2 = getLong(key, 16), k3 = getLong(key, 24);
+        int slot = probe(k0, k1, k2, k3);
+        if (!used[slot]) {
+            used[slot] = true;
+            int base = slot * 4;
+            keys[base] = k0;
+            keys[base + 1] = k1;
+            keys[base + 2] = k2;
+            keys[base + 3] = k3;
+            size++;
+        }
+        sequenceNrs[slot] = sequenceNr;
+        timeStamps[slot] = timeStamp;
+    }
+
+    /**
+     * Removes all entries with a time stamp not after the given one.
+     *
+     * @return the number of removed entries
+     */
+    int purge(long maxAgeTs) {
+        int numRemaining = 0;
+        for (int slot = 0; slot < used.length; slot++) {
+            if (used[slot] && timeStamps[slot] > maxAgeTs) numRemaining++;
+        }
+        int numRemoved = size - numRemaining;
+        if (numRemoved > 0) {
+            rehash(numRemaining, maxAgeTs);
+        }
+        return numRemoved;
+    }
+
+    void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot < used.length; slot++) {
+            if (used[slot]) {
+                consumer.accept(getKey(slot), sequenceNrs[slot], timeStamps[slot]);
+            }
+        }
+    }
+
+    SequenceNumberTable copy() {
+        SequenceNumberTable copy = new SequenceNumberTable();
+        copy.keys = keys.clone();
+        copy.sequenceNrs = sequenceNrs.clone();
+        copy.timeStamps = timeStamps.clone();
+        copy.used = used.clone();
+        copy.mask = mask;
+        copy.size = size;
+        copy.maxSize = maxSize;
+        return copy;
+    }
+
+    interface EntryConsumer {
+        void accept(byte[] key, int sequenceNr, long timeStamp);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void allocate(int capacity) {
+        keys = new long[capacity * 4];
+        sequenceNrs = new int[capacity];
+        timeStamps = new long[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        size = 0;
+        maxSize = (int) (capacity * MAX_LOAD_FACTOR);
+    }
+
+    private void rehash(int expectedSize) {
+        rehash(expectedSize, Long.MIN_VALUE);
+    }
+
+    // Moves all entries newer than minTimeStamp into new arrays sized for expectedSize
+    private void rehash(int expectedSize, long minTimeStamp) {
+        long[] oldKeys = keys;
+        int[] oldSequenceNrs = sequenceNrs;
+        long[] oldTimeStamps = timeStamps;
+        boolean[] oldUsed = used;
+        allocate(capacityFor(expectedSize));
+        for (int oldSlot = 0; oldSlot < oldUsed.length; oldSlot++) {
+            if (!oldUsed[oldSlot] || oldTimeStamps[oldSlot] <= minTimeStamp) continue;
+            int base = oldSlot * 4;
+            int slot = probe(oldKeys[base], oldKeys[base + 1], oldKeys[base + 2], oldKeys[base + 3]);
+            used[slot] = true;
+            System.arraycopy(oldKeys, base, keys, slot * 4, 4);
+            sequenceNrs[slot] = oldSequenceNrs[oldSlot];
+            timeStamps[slot] = oldTimeStamps[oldSlot];
+            size++;
+        }
+    }
+
+    // Returns the slot of the key or the free slot where it has to be inserted
+    private int probe(long k0, long k1, long k2, long k3) {
+        // The key is a cryptographic hash, so its bits are uniformly distributed already
+        int slot = (int) (k0 ^ (k0 >>> 32)) & mask;
+        while (used[slot]) {
+            int base = slot * 4;
+            if (keys[base] == k0 && keys[base + 1] == k1 && keys[base + 2] == k2 && keys[base + 3] == k3) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private byte[] getKey(int slot) {
+        byte[] key = new byte[KEY_LENGTH];
+        for (int i = 0; i < 4; i++) {
+            putLong(key, i * 8, keys[slot * 4 + i]);
+        }
+        return key;
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xff);
+        }
+        return value;
+    }
+
+    private static void putLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * MAX_LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.network.p2p.network;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConnectionDispatcherTest {
+
+    @Test
+    public void testTasksRunInOrderAndListenerTasksNeverConcurrently() throws Exception {
+        int numDispatchers = 4;
+        int numTasks = 200;
+        AtomicInteger runningListenerTasks = new AtomicInteger();
+        AtomicInteger maxRunningListenerTasks = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(numDispatchers * numTasks);
+        List<List<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < numDispatchers; i++) {
+            ConnectionDispatcher dispatcher = new ConnectionDispatcher("test-" + i);
+            List<Integer> result = Collections.synchronizedList(new ArrayList<>());
+            results.add(result);
+            for (int j = 0; j < numTasks; j++) {
+                int value = j;
+                if (j % 2 == 0) {
+                    dispatcher.execute(() -> {
+                        result.add(value);
+                        done.countDown();
+                    });
+                } else {
+                    dispatcher.executeOnListenerThread(() -> {
+                        maxRunningListenerTasks.accumulateAndGet(runningListenerTasks.incrementAndGet(), Math::max);
+                        result.add(value);
+                        runningListenerTasks.decrementAndGet();
+                        done.countDown();
+                    });
+                }
+            }
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, maxRunningListenerTasks.get());
+        for (List<Integer> result : results) {
+            assertEquals(numTasks, result.size());
+            for (int j = 0; j < numTasks; j++) assertEquals(j, result.get(j));
+        }
+    }
+
+    @Test
+    public void testBusyConnectionDoesNotBlockOtherConnections() throws Exception {
+        ConnectionDispatcher busy = new ConnectionDispatcher("busy");
+        ConnectionDispatcher other = new ConnectionDispatcher("other");
+        CountDownLatch blocker = new CountDownLatch(1);
+        AtomicBoolean busyListenerTaskRun = new AtomicBoolean();
+        CountDownLatch otherDone = new CountDownLatch(2);
+        CountDownLatch busyDone = new CountDownLatch(1);
+
+        busy.execute(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        busy.executeOnListenerThread(() -> {
+            busyListenerTaskRun.set(true);
+            busyDone.countDown();
+        });
+        other.execute(otherDone::countDown);
+        other.executeOnListenerThread(otherDone::countDown);
+
+        assertTrue(otherDone.await(5, TimeUnit.SECONDS));
+        // The listener task of the busy connection waits for its preceding task
+        assertFalse(busyListenerTaskRun.get());
+        blocker.countDown();
+        assertTrue(busyDone.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.network.p2p.network;
+
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.Test;
+
+import java.io.StreamCorruptedException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EnvelopeCompressionTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        protobuf.NetworkEnvelope envelope = createEnvelope("reason ".repeat(2000));
+        byte[] bytes = envelope.toByteArray();
+
+        protobuf.NetworkEnvelope compressed = EnvelopeCompression.compress(bytes, 0, bytes.length);
+        assertNotNull(compressed);
+        assertTrue(compressed.getSerializedSize() < bytes.length / 10);
+        assertEquals(envelope, EnvelopeCompression.decompress(compressed.getCompressedEnvelope(), 1024 * 1024));
+    }
+
+    @Test
+    public void testRoundTripOfCompressedProto() throws Exception {
+        protobuf.NetworkEnvelope envelope = createEnvelope("reason ".repeat(2000));
+        byte[] bytes = envelope.toByteArray();
+
+        protobuf.NetworkEnvelope compressed = EnvelopeCompression.compress(envelope, envelope.getSerializedSize());
+        assertNotNull(compressed);
+        assertEquals(bytes.length, compressed.getCompressedEnvelope().getUncompressedSize());
+        assertTrue(compressed.getSerializedSize() < bytes.length / 10);
+        assertEquals(envelope, EnvelopeCompression.decompress(compressed.getCompressedEnvelope(), 1024 * 1024));
+    }
+
+    @Test
+    public void testIncompressibleProtoIsNotCompressed() {
+        byte[] bytes = new byte[4096];
+        new Random(1).nextBytes(bytes);
+        protobuf.NetworkEnvelope envelope = protobuf.NetworkEnvelope.newBuilder()
+                .setMessageVersion("1")
+                .setCompressedEnvelope(protobuf.CompressedEnvelope.newBuilder().setData(ByteString.copyFrom(bytes)))
+                .build();
+
+        assertNull(EnvelopeCompression.compress(envelope, envelope.getSerializedSize()));
+    }
+
+    @Test
+    public void testIncompressibleDataIsNotCompressed() {
+        byte[] bytes = new byte[4096];
+        new Random(1).nextBytes(bytes);
+
+        assertNull(EnvelopeCompression.compress(bytes, 0, bytes.length));
+    }
+
+    @Test
+    public void testDecompressionIsBoundedByDeclaredSize() {
+        byte[] bytes = createEnvelope("reason ".repeat(2000)).toByteArray();
+        protobuf.CompressedEnvelope compressed = EnvelopeCompression.compress(bytes, 0, bytes.length).getCompressedEnvelope();
+
+        // Declared size smaller than the real size
+        protobuf.CompressedEnvelope understated = compressed.toBuilder().setUncompressedSize(bytes.length / 2).build();
+        assertThrows(StreamCorruptedException.class, () -> EnvelopeCompression.decompress(understated, 1024 * 1024));
+
+        // Declared size above the max. permitted size
+        assertThrows(StreamCorruptedException.class, () -> EnvelopeCompression.decompress(compressed, bytes.length - 1));
+    }
+
+    private static protobuf.NetworkEnvelope createEnvelope(String reason) {
+        return protobuf.NetworkEnvelope.newBuilder()
+                .setMessageVersion("1")
+                .setCloseConnectionMessage(protobuf.CloseConnectionMessage.newBuilder().setReason(reason))
+                .build();
+    }
+}
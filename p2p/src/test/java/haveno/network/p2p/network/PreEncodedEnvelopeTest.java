@@ -0,0 +1,59 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.network.p2p.network;
+
+import haveno.network.p2p.CloseConnectionMessage;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class PreEncodedEnvelopeTest {
+
+    @Test
+    public void testEncodingMatchesDelimitedProto() throws Exception {
+        CloseConnectionMessage message = new CloseConnectionMessage("test");
+        PreEncodedEnvelope preEncodedEnvelope = new PreEncodedEnvelope(message);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        message.toProtoNetworkEnvelope().writeDelimitedTo(expected);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        preEncodedEnvelope.writeTo(actual);
+
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+        assertEquals(message.toProtoNetworkEnvelope().getSerializedSize(), preEncodedEnvelope.getSerializedSize());
+    }
+
+    @Test
+    public void testEnvelopeIsEncodedOnce() throws Exception {
+        CloseConnectionMessage message = spy(new CloseConnectionMessage("test"));
+        PreEncodedEnvelope preEncodedEnvelope = new PreEncodedEnvelope(message);
+
+        preEncodedEnvelope.getSerializedSize();
+        for (int i = 0; i < 3; i++) {
+            preEncodedEnvelope.writeTo(new ByteArrayOutputStream());
+        }
+
+        verify(message, times(1)).toProtoNetworkEnvelope();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.network.p2p.network;
+
+import haveno.network.p2p.CloseConnectionMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SendSchedulerTest {
+
+    @Test
+    public void testQueuedCoalescableMessagesAreWrittenAsOneBatchInOrder() throws Exception {
+        List<List<String>> writes = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch firstWriteStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstWrite = new CountDownLatch(1);
+        SendScheduler scheduler = new SendScheduler("test", batch -> {
+            writes.add(toReasons(batch));
+            firstWriteStarted.countDown();
+            releaseFirstWrite.await();
+        }, 1, 10);
+
+        scheduler.enqueue(message("0", true));
+        firstWriteStarted.await(5, TimeUnit.SECONDS);
+        // Queued while the first write is blocked
+        scheduler.enqueue(message("1", true));
+        scheduler.enqueue(message("2", true));
+        scheduler.enqueue(message("3", false));
+        CompletableFuture<Void> last = scheduler.enqueue(message("4", true));
+        assertEquals(4, scheduler.getQueueSize());
+        releaseFirstWrite.countDown();
+        last.get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(List.of("0"), List.of("1", "2"), List.of("3"), List.of("4")), writes);
+        assertEquals(5, scheduler.getNumSent());
+        assertEquals(4, scheduler.getNumWrites());
+        assertEquals(0, scheduler.getQueueSize());
+        assertEquals(4, scheduler.getMaxQueueSize());
+    }
+
+    @Test
+    public void testWritesArePacedByTokenBucket() throws Exception {
+        List<Long> writeTimes = Collections.synchronizedList(new ArrayList<>());
+        SendScheduler scheduler = new SendScheduler("test", batch -> writeTimes.add(System.nanoTime()), 2, 50);
+
+        long start = System.nanoTime();
+        CompletableFuture<Void> last = null;
+        for (int i = 0; i < 4; i++) last = scheduler.enqueue(message(String.valueOf(i), false));
+        last.get(5, TimeUnit.SECONDS);
+
+        assertEquals(4, writeTimes.size());
+        // 2 writes as burst, the other 2 wait for a new token each
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(writeTimes.get(3) - start) >= 90);
+        assertTrue(scheduler.getMaxWaitTime() >= 90);
+    }
+
+    @Test
+    public void testFailedWriteCompletesFutureExceptionally() throws Exception {
+        SendScheduler scheduler = new SendScheduler("test", batch -> {
+            throw new java.io.IOException("test");
+        }, 1, 10);
+
+        CompletableFuture<Void> future = scheduler.enqueue(message("0", false));
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (java.util.concurrent.ExecutionException ignored) {
+        }
+        assertTrue(future.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testShutDownDiscardsQueuedMessages() throws Exception {
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        SendScheduler scheduler = new SendScheduler("test", batch -> written.addAll(toReasons(batch)), 1, 60000);
+
+        scheduler.enqueue(message("0", false)).get(5, TimeUnit.SECONDS);
+        // No token left for a minute
+        CompletableFuture<Void> queued = scheduler.enqueue(message("1", false));
+        scheduler.shutDown();
+        queued.get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("0"), written);
+        assertFalse(queued.isCompletedExceptionally());
+        assertEquals(0, scheduler.getQueueSize());
+    }
+
+    @Test
+    public void testUrgentMessageOvertakesQueuedMessagesWithoutToken() throws Exception {
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        SendScheduler scheduler = new SendScheduler("test", batch -> written.addAll(toReasons(batch)), 1, 60000);
+
+        scheduler.enqueue(message("0", false)).get(5, TimeUnit.SECONDS);
+        // No token left for a minute
+        CompletableFuture<Void> queued = scheduler.enqueue(message("1", false));
+        CompletableFuture<Void> urgent = scheduler.enqueue(new SendScheduler.OutboundMessage(
+                new CloseConnectionMessage("close"), null, null, 10, false, true));
+        urgent.get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("0", "close"), written);
+        assertFalse(queued.isDone());
+        assertEquals(1, scheduler.getQueueSize());
+        scheduler.shutDown();
+    }
+
+    private static SendScheduler.OutboundMessage message(String reason, boolean coalescable) {
+        return new SendScheduler.OutboundMessage(new CloseConnectionMessage(reason), null, null, 10, coalescable);
+    }
+
+    private static List<String> toReasons(List<SendScheduler.OutboundMessage> batch) {
+        List<String> reasons = new ArrayList<>();
+        batch.forEach(message -> reasons.add(((CloseConnectionMessage) message.getNetworkEnvelope()).getReason()));
+        return reasons;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.network.p2p.peers;
+
+import haveno.network.p2p.BundleOfEnvelopes;
+import haveno.network.p2p.NodeAddress;
+import haveno.network.p2p.network.Connection;
+import haveno.network.p2p.network.NetworkNode;
+import haveno.network.p2p.network.PreEncodedEnvelope;
+import haveno.network.p2p.storage.messages.BroadcastMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BroadcastHandlerTest {
+    private final NodeAddress senderAddress = new NodeAddress("sender", 9999);
+    private BroadcastHandler broadcastHandler;
+    private List<Broadcaster.BroadcastRequest> broadcastRequests;
+
+    @BeforeEach
+    public void setUp() {
+        broadcastHandler = new BroadcastHandler(mock(NetworkNode.class), mock(PeerManager.class), mock(BroadcastHandler.ResultHandler.class));
+        broadcastRequests = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            broadcastRequests.add(broadcastRequest(i == 0 ? senderAddress : null));
+        }
+    }
+
+    // TESTCASE: Connections getting the same subset of the requests share one encoded envelope
+    @Test
+    public void testSameSubsetSharesEncodedEnvelope() {
+        PreEncodedEnvelope first = getPreEncodedEnvelope(connection(null));
+        PreEncodedEnvelope second = getPreEncodedEnvelope(connection(null));
+
+        assertSame(first, second);
+        assertEnvelopes(first, broadcastRequests);
+    }
+
+    // TESTCASE: The sender of a request gets an own envelope without it
+    @Test
+    public void testSenderGetsEnvelopeWithoutOwnMessage() {
+        PreEncodedEnvelope all = getPreEncodedEnvelope(connection(null));
+        PreEncodedEnvelope withoutOwn = getPreEncodedEnvelope(connection(senderAddress));
+
+        assertNotSame(all, withoutOwn);
+        assertEnvelopes(withoutOwn, broadcastRequests.subList(1, 3));
+    }
+
+    // TESTCASE: A peer not supporting the capability of one message still gets the other messages
+    @Test
+    public void testUnsupportedMessageIsExcludedFromEnvelope() {
+        Connection connection = connection(null);
+        BroadcastMessage unsupported = broadcastRequests.get(1).getMessage();
+        when(connection.testCapability(unsupported)).thenReturn(false);
+
+        PreEncodedEnvelope preEncodedEnvelope = getPreEncodedEnvelope(connection);
+
+        assertEnvelopes(preEncodedEnvelope, List.of(broadcastRequests.get(0), broadcastRequests.get(2)));
+        assertNotSame(preEncodedEnvelope, getPreEncodedEnvelope(connection(null)));
+    }
+
+    // TESTCASE: A single remaining message is sent without a bundle
+    @Test
+    public void testSingleMessageIsSentUnbundled() {
+        Connection connection = connection(senderAddress);
+        when(connection.testCapability(broadcastRequests.get(2).getMessage())).thenReturn(false);
+
+        PreEncodedEnvelope preEncodedEnvelope = getPreEncodedEnvelope(connection);
+
+        assertSame(broadcastRequests.get(1).getMessage(), preEncodedEnvelope.getEnvelope());
+    }
+
+    private PreEncodedEnvelope getPreEncodedEnvelope(Connection connection) {
+        List<Broadcaster.BroadcastRequest> broadcastRequestsForConnection =
+                broadcastHandler.getBroadcastRequestsForConnection(connection, broadcastRequests);
+        return broadcastHandler.getPreEncodedEnvelope(broadcastRequests, broadcastRequestsForConnection);
+    }
+
+    private void assertEnvelopes(PreEncodedEnvelope preEncodedEnvelope, List<Broadcaster.BroadcastRequest> expected) {
+        assertTrue(preEncodedEnvelope.getEnvelope() instanceof BundleOfEnvelopes);
+        List<BroadcastMessage> expectedMessages = new ArrayList<>();
+        expected.forEach(broadcastRequest -> expectedMessages.add(broadcastRequest.getMessage()));
+        assertEquals(expectedMessages, ((BundleOfEnvelopes) preEncodedEnvelope.getEnvelope()).getEnvelopes());
+    }
+
+    private static Broadcaster.BroadcastRequest broadcastRequest(NodeAddress sender) {
+        Broadcaster.BroadcastRequest broadcastRequest = mock(Broadcaster.BroadcastRequest.class);
+        BroadcastMessage message = mock(BroadcastMessage.class);
+        when(broadcastRequest.getMessage()).thenReturn(message);
+        when(broadcastRequest.getSender()).thenReturn(sender);
+        return broadcastRequest;
+    }
+
+    private static Connection connection(NodeAddress peersNodeAddress) {
+        Connection connection = mock(Connection.class);
+        when(connection.getPeersNodeAddressOptional()).thenReturn(Optional.ofNullable(peersNodeAddress));
+        when(connection.testCapability(any())).thenReturn(true);
+        return connection;
+    }
+}
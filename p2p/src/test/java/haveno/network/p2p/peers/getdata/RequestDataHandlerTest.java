@@ -0,0 +1,48 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.network.p2p.peers.getdata;
+
+import haveno.common.app.Capabilities;
+import haveno.common.app.Capability;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RequestDataHandlerTest {
+
+    @Test
+    public void testLegacyKeysAreUsedIfCapabilitiesAreUnknown() {
+        assertFalse(RequestDataHandler.useKnownPayloadsFilter(Optional.empty()));
+        assertFalse(RequestDataHandler.useKnownPayloadsFilter(Optional.of(new Capabilities())));
+    }
+
+    @Test
+    public void testKnownPayloadsFilterIsUsedIfPeerHasCapability() {
+        Capabilities capabilities = new Capabilities(Capability.TRADE_STATISTICS_3, Capability.KNOWN_PAYLOADS_FILTER);
+        assertTrue(RequestDataHandler.useKnownPayloadsFilter(Optional.of(capabilities)));
+    }
+
+    @Test
+    public void testLegacyKeysAreUsedIfPeerLacksCapability() {
+        Capabilities capabilities = new Capabilities(Capability.TRADE_STATISTICS_3);
+        assertFalse(RequestDataHandler.useKnownPayloadsFilter(Optional.of(capabilities)));
+    }
+}
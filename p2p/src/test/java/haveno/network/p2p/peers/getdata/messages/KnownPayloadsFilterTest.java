@@ -0,0 +1,72 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.network.p2p.peers.getdata.messages;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KnownPayloadsFilterTest {
+    private static final int NUM_KEYS = 10_000;
+
+    @Test
+    public void testNoFalseNegatives() {
+        List<byte[]> keys = createKeys(new Random(1), NUM_KEYS);
+        KnownPayloadsFilter filter = KnownPayloadsFilter.fromKeys(keys);
+
+        keys.forEach(key -> assertTrue(filter.mightContain(key)));
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        Random random = new Random(2);
+        KnownPayloadsFilter filter = KnownPayloadsFilter.fromKeys(createKeys(random, NUM_KEYS));
+
+        long numFalsePositives = createKeys(random, NUM_KEYS).stream().filter(filter::mightContain).count();
+        // Allow some tolerance over the configured false positive probability
+        assertTrue(numFalsePositives < NUM_KEYS * KnownPayloadsFilter.FALSE_POSITIVE_PROBABILITY * 2,
+                "numFalsePositives=" + numFalsePositives);
+        // Much smaller than sending the 32 byte keys
+        assertTrue(filter.getBits().length < NUM_KEYS * 2);
+    }
+
+    @Test
+    public void testProtoRoundTrip() {
+        List<byte[]> keys = createKeys(new Random(3), 100);
+        KnownPayloadsFilter filter = KnownPayloadsFilter.fromKeys(keys);
+        KnownPayloadsFilter fromProto = KnownPayloadsFilter.fromProto(filter.toProtoMessage());
+
+        assertEquals(filter, fromProto);
+        keys.forEach(key -> assertTrue(fromProto.mightContain(key)));
+    }
+
+    private static List<byte[]> createKeys(Random random, int numKeys) {
+        List<byte[]> keys = new ArrayList<>(numKeys);
+        for (int i = 0; i < numKeys; i++) {
+            byte[] key = new byte[32];
+            random.nextBytes(key);
+            keys.add(key);
+        }
+        return keys;
+    }
+}
@@ -53,7 +53,11 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.withSettings;
 
@@ -160,6 +164,85 @@ public class P2PDataStorageBuildGetDataResponseTest {
             assertTrue(getDataResponse.getDataSet().isEmpty());
         }
 
+        // TESTCASE: The chunked response contains all unknown PNPs without truncation and only the last chunk
+        // has hasMoreChunks not set
+        @Test
+        public void buildGetDataResponseChunks_allPNPsInOrderedChunks() {
+            Set<byte[]> sentHashes = new HashSet<>();
+            for (byte i = 1; i <= 5; i++) {
+                PersistableNetworkPayload onlyLocal = new PersistableNetworkPayloadStub(new byte[]{i});
+                this.testState.mockedStorage.addPersistableNetworkPayload(onlyLocal, this.localNodeAddress, false);
+            }
+
+            GetDataRequest getDataRequest = this.buildGetDataRequest(1, new HashSet<>());
+            GetDataResponseChunks chunks = this.testState.mockedStorage.buildGetDataResponseChunks(
+                    getDataRequest, 2, Long.MAX_VALUE, new Capabilities());
+
+            int chunkIndex = 0;
+            while (chunks.hasNext()) {
+                GetDataResponse chunk = chunks.next();
+                assertEquals(chunkIndex++, chunk.getChunkIndex());
+                assertEquals(1, chunk.getRequestNonce());
+                assertFalse(chunk.isWasTruncated());
+                assertEquals(chunks.hasNext(), chunk.isHasMoreChunks());
+                assertTrue(chunk.getPersistableNetworkPayloadSet().size() <= 2);
+                chunk.getPersistableNetworkPayloadSet().forEach(payload -> sentHashes.add(payload.getHash()));
+            }
+            assertEquals(3, chunkIndex);
+            assertEquals(5, sentHashes.size());
+        }
+
+        // TESTCASE: Without unknown data the chunked response consists of one empty chunk
+        @Test
+        public void buildGetDataResponseChunks_emptySingleChunk() {
+            GetDataRequest getDataRequest = this.buildGetDataRequest(1, new HashSet<>());
+            GetDataResponseChunks chunks = this.testState.mockedStorage.buildGetDataResponseChunks(
+                    getDataRequest, 2, Long.MAX_VALUE, new Capabilities());
+
+            assertTrue(chunks.hasNext());
+            GetDataResponse chunk = chunks.next();
+            assertFalse(chunk.isHasMoreChunks());
+            assertTrue(chunk.getPersistableNetworkPayloadSet().isEmpty());
+            assertTrue(chunk.getDataSet().isEmpty());
+            assertFalse(chunks.hasNext());
+        }
+
+        // TESTCASE: The chunks are read from the stores while iterating, so payloads added after building the chunks
+        // but before iterating are sent as well
+        @Test
+        public void buildGetDataResponseChunks_readsStoresWhileIterating() {
+            GetDataRequest getDataRequest = this.buildGetDataRequest(1, new HashSet<>());
+            GetDataResponseChunks chunks = this.testState.mockedStorage.buildGetDataResponseChunks(
+                    getDataRequest, 2, Long.MAX_VALUE, new Capabilities());
+
+            PersistableNetworkPayload onlyLocal = new PersistableNetworkPayloadStub(new byte[]{1});
+            this.testState.mockedStorage.addPersistableNetworkPayload(onlyLocal, this.localNodeAddress, false);
+
+            GetDataResponse chunk = chunks.next();
+            assertFalse(chunk.isHasMoreChunks());
+            assertTrue(chunk.getPersistableNetworkPayloadSet().contains(onlyLocal));
+            assertEquals(1, chunks.getNumItems());
+        }
+
+        // TESTCASE: The items of a chunk are converted to their proto messages once to measure the chunk size and
+        // the chunk is sent from those proto messages
+        @Test
+        public void buildGetDataResponseChunks_convertsItemsOnce() {
+            PersistableNetworkPayload onlyLocal = spy(new PersistableNetworkPayloadStub(new byte[]{1}));
+            this.testState.mockedStorage.addPersistableNetworkPayload(onlyLocal, this.localNodeAddress, false);
+
+            GetDataRequest getDataRequest = this.buildGetDataRequest(1, new HashSet<>());
+            GetDataResponseChunks chunks = this.testState.mockedStorage.buildGetDataResponseChunks(
+                    getDataRequest, 2, Long.MAX_VALUE, new Capabilities());
+            clearInvocations(onlyLocal);
+
+            GetDataResponse chunk = chunks.next();
+            protobuf.NetworkEnvelope proto = chunk.toProtoNetworkEnvelope();
+
+            verify(onlyLocal, times(1)).toProtoMessage();
+            assertEquals(1, proto.getGetDataResponse().getPersistableNetworkPayloadItemsCount());
+        }
+
         // TESTCASE: Given a GetDataRequest w/ known PNP, nothing is sent back
         @Test
         public void buildGetDataResponse_knownPNPDoNothing() {
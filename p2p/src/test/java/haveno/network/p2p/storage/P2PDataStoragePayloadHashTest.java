@@ -0,0 +1,195 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.network.p2p.storage;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+import haveno.common.app.Version;
+import haveno.common.crypto.CryptoException;
+import haveno.common.crypto.Sig;
+import haveno.network.p2p.TestUtils;
+import haveno.network.p2p.network.Connection;
+import haveno.network.p2p.storage.messages.AddDataMessage;
+import haveno.network.p2p.storage.messages.RemoveDataMessage;
+import haveno.network.p2p.storage.mocks.ExpirableProtectedStoragePayloadStub;
+import haveno.network.p2p.storage.payload.ProtectedStorageEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nullable;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests that the hash of a ProtectedStoragePayload is computed once per payload instance and that add and remove
+ * operations build the proto message of the payload only for the hash and the signature check. The number of built
+ * proto messages is compared with payloads which do not cache their hash.
+ */
+public class P2PDataStoragePayloadHashTest {
+    private static final int PAYLOAD_SIZE = 2 * 1024;
+
+    private TestState testState;
+    private KeyPair ownerKeys;
+    private Connection connection;
+
+    /**
+     * Payload stub with a real proto message which caches its hash like the production payloads and counts how
+     * often its proto message is requested. Without caching it behaves like the payloads before the hash got cached.
+     */
+    private static class HashCachingPayloadStub extends ExpirableProtectedStoragePayloadStub {
+        private final protobuf.StoragePayload storagePayload;
+        private final boolean cachesHash;
+        @Nullable
+        private byte[] hashOfPayload;
+        private int numProtoMessages;
+        private int numCachedHashes;
+
+        HashCachingPayloadStub(PublicKey ownerPubKey, byte[] data, boolean cachesHash) {
+            this(ownerPubKey, protobuf.StoragePayload.newBuilder()
+                    .setMailboxStoragePayload(protobuf.MailboxStoragePayload.newBuilder()
+                            .setOwnerPubKeyBytes(ByteString.copyFrom(Sig.getPublicKeyBytes(ownerPubKey)))
+                            .setSenderPubKeyForAddOperationBytes(ByteString.copyFrom(data)))
+                    .build(), cachesHash);
+        }
+
+        private HashCachingPayloadStub(PublicKey ownerPubKey, protobuf.StoragePayload storagePayload, boolean cachesHash) {
+            super(ownerPubKey);
+            this.storagePayload = storagePayload;
+            this.cachesHash = cachesHash;
+        }
+
+        // A new instance with the same content, as received in a message from the network
+        HashCachingPayloadStub copy() {
+            return new HashCachingPayloadStub(getOwnerPubKey(), storagePayload, cachesHash);
+        }
+
+        @Override
+        public Message toProtoMessage() {
+            numProtoMessages++;
+            return storagePayload;
+        }
+
+        @Nullable
+        @Override
+        public byte[] getHashOfPayload() {
+            return hashOfPayload;
+        }
+
+        @Override
+        public void setHashOfPayload(byte[] hashOfPayload) {
+            if (!cachesHash) return;
+            numCachedHashes++;
+            this.hashOfPayload = hashOfPayload;
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws NoSuchAlgorithmException {
+        testState = new TestState();
+        ownerKeys = TestUtils.generateKeyPair();
+        connection = mock(Connection.class);
+        when(connection.getPeersNodeAddressOptional()).thenReturn(Optional.of(TestState.getTestNodeAddress()));
+
+        Version.setBaseCryptoNetworkId(1);
+    }
+
+    private HashCachingPayloadStub createPayload(Random random) {
+        return createPayload(random, true);
+    }
+
+    private HashCachingPayloadStub createPayload(Random random, boolean cachesHash) {
+        byte[] data = new byte[PAYLOAD_SIZE];
+        random.nextBytes(data);
+        return new HashCachingPayloadStub(ownerKeys.getPublic(), data, cachesHash);
+    }
+
+    // Returns a signed entry which wraps a new instance of the payload, as received in a message from the network
+    private ProtectedStorageEntry buildReceivedEntry(HashCachingPayloadStub payload, int sequenceNumber)
+            throws CryptoException {
+        byte[] signature = Sig.sign(ownerKeys.getPrivate(), P2PDataStorage.getHashOfDataAndSeqNr(payload, sequenceNumber));
+        return new ProtectedStorageEntry(payload.copy(), ownerKeys.getPublic(), sequenceNumber, signature, testState.clockFake);
+    }
+
+    // TESTCASE: The hash of a payload is computed once although it is needed for signing, adding and removing
+    @Test
+    public void hashOfPayload_computedOncePerPayloadInstance() throws CryptoException {
+        HashCachingPayloadStub payload = createPayload(new Random(1));
+        P2PDataStorage storage = testState.mockedStorage;
+
+        ProtectedStorageEntry entry = storage.getProtectedStorageEntry(payload, ownerKeys);
+        assertNotNull(payload.getHashOfPayload());
+        assertTrue(storage.addProtectedStorageEntry(entry, TestState.getTestNodeAddress(), null));
+        assertTrue(storage.remove(storage.getProtectedStorageEntry(payload, ownerKeys), TestState.getTestNodeAddress()));
+
+        assertEquals(1, payload.numCachedHashes);
+        assertEquals(P2PDataStorage.get32ByteHashAsByteArray(payload), P2PDataStorage.getHashOfPayload(payload));
+    }
+
+    // TESTCASE: Adding and removing a payload received from the network builds its proto message once for the hash
+    // and once for the signature check
+    @Test
+    public void onMessage_buildsProtoMessageOnlyForHashAndSignature() throws CryptoException {
+        HashCachingPayloadStub payload = createPayload(new Random(2));
+        P2PDataStorage storage = testState.mockedStorage;
+
+        ProtectedStorageEntry addEntry = buildReceivedEntry(payload, 1);
+        storage.onMessage(new AddDataMessage(addEntry), connection);
+        HashCachingPayloadStub addedPayload = (HashCachingPayloadStub) addEntry.getProtectedStoragePayload();
+        assertTrue(storage.getMap().containsKey(P2PDataStorage.getHashOfPayload(payload)));
+        assertEquals(2, addedPayload.numProtoMessages);
+
+        ProtectedStorageEntry removeEntry = buildReceivedEntry(payload, 2);
+        storage.onMessage(new RemoveDataMessage(removeEntry), connection);
+        HashCachingPayloadStub removedPayload = (HashCachingPayloadStub) removeEntry.getProtectedStoragePayload();
+        assertTrue(storage.getMap().isEmpty());
+        assertEquals(2, removedPayload.numProtoMessages);
+    }
+
+    // TESTCASE: Signing, adding and removing a payload builds its proto message less often if the payload caches
+    // its hash than if it computes the hash on each use, as before the hash got cached
+    @Test
+    public void lifecycle_buildsFewerProtoMessagesWithCachedHash() throws CryptoException {
+        HashCachingPayloadStub cached = createPayload(new Random(3), true);
+        HashCachingPayloadStub uncached = createPayload(new Random(4), false);
+
+        signAddAndRemove(cached);
+        signAddAndRemove(uncached);
+
+        assertEquals(1, cached.numCachedHashes);
+        assertEquals(0, uncached.numCachedHashes);
+        assertTrue(cached.numProtoMessages < uncached.numProtoMessages,
+                "Expected fewer proto messages with cached hash: " + cached.numProtoMessages + " vs " + uncached.numProtoMessages);
+    }
+
+    private void signAddAndRemove(HashCachingPayloadStub payload) throws CryptoException {
+        P2PDataStorage storage = testState.mockedStorage;
+        assertTrue(storage.addProtectedStorageEntry(storage.getProtectedStorageEntry(payload, ownerKeys),
+                TestState.getTestNodeAddress(), null));
+        assertTrue(storage.remove(storage.getProtectedStorageEntry(payload, ownerKeys), TestState.getTestNodeAddress()));
+        assertTrue(storage.getMap().isEmpty());
+    }
+}
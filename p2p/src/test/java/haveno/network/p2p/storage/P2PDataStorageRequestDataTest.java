@@ -165,4 +165,26 @@ public class P2PDataStorageRequestDataTest {
         assertTrue(byteSetContains(getDataRequest.getExcludedKeys(),
                 P2PDataStorage.get32ByteHash(toAdd4.getProtectedStoragePayload())));
     }
+
+    // TESTCASE: With the KnownPayloadsFilter the PersistableNetworkPayload keys are only contained in the filter
+    // and the ProtectedStorageEntry keys are still sent as excluded keys.
+    @Test
+    public void buildPreliminaryGetDataRequest_KnownPayloadsFilter() throws NoSuchAlgorithmException {
+        PersistableNetworkPayload toAdd1 = new PersistableNetworkPayloadStub(new byte[]{1});
+        PersistableNetworkPayload toAdd2 = new PersistableNetworkPayloadStub(new byte[]{2});
+        ProtectedStorageEntry toAdd3 = getProtectedStorageEntryForAdd();
+
+        this.testState.mockedStorage.addPersistableNetworkPayload(toAdd1, this.localNodeAddress, false);
+        this.testState.mockedStorage.addPersistableNetworkPayload(toAdd2, this.localNodeAddress, false);
+        this.testState.mockedStorage.addProtectedStorageEntry(toAdd3, this.localNodeAddress, null);
+
+        PreliminaryGetDataRequest getDataRequest = this.testState.mockedStorage.buildPreliminaryGetDataRequest(1, true);
+
+        assertEquals(1, getDataRequest.getExcludedKeys().size());
+        assertTrue(byteSetContains(getDataRequest.getExcludedKeys(),
+                P2PDataStorage.get32ByteHash(toAdd3.getProtectedStoragePayload())));
+        assertEquals(2, getDataRequest.getKnownPayloadsFilter().getNumKeys());
+        assertTrue(getDataRequest.getKnownPayloadsFilter().mightContain(toAdd1.getHash()));
+        assertTrue(getDataRequest.getKnownPayloadsFilter().mightContain(toAdd2.getHash()));
+    }
 }
@@ -0,0 +1,119 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.network.p2p.storage;
+
+import haveno.common.crypto.CryptoException;
+import haveno.common.crypto.Sig;
+import haveno.network.p2p.TestUtils;
+import haveno.network.p2p.storage.mocks.ProtectedStoragePayloadStub;
+import haveno.network.p2p.storage.payload.ProtectedStorageEntry;
+import haveno.network.p2p.storage.payload.ProtectedStoragePayload;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProtectedStorageEntryVerifierTest {
+    private KeyPair ownerKeys;
+    private KeyPair otherKeys;
+
+    private static ProtectedStorageEntry buildProtectedStorageEntry(ProtectedStoragePayload protectedStoragePayload,
+                                                                    KeyPair entryOwner,
+                                                                    int sequenceNumber,
+                                                                    int signedSequenceNumber) throws CryptoException {
+        byte[] hashOfDataAndSeqNr = P2PDataStorage.get32ByteHash(
+                new P2PDataStorage.DataAndSeqNrPair(protectedStoragePayload, signedSequenceNumber));
+        byte[] signature = Sig.sign(entryOwner.getPrivate(), hashOfDataAndSeqNr);
+        return new ProtectedStorageEntry(protectedStoragePayload, entryOwner.getPublic(), sequenceNumber,
+                signature, Clock.systemDefaultZone());
+    }
+
+    @BeforeEach
+    public void setUp() throws NoSuchAlgorithmException {
+        ownerKeys = TestUtils.generateKeyPair();
+        otherKeys = TestUtils.generateKeyPair();
+    }
+
+    // Every third entry is signed over a different sequence number, every fifth entry is owned by a different key
+    private List<ProtectedStorageEntry> buildMixedEntries(int numEntries, List<Boolean> expectedValid) throws CryptoException {
+        List<ProtectedStorageEntry> entries = new ArrayList<>();
+        for (int i = 0; i < numEntries; i++) {
+            ProtectedStoragePayload payload = new ProtectedStoragePayloadStub(ownerKeys.getPublic());
+            boolean badSignature = i % 3 == 0;
+            boolean wrongOwner = i % 5 == 0;
+            KeyPair entryOwner = wrongOwner ? otherKeys : ownerKeys;
+            entries.add(buildProtectedStorageEntry(payload, entryOwner, i + 1, badSignature ? i + 2 : i + 1));
+            expectedValid.add(!badSignature && !wrongOwner);
+        }
+        return entries;
+    }
+
+    private void assertVerified(List<ProtectedStorageEntry> entries, List<Boolean> expectedValid) {
+        List<ProtectedStorageEntryVerifier.VerifiedEntry> verifiedEntries = ProtectedStorageEntryVerifier.verify(entries);
+
+        assertEquals(entries.size(), verifiedEntries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            ProtectedStorageEntryVerifier.VerifiedEntry verifiedEntry = verifiedEntries.get(i);
+            ProtectedStorageEntry entry = entries.get(i);
+            assertSame(entry, verifiedEntry.getProtectedStorageEntry());
+            assertArrayEquals(P2PDataStorage.get32ByteHash(entry.getProtectedStoragePayload()),
+                    verifiedEntry.getHashOfPayload().bytes);
+            assertEquals(expectedValid.get(i), verifiedEntry.isValidForAdd(), "entry " + i);
+            // The cached result must match a fresh verification
+            assertEquals(expectedValid.get(i), entry.isValidForAddOperation(), "entry " + i);
+        }
+    }
+
+    @Test
+    public void testMixedSignaturesSequential() throws CryptoException {
+        List<Boolean> expectedValid = new ArrayList<>();
+        List<ProtectedStorageEntry> entries = buildMixedEntries(ProtectedStorageEntryVerifier.MIN_PARALLEL_BATCH_SIZE - 1,
+                expectedValid);
+
+        assertVerified(entries, expectedValid);
+    }
+
+    @Test
+    public void testMixedSignaturesParallel() throws CryptoException {
+        List<Boolean> expectedValid = new ArrayList<>();
+        List<ProtectedStorageEntry> entries = buildMixedEntries(ProtectedStorageEntryVerifier.MIN_PARALLEL_BATCH_SIZE * 4,
+                expectedValid);
+
+        assertTrue(expectedValid.contains(true));
+        assertTrue(expectedValid.contains(false));
+        assertVerified(entries, expectedValid);
+    }
+
+    @Test
+    public void testStatsAreCollectedPerPayloadClass() throws CryptoException {
+        List<Boolean> expectedValid = new ArrayList<>();
+        ProtectedStorageEntryVerifier.verify(buildMixedEntries(2, expectedValid));
+
+        assertTrue(ProtectedStorageEntryVerifier.getStatsByPayloadClass()
+                .containsKey(ProtectedStoragePayloadStub.class.getSimpleName()));
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.network.p2p.storage.persistence;
+
+import com.google.protobuf.ByteString;
+import haveno.network.p2p.storage.P2PDataStorage;
+import haveno.network.p2p.storage.payload.PersistableNetworkPayload;
+import lombok.EqualsAndHashCode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MappedPayloadStoreTest {
+    @TempDir
+    File dir;
+
+    @Test
+    public void testWriteAndLookup() throws Exception {
+        Map<P2PDataStorage.ByteArray, TestPayload> payloads = createPayloads(1000);
+        File file = new File(dir, "store" + MappedPayloadStore.FILE_SUFFIX);
+        assertEquals(1000, MappedPayloadStore.write(file, payloads, hash -> false));
+
+        MappedPayloadStore store = MappedPayloadStore.open(file, TestPayload::fromProto);
+        assertNotNull(store);
+        assertEquals(1000, store.size());
+        payloads.forEach((hash, payload) -> {
+            assertTrue(store.containsKey(hash));
+            assertEquals(payload, store.get(hash));
+        });
+        P2PDataStorage.ByteArray unknown = new P2PDataStorage.ByteArray(new byte[20]);
+        assertFalse(store.containsKey(unknown));
+        assertNull(store.get(unknown));
+
+        Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> iterated = new HashMap<>();
+        store.iterator().forEachRemaining(entry -> iterated.put(entry.getKey(), entry.getValue()));
+        assertEquals(payloads, iterated);
+
+        Set<P2PDataStorage.ByteArray> keys = new HashSet<>();
+        store.keyIterator().forEachRemaining(keys::add);
+        assertEquals(payloads.keySet(), keys);
+    }
+
+    @Test
+    public void testExcludedPayloadsAreNotWritten() throws Exception {
+        Map<P2PDataStorage.ByteArray, TestPayload> payloads = createPayloads(10);
+        P2PDataStorage.ByteArray excluded = payloads.keySet().iterator().next();
+        File file = new File(dir, "store" + MappedPayloadStore.FILE_SUFFIX);
+        assertEquals(9, MappedPayloadStore.write(file, payloads, excluded::equals));
+
+        MappedPayloadStore store = MappedPayloadStore.open(file, TestPayload::fromProto);
+        assertNotNull(store);
+        assertFalse(store.containsKey(excluded));
+    }
+
+    @Test
+    public void testForEachSkipsExcludedRecords() throws Exception {
+        Map<P2PDataStorage.ByteArray, TestPayload> payloads = createPayloads(100);
+        File file = new File(dir, "store" + MappedPayloadStore.FILE_SUFFIX);
+        MappedPayloadStore.write(file, payloads, hash -> false);
+        Set<P2PDataStorage.ByteArray> excluded = new HashSet<>();
+        payloads.keySet().stream().limit(60).forEach(excluded::add);
+
+        // The excluded records are not deserialized
+        Set<P2PDataStorage.ByteArray> deserialized = new HashSet<>();
+        MappedPayloadStore store = MappedPayloadStore.open(file, proto -> {
+            TestPayload payload = TestPayload.fromProto(proto);
+            deserialized.add(new P2PDataStorage.ByteArray(payload.getHash()));
+            return payload;
+        });
+        assertNotNull(store);
+        Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> result = new HashMap<>();
+        store.forEach(excluded::contains, result::put);
+
+        assertEquals(40, result.size());
+        assertEquals(result.keySet(), deserialized);
+        result.forEach((hash, payload) -> {
+            assertFalse(excluded.contains(hash));
+            assertEquals(payloads.get(hash), payload);
+        });
+    }
+
+    @Test
+    public void testValueIteratorSkipsExcludedRecords() throws Exception {
+        Map<P2PDataStorage.ByteArray, TestPayload> payloads = createPayloads(100);
+        File file = new File(dir, "store" + MappedPayloadStore.FILE_SUFFIX);
+        MappedPayloadStore.write(file, payloads, hash -> false);
+        Set<P2PDataStorage.ByteArray> excluded = new HashSet<>();
+        payloads.keySet().stream().limit(60).forEach(excluded::add);
+
+        // The excluded records are not deserialized
+        Set<P2PDataStorage.ByteArray> deserialized = new HashSet<>();
+        MappedPayloadStore store = MappedPayloadStore.open(file, proto -> {
+            TestPayload payload = TestPayload.fromProto(proto);
+            deserialized.add(new P2PDataStorage.ByteArray(payload.getHash()));
+            return payload;
+        });
+        assertNotNull(store);
+        Set<P2PDataStorage.ByteArray> result = new HashSet<>();
+        store.valueIterator(excluded::contains).forEachRemaining(payload -> {
+            P2PDataStorage.ByteArray hash = new P2PDataStorage.ByteArray(payload.getHash());
+            assertFalse(excluded.contains(hash));
+            assertEquals(payloads.get(hash), payload);
+            result.add(hash);
+        });
+
+        assertEquals(40, result.size());
+        assertEquals(result, deserialized);
+    }
+
+    @Test
+    public void testEmptyStore() throws Exception {
+        File file = new File(dir, "store" + MappedPayloadStore.FILE_SUFFIX);
+        MappedPayloadStore.write(file, new HashMap<>(), hash -> false);
+
+        MappedPayloadStore store = MappedPayloadStore.open(file, TestPayload::fromProto);
+        assertNotNull(store);
+        assertEquals(0, store.size());
+        assertFalse(store.iterator().hasNext());
+        assertFalse(store.containsKey(new P2PDataStorage.ByteArray(new byte[]{1})));
+    }
+
+    @Test
+    public void testInvalidFileIsNotOpened() throws Exception {
+        File file = new File(dir, "store" + MappedPayloadStore.FILE_SUFFIX);
+        assertNull(MappedPayloadStore.open(file, TestPayload::fromProto));
+
+        MappedPayloadStore.write(file, createPayloads(10), hash -> false);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length - 1));
+        assertNull(MappedPayloadStore.open(file, TestPayload::fromProto));
+    }
+
+    private static Map<P2PDataStorage.ByteArray, TestPayload> createPayloads(int numPayloads) {
+        Random random = new Random(1);
+        Map<P2PDataStorage.ByteArray, TestPayload> payloads = new HashMap<>();
+        for (int i = 0; i < numPayloads; i++) {
+            byte[] hash = new byte[20];
+            random.nextBytes(hash);
+            TestPayload payload = new TestPayload(hash, random.nextLong());
+            payloads.put(new P2PDataStorage.ByteArray(hash), payload);
+        }
+        return payloads;
+    }
+
+    @EqualsAndHashCode
+    private static final class TestPayload implements PersistableNetworkPayload {
+        private final byte[] hash;
+        private final long date;
+
+        private TestPayload(byte[] hash, long date) {
+            this.hash = hash;
+            this.date = date;
+        }
+
+        private static TestPayload fromProto(protobuf.PersistableNetworkPayload proto) {
+            return new TestPayload(proto.getAccountAgeWitness().getHash().toByteArray(), proto.getAccountAgeWitness().getDate());
+        }
+
+        @Override
+        public protobuf.PersistableNetworkPayload toProtoMessage() {
+            return protobuf.PersistableNetworkPayload.newBuilder()
+                    .setAccountAgeWitness(protobuf.AccountAgeWitness.newBuilder()
+                            .setHash(ByteString.copyFrom(hash))
+                            .setDate(date))
+                    .build();
+        }
+
+        @Override
+        public byte[] getHash() {
+            return hash;
+        }
+
+        @Override
+        public boolean verifyHashSize() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.network.p2p.storage.persistence;
+
+import haveno.network.p2p.storage.P2PDataStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the insert and lookup throughput and the retained heap per entry of the SequenceNumberMap with a HashMap
+ * of ByteArray to MapValue, which backed the SequenceNumberMap before.
+ * <p>
+ * Disabled as the results depend on the machine. Enable it to run it manually. The keys and values are created
+ * before the measurements, as the storage layer has them already.
+ */
+@Slf4j
+@Disabled
+public class SequenceNumberMapBenchmarkTest {
+    private static final int NUM_ENTRIES = 500_000;
+    private static final int NUM_LOOKUP_ROUNDS = 5;
+    private static final int NUM_RUNS = 3;
+
+    @Test
+    public void benchmark() {
+        List<P2PDataStorage.ByteArray> keys = createKeys();
+        List<P2PDataStorage.MapValue> values = new ArrayList<>(NUM_ENTRIES);
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            values.add(new P2PDataStorage.MapValue(i, 1000L + i));
+        }
+
+        // The first runs warm up the JIT
+        for (int run = 0; run < NUM_RUNS; run++) {
+            runHashMap(keys, values);
+            runSequenceNumberMap(keys, values);
+        }
+    }
+
+    private void runHashMap(List<P2PDataStorage.ByteArray> keys, List<P2PDataStorage.MapValue> values) {
+        long usedBefore = getUsedHeap();
+        Map<P2PDataStorage.ByteArray, P2PDataStorage.MapValue> map = new HashMap<>();
+        long ts = System.nanoTime();
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            // The SequenceNumberMap used to store a new MapValue per entry
+            P2PDataStorage.MapValue value = values.get(i);
+            map.put(keys.get(i), new P2PDataStorage.MapValue(value.sequenceNr, value.timeStamp));
+        }
+        long insertDuration = System.nanoTime() - ts;
+
+        int found = 0;
+        ts = System.nanoTime();
+        for (int round = 0; round < NUM_LOOKUP_ROUNDS; round++) {
+            for (P2PDataStorage.ByteArray key : keys) {
+                if (map.get(key) != null) found++;
+            }
+        }
+        long lookupDuration = System.nanoTime() - ts;
+        long retained = getUsedHeap() - usedBefore;
+        assertEquals(NUM_ENTRIES, map.size());
+        log(HashMap.class.getSimpleName(), retained, insertDuration, lookupDuration, found);
+    }
+
+    private void runSequenceNumberMap(List<P2PDataStorage.ByteArray> keys, List<P2PDataStorage.MapValue> values) {
+        long usedBefore = getUsedHeap();
+        SequenceNumberMap map = new SequenceNumberMap();
+        long ts = System.nanoTime();
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            map.put(keys.get(i), values.get(i));
+        }
+        long insertDuration = System.nanoTime() - ts;
+        // The changed keys are released once the changes got persisted
+        map.pollJournalChanges();
+
+        int found = 0;
+        ts = System.nanoTime();
+        for (int round = 0; round < NUM_LOOKUP_ROUNDS; round++) {
+            for (P2PDataStorage.ByteArray key : keys) {
+                if (map.get(key) != null) found++;
+            }
+        }
+        long lookupDuration = System.nanoTime() - ts;
+        long retained = getUsedHeap() - usedBefore;
+        assertEquals(NUM_ENTRIES, map.size());
+        log(SequenceNumberMap.class.getSimpleName(), retained, insertDuration, lookupDuration, found);
+    }
+
+    private static void log(String name, long retained, long insertDuration, long lookupDuration, int found) {
+        log.info("{}: retained per entry: {} bytes, inserts: {}/ms, lookups: {}/ms (found {})",
+                name,
+                retained / NUM_ENTRIES,
+                NUM_ENTRIES / Math.max(1, TimeUnit.NANOSECONDS.toMillis(insertDuration)),
+                (long) NUM_ENTRIES * NUM_LOOKUP_ROUNDS / Math.max(1, TimeUnit.NANOSECONDS.toMillis(lookupDuration)),
+                found);
+    }
+
+    // Only an estimate, as System.gc is a hint
+    private static long getUsedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static List<P2PDataStorage.ByteArray> createKeys() {
+        Random random = new Random(1);
+        List<P2PDataStorage.ByteArray> keys = new ArrayList<>(NUM_ENTRIES);
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+            byte[] hash = new byte[SequenceNumberTable.KEY_LENGTH];
+            random.nextBytes(hash);
+            keys.add(new P2PDataStorage.ByteArray(hash));
+        }
+        return keys;
+    }
+}
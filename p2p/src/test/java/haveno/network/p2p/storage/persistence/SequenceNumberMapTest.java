@@ -0,0 +1,148 @@
+/*
+ * This file is part of Haveno.
+ *
+ * Haveno is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Haveno is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Haveno. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package haveno.network.p2p.storage.persistence;
+
+import haveno.common.proto.persistable.JournalChanges;
+import haveno.common.util.Utilities;
+import haveno.network.p2p.storage.P2PDataStorage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SequenceNumberMapTest {
+    // Seeded, so the tests are reproducible. Each call of createKeys continues the sequence and creates new keys.
+    private final Random random = new Random(1);
+
+    @Test
+    public void testPutAndGet() {
+        SequenceNumberMap map = new SequenceNumberMap();
+        List<P2PDataStorage.ByteArray> keys = createKeys(10_000);
+        for (int i = 0; i < keys.size(); i++) {
+            map.put(keys.get(i), new P2PDataStorage.MapValue(i, 1000L + i));
+        }
+        // Overwrite every other entry
+        for (int i = 0; i < keys.size(); i += 2) {
+            map.put(keys.get(i), new P2PDataStorage.MapValue(i + 1, 1000L + i));
+        }
+
+        assertEquals(keys.size(), map.size());
+        for (int i = 0; i < keys.size(); i++) {
+            assertTrue(map.containsKey(keys.get(i)));
+            assertEquals(new P2PDataStorage.MapValue(i % 2 == 0 ? i + 1 : i, 1000L + i), map.get(keys.get(i)));
+        }
+        assertNull(map.get(createKeys(1).get(0)));
+    }
+
+    @Test
+    public void testPurge() {
+        SequenceNumberMap map = new SequenceNumberMap();
+        List<P2PDataStorage.ByteArray> keys = createKeys(1000);
+        for (int i = 0; i < keys.size(); i++) {
+            map.put(keys.get(i), new P2PDataStorage.MapValue(1, i));
+        }
+        P2PDataStorage.ByteArray shortKey = new P2PDataStorage.ByteArray(new byte[]{1, 2, 3});
+        map.put(shortKey, new P2PDataStorage.MapValue(1, 0));
+
+        assertEquals(501, map.purge(499));
+        assertEquals(500, map.size());
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(i >= 500, map.containsKey(keys.get(i)));
+        }
+        assertFalse(map.containsKey(shortKey));
+    }
+
+    @Test
+    public void testProtoRoundTrip() {
+        SequenceNumberMap map = new SequenceNumberMap();
+        List<P2PDataStorage.ByteArray> keys = createKeys(100);
+        for (int i = 0; i < keys.size(); i++) {
+            map.put(keys.get(i), new P2PDataStorage.MapValue(i, 1000L + i));
+        }
+        P2PDataStorage.ByteArray shortKey = new P2PDataStorage.ByteArray(new byte[]{1, 2, 3});
+        map.put(shortKey, new P2PDataStorage.MapValue(7, 7));
+
+        SequenceNumberMap restored = SequenceNumberMap.fromProto(map.toProtoMessage().getSequenceNumberMap());
+        SequenceNumberMap copy = new SequenceNumberMap();
+        copy.setAll(restored);
+
+        assertEquals(101, copy.size());
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(new P2PDataStorage.MapValue(i, 1000L + i), copy.get(keys.get(i)));
+        }
+        assertEquals(new P2PDataStorage.MapValue(7, 7), copy.get(shortKey));
+    }
+
+    @Test
+    public void testOnlyChangedEntriesAreJournaled() {
+        SequenceNumberMap map = new SequenceNumberMap();
+        List<P2PDataStorage.ByteArray> keys = createKeys(10_000);
+        for (int i = 0; i < keys.size(); i++) {
+            map.put(keys.get(i), new P2PDataStorage.MapValue(1, i));
+        }
+        map.pollJournalChanges();
+
+        map.put(keys.get(42), new P2PDataStorage.MapValue(2, 42));
+        map.put(keys.get(42), new P2PDataStorage.MapValue(3, 42));
+        JournalChanges changes = map.pollJournalChanges();
+        assertEquals(1, changes.size());
+        assertEquals(Set.of(Utilities.encodeToHex(keys.get(42).bytes)), changes.getChangedItems().keySet());
+    }
+
+    @Test
+    public void testJournalChangesContainPutAndPurgedEntries() throws Exception {
+        SequenceNumberMap map = new SequenceNumberMap();
+        List<P2PDataStorage.ByteArray> keys = createKeys(3);
+        for (int i = 0; i < keys.size(); i++) {
+            map.put(keys.get(i), new P2PDataStorage.MapValue(1, i + 1));
+        }
+        assertEquals(3, map.pollJournalChanges().size());
+
+        map.put(keys.get(0), new P2PDataStorage.MapValue(5, 10));
+        map.purge(2);
+        JournalChanges changes = map.pollJournalChanges();
+
+        String key0 = Utilities.encodeToHex(keys.get(0).bytes);
+        assertEquals(List.of(key0), new ArrayList<>(changes.getChangedItems().keySet()));
+        protobuf.SequenceNumberEntry entry = protobuf.SequenceNumberEntry.parseFrom(changes.getChangedItems().get(key0));
+        assertEquals(new P2PDataStorage.MapValue(5, 10), P2PDataStorage.MapValue.fromProto(entry.getMapValue()));
+        assertEquals(Set.of(Utilities.encodeToHex(keys.get(1).bytes)), changes.getRemovedKeys());
+        assertTrue(map.pollJournalChanges().isEmpty());
+
+        // Entries read from disk are not changes
+        SequenceNumberMap restored = SequenceNumberMap.fromProto(map.toProtoMessage().getSequenceNumberMap());
+        assertTrue(restored.pollJournalChanges().isEmpty());
+    }
+
+    private List<P2PDataStorage.ByteArray> createKeys(int numKeys) {
+        List<P2PDataStorage.ByteArray> keys = new ArrayList<>(numKeys);
+        for (int i = 0; i < numKeys; i++) {
+            byte[] bytes = new byte[32];
+            random.nextBytes(bytes);
+            keys.add(new P2PDataStorage.ByteArray(bytes));
+        }
+        return keys;
+    }
+}
@@ -54,6 +54,13 @@ public class SeedNodeMain extends ExecutableForAppWithP2p {
         new SeedNodeMain().execute(args);
     }
 
+    // Seed nodes keep connections to many peers, so their P2P network node uses virtual threads unless the option
+    // is set at the command line or in the config file
+    @Override
+    protected boolean useVirtualThreadsForP2PByDefault() {
+        return true;
+    }
+
     @Override
     protected int doExecute() {
         super.doExecute();